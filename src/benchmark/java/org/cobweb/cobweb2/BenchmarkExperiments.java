@@ -0,0 +1,48 @@
+package org.cobweb.cobweb2;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.cobweb.cobweb2.io.Cobweb2Serializer;
+
+/**
+ * Loads the experiments bundled in the jar, for benchmarks to run on
+ */
+public class BenchmarkExperiments {
+
+	/**
+	 * Loads a bundled experiment. Experiments with a random seed of 0 get a
+	 * fixed seed instead, so every run does the same work.
+	 * @param name file name in the experiments folder
+	 */
+	public static SimulationConfig loadConfig(String name) {
+		InputStream stream = BenchmarkExperiments.class.getResourceAsStream("/experiments/" + name);
+		if (stream == null)
+			throw new IllegalArgumentException("No bundled experiment named " + name);
+
+		try {
+			SimulationConfig config = new Cobweb2Serializer().loadConfig(stream);
+			if (config.randomSeed == 0)
+				config.randomSeed = 42;
+			return config;
+		} finally {
+			try {
+				stream.close();
+			} catch (IOException ex) {
+				throw new RuntimeException(ex);
+			}
+		}
+	}
+
+	/**
+	 * Loads a bundled experiment and runs it for a number of steps
+	 */
+	public static Simulation load(String name, int steps) {
+		Simulation simulation = new Simulation();
+		simulation.load(loadConfig(name));
+		for (int i = 0; i < steps; i++) {
+			simulation.step();
+		}
+		return simulation;
+	}
+}
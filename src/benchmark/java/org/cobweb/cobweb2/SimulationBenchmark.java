@@ -0,0 +1,62 @@
+package org.cobweb.cobweb2;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Time to run a bundled experiment for a number of steps from the start.
+ *
+ * Populations grow and shrink as a simulation runs, so every invocation starts
+ * from a freshly loaded experiment to measure the same ticks each time.
+ * everything.xml is rewritten by the tests and everything-learning.xml needs
+ * an environment that is no longer around, so both are left out.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class SimulationBenchmark {
+
+	@Param({
+		"baseline.xml",
+		"baseline 2009.xml",
+		"boom and bust 2 applet.xml",
+		"central place applet.xml",
+		"cheaters vs cooperators.xml",
+		"everything-linear.xml",
+		"Exponential Growth Experiment.xml",
+	})
+	public String experiment;
+
+	@Param("200")
+	public int steps;
+
+	private Simulation simulation;
+
+	@Setup(Level.Invocation)
+	public void load() {
+		simulation = BenchmarkExperiments.load(experiment, 0);
+	}
+
+	@Benchmark
+	public Simulation step() {
+		for (int i = 0; i < steps; i++) {
+			simulation.step();
+		}
+		return simulation;
+	}
+}
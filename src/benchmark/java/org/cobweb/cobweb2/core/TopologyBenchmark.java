@@ -0,0 +1,109 @@
+package org.cobweb.cobweb2.core;
+
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.cobweb.util.RandomNoGenerator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class TopologyBenchmark {
+
+	private static final int LOCATIONS = 1024;
+
+	/**
+	 * flat, wrap or globe
+	 */
+	@Param({ "flat", "wrap", "globe" })
+	public String shape;
+
+	@Param({ "3", "10" })
+	public float radius;
+
+	private Topology topology;
+
+	private Location[] locations;
+
+	@Setup
+	public void setup() {
+		final RandomNoGenerator random = new RandomNoGenerator(42);
+		RandomSource randomSource = new RandomSource() {
+			@Override
+			public RandomNoGenerator getRandom() {
+				return random;
+			}
+		};
+		topology = new Topology(randomSource, 80, 80, shape.equals("globe"), shape.equals("wrap"), shape.equals("wrap"));
+
+		locations = new Location[LOCATIONS];
+		for (int i = 0; i < LOCATIONS; i++) {
+			locations[i] = topology.getRandomLocation();
+		}
+	}
+
+	@Benchmark
+	public void getArea(Blackhole bh) {
+		for (Location l : locations) {
+			Set<Location> area = topology.getArea(l, radius);
+			bh.consume(area);
+		}
+	}
+
+	@Benchmark
+	public int stencilTiles() {
+		Topology.Stencil area = topology.getStencil(radius);
+		int total = 0;
+		for (Location l : locations) {
+			for (int i = 0; i < area.size(); i++) {
+				total += topology.stencilTile(l, area, i);
+			}
+		}
+		return total;
+	}
+
+	@Benchmark
+	public double getDistanceSquared() {
+		double total = 0;
+		for (int i = 0; i < LOCATIONS; i++) {
+			total += topology.getDistanceSquared(locations[i], locations[(i * 7 + 1) % LOCATIONS]);
+		}
+		return total;
+	}
+
+	@Benchmark
+	public void getAdjacent(Blackhole bh) {
+		for (Location l : locations) {
+			for (Direction d : topology.ALL_8_WAY) {
+				bh.consume(topology.getAdjacent(l, d));
+			}
+		}
+	}
+
+	@Benchmark
+	public int adjacentIndex() {
+		int total = 0;
+		for (Location l : locations) {
+			int index = topology.index(l);
+			for (Direction d : topology.ALL_8_WAY) {
+				total += topology.adjacentIndex(index, d);
+			}
+		}
+		return total;
+	}
+}
@@ -0,0 +1,49 @@
+package org.cobweb.cobweb2.impl.ai;
+
+import java.util.concurrent.TimeUnit;
+
+import org.cobweb.util.RandomNoGenerator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class BehaviorArrayBenchmark {
+
+	/**
+	 * Input bits; 10 is the genetic controller with no memory or communication
+	 */
+	@Param({ "10", "14" })
+	public int inputBits;
+
+	private BehaviorArray parent;
+
+	private BehaviorArray child;
+
+	@Setup
+	public void setup() {
+		int[] output = { 2, 2, 2, 1 };
+		parent = new BehaviorArray(inputBits, output);
+		parent.randomInit(42);
+		// Agents mostly compare with relatives, which differ in a few places
+		child = parent.copy(0.05f, new RandomNoGenerator(43));
+	}
+
+	@Benchmark
+	public double similarity() {
+		return parent.similarity(child);
+	}
+}
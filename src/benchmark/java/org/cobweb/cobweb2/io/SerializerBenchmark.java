@@ -0,0 +1,59 @@
+package org.cobweb.cobweb2.io;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.cobweb.cobweb2.BenchmarkExperiments;
+import org.cobweb.cobweb2.SimulationConfig;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Loading and saving simulation configs in memory, without disk access
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class SerializerBenchmark {
+
+	@Param({ "baseline.xml", "everything-linear.xml" })
+	public String experiment;
+
+	private Cobweb2Serializer serializer;
+
+	private SimulationConfig config;
+
+	private byte[] saved;
+
+	@Setup
+	public void setup() {
+		serializer = new Cobweb2Serializer();
+		config = BenchmarkExperiments.loadConfig(experiment);
+		saved = save();
+	}
+
+	@Benchmark
+	public SimulationConfig load() {
+		return serializer.loadConfig(new ByteArrayInputStream(saved));
+	}
+
+	@Benchmark
+	public byte[] save() {
+		ByteArrayOutputStream stream = new ByteArrayOutputStream();
+		serializer.saveConfig(config, stream);
+		return stream.toByteArray();
+	}
+}
@@ -0,0 +1,64 @@
+package org.cobweb.cobweb2.plugins.broadcast;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.cobweb.cobweb2.BenchmarkExperiments;
+import org.cobweb.cobweb2.Simulation;
+import org.cobweb.cobweb2.core.Agent;
+import org.cobweb.cobweb2.impl.ComplexAgent;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Every agent of a running experiment looking for a broadcast to hear
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class PacketConduitBenchmark {
+
+	@Param({ "baseline.xml", "cheaters vs cooperators.xml" })
+	public String experiment;
+
+	private PacketConduit conduit;
+
+	private List<ComplexAgent> agents = new ArrayList<ComplexAgent>();
+
+	@Setup
+	public void setup() {
+		Simulation simulation = BenchmarkExperiments.load(experiment, 50);
+		for (Agent a : simulation.theEnvironment.getAgents()) {
+			agents.add((ComplexAgent) a);
+		}
+		if (agents.isEmpty())
+			throw new IllegalStateException(experiment + " has no agents left to broadcast");
+
+		conduit = simulation.theEnvironment.getPlugin(PacketConduit.class);
+		conduit.clearPackets();
+		conduit.unblockBroadcast();
+		ComplexAgent sender = agents.get(0);
+		conduit.addPacketToList(new FoodBroadcast(sender.getPosition(), sender));
+	}
+
+	@Benchmark
+	public void findPacket(Blackhole bh) {
+		for (ComplexAgent receiver : agents) {
+			bh.consume(conduit.findPacket(receiver.getPosition(), receiver));
+		}
+	}
+}
@@ -0,0 +1,73 @@
+package org.cobweb.cobweb2.plugins.food;
+
+import java.util.concurrent.TimeUnit;
+
+import org.cobweb.cobweb2.BenchmarkExperiments;
+import org.cobweb.cobweb2.Simulation;
+import org.cobweb.cobweb2.SimulationConfig;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * One round of food growth on a bundled experiment.
+ *
+ * Food spreads every round, so every invocation starts again from the
+ * experiment's first steps. Synchronous growth scans the map in bands on
+ * the environment update threads.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class FoodGrowthBenchmark {
+
+	@Param({ "baseline.xml", "baseline 2009.xml" })
+	public String experiment;
+
+	@Param({ "false", "true" })
+	public boolean synchronousGrowth;
+
+	@Param({ "1", "4" })
+	public int environmentThreads;
+
+	private Simulation simulation;
+
+	private FoodGrowth foodGrowth;
+
+	@Setup(Level.Invocation)
+	public void load() {
+		SimulationConfig config = BenchmarkExperiments.loadConfig(experiment);
+		config.foodParams.synchronousGrowth = synchronousGrowth;
+		config.envParams.environmentThreads = environmentThreads;
+		simulation = new Simulation();
+		simulation.load(config);
+		for (int i = 0; i < 10; i++) {
+			simulation.step();
+		}
+		foodGrowth = simulation.theEnvironment.getPlugin(FoodGrowth.class);
+	}
+
+	@TearDown(Level.Invocation)
+	public void dispose() {
+		simulation.dispose();
+	}
+
+	@Benchmark
+	public Simulation growFood() {
+		foodGrowth.growFood();
+		return simulation;
+	}
+}
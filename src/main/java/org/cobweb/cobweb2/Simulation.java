@@ -1,21 +1,34 @@
 package org.cobweb.cobweb2;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 import org.cobweb.cobweb2.core.Agent;
 import org.cobweb.cobweb2.core.AgentListener;
 import org.cobweb.cobweb2.core.AgentSimilarityCalculator;
+import org.cobweb.cobweb2.core.Partition;
+import org.cobweb.cobweb2.core.RandomStream;
 import org.cobweb.cobweb2.core.SimulationInternals;
 import org.cobweb.cobweb2.core.StateParameter;
 import org.cobweb.cobweb2.core.StatePlugin;
+import org.cobweb.cobweb2.core.TickProfiler;
+import org.cobweb.cobweb2.core.TickProfiler.Phase;
 import org.cobweb.cobweb2.core.Topology;
+import org.cobweb.cobweb2.impl.AgentPartitions;
 import org.cobweb.cobweb2.impl.AgentSpawner;
 import org.cobweb.cobweb2.impl.ComplexAgent;
 import org.cobweb.cobweb2.impl.ComplexEnvironment;
@@ -40,20 +53,35 @@ import org.cobweb.cobweb2.plugins.vision.VisionMutator;
 import org.cobweb.cobweb2.plugins.waste.WasteMutator;
 import org.cobweb.cobweb2.ui.SimulationInterface;
 import org.cobweb.util.RandomNoGenerator;
+import org.cobweb.util.StreamRandom;
 
 /**
  * This class provides the definitions for a user interface that is running
  * on a local machine.
  *
  */
-public class Simulation implements SimulationInternals, SimulationInterface {
+public class Simulation implements SimulationInternals, SimulationInterface, Serializable {
 
 	public SimulationConfig simulationConfig;
 
 	// TODO access level?
 	public ComplexEnvironment theEnvironment;
 
-	private RandomNoGenerator random;
+	/**
+	 * Stream of getRandom(), the one the named streams are split off
+	 */
+	private StreamRandom random;
+
+	/**
+	 * Generators of the named streams, created on first use. Serialized by
+	 * stream name, indexes may differ between processes.
+	 */
+	private transient StreamRandom[] streams = new StreamRandom[0];
+
+	/**
+	 * Stream the agents' own streams are split off
+	 */
+	private StreamRandom agentRandom;
 
 	private int time = 0;
 
@@ -61,6 +89,13 @@ public class Simulation implements SimulationInternals, SimulationInterface {
 	private List<Agent> agents = new LinkedList<Agent>();
 	private int nextAgentId = 1;
 
+	private static final RandomStream PARTITION_STREAM = RandomStream.named("Partitions");
+
+	/**
+	 * Blocks agents update in, see ComplexEnvironmentParams.agentPartitionSize
+	 */
+	private transient AgentPartitions partitions;
+
 	private AgentSimilarityCalculator similarityCalculator;
 
 	// TODO: all of this should be in a collection
@@ -112,6 +147,8 @@ public class Simulation implements SimulationInternals, SimulationInterface {
 			}
 
 			if (!continuation || theEnvironment == null) {
+				if (theEnvironment != null)
+					theEnvironment.dispose();
 				theEnvironment = instantiateUsingSimconfig(environmentClass);
 			}
 		} catch (ClassNotFoundException | IllegalAccessException | InstantiationException | InvocationTargetException ex) {
@@ -156,10 +193,10 @@ public class Simulation implements SimulationInternals, SimulationInterface {
 		agentSpawner = new AgentSpawner(ComplexAgent.class.getName(), this);
 
 		// 0 = use default seed
-		if (p.randomSeed == 0)
-			random = new RandomNoGenerator();
-		else
-			random = new RandomNoGenerator(p.randomSeed);
+		long seed = p.randomSeed == 0 ? new RandomNoGenerator().nextLong() : p.randomSeed;
+		random = new StreamRandom(seed);
+		streams = new StreamRandom[RandomStream.count()];
+		agentRandom = random.split("Agent");
 
 		// Create new environment or reuse current if continuing simulation
 		InitEnvironment(p.environmentName, p.isContinuation());
@@ -274,7 +311,7 @@ public class Simulation implements SimulationInternals, SimulationInterface {
 		FoodGrowth foodGrowth = theEnvironment.getPlugin(FoodGrowth.class);
 		foodGrowth.setParams(theEnvironment, p.foodParams);
 		PacketConduit packetConduit = theEnvironment.getPlugin(PacketConduit.class);
-		packetConduit.setParams(theEnvironment.topology);
+		packetConduit.setParams(theEnvironment.topology, p.envParams);
 
 		// plugins are keyed against class, they get replaced
 		theEnvironment.addPlugin(abioticMutator);
@@ -315,36 +352,267 @@ public class Simulation implements SimulationInternals, SimulationInterface {
 
 	@Override
 	public void step() {
+		long tickStart = profiler.start();
 
+		long start = profiler.start();
 		theEnvironment.update();
+		profiler.stop(Phase.ENVIRONMENT, start);
 
 		// TODO synchronize on something other than environment?
 		synchronized(theEnvironment) {
-			for (Agent agent : new LinkedList<Agent>(agents)) {
-				agent.update();
+			start = profiler.start();
+			if (theEnvironment.data.agentPartitionSize > 0) {
+				updateAgentsInPartitions();
+			} else {
+				for (Agent agent : new LinkedList<Agent>(agents)) {
+					agent.update();
 
-				mutatorListener.onUpdate(agent);
+					mutatorListener.onUpdate(agent);
 
-				if (!agent.isAlive())
-					agents.remove(agent);
+					if (!agent.isAlive())
+						agents.remove(agent);
+				}
 			}
+			profiler.stop(Phase.AGENTS, start);
 		}
 
 		time++;
+		profiler.stop(Phase.TICK, tickStart);
 	}
 
+	/**
+	 * Updates the agents block by block, see
+	 * ComplexEnvironmentParams.agentPartitionSize. Blocks of a phase update at
+	 * the same time on the agent pool, each with its own random streams, and
+	 * the changes they defer run after the phase in block order. Agents that
+	 * can't update inside their block then update one after another in list
+	 * order, like all agents do without partitions. Children born during the
+	 * tick first update on the next one, also like without partitions.
+	 */
+	private void updateAgentsInPartitions() {
+		if (partitions == null || !partitions.matches(theEnvironment.data))
+			partitions = new AgentPartitions(theEnvironment.data);
+
+		Agent[] tick = agents.toArray(new Agent[agents.size()]);
+		boolean[] updated = new boolean[tick.length];
+		boolean[] removed = new boolean[tick.length];
+
+		// Agents of each block, in list order
+		int blocks = partitions.getCount();
+		int[] blockOf = new int[tick.length];
+		int[] first = new int[blocks + 1];
+		for (int i = 0; i < tick.length; i++) {
+			blockOf[i] = partitions.blockOf(tick[i].getPosition());
+			if (blockOf[i] >= 0)
+				first[blockOf[i] + 1]++;
+		}
+		for (int b = 0; b < blocks; b++) {
+			first[b + 1] += first[b];
+		}
+		int[] members = new int[first[blocks]];
+		int[] next = Arrays.copyOf(first, blocks);
+		for (int i = 0; i < tick.length; i++) {
+			if (blockOf[i] >= 0)
+				members[next[blockOf[i]]++] = i;
+		}
+
+		StreamRandom tickRandom = new StreamRandom(getRandom(PARTITION_STREAM).nextLong());
+		ForkJoinPool pool = theEnvironment.getAgentPool();
+		for (int phase = 0; phase < AgentPartitions.PHASES; phase++) {
+			List<PartitionUpdate> tasks = new ArrayList<>();
+			for (int b = 0; b < blocks; b++) {
+				if (partitions.phaseOf(b) == phase && first[b] < first[b + 1]) {
+					tasks.add(new PartitionUpdate(new Partition(b, tickRandom),
+							tick, Arrays.copyOfRange(members, first[b], first[b + 1]), updated, removed));
+				}
+			}
+			if (pool == null || tasks.size() == 1) {
+				for (PartitionUpdate task : tasks) {
+					task.compute();
+				}
+			} else {
+				for (PartitionUpdate task : tasks) {
+					pool.execute(task);
+				}
+				for (PartitionUpdate task : tasks) {
+					task.join();
+				}
+			}
+			for (PartitionUpdate task : tasks) {
+				task.partition.runDeferred();
+			}
+		}
+
+		// Agents on the edges of blocks, and agents whose update can reach further
+		for (int i = 0; i < tick.length; i++) {
+			if (updated[i])
+				continue;
+			Agent agent = tick[i];
+			agent.update();
+
+			mutatorListener.onUpdate(agent);
+
+			removed[i] = !agent.isAlive();
+		}
+
+		// Children born this tick were added after the agents that were here
+		Iterator<Agent> iterator = agents.iterator();
+		for (int i = 0; i < tick.length; i++) {
+			iterator.next();
+			if (removed[i])
+				iterator.remove();
+		}
+	}
+
+	/**
+	 * Updates the agents of one block that can update inside it, on whatever
+	 * thread runs it
+	 */
+	private class PartitionUpdate extends RecursiveAction {
+
+		final Partition partition;
+
+		private final Agent[] tick;
+
+		/**
+		 * Indexes in tick of the agents in the block
+		 */
+		private final int[] members;
+
+		private final boolean[] updated;
+
+		private final boolean[] removed;
+
+		PartitionUpdate(Partition partition, Agent[] tick, int[] members, boolean[] updated, boolean[] removed) {
+			this.partition = partition;
+			this.tick = tick;
+			this.members = members;
+			this.updated = updated;
+			this.removed = removed;
+		}
+
+		@Override
+		protected void compute() {
+			partition.enter();
+			try {
+				for (int i : members) {
+					ComplexAgent agent = (ComplexAgent) tick[i];
+					if (!canUpdateInside(agent))
+						continue;
+
+					agent.update();
+
+					mutatorListener.onUpdate(agent);
+
+					updated[i] = true;
+					removed[i] = !agent.isAlive();
+				}
+			} finally {
+				partition.leave();
+			}
+		}
+
+		private boolean canUpdateInside(ComplexAgent agent) {
+			if (!agent.isAlive() || !partitions.isInside(partition.index, agent))
+				return false;
+
+			// A dead partner, or one that moved away, has no position in this block
+			ComplexAgent partner = agent.getBreedPartner();
+			if (partner != null && partitions.blockOf(partner.getPosition()) != partition.index)
+				return false;
+
+			return mutatorListener.isLocal(agent);
+		}
+
+		private static final long serialVersionUID = 1L;
+	}
+
+	/**
+	 * Stops the threads the simulation holds. Call when done with the
+	 * simulation, load() starts them again.
+	 */
+	public void dispose() {
+		if (theEnvironment != null)
+			theEnvironment.dispose();
+	}
 
 	@Override
-	public void addAgent(Agent agent) {
+	public void addAgent(final Agent agent) {
+		Partition partition = Partition.current();
+		if (partition != null) {
+			partition.defer(new Runnable() {
+				@Override
+				public void run() {
+					addAgent(agent);
+				}
+			});
+			return;
+		}
 		agents.add(agent);
 		agent.id = nextAgentId++;
 	}
 
 	@Override
 	public RandomNoGenerator getRandom() {
+		Partition partition = Partition.current();
+		if (partition != null)
+			return partition.getRandom();
 		return random;
 	}
 
+	@Override
+	public RandomNoGenerator getRandom(RandomStream stream) {
+		Partition partition = Partition.current();
+		if (partition != null)
+			return partition.getRandom(stream);
+		if (stream.index >= streams.length)
+			streams = Arrays.copyOf(streams, RandomStream.count());
+		StreamRandom result = streams[stream.index];
+		if (result == null) {
+			result = random.split(stream.key);
+			streams[stream.index] = result;
+		}
+		return result;
+	}
+
+	private void writeObject(ObjectOutputStream out) throws IOException {
+		out.defaultWriteObject();
+		StreamRandom[] current = streams;
+		int count = 0;
+		for (StreamRandom s : current) {
+			if (s != null)
+				count++;
+		}
+		out.writeInt(count);
+		for (int i = 0; i < current.length; i++) {
+			if (current[i] != null) {
+				out.writeUTF(RandomStream.get(i).name);
+				out.writeObject(current[i]);
+			}
+		}
+	}
+
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+		in.defaultReadObject();
+		streams = new StreamRandom[RandomStream.count()];
+		int count = in.readInt();
+		for (int i = 0; i < count; i++) {
+			RandomStream stream = RandomStream.named(in.readUTF());
+			if (stream.index >= streams.length)
+				streams = Arrays.copyOf(streams, RandomStream.count());
+			streams[stream.index] = (StreamRandom) in.readObject();
+		}
+
+		for (Agent agent : agents) {
+			((ComplexAgent) agent).relink(this, theEnvironment);
+		}
+	}
+
+	@Override
+	public RandomNoGenerator getAgentRandom(Agent agent) {
+		return agentRandom.split(agent.id);
+	}
+
 	@Override
 	public Agent newAgent(int type) {
 		ComplexAgent agent = (ComplexAgent) agentSpawner.spawn(type);
@@ -385,7 +653,17 @@ public class Simulation implements SimulationInternals, SimulationInterface {
 		return similarityCalculator;
 	}
 
-	public MutatorListener mutatorListener = new MutatorListener();
+	/**
+	 * Time spent in each phase of a tick, off unless something turns it on
+	 */
+	public final TickProfiler profiler = new TickProfiler();
+
+	public MutatorListener mutatorListener = new MutatorListener(profiler, this);
+
+	@Override
+	public TickProfiler getProfiler() {
+		return profiler;
+	}
 
 	private EnergyStats energyStats;
 
@@ -404,4 +682,5 @@ public class Simulation implements SimulationInternals, SimulationInterface {
 		return mutatorListener.supportsState(type, value);
 	}
 
+	private static final long serialVersionUID = 1L;
 }
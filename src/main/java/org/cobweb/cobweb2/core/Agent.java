@@ -1,10 +1,12 @@
 package org.cobweb.cobweb2.core;
 
+import java.io.Serializable;
+
 
 /**
  * Basic properties of an Agent
  */
-public abstract class Agent implements Updatable {
+public abstract class Agent implements Updatable, Serializable {
 
 	private boolean alive = true;
 
@@ -69,4 +71,6 @@ public abstract class Agent implements Updatable {
 	public void update() {
 
 	}
+
+	private static final long serialVersionUID = 1L;
 }
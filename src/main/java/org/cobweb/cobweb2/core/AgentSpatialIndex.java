@@ -0,0 +1,330 @@
+package org.cobweb.cobweb2.core;
+
+import java.io.Serializable;
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Uniform grid index of the agents in an Environment.
+ *
+ * <p>Every tile has a slot in a flat array, so looking up or placing the
+ * agent on a tile is a single array access. On top of that, the grid is
+ * divided into square buckets of BUCKET_SIZE x BUCKET_SIZE tiles, each
+ * holding a compact list of the agents inside it, which lets neighbourhood
+ * queries skip over empty parts of the world.
+ *
+ * <p>Tiles are numbered row by row: index = y * width + x.
+ *
+ * <p>Not thread safe, callers synchronize on the Environment like they
+ * did for the agent table this replaces. Inside a Partition, only the tiles
+ * and buckets change right away; counts and listeners wait for the end of
+ * the phase. A bucket is never shared by two partitions updating at the same
+ * time.
+ */
+public class AgentSpatialIndex implements Serializable {
+
+	/**
+	 * log2 of the bucket side length
+	 */
+	public static final int BUCKET_SHIFT = 3;
+
+	/**
+	 * Side length of a bucket, in tiles
+	 */
+	public static final int BUCKET_SIZE = 1 << BUCKET_SHIFT;
+
+	public final int width;
+
+	public final int height;
+
+	public final int bucketsX;
+
+	public final int bucketsY;
+
+	private final Agent[] tiles;
+
+	private final Agent[][] bucketAgents;
+
+	private final int[] bucketSizes;
+
+	private int count = 0;
+
+	// Number of agents and their total energy, per agent type
+	private int[] typeCounts = new int[0];
+	private long[] typeEnergy = new long[0];
+
+	private final Collection<Agent> agentsView = new AgentsView();
+
+	/**
+	 * Gets told about every tile whose agent changes
+	 */
+	public interface TileListener {
+		void tileChanged(int x, int y);
+	}
+
+	private final List<TileListener> listeners = new ArrayList<TileListener>();
+
+	public AgentSpatialIndex(int width, int height) {
+		this.width = width;
+		this.height = height;
+		this.bucketsX = (width + BUCKET_SIZE - 1) >> BUCKET_SHIFT;
+		this.bucketsY = (height + BUCKET_SIZE - 1) >> BUCKET_SHIFT;
+		tiles = new Agent[width * height];
+		bucketAgents = new Agent[bucketsX * bucketsY][];
+		bucketSizes = new int[bucketsX * bucketsY];
+	}
+
+	public boolean contains(int x, int y) {
+		return x >= 0 && x < width && y >= 0 && y < height;
+	}
+
+	public int tileIndex(int x, int y) {
+		return y * width + x;
+	}
+
+	public int bucketIndex(int x, int y) {
+		return (y >> BUCKET_SHIFT) * bucketsX + (x >> BUCKET_SHIFT);
+	}
+
+	public Agent get(int x, int y) {
+		if (!contains(x, y))
+			return null;
+		return tiles[tileIndex(x, y)];
+	}
+
+	public Agent get(Location l) {
+		return get(l.x, l.y);
+	}
+
+	/**
+	 * Places agent on a tile, replacing whatever agent was there.
+	 * Setting null clears the tile. Locations outside the grid are ignored,
+	 * these come from agents left behind by a shrinking environment.
+	 */
+	public void set(int x, int y, Agent agent) {
+		if (!contains(x, y))
+			return;
+
+		int tile = tileIndex(x, y);
+		Agent old = tiles[tile];
+		if (old == agent)
+			return;
+
+		int bucket = bucketIndex(x, y);
+		if (old != null) {
+			removeFromBucket(bucket, old);
+			countAgent(old.getType(), -1, -old.getEnergy());
+		}
+		tiles[tile] = agent;
+		if (agent != null) {
+			addToBucket(bucket, agent);
+			countAgent(agent.getType(), +1, agent.getEnergy());
+		}
+
+		notifyListeners(x, y);
+	}
+
+	private void notifyListeners(final int x, final int y) {
+		Partition partition = Partition.current();
+		if (partition != null) {
+			partition.defer(new Runnable() {
+				@Override
+				public void run() {
+					notifyListeners(x, y);
+				}
+			});
+			return;
+		}
+		for (int i = 0; i < listeners.size(); i++) {
+			listeners.get(i).tileChanged(x, y);
+		}
+	}
+
+	public void set(Location l, Agent agent) {
+		set(l.x, l.y, agent);
+	}
+
+	public int size() {
+		return count;
+	}
+
+	private void countAgent(final int type, final int change, final long energy) {
+		Partition partition = Partition.current();
+		if (partition != null) {
+			partition.defer(new Runnable() {
+				@Override
+				public void run() {
+					countAgent(type, change, energy);
+				}
+			});
+			return;
+		}
+		if (type >= typeCounts.length) {
+			typeCounts = Arrays.copyOf(typeCounts, type + 1);
+			typeEnergy = Arrays.copyOf(typeEnergy, type + 1);
+		}
+		count += change;
+		typeCounts[type] += change;
+		typeEnergy[type] += energy;
+	}
+
+	/**
+	 * Keeps the energy totals up to date, call whenever an agent's energy changes
+	 */
+	public void energyChanged(Agent agent, int delta) {
+		Location l = agent.getPosition();
+		if (l != null && get(l) == agent)
+			countAgent(agent.getType(), 0, delta);
+	}
+
+	/**
+	 * @return number of agents of a type in the index
+	 */
+	public int size(int agentType) {
+		return agentType < typeCounts.length ? typeCounts[agentType] : 0;
+	}
+
+	/**
+	 * @return total energy of the agents of a type in the index
+	 */
+	public long getEnergy(int agentType) {
+		return agentType < typeEnergy.length ? typeEnergy[agentType] : 0;
+	}
+
+	/**
+	 * @return total energy of all agents in the index
+	 */
+	public long getEnergy() {
+		long total = 0;
+		for (long e : typeEnergy) {
+			total += e;
+		}
+		return total;
+	}
+
+	public void clear() {
+		if (!listeners.isEmpty()) {
+			for (int tile = 0; tile < tiles.length; tile++) {
+				if (tiles[tile] == null)
+					continue;
+				for (int i = 0; i < listeners.size(); i++) {
+					listeners.get(i).tileChanged(tile % width, tile / width);
+				}
+			}
+		}
+
+		Arrays.fill(tiles, null);
+		for (int b = 0; b < bucketAgents.length; b++) {
+			if (bucketAgents[b] != null)
+				Arrays.fill(bucketAgents[b], null);
+		}
+		Arrays.fill(bucketSizes, 0);
+		count = 0;
+		Arrays.fill(typeCounts, 0);
+		Arrays.fill(typeEnergy, 0);
+	}
+
+	public void addListener(TileListener listener) {
+		listeners.add(listener);
+	}
+
+	public void removeListener(TileListener listener) {
+		listeners.remove(listener);
+	}
+
+	/**
+	 * Number of agents in bucket (bx, by)
+	 */
+	public int bucketSize(int bx, int by) {
+		return bucketSizes[by * bucketsX + bx];
+	}
+
+	/**
+	 * Agent number i of bucket (bx, by), 0 &lt;= i &lt; bucketSize(bx, by).
+	 * Order inside a bucket changes as agents come and go.
+	 */
+	public Agent bucketAgent(int bx, int by, int i) {
+		return bucketAgents[by * bucketsX + bx][i];
+	}
+
+	/**
+	 * @return live view of all agents in the index, bucket by bucket
+	 */
+	public Collection<Agent> getAgents() {
+		return agentsView;
+	}
+
+	private void addToBucket(int bucket, Agent agent) {
+		Agent[] list = bucketAgents[bucket];
+		int size = bucketSizes[bucket];
+		if (list == null) {
+			list = new Agent[4];
+			bucketAgents[bucket] = list;
+		} else if (size == list.length) {
+			list = Arrays.copyOf(list, size * 2);
+			bucketAgents[bucket] = list;
+		}
+		list[size] = agent;
+		bucketSizes[bucket] = size + 1;
+	}
+
+	private void removeFromBucket(int bucket, Agent agent) {
+		Agent[] list = bucketAgents[bucket];
+		int last = bucketSizes[bucket] - 1;
+		for (int i = last; i >= 0; i--) {
+			if (list[i] == agent) {
+				list[i] = list[last];
+				list[last] = null;
+				bucketSizes[bucket] = last;
+				return;
+			}
+		}
+		throw new IllegalStateException("Agent missing from its bucket");
+	}
+
+	private class AgentsView extends AbstractCollection<Agent> implements Serializable {
+
+		@Override
+		public Iterator<Agent> iterator() {
+			return new Iterator<Agent>() {
+				private int bucket = 0;
+				private int i = 0;
+
+				@Override
+				public boolean hasNext() {
+					while (bucket < bucketSizes.length && i >= bucketSizes[bucket]) {
+						bucket++;
+						i = 0;
+					}
+					return bucket < bucketSizes.length;
+				}
+
+				@Override
+				public Agent next() {
+					if (!hasNext())
+						throw new NoSuchElementException();
+					return bucketAgents[bucket][i++];
+				}
+
+				@Override
+				public void remove() {
+					throw new UnsupportedOperationException();
+				}
+			};
+		}
+
+		@Override
+		public int size() {
+			return count;
+		}
+
+		private static final long serialVersionUID = 1L;
+	}
+
+	private static final long serialVersionUID = 1L;
+}
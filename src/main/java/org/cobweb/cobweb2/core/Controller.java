@@ -1,12 +1,14 @@
 package org.cobweb.cobweb2.core;
 
+import java.io.Serializable;
+
 
 /**
  * The "brain" of an Agent, the controller causes the controlled agent to act by
  * calling methods on it. The Controller is notified by a call to control agent
  * that the Agent is requesting guidance.
  */
-public interface Controller {
+public interface Controller extends Serializable {
 
 	/**
 	 * Cause the specified agent to act.
@@ -26,4 +28,10 @@ public interface Controller {
 	 * @param parent2 second parent
 	 */
 	public Controller createChildSexual(Controller parent2);
+
+	/**
+	 * @return how many tiles ahead of the agent the controller looks, -1 if it
+	 * looks at agents anywhere on the map
+	 */
+	public int getSightRange();
 }
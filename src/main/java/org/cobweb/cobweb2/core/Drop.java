@@ -1,11 +1,13 @@
 package org.cobweb.cobweb2.core;
 
+import java.io.Serializable;
+
 
 /**
  * Contains methods
  *
  */
-public interface Drop extends Updatable {
+public interface Drop extends Updatable, Serializable {
 	public boolean canStep(Agent agent);
 
 	public void onStep(Agent agent);
@@ -13,4 +15,15 @@ public interface Drop extends Updatable {
 	public void prepareRemove();
 
 	public int getProducerType();
+
+	/**
+	 * Returned by getUpdateTick() of drops that need update() every tick
+	 */
+	public static final long EVERY_TICK = Long.MIN_VALUE;
+
+	/**
+	 * @return first tick at which update() does anything, EVERY_TICK if it
+	 * has to be called every tick
+	 */
+	public long getUpdateTick();
 }
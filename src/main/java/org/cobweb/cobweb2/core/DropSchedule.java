@@ -0,0 +1,105 @@
+package org.cobweb.cobweb2.core;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Drops waiting for the tick their update() next does something, so each tick
+ * only touches the drops that are due instead of every tile of the map.
+ *
+ * Drops that act from a given tick on wait in a min-heap ordered by that
+ * tick; drops that act every tick are kept in a separate list. Drops removed
+ * from the map are not taken out, the caller skips them when they come up.
+ */
+public class DropSchedule implements Serializable {
+
+	public static class Entry implements Serializable {
+		public final Drop drop;
+		public final int x;
+		public final int y;
+		private final long tick;
+		/** Position in the old column by column scan of the map */
+		private final int scan;
+
+		private Entry(Drop drop, int x, int y, long tick, int scan) {
+			this.drop = drop;
+			this.x = x;
+			this.y = y;
+			this.tick = tick;
+			this.scan = scan;
+		}
+
+		private static final long serialVersionUID = 1L;
+	}
+
+	/**
+	 * Named class so the queue holding it can be serialized
+	 */
+	private static class ByTick implements Comparator<Entry>, Serializable {
+		@Override
+		public int compare(Entry a, Entry b) {
+			return Long.compare(a.tick, b.tick);
+		}
+
+		private static final long serialVersionUID = 1L;
+	}
+
+	private static final Comparator<Entry> BY_TICK = new ByTick();
+
+	private static final Comparator<Entry> BY_SCAN = new Comparator<Entry>() {
+		@Override
+		public int compare(Entry a, Entry b) {
+			return Integer.compare(a.scan, b.scan);
+		}
+	};
+
+	private final int height;
+
+	private final PriorityQueue<Entry> waiting = new PriorityQueue<>(16, BY_TICK);
+
+	private List<Entry> everyTick = new ArrayList<>();
+
+	public DropSchedule(Topology topology) {
+		this.height = topology.height;
+	}
+
+	/**
+	 * Schedules drop at (x, y) for its next update tick
+	 */
+	public void add(int x, int y, Drop drop) {
+		long tick = drop.getUpdateTick();
+		Entry e = new Entry(drop, x, y, tick, x * height + y);
+		if (tick == Drop.EVERY_TICK)
+			everyTick.add(e);
+		else
+			waiting.add(e);
+	}
+
+	/**
+	 * Takes out every drop due at or before the given tick, plus the drops that
+	 * update every tick. Drops that still need updates after this tick have to
+	 * be added again.
+	 *
+	 * @return due drops, in the same column by column order as a scan of the
+	 * map would find them
+	 */
+	public List<Entry> takeDue(long now) {
+		List<Entry> due = everyTick;
+		everyTick = new ArrayList<>();
+		while (!waiting.isEmpty() && waiting.peek().tick <= now) {
+			due.add(waiting.poll());
+		}
+		Collections.sort(due, BY_SCAN);
+		return due;
+	}
+
+	public int size() {
+		return waiting.size() + everyTick.size();
+	}
+
+	private static final long serialVersionUID = 1L;
+}
@@ -1,9 +1,10 @@
 package org.cobweb.cobweb2.core;
 
+import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.Hashtable;
-import java.util.Map;
+import java.util.List;
 
 import org.cobweb.util.ArrayUtilities;
 
@@ -33,7 +34,7 @@ import org.cobweb.util.ArrayUtilities;
  * environment they are operating in, but all access should be through this
  * interface, using implementation specific access constants.
  */
-public class Environment implements Updatable {
+public class Environment implements Updatable, Serializable {
 
 	protected SimulationInternals simulation;
 
@@ -54,21 +55,70 @@ public class Environment implements Updatable {
 			foodTypeArray = new int[topology.width][topology.height];
 		}
 		dropArray = ArrayUtilities.resizeArray(dropArray, topology.width, topology.height);
+
+		dropSchedule = new DropSchedule(topology);
+		for (int x = 0; x < topology.width; x++) {
+			for (int y = 0; y < topology.height; y++) {
+				if (hasDrop(topology.location(x, y)))
+					dropSchedule.add(x, y, dropArray[x][y]);
+			}
+		}
+
+		foodFrontier = new FoodFrontier(topology);
+		foodCount = 0;
+		Arrays.fill(foodTypeCounts, 0);
+		for (int x = 0; x < topology.width; x++) {
+			for (int y = 0; y < topology.height; y++) {
+				if (hasFood(x, y)) {
+					foodFrontier.foodChanged(x, y, true);
+					countFood(getFoodType(x, y), +1);
+				}
+			}
+		}
+
+		AgentSpatialIndex oldIndex = agentIndex;
+		agentIndex = new AgentSpatialIndex(topology.width, topology.height);
+		for (Agent a : oldIndex.getAgents()) {
+			Location l = a.getPosition();
+			if (topology.isValidLocation(l))
+				agentIndex.set(l, a);
+			else
+				offgridAgents.add(a);
+		}
+		nearestAgentSearch = new NearestAgentSearch(topology, agentIndex);
 	}
 
 
 	/**
-	 * The implementation uses a hash table to store agents, as we assume there
-	 * are many more locations than agents.
+	 * Agents indexed by the tile they occupy.
 	 */
-	protected Map<Location, Agent> agentTable = new Hashtable<Location, Agent>();
+	protected AgentSpatialIndex agentIndex = new AgentSpatialIndex(0, 0);
+
+	/**
+	 * Agents that were left outside the grid when it was shrunk, waiting for
+	 * killOffgridAgents()
+	 */
+	private List<Agent> offgridAgents = new ArrayList<Agent>();
+
+	private NearestAgentSearch nearestAgentSearch;
 
 	private int[][] flagArray = new int[0][0];
 
 	private int[][] foodTypeArray = new int[0][0];
 
+	private FoodFrontier foodFrontier;
+
+	private int foodCount = 0;
+
+	private int[] foodTypeCounts = new int[0];
+
 	protected Drop[][] dropArray = new Drop[0][0];
 
+	/**
+	 * Drops on the map, by the tick they next need an update
+	 */
+	protected DropSchedule dropSchedule;
+
 	public static final int FLAG_STONE = 1;
 
 	public static final int FLAG_FOOD = 2;
@@ -81,48 +131,58 @@ public class Environment implements Updatable {
 		for (Agent a : new ArrayList<Agent>(getAgents())) {
 			a.die();
 		}
-		agentTable.clear();
+		clearAgentIndex();
+	}
+
+	/**
+	 * Forgets all agents without notifying them
+	 */
+	protected void clearAgentIndex() {
+		agentIndex.clear();
+		offgridAgents.clear();
 	}
 
 	public Agent getAgent(Location l) {
-		return agentTable.get(l);
+		return agentIndex.get(l);
 	}
 
 	public synchronized Collection<Agent> getAgents() {
-		return agentTable.values();
+		return agentIndex.getAgents();
 	}
 
 	public int getAgentCount() {
-		return agentTable.keySet().size();
+		return agentIndex.size();
+	}
 
+	public AgentSpatialIndex getAgentIndex() {
+		return agentIndex;
 	}
 
+	/**
+	 * Finds the agent closest to the given one.
+	 * Ties are broken in favour of the agent with the lowest tile index.
+	 * @return closest other agent, null if there are none
+	 */
 	public Agent getClosestAgent(Agent agent) {
-		Location l1 = agent.getPosition();
-		Agent closest = null;
-		double closestDistance = Math.sqrt(topology.width * topology.width + topology.height * topology.height); // Can't be farther than this
-		for (Map.Entry<Location, Agent> pair : agentTable.entrySet()) {
-			double distance = topology.getDistance(pair.getKey(), l1);
-
-			if (distance < closestDistance)
-			{
-				Agent ag = pair.getValue();
-
-				if(ag != agent) // skip itself
-				{
-					closest = ag;
-					closestDistance = distance;
-				} // if(ag != agent)
-			} // if (distance < closestDistance)
-		}
-		return closest;
+		return nearestAgentSearch.nearest(agent.getPosition(), agent);
+	}
+
+	/**
+	 * @return up to k agents closest to the given one, closest first
+	 */
+	public List<Agent> getClosestAgents(Agent agent, int k) {
+		return nearestAgentSearch.nearest(agent.getPosition(), k, agent);
+	}
+
+	/**
+	 * @return agents no farther than radius from the location, closest first
+	 */
+	public List<Agent> getAgentsWithin(Location l, float radius) {
+		return nearestAgentSearch.within(l, radius, null);
 	}
 
 	public final void setAgent(Location l, Agent a) {
-		if (a != null)
-			agentTable.put(l, a);
-		else
-			agentTable.remove(l);
+		agentIndex.set(l, a);
 	}
 
 	private int getLocationBits(Location l) {
@@ -144,7 +204,8 @@ public class Environment implements Updatable {
 		assert (!(state && getLocationBits(l) != 0)) : "Attempted to set flag when location flags non-zero: " + getLocationBits(l);
 		assert (!(!state && (getLocationBits(l) & flagBits) == 0)) : "Attempting to unset an unset flag" + flagBits;
 
-		int newValue = getLocationBits(l);
+		int oldValue = getLocationBits(l);
+		int newValue = oldValue;
 
 		if (state)
 			newValue |= flagBits;
@@ -152,6 +213,46 @@ public class Environment implements Updatable {
 			newValue &= ~flagBits;
 
 		setLocationBits(l, newValue);
+
+		if (flag == FLAG_FOOD && newValue != oldValue) {
+			foodChanged(l.x, l.y, getFoodType(l), state);
+		}
+	}
+
+	private void foodChanged(final int x, final int y, final int type, final boolean hasFood) {
+		Partition partition = Partition.current();
+		if (partition != null) {
+			partition.defer(new Runnable() {
+				@Override
+				public void run() {
+					foodChanged(x, y, type, hasFood);
+				}
+			});
+			return;
+		}
+		foodFrontier.foodChanged(x, y, hasFood);
+		countFood(type, hasFood ? +1 : -1);
+	}
+
+	private void countFood(int type, int change) {
+		if (type >= foodTypeCounts.length)
+			foodTypeCounts = Arrays.copyOf(foodTypeCounts, type + 1);
+		foodTypeCounts[type] += change;
+		foodCount += change;
+	}
+
+	/**
+	 * @return number of tiles with food
+	 */
+	public int getFoodCount() {
+		return foodCount;
+	}
+
+	/**
+	 * @return number of tiles with food of a type
+	 */
+	public int getFoodCount(int type) {
+		return type < foodTypeCounts.length ? foodTypeCounts[type] : 0;
 	}
 
 
@@ -161,15 +262,20 @@ public class Environment implements Updatable {
 	}
 
 	public int getFoodType(Location l) {
-		return foodTypeArray[l.x][l.y];
+		return getFoodType(l.x, l.y);
+	}
+
+	public int getFoodType(int x, int y) {
+		return foodTypeArray[x][y];
 	}
 
 	public synchronized void addFood(Location l, int type) {
 		if (hasStone(l)) {
 			throw new IllegalArgumentException("stone here already");
 		}
-		setFlag(l, Environment.FLAG_FOOD, true);
+		// Type first, so the food counts see it
 		foodTypeArray[l.x][l.y] = type;
+		setFlag(l, Environment.FLAG_FOOD, true);
 	}
 
 	public synchronized void clearFood() {
@@ -177,17 +283,37 @@ public class Environment implements Updatable {
 	}
 
 	public synchronized void removeFood(Location l) {
+		consumeFood(l);
+	}
+
+	/**
+	 * removeFood() for agents during their update. The simulation thread holds
+	 * this environment's lock while partitions of agents update on other
+	 * threads, so they can't take it.
+	 */
+	public void consumeFood(Location l) {
 		setFlag(l, Environment.FLAG_FOOD, false);
 	}
 
 	public boolean hasFood(Location l) {
-		return testFlag(l, Environment.FLAG_FOOD);
+		return hasFood(l.x, l.y);
+	}
+
+	public boolean hasFood(int x, int y) {
+		return (flagArray[x][y] & (1 << (FLAG_FOOD - 1))) != 0;
+	}
+
+	/**
+	 * @return tiles that have food next to them
+	 */
+	public FoodFrontier getFoodFrontier() {
+		return foodFrontier;
 	}
 
 	protected void clearFlag(int flag) {
 		for (int x = 0; x < topology.width; ++x) {
 			for (int y = 0; y < topology.height; ++y) {
-				Location currentPos = new Location(x, y);
+				Location currentPos = topology.location(x, y);
 
 				if (testFlag(currentPos, flag)) {
 					if (flag == FLAG_DROP) {
@@ -227,12 +353,27 @@ public class Environment implements Updatable {
 
 	public void addDrop(Location loc, Drop d) {
 		if (hasFood(loc)) {
-			removeFood(loc);
+			consumeFood(loc);
 		}
 
 		setFlag(loc, Environment.FLAG_DROP, true);
 
 		dropArray[loc.x][loc.y] = d;
+		scheduleDrop(loc.x, loc.y, d);
+	}
+
+	private void scheduleDrop(final int x, final int y, final Drop d) {
+		Partition partition = Partition.current();
+		if (partition != null) {
+			partition.defer(new Runnable() {
+				@Override
+				public void run() {
+					scheduleDrop(x, y, d);
+				}
+			});
+			return;
+		}
+		dropSchedule.add(x, y, d);
 	}
 
 	public void removeDrop(Location loc) {
@@ -269,13 +410,10 @@ public class Environment implements Updatable {
 	 * Removes old agents that are off the new environment.
 	 */
 	protected void killOffgridAgents() {
-		for (Agent a : new ArrayList<Agent>(getAgents())) {
-			Location l = a.getPosition();
-			if (l.x >= topology.width || l.y >= topology.height) {
-				a.die();
-			}
+		for (Agent a : new ArrayList<Agent>(offgridAgents)) {
+			a.die();
 		}
-
+		offgridAgents.clear();
 	}
 
 	public synchronized void removeAgent(Location l) {
@@ -300,4 +438,5 @@ public class Environment implements Updatable {
 		return result;
 	}
 
+	private static final long serialVersionUID = 1L;
 }
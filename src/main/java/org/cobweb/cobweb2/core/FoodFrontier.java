@@ -0,0 +1,112 @@
+package org.cobweb.cobweb2.core;
+
+import java.io.Serializable;
+import java.util.BitSet;
+
+/**
+ * Tiles that have food next to them, the only tiles food can grow on.
+ *
+ * <p>Keeps count of the food on the 4 tiles next to each tile, in the
+ * directions of Topology.ALL_4_WAY. A tile that reaches itself or the same
+ * tile twice across a wrapped edge counts that food more than once, the
+ * same way a look around with Topology.getAdjacent() would.
+ *
+ * <p>Tiles are numbered row by row: index = y * width + x, so walking the
+ * frontier with next() goes in the same order as a loop over y then x.
+ * Tiles added to the frontier past the current position during a walk are
+ * picked up by it.
+ */
+public class FoodFrontier implements Serializable {
+
+	public final int width;
+
+	public final int height;
+
+	/**
+	 * Tile reached from each tile in each of the 4 directions, -1 past an edge
+	 */
+	private final int[] adjacent;
+
+	// Tiles that reach each tile, grouped by the tile they reach
+	private final int[] reachedByStart;
+	private final int[] reachedBy;
+
+	private final int[] foodNextTo;
+
+	private final BitSet frontier = new BitSet();
+
+	public FoodFrontier(Topology topology) {
+		width = topology.width;
+		height = topology.height;
+
+		int tiles = width * height;
+		adjacent = new int[tiles * 4];
+		reachedByStart = new int[tiles + 1];
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++) {
+				int tile = y * width + x;
+				for (int d = 0; d < 4; d++) {
+					int target = topology.adjacentIndex(tile, topology.ALL_4_WAY[d]);
+					adjacent[tile * 4 + d] = target;
+					if (target >= 0)
+						reachedByStart[target + 1]++;
+				}
+			}
+		}
+		for (int i = 0; i < tiles; i++) {
+			reachedByStart[i + 1] += reachedByStart[i];
+		}
+		reachedBy = new int[reachedByStart[tiles]];
+		int[] fill = new int[tiles];
+		for (int tile = 0; tile < tiles; tile++) {
+			for (int d = 0; d < 4; d++) {
+				int target = adjacent[tile * 4 + d];
+				if (target >= 0)
+					reachedBy[reachedByStart[target] + fill[target]++] = tile;
+			}
+		}
+
+		foodNextTo = new int[tiles];
+	}
+
+	/**
+	 * @param tile tile index
+	 * @param direction index into Topology.ALL_4_WAY
+	 * @return tile next to tile in direction, -1 past an edge
+	 */
+	public int adjacent(int tile, int direction) {
+		return adjacent[tile * 4 + direction];
+	}
+
+	/**
+	 * @return amount of food on the tiles next to tile
+	 */
+	public int foodNextTo(int tile) {
+		return foodNextTo[tile];
+	}
+
+	/**
+	 * @return first tile with food next to it at or after fromTile, -1 if none
+	 */
+	public int next(int fromTile) {
+		return frontier.nextSetBit(fromTile);
+	}
+
+	/**
+	 * Call when food appears on or disappears from tile (x, y)
+	 */
+	public void foodChanged(int x, int y, boolean hasFood) {
+		int tile = y * width + x;
+		int change = hasFood ? 1 : -1;
+		for (int i = reachedByStart[tile]; i < reachedByStart[tile + 1]; i++) {
+			int next = reachedBy[i];
+			foodNextTo[next] += change;
+			if (foodNextTo[next] > 0)
+				frontier.set(next);
+			else
+				frontier.clear(next);
+		}
+	}
+
+	private static final long serialVersionUID = 1L;
+}
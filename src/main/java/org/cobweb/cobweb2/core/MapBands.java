@@ -0,0 +1,67 @@
+package org.cobweb.cobweb2.core;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Scan of the map split into bands of consecutive rows or columns, scanned
+ * on a pool and returned in band order.
+ *
+ * Bands are always BAND_SIZE wide, whatever the number of threads, so as
+ * long as scanning a band only reads the map the results are the same as
+ * scanning the bands one after another.
+ */
+public abstract class MapBands<T> {
+
+	public static final int BAND_SIZE = 16;
+
+	/**
+	 * Scans rows or columns start to end - 1
+	 */
+	protected abstract T scan(int start, int end);
+
+	/**
+	 * @param pool pool to scan bands on, null to scan them on this thread
+	 * @param length number of rows or columns
+	 * @return result of each band, in order
+	 */
+	public List<T> run(ForkJoinPool pool, int length) {
+		List<T> result = new ArrayList<>();
+		if (pool == null || length <= BAND_SIZE) {
+			for (int start = 0; start < length; start += BAND_SIZE) {
+				result.add(scan(start, Math.min(start + BAND_SIZE, length)));
+			}
+			return result;
+		}
+
+		List<Band> bands = new ArrayList<>();
+		for (int start = 0; start < length; start += BAND_SIZE) {
+			Band band = new Band(start, Math.min(start + BAND_SIZE, length));
+			pool.execute(band);
+			bands.add(band);
+		}
+		for (Band band : bands) {
+			result.add(band.join());
+		}
+		return result;
+	}
+
+	private class Band extends RecursiveTask<T> {
+		private final int start;
+		private final int end;
+
+		Band(int start, int end) {
+			this.start = start;
+			this.end = end;
+		}
+
+		@Override
+		protected T compute() {
+			return scan(start, end);
+		}
+
+		private static final long serialVersionUID = 1L;
+	}
+}
@@ -0,0 +1,247 @@
+package org.cobweb.cobweb2.core;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.cobweb.cobweb2.core.Topology.WrapImage;
+
+/**
+ * Nearest neighbour queries over an AgentSpatialIndex.
+ *
+ * <p>Searches outward from the query tile one ring of buckets at a time.
+ * Wrapped edges are handled by searching every virtual copy of the map the
+ * Topology measures distances across, so the agents found are exactly the
+ * ones a scan over all agents with Topology.getDistanceSquared() would find.
+ * Agents at equal distance are ordered by tile index.
+ *
+ * <p>Not thread safe.
+ */
+public class NearestAgentSearch implements Serializable {
+
+	/**
+	 * Below this many agents a plain scan beats walking the buckets
+	 */
+	private static final int SCAN_THRESHOLD = 32;
+
+	private final Topology topology;
+
+	private final AgentSpatialIndex index;
+
+	private final WrapImage[] images;
+
+	/**
+	 * Query number each bucket was last searched in
+	 */
+	private final int[] visited;
+
+	private int query = 0;
+
+	// Bucket ranges searched so far, per wrap image
+	private final int[] doneX0, doneX1, doneY0, doneY1;
+
+	// Results of the current query, sorted by distance then tile index
+	private Agent[] found = new Agent[1];
+	private double[] foundDistance = new double[1];
+	private int[] foundTile = new int[1];
+	private int foundCount;
+	private int foundLimit;
+
+	public NearestAgentSearch(Topology topology, AgentSpatialIndex index) {
+		this.topology = topology;
+		this.index = index;
+		this.images = topology.getWrapImages();
+		this.visited = new int[index.bucketsX * index.bucketsY];
+		doneX0 = new int[images.length];
+		doneX1 = new int[images.length];
+		doneY0 = new int[images.length];
+		doneY1 = new int[images.length];
+	}
+
+	/**
+	 * @param from location to search around
+	 * @param exclude agent to skip, usually the one searching
+	 * @return closest agent, null if there are none
+	 */
+	public Agent nearest(Location from, Agent exclude) {
+		search(from, 1, Double.MAX_VALUE, exclude);
+		return foundCount == 0 ? null : found[0];
+	}
+
+	/**
+	 * @param from location to search around
+	 * @param k maximum number of agents to return
+	 * @param exclude agent to skip, usually the one searching
+	 * @return up to k closest agents, closest first
+	 */
+	public List<Agent> nearest(Location from, int k, Agent exclude) {
+		search(from, k, Double.MAX_VALUE, exclude);
+		return results();
+	}
+
+	/**
+	 * @param from location to search around
+	 * @param radius maximum distance, inclusive
+	 * @param exclude agent to skip, usually the one searching
+	 * @return agents within radius, closest first
+	 */
+	public List<Agent> within(Location from, float radius, Agent exclude) {
+		search(from, Integer.MAX_VALUE, (double) radius * radius, exclude);
+		return results();
+	}
+
+	private List<Agent> results() {
+		List<Agent> result = new ArrayList<Agent>(foundCount);
+		for (int i = 0; i < foundCount; i++) {
+			result.add(found[i]);
+		}
+		return result;
+	}
+
+	private void search(Location from, int k, double maxDistance, Agent exclude) {
+		foundCount = 0;
+		foundLimit = k;
+
+		if (k <= 0)
+			return;
+
+		if (index.size() <= SCAN_THRESHOLD) {
+			for (Agent a : index.getAgents()) {
+				offer(from, a, maxDistance, exclude);
+			}
+			return;
+		}
+
+		if (++query == 0) {
+			// Stamp wrapped around, forget old stamps
+			Arrays.fill(visited, 0);
+			query = 1;
+		}
+
+		for (int i = 0; i < images.length; i++) {
+			doneX0[i] = 0;
+			doneX1[i] = -1;
+			doneY0[i] = 0;
+			doneY1[i] = -1;
+		}
+
+		int maxX = index.bucketsX - 1;
+		int maxY = index.bucketsY - 1;
+
+		for (int ring = 0; ; ring++) {
+			// Chebyshev radius, in tiles, of the box searched after this ring
+			int reach = (ring + 1) * AgentSpatialIndex.BUCKET_SIZE - 1;
+
+			boolean everything = true;
+			for (int i = 0; i < images.length; i++) {
+				WrapImage image = images[i];
+
+				// Tiles whose image falls inside the box around the query location
+				int tx0 = from.x - reach - image.offsetX;
+				int tx1 = from.x + reach - image.offsetX;
+				int ty0, ty1;
+				if (image.flipY) {
+					ty0 = image.offsetY - (from.y + reach);
+					ty1 = image.offsetY - (from.y - reach);
+				} else {
+					ty0 = from.y - reach - image.offsetY;
+					ty1 = from.y + reach - image.offsetY;
+				}
+
+				if (tx1 < 0 || ty1 < 0 || tx0 >= topology.width || ty0 >= topology.height) {
+					if (i == 0)
+						everything = false;
+					continue;
+				}
+
+				int bx0 = Math.max(tx0, 0) >> AgentSpatialIndex.BUCKET_SHIFT;
+				int bx1 = Math.min(tx1, topology.width - 1) >> AgentSpatialIndex.BUCKET_SHIFT;
+				int by0 = Math.max(ty0, 0) >> AgentSpatialIndex.BUCKET_SHIFT;
+				int by1 = Math.min(ty1, topology.height - 1) >> AgentSpatialIndex.BUCKET_SHIFT;
+
+				for (int by = by0; by <= by1; by++) {
+					boolean rowDone = by >= doneY0[i] && by <= doneY1[i];
+					for (int bx = bx0; bx <= bx1; bx++) {
+						if (rowDone && bx >= doneX0[i] && bx <= doneX1[i]) {
+							// Skip over the part searched in earlier rings
+							bx = doneX1[i];
+							continue;
+						}
+						searchBucket(from, bx, by, maxDistance, exclude);
+					}
+				}
+
+				doneX0[i] = bx0;
+				doneX1[i] = bx1;
+				doneY0[i] = by0;
+				doneY1[i] = by1;
+
+				if (i == 0 && (bx0 > 0 || by0 > 0 || bx1 < maxX || by1 < maxY))
+					everything = false;
+			}
+
+			if (everything)
+				return;
+
+			// Anything not searched yet is farther than reach in every direction
+			double unsearched = (double) (reach + 1) * (reach + 1);
+			if (unsearched > maxDistance)
+				return;
+			if (foundCount == foundLimit && unsearched > foundDistance[foundCount - 1])
+				return;
+		}
+	}
+
+	private void searchBucket(Location from, int bx, int by, double maxDistance, Agent exclude) {
+		int bucket = by * index.bucketsX + bx;
+		if (visited[bucket] == query)
+			return;
+		visited[bucket] = query;
+
+		int size = index.bucketSize(bx, by);
+		for (int j = 0; j < size; j++) {
+			offer(from, index.bucketAgent(bx, by, j), maxDistance, exclude);
+		}
+	}
+
+	private void offer(Location from, Agent agent, double maxDistance, Agent exclude) {
+		if (agent == exclude)
+			return;
+
+		Location l = agent.getPosition();
+		double distance = topology.getDistanceSquared(from, l);
+		if (distance > maxDistance)
+			return;
+
+		int tile = index.tileIndex(l.x, l.y);
+
+		// Insertion into sorted results
+		int pos = foundCount;
+		while (pos > 0 && (distance < foundDistance[pos - 1]
+				|| (distance == foundDistance[pos - 1] && tile < foundTile[pos - 1]))) {
+			pos--;
+		}
+		if (pos >= foundLimit)
+			return;
+
+		if (foundCount == found.length && foundCount < foundLimit) {
+			int size = (int) Math.min((long) foundLimit, found.length * 2L);
+			found = Arrays.copyOf(found, size);
+			foundDistance = Arrays.copyOf(foundDistance, size);
+			foundTile = Arrays.copyOf(foundTile, size);
+		}
+
+		int last = Math.min(foundCount, foundLimit - 1);
+		System.arraycopy(found, pos, found, pos + 1, last - pos);
+		System.arraycopy(foundDistance, pos, foundDistance, pos + 1, last - pos);
+		System.arraycopy(foundTile, pos, foundTile, pos + 1, last - pos);
+		found[pos] = agent;
+		foundDistance[pos] = distance;
+		foundTile[pos] = tile;
+		if (foundCount < foundLimit)
+			foundCount++;
+	}
+
+	private static final long serialVersionUID = 1L;
+}
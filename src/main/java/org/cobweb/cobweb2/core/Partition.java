@@ -0,0 +1,110 @@
+package org.cobweb.cobweb2.core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.cobweb.util.RandomNoGenerator;
+import org.cobweb.util.StreamRandom;
+
+/**
+ * Block of the map whose agents update on their own thread, while other
+ * blocks of the same phase update at the same time.
+ *
+ * Agents in a partition only change tiles inside it, but many things they
+ * change are shared by the whole map: counts, statistics, the agent list.
+ * Code changing those checks current() and, inside a partition, defers the
+ * change with defer(). Deferred changes run on the simulation thread after the
+ * phase, partition by partition, so they happen in the same order whatever
+ * the number of threads.
+ */
+public class Partition {
+
+	private static final ThreadLocal<Partition> CURRENT = new ThreadLocal<>();
+
+	/**
+	 * Number of threads inside a partition, so current() can skip the
+	 * ThreadLocal lookup when the agents update serially
+	 */
+	private static final AtomicInteger entered = new AtomicInteger();
+
+	public final int index;
+
+	private final StreamRandom random;
+
+	private StreamRandom[] streams = new StreamRandom[0];
+
+	private final List<Runnable> deferred = new ArrayList<>();
+
+	/**
+	 * @param tickRandom generator of the tick, split into one stream per
+	 * partition
+	 */
+	public Partition(int index, StreamRandom tickRandom) {
+		this.index = index;
+		this.random = tickRandom.split(index);
+	}
+
+	/**
+	 * @return partition the current thread is updating, null outside of
+	 * partitioned updates
+	 */
+	public static Partition current() {
+		if (entered.get() == 0)
+			return null;
+		return CURRENT.get();
+	}
+
+	/**
+	 * Starts updating this partition on the current thread
+	 */
+	public void enter() {
+		entered.incrementAndGet();
+		CURRENT.set(this);
+	}
+
+	public void leave() {
+		CURRENT.remove();
+		entered.decrementAndGet();
+	}
+
+	/**
+	 * Runs change after the phase, on the simulation thread
+	 */
+	public void defer(Runnable change) {
+		deferred.add(change);
+	}
+
+	/**
+	 * Runs the deferred changes in the order they were deferred
+	 */
+	public void runDeferred() {
+		for (Runnable change : deferred) {
+			change.run();
+		}
+		deferred.clear();
+	}
+
+	/**
+	 * @return this partition's stream, what SimulationTimeSpace.getRandom()
+	 * returns while inside it
+	 */
+	public RandomNoGenerator getRandom() {
+		return random;
+	}
+
+	/**
+	 * @return this partition's generator for a named stream
+	 */
+	public RandomNoGenerator getRandom(RandomStream stream) {
+		if (stream.index >= streams.length)
+			streams = Arrays.copyOf(streams, RandomStream.count());
+		StreamRandom result = streams[stream.index];
+		if (result == null) {
+			result = random.split(stream.key);
+			streams[stream.index] = result;
+		}
+		return result;
+	}
+}
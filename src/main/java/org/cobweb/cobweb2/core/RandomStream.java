@@ -0,0 +1,72 @@
+package org.cobweb.cobweb2.core;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.cobweb.util.StreamRandom;
+
+/**
+ * Name of an independent random stream, see SimulationTimeSpace.getRandom().
+ *
+ * Plugins and other parts of the simulation each draw from a stream named
+ * after them, so adding, removing or changing one of them doesn't change
+ * what the others draw. Streams are interned by name and numbered, so the
+ * simulation can keep its generators in an array.
+ */
+public final class RandomStream {
+
+	private static final Map<String, RandomStream> streams = new HashMap<>();
+
+	private static final List<RandomStream> byIndex = new ArrayList<>();
+
+	private static int count = 0;
+
+	public final String name;
+
+	/**
+	 * Index of the stream in the simulation's array of generators
+	 */
+	public final int index;
+
+	/**
+	 * Key generators of this stream are split off with
+	 */
+	public final long key;
+
+	private RandomStream(String name, int index) {
+		this.name = name;
+		this.index = index;
+		this.key = StreamRandom.hash(name);
+	}
+
+	public static synchronized RandomStream named(String name) {
+		RandomStream stream = streams.get(name);
+		if (stream == null) {
+			stream = new RandomStream(name, count++);
+			streams.put(name, stream);
+			byIndex.add(stream);
+		}
+		return stream;
+	}
+
+	/**
+	 * @return number of streams named so far
+	 */
+	public static synchronized int count() {
+		return count;
+	}
+
+	/**
+	 * @return stream with the given index
+	 */
+	public static synchronized RandomStream get(int index) {
+		return byIndex.get(index);
+	}
+
+	@Override
+	public String toString() {
+		return name;
+	}
+}
@@ -1,5 +1,7 @@
 package org.cobweb.cobweb2.core;
 
+import org.cobweb.util.RandomNoGenerator;
+
 
 
 
@@ -18,4 +20,12 @@ public interface SimulationInternals extends StatePluginSource, SimulationTimeSp
 	public AgentSimilarityCalculator getSimilarityCalculator();
 
 	public AgentListener getAgentListener();
+
+	/**
+	 * @return new generator of the agent's own random stream, depends only on
+	 * the simulation seed and the agent's id
+	 */
+	public RandomNoGenerator getAgentRandom(Agent agent);
+
+	public TickProfiler getProfiler();
 }
@@ -1,9 +1,17 @@
 package org.cobweb.cobweb2.core;
 
+import org.cobweb.util.RandomNoGenerator;
+
 public interface SimulationTimeSpace extends RandomSource {
 
 	public abstract long getTime();
 
 	public abstract Topology getTopology();
 
+	/**
+	 * @return generator of the named stream, independent of the draws from
+	 * getRandom() and every other stream
+	 */
+	public abstract RandomNoGenerator getRandom(RandomStream stream);
+
 }
@@ -1,8 +1,10 @@
 package org.cobweb.cobweb2.core;
 
+import java.io.Serializable;
 
 
-public interface StateParameter {
+
+public interface StateParameter extends Serializable {
 
 	public String getName();
 
@@ -0,0 +1,216 @@
+package org.cobweb.cobweb2.core;
+
+import java.io.PrintWriter;
+import java.io.Serializable;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Time spent in each phase of a tick, and in each plugin during a phase.
+ *
+ * Off by default; while off, start() and stop() only check a flag. Phases
+ * nest: plugin dispatches happen during agent updates, and everything happens
+ * during the tick.
+ */
+public class TickProfiler implements Serializable {
+
+	public enum Phase {
+		TICK("Tick"),
+		ENVIRONMENT("Environment update"),
+		AGENTS("Agent updates"),
+		ON_UPDATE("onUpdate"),
+		ON_CONTACT("onContact"),
+		ON_STEP("onStep"),
+		ON_ENERGY_CHANGE("onEnergyChange");
+
+		public final String label;
+
+		private Phase(String label) {
+			this.label = label;
+		}
+	}
+
+	/**
+	 * Total time and number of calls of a phase, or of one plugin during a phase
+	 */
+	public static class Counter implements Serializable {
+		public final Phase phase;
+
+		/**
+		 * Plugin name, null for the whole phase
+		 */
+		public final String plugin;
+
+		private long nanos = 0;
+		private long calls = 0;
+
+		private Counter(Phase phase, String plugin) {
+			this.phase = phase;
+			this.plugin = plugin;
+		}
+
+		public long getNanos() {
+			return nanos;
+		}
+
+		public long getCalls() {
+			return calls;
+		}
+
+		private Counter copy() {
+			Counter c = new Counter(phase, plugin);
+			c.nanos = nanos;
+			c.calls = calls;
+			return c;
+		}
+
+		private static final long serialVersionUID = 1L;
+	}
+
+	private volatile boolean enabled = false;
+
+	private final Counter[] phaseCounters = new Counter[Phase.values().length];
+
+	private final Map<Object, Counter[]> pluginCounters = new IdentityHashMap<>();
+
+	/**
+	 * Plugin counters in the order plugins were first seen
+	 */
+	private final List<Counter> pluginCounterList = new ArrayList<>();
+
+	public TickProfiler() {
+		for (Phase p : Phase.values()) {
+			phaseCounters[p.ordinal()] = new Counter(p, null);
+		}
+	}
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	public void setEnabled(boolean enabled) {
+		this.enabled = enabled;
+	}
+
+	/**
+	 * @return start time to pass to stop(), 0 when not profiling. Time spent
+	 * inside a Partition is only counted as a whole, in the AGENTS phase.
+	 */
+	public long start() {
+		return enabled && Partition.current() == null ? System.nanoTime() : 0;
+	}
+
+	public void stop(Phase phase, long start) {
+		if (start != 0)
+			add(phaseCounters[phase.ordinal()], start);
+	}
+
+	/**
+	 * @param plugin plugin the time was spent in. Strings name parts of a
+	 * phase that aren't plugins.
+	 */
+	public void stop(Phase phase, Object plugin, long start) {
+		if (start != 0)
+			add(pluginCounter(phase, plugin), start);
+	}
+
+	/**
+	 * Adds time measured on another thread to a plugin's counter. Only call
+	 * from the thread updating the simulation.
+	 */
+	public void add(Phase phase, Object plugin, long nanos) {
+		Counter c = pluginCounter(phase, plugin);
+		c.nanos += nanos;
+		c.calls++;
+	}
+
+	private static void add(Counter counter, long start) {
+		counter.nanos += System.nanoTime() - start;
+		counter.calls++;
+	}
+
+	private Counter pluginCounter(Phase phase, Object plugin) {
+		Counter[] counters = pluginCounters.get(plugin);
+		if (counters == null) {
+			counters = new Counter[Phase.values().length];
+			pluginCounters.put(plugin, counters);
+		}
+		Counter c = counters[phase.ordinal()];
+		if (c == null) {
+			String name = plugin instanceof String ? (String) plugin : plugin.getClass().getSimpleName();
+			c = new Counter(phase, name);
+			counters[phase.ordinal()] = c;
+			synchronized (this) {
+				pluginCounterList.add(c);
+			}
+		}
+		return c;
+	}
+
+	/**
+	 * @return number of ticks profiled
+	 */
+	public long getTicks() {
+		return phaseCounters[Phase.TICK.ordinal()].calls;
+	}
+
+	/**
+	 * Copies the counters, each phase followed by the plugins during it
+	 */
+	public synchronized List<Counter> getCounters() {
+		List<Counter> result = new ArrayList<>();
+		for (Counter phase : phaseCounters) {
+			result.add(phase.copy());
+			for (Counter c : pluginCounterList) {
+				if (c.phase == phase.phase)
+					result.add(c.copy());
+			}
+		}
+		return result;
+	}
+
+	public synchronized void reset() {
+		for (Counter c : phaseCounters) {
+			c.nanos = 0;
+			c.calls = 0;
+		}
+		for (Counter c : pluginCounterList) {
+			c.nanos = 0;
+			c.calls = 0;
+		}
+	}
+
+	/**
+	 * Writes the counters as tab separated values, one line per phase or plugin
+	 */
+	public void writeSummary(Writer writer) {
+		PrintWriter out = new PrintWriter(writer);
+		out.println("Phase\tPlugin\tCalls\tTotal ms\tms per tick\tus per call\t% of tick");
+
+		List<Counter> counters = getCounters();
+		long ticks = getTicks();
+		long tickNanos = phaseCounters[Phase.TICK.ordinal()].nanos;
+		for (Counter c : counters) {
+			out.print(c.phase.label);
+			out.print('\t');
+			out.print(c.plugin == null ? "" : c.plugin);
+			out.print('\t');
+			out.print(c.calls);
+			out.print('\t');
+			out.print(String.format("%.3f", c.nanos / 1e6));
+			out.print('\t');
+			out.print(String.format("%.3f", ticks == 0 ? 0 : c.nanos / 1e6 / ticks));
+			out.print('\t');
+			out.print(String.format("%.3f", c.calls == 0 ? 0 : c.nanos / 1e3 / c.calls));
+			out.print('\t');
+			out.print(String.format("%.1f", tickNanos == 0 ? 0 : 100.0 * c.nanos / tickNanos));
+			out.println();
+		}
+		out.flush();
+	}
+
+	private static final long serialVersionUID = 1L;
+}
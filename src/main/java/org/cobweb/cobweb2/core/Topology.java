@@ -1,12 +1,15 @@
 package org.cobweb.cobweb2.core;
 
+import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 
-public class Topology {
+public class Topology implements Serializable {
 
 	private RandomSource randomSource;
 	public final int width;
@@ -14,6 +17,37 @@ public class Topology {
 	private final boolean wrap;	// Wrap Globe-style
 	private final boolean wrapX;
 	private final boolean wrapY;
+	private final WrapImage[] wrapImages;
+
+	/**
+	 * Shared Location of each tile, all created up front so threads scanning
+	 * the map at the same time get the same ones
+	 */
+	private final Location[] locations;
+
+	/**
+	 * Shared LocationDirections of each tile, 9 per tile in directionIndex()
+	 * order, created when first asked for. The first one stored wins when
+	 * threads race to create the same one.
+	 */
+	private final AtomicReferenceArray<LocationDirection> locationDirections;
+
+	/**
+	 * Index of the tile next to each tile, 9 per tile in directionIndex()
+	 * order, -1 when off the map. Built when first needed.
+	 */
+	private volatile int[] adjacentTable;
+
+	/**
+	 * Offsets every stencil is cut from, grown when a larger one is needed.
+	 * Not saved with the topology, rebuilt when next needed.
+	 */
+	private transient volatile StencilDisc stencilDisc;
+
+	/**
+	 * Smallest squared distance between two wrap images of the same tile
+	 */
+	private final int aliasDistanceSquared;
 
 	public Topology(RandomSource randomSource, int width, int height, boolean wrap, boolean wrapX, boolean wrapY) {
 		this.randomSource = randomSource;
@@ -22,10 +56,88 @@ public class Topology {
 		this.wrap = wrap;
 		this.wrapX = wrapX;
 		this.wrapY = wrapY;
+		this.wrapImages = createWrapImages();
+		this.aliasDistanceSquared = getAliasDistanceSquared();
+		this.locations = new Location[width * height];
+		for (int index = 0; index < locations.length; index++) {
+			locations[index] = new Location(indexX(index), indexY(index));
+		}
+		this.locationDirections = new AtomicReferenceArray<LocationDirection>(width * height * 9);
+	}
+
+	/**
+	 * Tiles packed into a single int, numbered row by row: index = y * width + x
+	 */
+	public int index(int x, int y) {
+		return y * width + x;
+	}
+
+	public int index(Location l) {
+		return index(l.x, l.y);
+	}
+
+	public int indexX(int index) {
+		return index % width;
+	}
+
+	public int indexY(int index) {
+		return index / width;
+	}
+
+	/**
+	 * @return the shared Location of a tile
+	 */
+	public Location location(int index) {
+		return locations[index];
+	}
+
+	public Location location(int x, int y) {
+		return location(index(x, y));
+	}
+
+	/**
+	 * @return the shared LocationDirection of a tile facing a direction
+	 */
+	public LocationDirection locationDirection(int index, Direction direction) {
+		int slot = index * 9 + directionIndex(direction.x, direction.y);
+		LocationDirection l = locationDirections.get(slot);
+		if (l == null) {
+			l = new LocationDirection(location(index), getDirection(direction.x, direction.y));
+			if (!locationDirections.compareAndSet(slot, null, l))
+				l = locationDirections.get(slot);
+		}
+		return l;
 	}
 
 	public Location getAdjacent(Location location, Direction direction) {
-		return getAdjacent(new LocationDirection(location, direction));
+		int step = step(location.x, location.y, direction);
+		return step < 0 ? null : location(step >> 1);
+	}
+
+	/**
+	 * Index of the tile next to a tile in a direction, the same one
+	 * getAdjacent() would find
+	 *
+	 * @return tile index, -1 when off the map
+	 */
+	public int adjacentIndex(int index, Direction direction) {
+		int[] table = adjacentTable;
+		if (table == null) {
+			table = createAdjacentTable();
+			adjacentTable = table;
+		}
+		return table[index * 9 + directionIndex(direction.x, direction.y)];
+	}
+
+	private int[] createAdjacentTable() {
+		int[] table = new int[width * height * 9];
+		for (int index = 0; index < width * height; index++) {
+			for (int d = 0; d < 9; d++) {
+				int step = step(indexX(index), indexY(index), DIRECTIONS[d]);
+				table[index * 9 + d] = step < 0 ? -1 : step >> 1;
+			}
+		}
+		return table;
 	}
 
 	public double getDistance(Location from, Location to) {
@@ -33,13 +145,9 @@ public class Topology {
 	}
 
 	public Location getRandomLocation() {
-		Location l;
-		do {
-			l = new Location(
-					randomSource.getRandom().nextInt(width),
-					randomSource.getRandom().nextInt(height));
-		} while (!isValidLocation(l));
-		return l;
+		int x = randomSource.getRandom().nextInt(width);
+		int y = randomSource.getRandom().nextInt(height);
+		return location(x, y);
 	}
 
 	public boolean isValidLocation(Location l) {
@@ -50,12 +158,34 @@ public class Topology {
 
 	public LocationDirection getAdjacent(LocationDirection location) {
 		Direction direction = location.direction;
-		int x = location.x + direction.x;
-		int y = location.y + direction.y;
+		int step = step(location.x, location.y, direction);
+		if (step < 0)
+			return null;
+
+		if ((step & 1) != 0) {
+			if (wrap)
+				direction = getDirection(-direction.x, -direction.y);
+			else if (wrapX)
+				direction = getDirection(direction.x, -direction.y);
+			else
+				direction = getDirection(-direction.x, direction.y);
+		}
+		return locationDirection(step >> 1, direction);
+	}
+
+	/**
+	 * Moves one tile from (x, y) in a direction, across wrapped edges.
+	 *
+	 * @return index of the tile reached shifted left by one, with the low bit
+	 * set when the edge crossed flips the direction. -1 when off the map.
+	 */
+	private int step(int x, int y, Direction direction) {
+		x += direction.x;
+		y += direction.y;
+		boolean flip = false;
 
 		if (wrap) {
 			x = (x + width) % width;
-			boolean flip = false;
 			if (y < 0) {
 				y = -y - 1;
 				flip = true;
@@ -65,7 +195,6 @@ public class Topology {
 			}
 			if (flip) {
 				x = (x + width / 2) % width;
-				direction = new Direction(-direction.x, -direction.y);
 			}
 
 		}
@@ -79,7 +208,6 @@ public class Topology {
 		{
 			x = (x + width) % width;
 
-			boolean flip = false;
 			if (y < 0) {
 				y = -y - 1;
 				flip = true;
@@ -87,16 +215,11 @@ public class Topology {
 				y = height * 2 - y - 1;
 				flip = true;
 			}
-			if (flip) {
-				//y = (y + height / 2) % height;
-				direction = new Direction(direction.x, -direction.y);
-			}
 		} // else if(wrapX)
 		else if(wrapY)
 		{
 			y = (y + height) % height;
 
-			boolean flip = false;
 			if (x < 0) {
 				x = -x - 1;
 				flip = true;
@@ -104,254 +227,381 @@ public class Topology {
 				x = width * 2 - x - 1;
 				flip = true;
 			}
-			if (flip) {
-				//x = (x + width / 2) % width;
-				direction = new Direction(-direction.x, direction.y);
-			}
 		} // else if(wrapY)
 		else
 		{
 			if ( x < 0 || x >= width || y < 0 || y >= height)
-				return null;
+				return -1;
 		} // else
 
-		return new LocationDirection(new Location(x, y), direction);
+		return index(x, y) << 1 | (flip ? 1 : 0);
 	}
 
 	public double getDistanceSquared(Location from, Location to) {
-		return simpleDistanceSquared(from, getClosestWrapLocation(from, to));
+		WrapImage image = getClosestWrapImage(from, to);
+		int deltaX = image.imageX(to.x) - from.x;
+		int deltaY = image.imageY(to.y) - from.y;
+		return deltaX * deltaX + deltaY * deltaY;
 	}
 
-	protected double simpleDistanceSquared(Location from, Location to) {
-		int deltaX = to.x - from.x;
-		int deltaY = to.y - from.y;
-		return deltaX * deltaX + deltaY * deltaY;
+	/**
+	 * Maps a location onto one of its virtual copies across a wrapped edge.
+	 * The image of (x, y) is (x + offsetX, offsetY + y) or, when the edge flips
+	 * the map, (x + offsetX, offsetY - y).
+	 */
+	public static class WrapImage implements Serializable {
+		public final int offsetX;
+		public final int offsetY;
+		public final boolean flipY;
+
+		WrapImage(int offsetX, int offsetY, boolean flipY) {
+			this.offsetX = offsetX;
+			this.offsetY = offsetY;
+			this.flipY = flipY;
+		}
+
+		public int imageX(int x) {
+			return x + offsetX;
+		}
+
+		public int imageY(int y) {
+			return flipY ? offsetY - y : offsetY + y;
+		}
+
+		public Location apply(Location l) {
+			return new Location(imageX(l.x), imageY(l.y));
+		}
+
+		/**
+		 * @return x of the tile this image puts at imageX
+		 */
+		public int sourceX(int imageX) {
+			return imageX - offsetX;
+		}
+
+		/**
+		 * @return y of the tile this image puts at imageY
+		 */
+		public int sourceY(int imageY) {
+			return flipY ? offsetY - imageY : imageY - offsetY;
+		}
+
+		private static final long serialVersionUID = 1L;
 	}
 
-	private List<Location> getWrapVirtualLocations(Location l) {
-		List<Location> result = new ArrayList<Location>(7);
-		result.add(l);
+	private int getAliasDistanceSquared() {
+		int best = Integer.MAX_VALUE;
+		for (int i = 0; i < wrapImages.length; i++) {
+			for (int j = i + 1; j < wrapImages.length; j++) {
+				WrapImage a = wrapImages[i];
+				WrapImage b = wrapImages[j];
+				int deltaX = a.imageX(0) - b.imageX(0);
+				for (int y = 0; y < height; y++) {
+					int deltaY = a.imageY(y) - b.imageY(y);
+					best = Math.min(best, deltaX * deltaX + deltaY * deltaY);
+					// Same distance for every y
+					if (a.flipY == b.flipY)
+						break;
+				}
+			}
+		}
+		return best;
+	}
+
+	private WrapImage[] createWrapImages() {
+		List<WrapImage> result = new ArrayList<WrapImage>(9);
+		result.add(new WrapImage(0, 0, false));
 
 		if (wrap) {
 			// wrap left
-			result.add(new Location(l.x - width, l.y));
+			result.add(new WrapImage(-width, 0, false));
 			// wrap right
-			result.add(new Location(l.x + width, l.y));
+			result.add(new WrapImage(+width, 0, false));
 
 			// wrap down left
-			result.add(new Location(l.x - width + width / 2, 2 * height - l.y - 1));
+			result.add(new WrapImage(-width + width / 2, 2 * height - 1, true));
 			// wrap down right
-			result.add(new Location(l.x + width / 2,         2 * height - l.y - 1));
+			result.add(new WrapImage(width / 2,          2 * height - 1, true));
 
 			// wrap up left
-			result.add(new Location(l.x - width + width / 2, - l.y - 1));
+			result.add(new WrapImage(-width + width / 2, -1, true));
 			// wrap up right
-			result.add(new Location(l.x + width / 2,         - l.y - 1));
+			result.add(new WrapImage(width / 2,          -1, true));
 		}
 		else if(wrapX && wrapY)
 		{
 			// wrap NORTH
-			result.add(new Location(l.x, l.y - height));
+			result.add(new WrapImage(0, -height, false));
 			// wrap SOUTH
-			result.add(new Location(l.x, l.y + height));
+			result.add(new WrapImage(0, +height, false));
 
 			// wrap EAST
-			result.add(new Location(l.x + width, l.y));
+			result.add(new WrapImage(+width, 0, false));
 			// wrap WEST
-			result.add(new Location(l.x - width, l.y));
+			result.add(new WrapImage(-width, 0, false));
 
 			// wrap NORTHEAST
-			result.add(new Location(l.x + width, l.y - height));
+			result.add(new WrapImage(+width, -height, false));
 			// wrap SOUTHEAST
-			result.add(new Location(l.x + width, l.y + height));
+			result.add(new WrapImage(+width, +height, false));
 
 			// wrap NORTHWEST
-			result.add(new Location(l.x - width, l.y - height));
+			result.add(new WrapImage(-width, -height, false));
 			// wrap SOUTHWEST
-			result.add(new Location(l.x - width, l.y + height));
+			result.add(new WrapImage(-width, +height, false));
 
 		} // if(wrapX && wrapY)
 		else if(wrapX)
 		{
 			// wrap EAST
-			result.add(new Location(l.x + width, l.y));
+			result.add(new WrapImage(+width, 0, false));
 			// wrap WEST
-			result.add(new Location(l.x - width, l.y));
+			result.add(new WrapImage(-width, 0, false));
 
 		} // else if(wrapX)
 		else if(wrapY)
 		{
 			// wrap NORTH
-			result.add(new Location(l.x, l.y - height));
+			result.add(new WrapImage(0, -height, false));
 			// wrap SOUTH
-			result.add(new Location(l.x, l.y + height));
+			result.add(new WrapImage(0, +height, false));
 
 		} // else if(wrapY)
 
-		return result;
+		return result.toArray(new WrapImage[result.size()]);
 	}
 
-	private Location getClosestWrapLocation(Location zero, Location target) {
-		if (!(wrap || wrapX || wrapY))
-			return target;
+	/**
+	 * Virtual copies of the map that distances are measured across.
+	 * The first image is always the identity.
+	 */
+	public WrapImage[] getWrapImages() {
+		return wrapImages;
+	}
 
-		double distance = Double.MAX_VALUE;
-		Location best = target;
-		for(Location virtual : getWrapVirtualLocations(target)) {
-			double d = simpleDistanceSquared(zero, virtual);
+	/**
+	 * @return the wrap image that brings target closest to zero, the first one
+	 * when several are as close
+	 */
+	private WrapImage getClosestWrapImage(Location zero, Location target) {
+		WrapImage best = wrapImages[0];
+		if (wrapImages.length == 1)
+			return best;
+
+		int distance = Integer.MAX_VALUE;
+		for (WrapImage image : wrapImages) {
+			int deltaX = image.imageX(target.x) - zero.x;
+			int deltaY = image.imageY(target.y) - zero.y;
+			int d = deltaX * deltaX + deltaY * deltaY;
 			if (d < distance) {
 				distance = d;
-				if (best != virtual)
-					best = virtual;
+				best = image;
 			}
 		}
 		return best;
 	}
 
-	public LocationDirection getUnwrappedAdjacent(LocationDirection location) {
-		Direction direction = location.direction;
-		int x = location.x + direction.x;
-		int y = location.y + direction.y;
-
-		return new LocationDirection(new Location(x, y), direction);
-	}
-
-	public LocationDirection getWrappedLocation(LocationDirection location) {
-		Direction direction = location.direction;
-		int x = location.x;
-		int y = location.y;
-
-		x = (x + width) % width;
-		y = (y + height) % height;
-
-		return new LocationDirection(new Location(x, y), direction);
-	}
-
-	public Set<Location> getArea(Location zero, float radius) {
-		Set<Location> result = new HashSet<Location>();
-		float rSquared = radius * radius;
-
-		if (!(wrap || wrapX || wrapY)) {
-			int x0 = Math.min(zero.x - (int)Math.ceil(radius), 0);
-			int x1 = Math.max(zero.x + (int)Math.ceil(radius), width - 1);
-			int y0 = Math.min(zero.y - (int)Math.ceil(radius), 0);
-			int y1 = Math.max(zero.y + (int)Math.ceil(radius), height - 1);
-
-			for (int x = x0; x < x1; x++) {
-				for (int y = y0; y < y1; y++) {
-					Location l = new Location(x, y);
-					if (getDistanceSquared(zero, l) <= rSquared) {
-						result.add(l);
-					}
-				}
-			}
-		} // if (!wrap)
+	/**
+	 * Offsets of the tiles within a radius of a tile, closest first. Ties are
+	 * ordered row by row.
+	 */
+	public static class Stencil {
+		public final float radius;
+
+		/**
+		 * Shared with every other stencil, only the first size are in this one
+		 */
+		private final int[] offsetX;
+		private final int[] offsetY;
+		private final int size;
+
+		/**
+		 * Largest squared distance of an offset
+		 */
+		private final int limit;
+
+		/**
+		 * Largest offset along either axis, -1 when empty
+		 */
+		private final int reach;
+
+		/**
+		 * Whether two offsets can land on the same tile across wrapped edges
+		 */
+		private final boolean aliased;
+
+		private Stencil(float radius, StencilDisc disc, int limit, boolean aliased) {
+			this.radius = radius;
+			this.offsetX = disc.offsetX;
+			this.offsetY = disc.offsetY;
+			this.size = limit < 0 ? 0 : disc.countWithin(limit);
+			this.limit = limit;
+			this.reach = limit < 0 ? -1 : squareRoot(limit);
+			this.aliased = aliased;
+		}
 
-		else if(!wrap && !wrapX)
-		{
-			if (radius > Math.max(width, height))
-				radius = Math.max(width, height);
+		public int size() {
+			return size;
+		}
 
-			result.add(zero);
-			LocationDirection l = new LocationDirection(zero, NORTH);
+		public int offsetX(int i) {
+			return offsetX[i];
+		}
 
-			// walk around the zero point in increasingly larger rectangles
-			for (int r = 1; r <= radius; r++) {
-				// North-center point
-				l = getUnwrappedAdjacent(l);
+		public int offsetY(int i) {
+			return offsetY[i];
+		}
 
-				if(!wrapX &&  !(l.x < 0 || l.x >= width))
-					result.add(getWrappedLocation(l));
+		public int reach() {
+			return reach;
+		}
 
-				// length of walks along each side of the rectangle
-				// North-center to NE to SE to SW to NW, back to North-center
-				int[] sides = {r, r*2, r*2, r*2, r-1};
+		/**
+		 * Offsets in row dy span x offsets -rowReach(dy) to rowReach(dy)
+		 *
+		 * @return largest x offset in row dy, -1 when the row is empty
+		 */
+		public int rowReach(int dy) {
+			return dy < -reach || dy > reach ? -1 : squareRoot(limit - dy * dy);
+		}
 
-				for (int side : sides) {
-					l = getTurnRightPosition(l);
-					for (int i = 0; i < side; i++) {
-						l = getUnwrappedAdjacent(l);
+		/**
+		 * @return whether two offsets can land on the same tile across
+		 * wrapped edges, in which case stencilTile() skips the farther ones
+		 */
+		public boolean isAliased() {
+			return aliased;
+		}
+	}
 
-						if(!wrapX &&  !(l.x < 0 || l.x >= width))
-							if (simpleDistanceSquared(zero, l) <= rSquared) // unwrapped so we want simpleDistanceSquared
-								result.add(getWrappedLocation(l));
-					}
+	/**
+	 * Offsets of every tile up to a squared distance, in stencil order. The
+	 * tiles within any smaller radius are the first ones, so one disc serves
+	 * every stencil.
+	 */
+	private static class StencilDisc {
+		private final int limit;
+		private final int[] offsetX;
+		private final int[] offsetY;
+		private final int[] distance;
+
+		StencilDisc(int limit) {
+			this.limit = limit;
+			int reach = squareRoot(limit);
+			int side = 2 * reach + 1;
+
+			// Sort by distance, then row by row
+			int count = 0;
+			long[] keys = new long[side * side];
+			for (int dy = -reach; dy <= reach; dy++) {
+				for (int dx = -reach; dx <= reach; dx++) {
+					int d = dx * dx + dy * dy;
+					if (d <= limit)
+						keys[count++] = (long) d << 32 | (dy + reach) * side + dx + reach;
 				}
-
-				// finish back at top-center, facing up
-				l = getUnwrappedAdjacent(l);
-				l = getTurnLeftPosition(l);
 			}
-		} // else if(!wrapX)
-		else if(!wrap && !wrapY)
-		{
-			if (radius > Math.max(width, height))
-				radius = Math.max(width, height);
-
-			result.add(zero);
-			LocationDirection l = new LocationDirection(zero, NORTH);
-
-			// walk around the zero point in increasingly larger rectangles
-			for (int r = 1; r <= radius; r++) {
-				// North-center point
-				l = getUnwrappedAdjacent(l);
-
-				if(!wrapY &&  !(l.y < 0 || l.y >= height))
-					result.add(getWrappedLocation(l));
+			Arrays.sort(keys, 0, count);
+
+			offsetX = new int[count];
+			offsetY = new int[count];
+			distance = new int[count];
+			for (int i = 0; i < count; i++) {
+				int offset = (int) keys[i];
+				offsetX[i] = offset % side - reach;
+				offsetY[i] = offset / side - reach;
+				distance[i] = (int) (keys[i] >>> 32);
+			}
+		}
 
-				// length of walks along each side of the rectangle
-				// North-center to NE to SE to SW to NW, back to North-center
-				int[] sides = {r, r*2, r*2, r*2, r-1};
+		/**
+		 * @return number of offsets with a squared distance of at most limit
+		 */
+		int countWithin(int within) {
+			int low = 0;
+			int high = distance.length;
+			while (low < high) {
+				int mid = (low + high) >>> 1;
+				if (distance[mid] <= within)
+					low = mid + 1;
+				else
+					high = mid;
+			}
+			return low;
+		}
+	}
 
-				for (int side : sides) {
-					l = getTurnRightPosition(l);
-					for (int i = 0; i < side; i++) {
-						l = getUnwrappedAdjacent(l);
+	private static int squareRoot(int n) {
+		int root = (int) Math.sqrt(n);
+		while (root * root > n)
+			root--;
+		while ((root + 1) * (root + 1) <= n)
+			root++;
+		return root;
+	}
 
-						if(!wrapY &&  !(l.y < 0 || l.y >= height))
-							if (simpleDistanceSquared(zero, l) <= rSquared) // unwrapped so we want simpleDistanceSquared
-								result.add(getWrappedLocation(l));
-					}
-				}
+	/**
+	 * @return offsets of the tiles a distance of at most radius away
+	 */
+	public Stencil getStencil(float radius) {
+		// Nothing on the map is further than the diagonal
+		int diagonalSquared = width * width + height * height;
+		float r = Math.min(radius, (float) Math.sqrt(diagonalSquared));
+		float rSquared = r * r;
+		int limit = radius < 0 ? -1 : (int) rSquared;
+
+		StencilDisc disc = stencilDisc;
+		if (disc == null || disc.limit < limit) {
+			// Grow at least twofold so a slowly growing radius doesn't rebuild
+			// the disc every time. Racing threads build equal ones.
+			int grown = disc == null ? 0 : (int) Math.min(2L * disc.limit, diagonalSquared);
+			disc = new StencilDisc(Math.max(limit, grown));
+			stencilDisc = disc;
+		}
 
-				// finish back at top-center, facing up
-				l = getUnwrappedAdjacent(l);
-				l = getTurnLeftPosition(l);
-			}
-		} // else if(!wrapY)
-
-		else {
-			if (radius > Math.max(width, height))
-				radius = Math.max(width, height);
-
-			result.add(zero);
-			LocationDirection l = new LocationDirection(zero, NORTH);
-
-			// walk around the zero point in increasingly larger rectangles
-			for (int r = 1; r <= radius; r++) {
-				// North-center point
-				l = getAdjacent(l);
-				result.add(l);
-
-				// length of walks along each side of the rectangle
-				// North-center to NE to SE to SW to NW, back to North-center
-				int[] sides = {r, r*2, r*2, r*2, r-1};
-
-				for (int side : sides) {
-					l = getTurnRightPosition(l);
-					for (int i = 0; i < side; i++) {
-						l = getAdjacent(l);
-						if (getDistanceSquared(zero, l) <= rSquared)
-							result.add(l);
-					}
-				}
+		// Two images of a tile within r of the same tile are at most 2r apart
+		boolean aliased = 4 * rSquared >= aliasDistanceSquared;
+		return new Stencil(radius, disc, limit, aliased);
+	}
 
-				// finish back at top-center, facing up
-				l = getAdjacent(l);
-				l = getTurnLeftPosition(l);
-			}
+	/**
+	 * Finds the tile at an offset of a stencil around a location, across
+	 * wrapped edges. Going through every offset of a stencil finds each tile
+	 * within its radius exactly once, the same tiles getDistanceSquared() puts
+	 * within the radius.
+	 *
+	 * @return tile index, -1 when the offset is off the map or is a farther
+	 * copy of a tile another offset already reaches
+	 */
+	public int stencilTile(Location zero, Stencil stencil, int i) {
+		int px = zero.x + stencil.offsetX[i];
+		int py = zero.y + stencil.offsetY[i];
+
+		for (WrapImage image : wrapImages) {
+			int x = image.sourceX(px);
+			int y = image.sourceY(py);
+			if (x < 0 || x >= width || y < 0 || y >= height)
+				continue;
+
+			// Images don't overlap, so this is the only tile at (px, py).
+			// Skip it if it is closer through another image.
+			if (stencil.aliased && getClosestWrapImage(zero, location(x, y)) != image)
+				return -1;
+			return index(x, y);
 		}
+		return -1;
+	}
 
+	/**
+	 * @return tiles a distance of at most radius away from zero
+	 */
+	public Set<Location> getArea(Location zero, float radius) {
+		Set<Location> result = new HashSet<Location>();
+		Stencil area = getStencil(radius);
+		for (int i = 0; i < area.size(); i++) {
+			int tile = stencilTile(zero, area, i);
+			if (tile >= 0)
+				result.add(location(tile));
+		}
 		return result;
 	}
 
@@ -364,11 +614,11 @@ public class Topology {
 	}
 
 	protected Direction turnRight(Direction dir) {
-		return new Direction(-dir.y, +dir.x);
+		return getDirection(-dir.y, +dir.x);
 	}
 
 	protected Direction turnLeft(Direction dir) {
-		return new Direction(+dir.y, -dir.x);
+		return getDirection(+dir.y, -dir.x);
 	}
 
 	public Rotation getRotationBetween(Direction from, Direction to) {
@@ -383,10 +633,10 @@ public class Topology {
 	}
 
 	public Direction getDirectionBetween4way(Location from, Location to) {
-		to = getClosestWrapLocation(from, to);
+		WrapImage image = getClosestWrapImage(from, to);
 
-		int deltaX = to.x - from.x;
-		int deltaY = to.y - from.y;
+		int deltaX = image.imageX(to.x) - from.x;
+		int deltaY = image.imageY(to.y) - from.y;
 		if (deltaX == 0 && deltaY == 0)
 			return NONE;
 
@@ -409,10 +659,15 @@ public class Topology {
 	}
 
 	public Direction getDirectionBetween8way(Location from, Location to) {
-		to = getClosestWrapLocation(from, to);
+		WrapImage image = getClosestWrapImage(from, to);
+
+		return getDirection8way(image.imageX(to.x) - from.x, image.imageY(to.y) - from.y);
+	}
 
-		int deltaX = to.x - from.x;
-		int deltaY = to.y - from.y;
+	/**
+	 * Rounds a displacement to the closest of the 8 directions
+	 */
+	public Direction getDirection8way(double deltaX, double deltaY) {
 		if (deltaX == 0 && deltaY == 0)
 			return NONE;
 
@@ -447,6 +702,23 @@ public class Topology {
 	public static final Direction SOUTHWEST = new Direction(-1, +1);
 	public static final Direction NORTHWEST = new Direction(-1, -1);
 
+	private static final Direction[] DIRECTIONS = {
+			NORTHWEST, WEST, SOUTHWEST,
+			NORTH, NONE, SOUTH,
+			NORTHEAST, EAST, SOUTHEAST
+	};
+
+	private static int directionIndex(int x, int y) {
+		return (Integer.signum(x) + 1) * 3 + Integer.signum(y) + 1;
+	}
+
+	/**
+	 * @return the shared Direction with the same deltas as new Direction(x, y)
+	 */
+	public static Direction getDirection(int x, int y) {
+		return DIRECTIONS[directionIndex(x, y)];
+	}
+
 	public final Direction[] ALL_4_WAY = {
 			NORTH, EAST,
 			SOUTH, WEST
@@ -464,4 +736,5 @@ public class Topology {
 		return ALL_4_WAY[i];
 	}
 
+	private static final long serialVersionUID = 1L;
 }
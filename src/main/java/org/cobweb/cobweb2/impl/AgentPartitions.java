@@ -0,0 +1,206 @@
+package org.cobweb.cobweb2.impl;
+
+import org.cobweb.cobweb2.core.Location;
+
+/**
+ * Blocks of the map agents update in, see
+ * ComplexEnvironmentParams.agentPartitionSize.
+ *
+ * Blocks are numbered row by row. Along each axis they alternate between two
+ * phases, or three when the map wraps around an odd number of blocks, so two
+ * blocks of the same phase never touch, not even at a corner or across a
+ * wrapped edge. An agent can update inside its block when everything its
+ * update can change is inside the block: the block only shares the tiles
+ * along its edges with blocks updating in other phases.
+ */
+public class AgentPartitions {
+
+	/**
+	 * Smallest side of a block. Agents look ahead into the next block from
+	 * near an edge, never past it.
+	 */
+	public static final int MIN_SIZE = 8;
+
+	/**
+	 * Number of phases: up to three along each axis
+	 */
+	public static final int PHASES = 9;
+
+	public final int size;
+
+	private final int width;
+
+	private final int height;
+
+	private final boolean wrap;
+
+	private final boolean wrapX;
+
+	private final boolean wrapY;
+
+	private final int countX;
+
+	private final int countY;
+
+	/**
+	 * First column of each block column, and the map width at the end
+	 */
+	private final int[] startX;
+
+	/**
+	 * First row of each block row, and the map height at the end
+	 */
+	private final int[] startY;
+
+	/**
+	 * Block column of each column of the map
+	 */
+	private final int[] columnOf;
+
+	/**
+	 * Block row of each row of the map
+	 */
+	private final int[] rowOf;
+
+	private final int[] phaseX;
+
+	private final int[] phaseY;
+
+	/**
+	 * Whether the left and right edges of the map lead into another block
+	 */
+	private final boolean sharedX;
+
+	/**
+	 * Whether the top and bottom edges of the map lead into another block
+	 */
+	private final boolean sharedY;
+
+	/**
+	 * Whether the top and bottom edges lead half way around the map, possibly
+	 * into a block of the same phase, so agents must not even look across them
+	 */
+	private final boolean farY;
+
+	public AgentPartitions(ComplexEnvironmentParams data) {
+		this.size = Math.max(MIN_SIZE, data.agentPartitionSize);
+		this.width = data.width;
+		this.height = data.height;
+		this.wrap = data.wrapMap;
+		this.wrapX = data.wrapMapX;
+		this.wrapY = data.wrapMapY;
+
+		// Same wrapping rules as Topology: a globe wraps left to right, and
+		// over the top onto the other half of the map. Other edges end the
+		// map, or turn agents back onto the same column or row.
+		boolean wrapsX = wrap || wrapX;
+		boolean wrapsY = !wrap && wrapY;
+
+		countX = Math.max(1, width / this.size);
+		countY = Math.max(1, height / this.size);
+		startX = starts(width, countX);
+		startY = starts(height, countY);
+		columnOf = blocks(startX);
+		rowOf = blocks(startY);
+		phaseX = phases(countX, wrapsX);
+		phaseY = phases(countY, wrapsY);
+		sharedX = wrapsX && countX > 1;
+		sharedY = wrapsY && countY > 1;
+		farY = wrap && countX > 1;
+	}
+
+	/**
+	 * Splits length into count blocks as even as can be, each at least size long
+	 */
+	private static int[] starts(int length, int count) {
+		int[] result = new int[count + 1];
+		for (int i = 0; i <= count; i++) {
+			result[i] = (int) ((long) i * length / count);
+		}
+		return result;
+	}
+
+	private static int[] blocks(int[] starts) {
+		int[] result = new int[starts[starts.length - 1]];
+		for (int b = 0; b < starts.length - 1; b++) {
+			for (int i = starts[b]; i < starts[b + 1]; i++) {
+				result[i] = b;
+			}
+		}
+		return result;
+	}
+
+	private static int[] phases(int count, boolean wraps) {
+		int[] result = new int[count];
+		if (count == 1)
+			return result;
+		for (int i = 0; i < count; i++) {
+			result[i] = i & 1;
+		}
+		// The last block touches the first one across the wrapped edge
+		if (wraps && (count & 1) != 0)
+			result[count - 1] = 2;
+		return result;
+	}
+
+	/**
+	 * @return whether these are still the blocks for the map and block size
+	 */
+	public boolean matches(ComplexEnvironmentParams data) {
+		return width == data.width && height == data.height
+				&& wrap == data.wrapMap && wrapX == data.wrapMapX && wrapY == data.wrapMapY
+				&& size == Math.max(MIN_SIZE, data.agentPartitionSize);
+	}
+
+	/**
+	 * @return number of blocks
+	 */
+	public int getCount() {
+		return countX * countY;
+	}
+
+	/**
+	 * @return phase of a block, 0 to PHASES - 1
+	 */
+	public int phaseOf(int block) {
+		return phaseX[block % countX] + 3 * phaseY[block / countX];
+	}
+
+	/**
+	 * @return block the location is in, -1 when not on the map
+	 */
+	public int blockOf(Location l) {
+		if (l == null || l.x < 0 || l.x >= width || l.y < 0 || l.y >= height)
+			return -1;
+		return rowOf[l.y] * countX + columnOf[l.x];
+	}
+
+	/**
+	 * Whether the agent's next update only changes things inside its block
+	 * and only looks into the blocks next to it
+	 */
+	public boolean isInside(int block, ComplexAgent agent) {
+		int reach = agent.getUpdateReach();
+		int sight = agent.getSightRange();
+		if (reach < 0 || sight < 0 || sight > size)
+			return false;
+
+		Location l = agent.getPosition();
+		if (blockOf(l) != block)
+			return false;
+
+		int bx = block % countX;
+		int by = block / countX;
+
+		int left = bx > 0 || sharedX ? reach : 0;
+		int right = bx < countX - 1 || sharedX ? reach : 0;
+		int edgeY = farY ? reach + sight : sharedY ? reach : 0;
+		int top = by > 0 ? reach : edgeY;
+		int bottom = by < countY - 1 ? reach : edgeY;
+
+		return l.x - startX[bx] >= left
+				&& startX[bx + 1] - 1 - l.x >= right
+				&& l.y - startY[by] >= top
+				&& startY[by + 1] - 1 - l.y >= bottom;
+	}
+}
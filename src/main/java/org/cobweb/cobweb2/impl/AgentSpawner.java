@@ -1,5 +1,6 @@
 package org.cobweb.cobweb2.impl;
 
+import java.io.Serializable;
 import java.lang.reflect.InvocationTargetException;
 
 import org.cobweb.cobweb2.core.Agent;
@@ -7,7 +8,7 @@ import org.cobweb.cobweb2.core.SimulationInternals;
 import org.cobweb.cobweb2.core.SimulationTimeSpace;
 
 
-public class AgentSpawner {
+public class AgentSpawner implements Serializable {
 
 	private Class<?> spawnType;
 	private SimulationTimeSpace simulation;
@@ -40,4 +41,6 @@ public class AgentSpawner {
 		}
 
 	}
+
+	private static final long serialVersionUID = 1L;
 }
@@ -1,9 +1,13 @@
 package org.cobweb.cobweb2.impl;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
-import java.util.Random;
+import java.util.Map.Entry;
 
 import org.apache.commons.collections4.queue.CircularFifoQueue;
 import org.cobweb.cobweb2.core.Agent;
@@ -16,6 +20,7 @@ import org.cobweb.cobweb2.core.LocationDirection;
 import org.cobweb.cobweb2.core.SimulationInternals;
 import org.cobweb.cobweb2.core.Topology;
 import org.cobweb.cobweb2.plugins.AgentState;
+import org.cobweb.cobweb2.plugins.AgentStateSlots;
 import org.cobweb.cobweb2.plugins.broadcast.BroadcastPacket;
 import org.cobweb.cobweb2.plugins.broadcast.FoodBroadcast;
 import org.cobweb.cobweb2.plugins.broadcast.PacketConduit;
@@ -62,8 +67,15 @@ public class ComplexAgent extends Agent {
 
 	protected boolean pregnant = false;
 
-	public Map<Class<? extends AgentState>, AgentState> extraState = new HashMap<>();
+	/**
+	 * Plugin state, at the index AgentStateSlots gives each state class.
+	 * Serialized by state class, slots may differ between processes.
+	 */
+	private transient AgentState[] extraState = new AgentState[AgentStateSlots.count()];
 
+	/**
+	 * Not saved with the agent, see relink()
+	 */
 	public transient ComplexEnvironment environment;
 
 	protected transient SimulationInternals simulation;
@@ -90,8 +102,15 @@ public class ComplexAgent extends Agent {
 		return simulation.getTime();
 	}
 
+	/**
+	 * This agent's own random stream, created on first use
+	 */
+	private RandomNoGenerator random;
+
 	protected RandomNoGenerator getRandom() {
-		return simulation.getRandom();
+		if (random == null)
+			random = simulation.getAgentRandom(this);
+		return random;
 	}
 
 	public float calculateSimilarity(ComplexAgent other) {
@@ -99,21 +118,94 @@ public class ComplexAgent extends Agent {
 	}
 
 	public <T extends AgentState> void setState(Class<T> type, T value) {
-		extraState.put(type, value);
+		setState(AgentStateSlots.slotOf(type), value);
 	}
 
 	public <T extends AgentState> T getState(Class<T> type) {
 		@SuppressWarnings("unchecked")
-		T storedState = (T) extraState.get(type);
+		T storedState = (T) getState(AgentStateSlots.slotOf(type));
 		return storedState;
 	}
 
 	public <T extends AgentState> T removeState(Class<T> type) {
 		@SuppressWarnings("unchecked")
-		T removed = (T) extraState.remove(type);
+		T removed = (T) removeState(AgentStateSlots.slotOf(type));
+		return removed;
+	}
+
+	/**
+	 * @param slot index from AgentStateSlots
+	 */
+	public void setState(int slot, AgentState value) {
+		if (slot >= extraState.length)
+			extraState = Arrays.copyOf(extraState, Math.max(slot + 1, AgentStateSlots.count()));
+		extraState[slot] = value;
+	}
+
+	/**
+	 * @param slot index from AgentStateSlots
+	 * @return state in slot, null if there is none
+	 */
+	public AgentState getState(int slot) {
+		return slot < extraState.length ? extraState[slot] : null;
+	}
+
+	/**
+	 * @param slot index from AgentStateSlots
+	 * @return state that was in slot, null if there was none
+	 */
+	public AgentState removeState(int slot) {
+		if (slot >= extraState.length)
+			return null;
+		AgentState removed = extraState[slot];
+		extraState[slot] = null;
 		return removed;
 	}
 
+	/**
+	 * @return every plugin state of the agent by state class, in slot order
+	 */
+	public Map<Class<? extends AgentState>, AgentState> getStates() {
+		Map<Class<? extends AgentState>, AgentState> result = new LinkedHashMap<>();
+		for (int slot = 0; slot < extraState.length; slot++) {
+			if (extraState[slot] != null)
+				result.put(AgentStateSlots.typeOf(slot), extraState[slot]);
+		}
+		return result;
+	}
+
+	private void writeObject(ObjectOutputStream out) throws IOException {
+		out.defaultWriteObject();
+		Map<Class<? extends AgentState>, AgentState> states = getStates();
+		out.writeInt(states.size());
+		for (Entry<Class<? extends AgentState>, AgentState> state : states.entrySet()) {
+			out.writeObject(state.getKey());
+			out.writeObject(state.getValue());
+		}
+	}
+
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+		in.defaultReadObject();
+		extraState = new AgentState[AgentStateSlots.count()];
+		int count = in.readInt();
+		for (int i = 0; i < count; i++) {
+			Class<? extends AgentState> type = ((Class<?>) in.readObject()).asSubclass(AgentState.class);
+			setState(AgentStateSlots.slotOf(type), (AgentState) in.readObject());
+		}
+	}
+
+	/**
+	 * Links a deserialized agent back to the simulation and environment it
+	 * belongs to. A pregnant agent's partner may have died since and is no
+	 * longer in the simulation, so it is linked along with the agent.
+	 */
+	public void relink(SimulationInternals sim, ComplexEnvironment env) {
+		this.simulation = sim;
+		this.environment = env;
+		if (breedPartner != null && breedPartner.simulation == null)
+			breedPartner.relink(sim, env);
+	}
+
 	@Override
 	protected ComplexAgent createChildAsexual(LocationDirection location) {
 		ComplexAgent child = new ComplexAgent(simulation, getType());
@@ -127,9 +219,7 @@ public class ComplexAgent extends Agent {
 		if(getType() != otherParent.getType()){
 			float probOfOtherType = params.probGiveBirthToOtherType.getValue();
 			float probGiveBirthToSameType = probOfOtherType + (1 - probOfOtherType)/2;
-			Random rand = new Random();
-
-			float n = rand.nextFloat();
+			float n = getRandom().nextFloat();
 
 			if(n <= probOfOtherType){
 				child = new ComplexAgent(simulation, params.childType.getValue()- 1);
@@ -170,7 +260,7 @@ public class ComplexAgent extends Agent {
 
 		initPosition(pos);
 
-		changeEnergy(params.initEnergy.getValue(), new SexualBirthCause());
+		changeEnergy(params.initEnergy.getValue(), SEXUAL_BIRTH);
 	}
 
 
@@ -189,7 +279,7 @@ public class ComplexAgent extends Agent {
 
 		initPosition(pos);
 
-		changeEnergy(params.initEnergy.getValue(), new AsexualBirthCause());
+		changeEnergy(params.initEnergy.getValue(), ASEXUAL_BIRTH);
 	}
 
 	/**
@@ -205,7 +295,7 @@ public class ComplexAgent extends Agent {
 
 		initPosition(pos);
 
-		changeEnergy(energy, new CreationBirthCause());
+		changeEnergy(energy, CREATION_BIRTH);
 	}
 
 	public void setController(Controller c) {
@@ -297,7 +387,7 @@ public class ComplexAgent extends Agent {
 	public void die() {
 		super.die();
 
-		changeEnergy(Math.min(0, -getEnergy()), new DeathCause());
+		changeEnergy(Math.min(0, -getEnergy()), DEATH);
 
 		getAgentListener().onDeath(this);
 
@@ -317,12 +407,12 @@ public class ComplexAgent extends Agent {
 		// TODO: CHECK if setting flag before determining type is ok
 		// Eat first before we can produce waste, of course.
 		final int foodType = environment.getFoodType(destPos);
-		environment.removeFood(destPos);
+		environment.consumeFood(destPos);
 		// Gain Energy according to the food type.
 		if (foodType == getType()) {
-			changeEnergy(+params.foodEnergy.getValue(), new EatFavoriteFoodCause());
+			changeEnergy(+params.foodEnergy.getValue(), EAT_FAVORITE_FOOD);
 		} else {
-			changeEnergy(+params.otherFoodEnergy.getValue(), new EatFoodCause());
+			changeEnergy(+params.otherFoodEnergy.getValue(), EAT_FOOD);
 		}
 		getAgentListener().onConsumeFood(this, foodType);
 	}
@@ -335,7 +425,7 @@ public class ComplexAgent extends Agent {
 	 */
 	protected void eat(ComplexAgent adjacentAgent) {
 		int gain = (int) (adjacentAgent.getEnergy() * params.agentFoodEnergy.getValue());
-		changeEnergy(+gain, new EatAgentCause());
+		changeEnergy(+gain, EAT_AGENT);
 		getAgentListener().onConsumeAgent(this, adjacentAgent);
 		adjacentAgent.die();
 	}
@@ -514,7 +604,7 @@ public class ComplexAgent extends Agent {
 		} // end of two agents meet
 		else {
 			// Non-free tile (rock/waste/etc) bump
-			changeEnergy(-params.stepRockEnergy.getValue(), new BumpWallCause());
+			changeEnergy(-params.stepRockEnergy.getValue(), BUMP_WALL);
 		}
 		applyAgePenalty();
 
@@ -527,7 +617,7 @@ public class ComplexAgent extends Agent {
 			}
 			else {
 				// can't step, treat as obstacle
-				changeEnergy(-params.stepRockEnergy.getValue(), new BumpWallCause());
+				changeEnergy(-params.stepRockEnergy.getValue(), BUMP_WALL);
 			}
 		}
 
@@ -549,7 +639,7 @@ public class ComplexAgent extends Agent {
 		// Check for food...
 		if (environment.hasFood(destPos)) {
 			if (canBroadcast()) {
-				broadcast(new FoodBroadcast(destPos, this), new BroadcastFoodCause());
+				broadcast(new FoodBroadcast(destPos, this), BROADCAST_FOOD);
 			}
 			if (canEat(destPos)) {
 				eat(destPos);
@@ -571,10 +661,10 @@ public class ComplexAgent extends Agent {
 			ReproductionCause cause = null;
 			if (breedPartner == null) {
 				child = createChildAsexual(breedPos);
-				cause = new AsexualReproductionCause();
+				cause = ASEXUAL_REPRODUCTION;
 			} else {
 				child = createChildSexual(breedPos, breedPartner);
-				cause = new SexualReproductionCause();
+				cause = SEXUAL_REPRODUCTION;
 			}
 			changeEnergy(-params.initEnergy.getValue(), cause);
 			applyAgePenalty();
@@ -582,7 +672,7 @@ public class ComplexAgent extends Agent {
 			pregnant = false;
 
 		}
-		changeEnergy(-params.stepEnergy.getValue(), new StepForwardCause());
+		changeEnergy(-params.stepEnergy.getValue(), STEP_FORWARD);
 
 		// splitting functionality
 		boolean canSplit = enoughEnergy(params.splitEnergyThreshold.getValue()) && params.splitChance.getValue() != 0.0
@@ -616,14 +706,14 @@ public class ComplexAgent extends Agent {
 					if(i == 0) // the original agent
 					{
 						delta = curr_energy - (int) Math.round(curr_energy * ratio);
-						changeEnergy(-delta, new SplitReproductionCause());
+						changeEnergy(-delta, SPLIT_REPRODUCTION);
 					}
 					else // the split child
 					{
 						currLocation = environment.topology.getAdjacent(currLocation);
 						ComplexAgent child = createChildSplit(currLocation);
 						delta = child.getEnergy() - (int) Math.round(curr_energy * ratio);
-						child.changeEnergy(-delta, new SplitBirthCause());
+						child.changeEnergy(-delta, SPLIT_BIRTH);
 					}
 				}
 
@@ -636,7 +726,7 @@ public class ComplexAgent extends Agent {
 
 	protected void onstepAgentBump(ComplexAgent adjacentAgent) {
 		getAgentListener().onContact(this, adjacentAgent);
-		changeEnergy(-params.stepAgentEnergy.getValue(), new BumpAgentCause());
+		changeEnergy(-params.stepAgentEnergy.getValue(), BUMP_AGENT);
 
 		if (canEat(adjacentAgent)) {
 			eat(adjacentAgent);
@@ -708,6 +798,47 @@ public class ComplexAgent extends Agent {
 		clearCommInbox();
 	}
 
+	/**
+	 * How far from its position the agent's next update() can change the map:
+	 * the tiles it can step to, and the tiles next to those, where it can eat,
+	 * bump into agents and leave waste.
+	 *
+	 * @return distance in tiles along either axis, -1 when the update can
+	 * change things anywhere on the map
+	 */
+	public int getUpdateReach() {
+		// Broadcasts go to the whole map, split children line up ahead of the agent
+		if (params.broadcastMode || params.splitChance.getValue() != 0.0 || getSightRange() < 0)
+			return -1;
+
+		int moves = 1;
+		if (params.agentMovementSpeed.getValue() != 1f) {
+			// Same float steps as update()
+			float points = currentActionPoints + params.agentMovementSpeed.getValue();
+			moves = 0;
+			while (points >= 1f) {
+				points -= 1f;
+				moves++;
+			}
+		}
+		return moves + 1;
+	}
+
+	/**
+	 * @return how many tiles ahead the agent's controller looks, -1 if it looks
+	 * anywhere on the map
+	 */
+	public int getSightRange() {
+		return controller.getSightRange();
+	}
+
+	/**
+	 * @return agent this one is pregnant by, null if none
+	 */
+	public ComplexAgent getBreedPartner() {
+		return breedPartner;
+	}
+
 	protected void makeAMove()
 	{
 		if (!getAgentListener().onNextMove(this)) {
@@ -736,7 +867,7 @@ public class ComplexAgent extends Agent {
 	public void turnLeft() {
 		stop_count++;
 		position = environment.topology.getTurnLeftPosition(position);
-		changeEnergy(-params.turnLeftEnergy.getValue(), new TurnLeftCause());
+		changeEnergy(-params.turnLeftEnergy.getValue(), TURN_LEFT);
 		afterTurnAction();
 	}
 
@@ -748,7 +879,7 @@ public class ComplexAgent extends Agent {
 	public void turnRight() {
 		stop_count++;
 		position = environment.topology.getTurnRightPosition(position);
-		changeEnergy(-params.turnRightEnergy.getValue(), new TurnRightCause());
+		changeEnergy(-params.turnRightEnergy.getValue(), TURN_RIGHT);
 		afterTurnAction();
 	}
 
@@ -764,12 +895,34 @@ public class ComplexAgent extends Agent {
 	protected void applyAgePenalty() {
 		int penalty = energyPenalty();
 		if (penalty > 0)
-			changeEnergy(-penalty, new AgingPenaltyCause());
-	}
+			changeEnergy(-penalty, AGING_PENALTY);
+	}
+
+	// Causes carry no state, each one is only created once
+	private static final SexualBirthCause SEXUAL_BIRTH = new SexualBirthCause();
+	private static final AsexualBirthCause ASEXUAL_BIRTH = new AsexualBirthCause();
+	private static final CreationBirthCause CREATION_BIRTH = new CreationBirthCause();
+	private static final DeathCause DEATH = new DeathCause();
+	private static final EatFavoriteFoodCause EAT_FAVORITE_FOOD = new EatFavoriteFoodCause();
+	private static final EatFoodCause EAT_FOOD = new EatFoodCause();
+	private static final EatAgentCause EAT_AGENT = new EatAgentCause();
+	private static final BumpWallCause BUMP_WALL = new BumpWallCause();
+	private static final BroadcastFoodCause BROADCAST_FOOD = new BroadcastFoodCause();
+	private static final AsexualReproductionCause ASEXUAL_REPRODUCTION = new AsexualReproductionCause();
+	private static final SexualReproductionCause SEXUAL_REPRODUCTION = new SexualReproductionCause();
+	private static final StepForwardCause STEP_FORWARD = new StepForwardCause();
+	private static final SplitReproductionCause SPLIT_REPRODUCTION = new SplitReproductionCause();
+	private static final SplitBirthCause SPLIT_BIRTH = new SplitBirthCause();
+	private static final BumpAgentCause BUMP_AGENT = new BumpAgentCause();
+	private static final TurnLeftCause TURN_LEFT = new TurnLeftCause();
+	private static final TurnRightCause TURN_RIGHT = new TurnRightCause();
+	private static final AgingPenaltyCause AGING_PENALTY = new AgingPenaltyCause();
 
 	@Override
 	public void changeEnergy(int delta, Cause cause) {
 		super.changeEnergy(delta, cause);
+		if (environment != null)
+			environment.getAgentIndex().energyChanged(this, delta);
 		getAgentListener().onEnergyChange(this, delta, cause);
 	}
 
@@ -887,4 +1040,6 @@ public class ComplexAgent extends Agent {
 		@Override
 		public String getName() { return "Split Birth"; }
 	}
+
+	private static final long serialVersionUID = 1L;
 }
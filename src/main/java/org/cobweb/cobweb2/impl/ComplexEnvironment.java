@@ -1,15 +1,21 @@
 package org.cobweb.cobweb2.impl;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
 
 import org.cobweb.cobweb2.core.Agent;
-import org.cobweb.cobweb2.core.Drop;
+import org.cobweb.cobweb2.core.DropSchedule;
 import org.cobweb.cobweb2.core.Environment;
 import org.cobweb.cobweb2.core.Location;
 import org.cobweb.cobweb2.core.LocationDirection;
 import org.cobweb.cobweb2.core.SimulationInternals;
+import org.cobweb.cobweb2.core.TickProfiler;
+import org.cobweb.cobweb2.core.TickProfiler.Phase;
 import org.cobweb.cobweb2.plugins.EnvironmentMutator;
+import org.cobweb.cobweb2.plugins.EnvironmentUpdateSchedule;
 import org.cobweb.cobweb2.ui.StoneSampler;
 
 /**
@@ -23,6 +29,23 @@ public class ComplexEnvironment extends Environment {
 
 	private Map<Class<? extends EnvironmentMutator>, EnvironmentMutator> plugins = new LinkedHashMap<>();
 
+	/**
+	 * Order plugins update in, rebuilt when plugins are added
+	 */
+	private transient EnvironmentUpdateSchedule updateSchedule;
+
+	/**
+	 * Threads plugins update on and split their own work over, null to do it
+	 * all on the simulation thread
+	 */
+	private transient ForkJoinPool updatePool;
+
+	/**
+	 * Threads agent partitions update on, null to update them on the
+	 * simulation thread
+	 */
+	private transient ForkJoinPool agentPool;
+
 	public ComplexEnvironment(SimulationInternals simulation) {
 		super(simulation);
 	}
@@ -60,13 +83,27 @@ public class ComplexEnvironment extends Environment {
 
 		super.load(data.width, data.height, data.wrapMap, data.wrapMapX, data.wrapMapY, keepOldArray);
 
+		if (updatePool != null && updatePool.getParallelism() != data.environmentThreads) {
+			updatePool.shutdown();
+			updatePool = null;
+		}
+		if (updatePool == null && data.environmentThreads > 1)
+			updatePool = new ForkJoinPool(data.environmentThreads);
+
+		if (agentPool != null && agentPool.getParallelism() != data.agentThreads) {
+			agentPool.shutdown();
+			agentPool = null;
+		}
+		if (agentPool == null && data.agentThreads > 1)
+			agentPool = new ForkJoinPool(data.agentThreads);
+
 		// Remove old components
 		if (keepOldAgents) {
 			killOffgridAgents();
 			loadOldAgents();
 		} else {
 			// do not call clearAgents(), it invokes mutators, etc
-			agentTable.clear();
+			clearAgentIndex();
 		}
 
 		if (!keepOldDrops) {
@@ -132,7 +169,7 @@ public class ComplexEnvironment extends Environment {
 		// TODO: a way to keep old parameters for old agents?
 		for (int x = 0; x < topology.width; ++x) {
 			for (int y = 0; y < topology.height; ++y) {
-				Location currentPos = new Location(x, y);
+				Location currentPos = topology.location(x, y);
 				ComplexAgent agent = (ComplexAgent) getAgent(currentPos);
 				if (agent != null) {
 					int theType = agent.getType();
@@ -153,15 +190,59 @@ public class ComplexEnvironment extends Environment {
 	public synchronized void update() {
 		super.update();
 
+		TickProfiler profiler = simulation.getProfiler();
+
+		long start = profiler.start();
 		updateDrops();
+		profiler.stop(Phase.ENVIRONMENT, "Drops", start);
+
+		if (updateSchedule == null)
+			updateSchedule = new EnvironmentUpdateSchedule(plugins.values());
+		updateSchedule.update(updatePool, profiler);
+	}
+
+	/**
+	 * @return pool plugins can split their own work over, null when plugins
+	 * update on the simulation thread
+	 */
+	public ForkJoinPool getUpdatePool() {
+		return updatePool;
+	}
 
-		for (EnvironmentMutator v : plugins.values()) {
-			v.update();
+	/**
+	 * @return pool agent partitions update on, null when they update on the
+	 * simulation thread
+	 */
+	public ForkJoinPool getAgentPool() {
+		return agentPool;
+	}
+
+	/**
+	 * Stops the threads plugins and agents update on. Call when the
+	 * environment is no longer used, setParams() starts them again.
+	 */
+	public synchronized void dispose() {
+		if (updatePool != null) {
+			updatePool.shutdown();
+			updatePool = null;
 		}
+		if (agentPool != null) {
+			agentPool.shutdown();
+			agentPool = null;
+		}
+	}
+
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+		in.defaultReadObject();
+		if (data.environmentThreads > 1)
+			updatePool = new ForkJoinPool(data.environmentThreads);
+		if (data.agentThreads > 1)
+			agentPool = new ForkJoinPool(data.agentThreads);
 	}
 
 	public <T extends EnvironmentMutator> void addPlugin(T plugin) {
 		plugins.put(plugin.getClass(), plugin);
+		updateSchedule = null;
 	}
 
 	public <T extends EnvironmentMutator> T getPlugin(Class<T> type) {
@@ -171,17 +252,21 @@ public class ComplexEnvironment extends Environment {
 	}
 
 	/**
-	 *
+	 * Updates the drops whose update tick has come
 	 */
 	private void updateDrops() {
-		for (int x = 0; x < topology.width; x++) {
-			for (int y = 0; y < topology.height; y++) {
-				Location l = new Location(x, y);
-				if (!hasDrop(l))
-					continue;
-				Drop d = getDrop(l);
-				d.update();
-			}
+		for (DropSchedule.Entry e : dropSchedule.takeDue(simulation.getTime())) {
+			Location l = topology.location(e.x, e.y);
+			// Drops taken off the map since they were scheduled
+			if (!hasDrop(l) || getDrop(l) != e.drop)
+				continue;
+
+			e.drop.update();
+
+			if (hasDrop(l) && getDrop(l) == e.drop)
+				dropSchedule.add(e.x, e.y, e.drop);
 		}
 	}
+
+	private static final long serialVersionUID = 1L;
 }
@@ -54,6 +54,44 @@ public class ComplexEnvironmentParams implements ParameterSerializable {
 	@ConfXMLTag("randomStones")
 	public int initialStones = 10;
 
+	/**
+	 * Number of broadcasts agents can start each tick, 0 for no limit
+	 */
+	@ConfDisplayName("Broadcasts per tick")
+	@ConfXMLTag("broadcastsPerTick")
+	public int broadcastsPerTick = 1;
+
+	/**
+	 * Number of threads environment plugins update on, 1 to update them one
+	 * after another on the simulation thread. Plugins that don't touch each
+	 * other's layers update at the same time (see EnvironmentUpdateSchedule)
+	 * and food scans the map in bands (see MapBands). The results are the
+	 * same for any number of threads.
+	 */
+	@ConfDisplayName("Environment update threads")
+	@ConfXMLTag("environmentThreads")
+	public int environmentThreads = 1;
+
+	/**
+	 * Side of the square blocks agents update in, 0 to update agents one after
+	 * another in the order they were born. Blocks that don't touch update at
+	 * the same time, in checkerboard phases; agents whose update can reach
+	 * outside their block update after the phases, one after another. The
+	 * results depend on the block size and random seed, not on the number of
+	 * threads. Blocks are at least 8 tiles wide.
+	 */
+	@ConfDisplayName("Agent partition size")
+	@ConfXMLTag("agentPartitionSize")
+	public int agentPartitionSize = 0;
+
+	/**
+	 * Number of threads agent partitions update on, 1 to update them one after
+	 * another on the simulation thread
+	 */
+	@ConfDisplayName("Agent update threads")
+	@ConfXMLTag("agentThreads")
+	public int agentThreads = 1;
+
 
 	private static final long serialVersionUID = 2L;
 }
\ No newline at end of file
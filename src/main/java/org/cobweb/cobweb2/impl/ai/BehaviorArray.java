@@ -1,5 +1,6 @@
 package org.cobweb.cobweb2.impl.ai;
 
+import java.io.Serializable;
 import java.util.Arrays;
 import java.util.Random;
 
@@ -37,7 +38,7 @@ import org.cobweb.util.RandomNoGenerator;
  *
  */
 
-public class BehaviorArray {
+public class BehaviorArray implements Serializable {
 
 	public final int[] outputSize;
 
@@ -71,6 +72,19 @@ public class BehaviorArray {
 	 */
 	private final int totalBits;
 
+	/**
+	 * Number of whole outputs that fit in a 32 bit word, 0 when outputs don't
+	 * fit and similarity() compares them one at a time
+	 */
+	private final int outputsPerWord;
+
+	/**
+	 * For a word holding outputsPerWord outputs starting at bit 0: the bits of
+	 * each output field, and the lowest bit of each field
+	 */
+	private final int[] fieldMasks;
+	private final int[] fieldStarts;
+
 	/**
 	 * Constructor: Creates a behavior array that can accept an amount of input bits specified by the first parameter,
 	 * and stores groups of output bits who's number and individual sizes are specified by the second parameter.
@@ -108,6 +122,20 @@ public class BehaviorArray {
 		}
 
 		array = new int[totalInts];
+
+		outputsPerWord = outputBits > 0 && outputBits < 32 ? 32 / outputBits : 0;
+		fieldMasks = new int[outputSize.length];
+		fieldStarts = new int[outputSize.length];
+		for (int i = 0; i < outputsPerWord; i++) {
+			int shift = i * outputBits;
+			for (int j = 0; j < outputSize.length; j++) {
+				if (outputSize[j] > 0) {
+					fieldMasks[j] |= ((1 << outputSize[j]) - 1) << shift;
+					fieldStarts[j] |= 1 << shift;
+				}
+				shift += outputSize[j];
+			}
+		}
 	}
 
 	private BehaviorArray(BehaviorArray original) {
@@ -120,6 +148,9 @@ public class BehaviorArray {
 		this.totalBits = original.totalBits;
 		this.totalInts = original.totalInts;
 		this.array = Arrays.copyOf(original.array, original.array.length);
+		this.outputsPerWord = original.outputsPerWord;
+		this.fieldMasks = original.fieldMasks;
+		this.fieldStarts = original.fieldStarts;
 	}
 
 	/**
@@ -242,14 +273,62 @@ public class BehaviorArray {
 		array[base + 1] = (int) (buff >>> 32);
 	}
 
+	/**
+	 * Fraction of output bits that are in fields equal to the same field of
+	 * the other array.
+	 *
+	 * Arrays with the same output fields are compared a word of outputs at a
+	 * time: fields that differ anywhere are found by XOR, folded down onto
+	 * the lowest bit of each field and counted.
+	 */
 	public double similarity(BehaviorArray other) {
-
-		double total = 0;
 		int cmpsize = size;
 		if (size > other.getSize()) {
 			cmpsize = other.getSize();
 		}
 
+		if (outputsPerWord == 0 || other.outputBits != outputBits || !Arrays.equals(outputSize, other.outputSize))
+			return similarityByOutput(other, cmpsize);
+
+		long different = 0;
+		for (int i = 0; i < cmpsize; i += outputsPerWord) {
+			int bitbase = i * outputBits;
+			int diff = getWord(bitbase) ^ other.getWord(bitbase);
+			int count = cmpsize - i;
+			if (count < outputsPerWord)
+				diff &= (1 << (count * outputBits)) - 1;
+			if (diff == 0)
+				continue;
+
+			for (int j = 0; j < outputSize.length; j++) {
+				int field = diff & fieldMasks[j];
+				if (field == 0)
+					continue;
+				int folded = field;
+				for (int s = 1; s < outputSize[j]; s++) {
+					folded |= field >>> s;
+				}
+				different += outputSize[j] * Integer.bitCount(folded & fieldStarts[j]);
+			}
+		}
+
+		double total = (long) cmpsize * outputBits - different;
+		return total / (size * outputBits);
+	}
+
+	/**
+	 * @return 32 bits of the array starting at bitbase, which must be the
+	 * first bit of an output
+	 */
+	private int getWord(int bitbase) {
+		int base = bitbase / 32;
+		int basemod = bitbase % 32;
+		long buff = (array[base] & 0xFFFFFFFFL) | ((long) array[base + 1] << 32);
+		return (int) (buff >>> basemod);
+	}
+
+	private double similarityByOutput(BehaviorArray other, int cmpsize) {
+		double total = 0;
 		for (int i = 0; i < cmpsize; ++i) {
 			BitField outputCode1 = new BitField(get(i));
 			BitField outputCode2 = new BitField(other.get(i));
@@ -284,4 +363,5 @@ public class BehaviorArray {
 		return newBArray;
 	}
 
+	private static final long serialVersionUID = 1L;
 }
@@ -6,6 +6,7 @@ import org.cobweb.cobweb2.core.Agent;
 import org.cobweb.cobweb2.core.Controller;
 import org.cobweb.cobweb2.core.ControllerInput;
 import org.cobweb.cobweb2.core.ControllerListener;
+import org.cobweb.cobweb2.core.RandomStream;
 import org.cobweb.cobweb2.core.SimulationInternals;
 import org.cobweb.cobweb2.core.StateParameter;
 import org.cobweb.cobweb2.core.Topology;
@@ -23,6 +24,8 @@ import org.cobweb.util.BitField;
  */
 public class GeneticController implements Controller {
 
+	private static final RandomStream RANDOM_STREAM = RandomStream.named("GeneticController");
+
 	private final static int TURN_LEFT = 0;
 	private final static int TURN_RIGHT = 1;
 	private final static int MOVE_STRAIGHT = 2;
@@ -58,15 +61,15 @@ public class GeneticController implements Controller {
 		simulation = parent.simulation;
 		params = parent.params;
 		ga = parent.ga
-				.copy(params.mutationRate, simulation.getRandom());
+				.copy(params.mutationRate, simulation.getRandom(RANDOM_STREAM));
 	}
 
 	protected GeneticController(GeneticController parent1, GeneticController parent2) {
 		simulation = parent1.simulation;
 		params = parent1.params;
 		ga = BehaviorArray
-				.splice(parent1.ga, parent2.ga, simulation.getRandom())
-				.copy(params.mutationRate, simulation.getRandom());
+				.splice(parent1.ga, parent2.ga, simulation.getRandom(RANDOM_STREAM))
+				.copy(params.mutationRate, simulation.getRandom(RANDOM_STREAM));
 	}
 
 	/**
@@ -91,7 +94,7 @@ public class GeneticController implements Controller {
 
 		@Override
 		public void mutate(float adjustmentStrength) {
-			ga.mutateOutput(inputCode.intValue(), adjustmentStrength, simulation.getRandom());
+			ga.mutateOutput(inputCode.intValue(), adjustmentStrength, simulation.getRandom(RANDOM_STREAM));
 		}
 	}
 
@@ -206,6 +209,11 @@ public class GeneticController implements Controller {
 		return doubleVal;
 	}
 
+	@Override
+	public int getSightRange() {
+		return VisionState.LOOK_DISTANCE;
+	}
+
 	@Override
 	public GeneticController createChildAsexual() {
 		GeneticController child = new GeneticController(this);
@@ -231,4 +239,5 @@ public class GeneticController implements Controller {
 		return ga.similarity(other.ga);
 	}
 
+	private static final long serialVersionUID = 1L;
 }
\ No newline at end of file
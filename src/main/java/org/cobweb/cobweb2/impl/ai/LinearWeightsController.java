@@ -5,6 +5,8 @@ import org.cobweb.cobweb2.core.Controller;
 import org.cobweb.cobweb2.core.ControllerInput;
 import org.cobweb.cobweb2.core.ControllerListener;
 import org.cobweb.cobweb2.core.Environment;
+import org.cobweb.cobweb2.core.Partition;
+import org.cobweb.cobweb2.core.RandomStream;
 import org.cobweb.cobweb2.core.SimulationInternals;
 import org.cobweb.cobweb2.core.StateParameter;
 import org.cobweb.cobweb2.core.Topology;
@@ -15,6 +17,8 @@ import org.cobweb.util.ArrayUtilities;
 
 public class LinearWeightsController implements Controller {
 
+	private static final RandomStream RANDOM_STREAM = RandomStream.named("LinearWeightsController");
+
 	private final LinearWeightAgentParam params;
 
 	private final LinearWeightsControllerParams stats;
@@ -53,7 +57,7 @@ public class LinearWeightsController implements Controller {
 		this.data = ArrayUtilities.clone(parent1.data);
 		for (int i = 0; i < data.length; i++) {
 			for (int j = 0; j < data[i].length; j++) {
-				if (simulator.getRandom().nextBoolean()) {
+				if (simulator.getRandom(RANDOM_STREAM).nextBoolean()) {
 					data[i][j] = parent2.data[i][j];
 				}
 			}
@@ -76,7 +80,7 @@ public class LinearWeightsController implements Controller {
 				for (int v = 0; v < inputs.length; v++) {
 					// variables with stronger inputs are adjusted more
 					double strength = adjustmentStrength * Math.abs(inputs[v]);
-					double x = data[v][eq] + simulator.getRandom().nextGaussian() * strength;
+					double x = data[v][eq] + simulator.getRandom(RANDOM_STREAM).nextGaussian() * strength;
 					data[v][eq] = limitOutput(x);
 				}
 			}
@@ -114,7 +118,7 @@ public class LinearWeightsController implements Controller {
 		variables[6] = agent.getMemoryBuffer();
 		variables[7] = agent.getCommInbox();
 		variables[8] = Math.max(agent.getAge() / 100.0, 2);
-		variables[9] = simulator.getRandom().nextGaussian();
+		variables[9] = simulator.getRandom(RANDOM_STREAM).nextGaussian();
 
 		variables[10] = agent.getPosition().direction.equals(Topology.NORTH) ? 1 : 0;
 		variables[11] = agent.getPosition().direction.equals(Topology.EAST) ? 1 : 0;
@@ -158,7 +162,7 @@ public class LinearWeightsController implements Controller {
 			else if (eq == 5)
 				asexflag = res;
 
-			stats.updateStats(eq, res);
+			updateStats(eq, res);
 		}
 
 		agent.setMemoryBuffer(memout);
@@ -173,12 +177,31 @@ public class LinearWeightsController implements Controller {
 			agent.step();
 	}
 
+	private void updateStats(final int output, final double value) {
+		Partition partition = Partition.current();
+		if (partition != null) {
+			partition.defer(new Runnable() {
+				@Override
+				public void run() {
+					updateStats(output, value);
+				}
+			});
+			return;
+		}
+		stats.updateStats(output, value);
+	}
+
+	@Override
+	public int getSightRange() {
+		return VisionState.LOOK_DISTANCE;
+	}
+
 	private void mutate(float mutation) {
 		double mutationCounter = data.length * data[0].length * mutation;
 		while (mutationCounter > 1) {
-			int i = simulator.getRandom().nextInt(data.length);
-			int j = simulator.getRandom().nextInt(data[i].length);
-			data[i][j] += simulator.getRandom().nextGaussian() * 0.5;
+			int i = simulator.getRandom(RANDOM_STREAM).nextInt(data.length);
+			int j = simulator.getRandom(RANDOM_STREAM).nextInt(data[i].length);
+			data[i][j] += simulator.getRandom(RANDOM_STREAM).nextGaussian() * 0.5;
 			mutationCounter -= 1;
 		}
 	}
@@ -211,4 +234,5 @@ public class LinearWeightsController implements Controller {
 		return Math.max(0, (100.0 - diff) / 100.0);
 	}
 
+	private static final long serialVersionUID = 1L;
 }
\ No newline at end of file
@@ -47,7 +47,7 @@ public class LinearWeightsControllerParams extends PerAgentParams<LinearWeightAg
 
 	private final double UPDATE_RATE = 0.001;
 
-	private transient double[] runningOutputMean = new double[OUTPUT_COUNT];
+	private double[] runningOutputMean = new double[OUTPUT_COUNT];
 
 	public void updateStats(int output, double value) {
 		runningOutputMean[output] *= (1 - UPDATE_RATE);
@@ -7,6 +7,7 @@ import org.cobweb.cobweb2.core.ControllerInput;
 import org.cobweb.cobweb2.core.ControllerListener;
 import org.cobweb.cobweb2.core.Direction;
 import org.cobweb.cobweb2.core.LocationDirection;
+import org.cobweb.cobweb2.core.RandomStream;
 import org.cobweb.cobweb2.core.SimulationInternals;
 import org.cobweb.cobweb2.core.Topology;
 import org.cobweb.cobweb2.impl.ComplexAgent;
@@ -23,6 +24,8 @@ import org.cobweb.util.BitField;
  */
 public class SwarmController implements Controller {
 
+	private static final RandomStream RANDOM_STREAM = RandomStream.named("SwarmController");
+
 	private final static int TURN_LEFT = 0;
 	private final static int TURN_RIGHT = 1;
 	private final static int MOVE_STRAIGHT = 2;
@@ -106,7 +109,7 @@ public class SwarmController implements Controller {
 		simulation = parent.simulation;
 		params = parent.params;
 		ga = parent.ga
-				.copy(params.mutationRate, simulation.getRandom());
+				.copy(params.mutationRate, simulation.getRandom(RANDOM_STREAM));
 
 		agent_type_count = parent.agent_type_count;
 
@@ -118,8 +121,8 @@ public class SwarmController implements Controller {
 		simulation = parent1.simulation;
 		params = parent1.params;
 		ga = BehaviorArray
-				.splice(parent1.ga, parent2.ga, simulation.getRandom())
-				.copy(params.mutationRate, simulation.getRandom());
+				.splice(parent1.ga, parent2.ga, simulation.getRandom(RANDOM_STREAM))
+				.copy(params.mutationRate, simulation.getRandom(RANDOM_STREAM));
 
 		agent_type_count = parent1.agent_type_count;
 		agent_type_swarm_benefit_arr = parent1.agent_type_swarm_benefit_arr;
@@ -150,7 +153,7 @@ public class SwarmController implements Controller {
 
 		@Override
 		public void mutate(float adjustmentStrength) {
-			ga.mutateOutput(inputCode.intValue(), adjustmentStrength, simulation.getRandom());
+			ga.mutateOutput(inputCode.intValue(), adjustmentStrength, simulation.getRandom(RANDOM_STREAM));
 		}
 	}
 
@@ -189,8 +192,8 @@ public class SwarmController implements Controller {
 
 		if(!overrideMove(theAgent))
 		{
-			if (simulation.getRandom().nextFloat() > params.individuality) // stronger individuals will be influenced by more by their genetics
-				actionCode = simulation.getRandom().nextInt(4);
+			if (simulation.getRandom(RANDOM_STREAM).nextFloat() > params.individuality) // stronger individuals will be influenced by more by their genetics
+				actionCode = simulation.getRandom(RANDOM_STREAM).nextInt(4);
 
 			// the original moves from GeneticController
 			switch (actionCode) {
@@ -211,7 +214,7 @@ public class SwarmController implements Controller {
 	// Adapted from PersonalityMutator
 	public boolean overrideMove(Agent ag) {
 
-		if(simulation.getRandom().nextFloat() <= 0.5 * params.individuality) // stronger individuals are more likely to go lone wolf
+		if(simulation.getRandom(RANDOM_STREAM).nextFloat() <= 0.5 * params.individuality) // stronger individuals are more likely to go lone wolf
 			return false;
 
 		//System.out.println("PersonalityMutator.overrideMove(Agent ag)");
@@ -237,8 +240,8 @@ public class SwarmController implements Controller {
 
 
 		if (!state.agentParams.personalitiesEnabled ||
-				(simulation.getRandom().nextFloat() > state.agentParams.openness &&
-						simulation.getRandom().nextFloat() > state.agentParams.neuroticism)) {
+				(simulation.getRandom(RANDOM_STREAM).nextFloat() > state.agentParams.openness &&
+						simulation.getRandom(RANDOM_STREAM).nextFloat() > state.agentParams.neuroticism)) {
 			System.out.println("PersonalityMutator fail: " + state.agentParams.personalitiesEnabled);
 			return false;
 		}
@@ -268,7 +271,7 @@ public class SwarmController implements Controller {
 
 		//boolean fg_do_something = false;
 
-		if (simulation.getRandom().nextFloat() <= Math.abs(closest_agent_type_benefit))
+		if (simulation.getRandom(RANDOM_STREAM).nextFloat() <= Math.abs(closest_agent_type_benefit))
 			return false;
 
 		boolean fg_do_avoid = false;
@@ -293,14 +296,14 @@ public class SwarmController implements Controller {
 			return false;
 
 		//if (distance < 2) {
-		if (distance <= 1 && simulation.getRandom().nextFloat() <= params.individuality)
+		if (distance <= 1 && simulation.getRandom(RANDOM_STREAM).nextFloat() <= params.individuality)
 		{
 
 			if(fg_do_avoid)
 			{
-				if (simulation.getRandom().nextFloat() <= 0.75)
+				if (simulation.getRandom(RANDOM_STREAM).nextFloat() <= 0.75)
 					agent.step();
-				else if (simulation.getRandom().nextFloat() <= 0.5)
+				else if (simulation.getRandom(RANDOM_STREAM).nextFloat() <= 0.5)
 					agent.turnRight();
 				else
 					agent.turnLeft();
@@ -308,7 +311,7 @@ public class SwarmController implements Controller {
 			else
 				agent.step();
 
-		} // if (distance <= 1 && simulation.getRandom().nextFloat() <= 0.125)
+		} // if (distance <= 1 && simulation.getRandom(RANDOM_STREAM).nextFloat() <= 0.125)
 		else
 		{
 			// If the direction of the agent is not facing the closest agent, make it turn
@@ -319,7 +322,7 @@ public class SwarmController implements Controller {
 			if (agentToClosest.equals(agent.getPosition().direction) || agent.stop_count > 2)
 			{
 				if(fg_do_avoid)
-					if (simulation.getRandom().nextFloat() > 0.5)
+					if (simulation.getRandom(RANDOM_STREAM).nextFloat() > 0.5)
 						agent.turnRight();
 					else
 						agent.turnLeft();
@@ -438,6 +441,12 @@ public class SwarmController implements Controller {
 		return doubleVal;
 	}
 
+	@Override
+	public int getSightRange() {
+		// Follows the closest agent, wherever it is
+		return -1;
+	}
+
 	@Override
 	public SwarmController createChildAsexual() {
 		SwarmController child = new SwarmController(this);
@@ -463,4 +472,5 @@ public class SwarmController implements Controller {
 		return ga.similarity(other.ga);
 	}
 
+	private static final long serialVersionUID = 1L;
 }
\ No newline at end of file
@@ -0,0 +1,301 @@
+package org.cobweb.cobweb2.io;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import org.cobweb.cobweb2.Simulation;
+import org.cobweb.cobweb2.core.Cause;
+import org.cobweb.cobweb2.core.Phenotype;
+import org.cobweb.cobweb2.core.RandomStream;
+import org.cobweb.cobweb2.plugins.AgentState;
+import org.cobweb.cobweb2.plugins.AgentStateSlots;
+import org.cobweb.cobweb2.plugins.genetics.PhenotypeIndex;
+import org.cobweb.cobweb2.plugins.stats.CauseRegistry;
+import org.cobweb.cobweb2.plugins.stats.CauseTree;
+import org.cobweb.cobweb2.plugins.stats.CauseTree.CauseTreeNode;
+import org.cobweb.cobweb2.ui.UserInputException;
+import org.cobweb.util.MultiplierSlot;
+import org.cobweb.util.Versionator;
+
+/**
+ * Saves and restores the whole state of a running Simulation: configuration,
+ * map, drops, agents with their controllers and plugin states, plugins,
+ * random streams and time. A restored simulation steps exactly like the
+ * original would have.
+ *
+ * <p>The state itself is written with plain Java serialization of the
+ * Simulation object graph, behind a short header. There is no hand-written
+ * layout of the grid, agents or plugins: each class's serializable fields are
+ * the format.
+ *
+ * <p>File layout, all big endian:
+ * <pre>
+ * int     MAGIC
+ * int     FORMAT_VERSION
+ * UTF     cobweb version that wrote the file, for information
+ * long    simulation time
+ * int n,  n x UTF                 random stream names, by index
+ * int n,  n x (UTF class, int i)  multiplier slots, by index
+ * int n,  n x UTF                 agent state classes, by slot
+ * deflated Java serialization stream of the Simulation
+ * </pre>
+ *
+ * <p>The registries come first so a fresh JVM can hand out the same indexes
+ * before any class asks for one: slot order decides the order multipliers
+ * are applied in, so it has to match for float results to match. Objects
+ * interned by those registries, and other process-wide singletons, are
+ * written as their names and looked up again when read.
+ *
+ * <p>Files with a different FORMAT_VERSION are refused. FORMAT_VERSION only
+ * covers the header: it does not notice renamed, added or removed fields.
+ * Every serializable class declares its serialVersionUID, so adding a field
+ * keeps old files readable: the field is left 0 or null, not at its
+ * initializer, and readObject has to fill it in if that matters. Changes that
+ * serialization can't bridge, such as renamed classes or fields whose meaning
+ * changed, need a bump of FORMAT_VERSION. CheckpointSerializerTest loads a
+ * checkpoint saved by an earlier build to catch those.
+ */
+public class CheckpointSerializer {
+
+	public static final int MAGIC = 0x43574350; // "CWCP"
+
+	public static final int FORMAT_VERSION = 1;
+
+	/**
+	 * Writes a checkpoint of simulation. The simulation must not be stepping.
+	 */
+	public void save(Simulation simulation, OutputStream stream) throws IOException {
+		DataOutputStream header = new DataOutputStream(stream);
+		header.writeInt(MAGIC);
+		header.writeInt(FORMAT_VERSION);
+		String version = Versionator.getVersion();
+		header.writeUTF(version == null ? "" : version);
+		header.writeLong(simulation.getTime());
+
+		int streams = RandomStream.count();
+		header.writeInt(streams);
+		for (int i = 0; i < streams; i++) {
+			header.writeUTF(RandomStream.get(i).name);
+		}
+
+		int slots = MultiplierSlot.count();
+		header.writeInt(slots);
+		for (int i = 0; i < slots; i++) {
+			MultiplierSlot slot = MultiplierSlot.get(i);
+			header.writeUTF(slot.owner.getName());
+			header.writeInt(slot.ownerIndex);
+		}
+
+		int states = AgentStateSlots.count();
+		header.writeInt(states);
+		for (int i = 0; i < states; i++) {
+			header.writeUTF(AgentStateSlots.typeOf(i).getName());
+		}
+		header.flush();
+
+		Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+		DeflaterOutputStream body = new DeflaterOutputStream(new NonClosing(stream), deflater, 1 << 16);
+		try (ObjectOutputStream out = new CheckpointOutputStream(body)) {
+			out.writeObject(simulation);
+		} finally {
+			deflater.end();
+		}
+	}
+
+	/**
+	 * Reads a checkpoint written by save().
+	 * @throws UserInputException the stream isn't a checkpoint this version
+	 * can read
+	 */
+	public Simulation load(InputStream stream) throws IOException {
+		DataInputStream header = new DataInputStream(stream);
+		if (header.readInt() != MAGIC)
+			throw new UserInputException("File is not a simulation checkpoint");
+		int format = header.readInt();
+		if (format != FORMAT_VERSION)
+			throw new UserInputException("Checkpoint format " + format + " is not supported, expected " + FORMAT_VERSION);
+		header.readUTF();
+		header.readLong();
+
+		try {
+			int streams = header.readInt();
+			for (int i = 0; i < streams; i++) {
+				RandomStream.named(header.readUTF());
+			}
+
+			int slots = header.readInt();
+			for (int i = 0; i < slots; i++) {
+				Class<?> owner = Class.forName(header.readUTF());
+				int ownerIndex = header.readInt();
+				MultiplierSlot.reserve(owner, ownerIndex + 1);
+			}
+
+			int states = header.readInt();
+			for (int i = 0; i < states; i++) {
+				AgentStateSlots.slotOf(Class.forName(header.readUTF()).asSubclass(AgentState.class));
+			}
+
+			ObjectInputStream in = new CheckpointInputStream(new InflaterInputStream(stream));
+			return (Simulation) in.readObject();
+
+		} catch (ClassNotFoundException ex) {
+			throw new UserInputException("Checkpoint was written by an incompatible version", ex);
+		}
+	}
+
+	/**
+	 * Reads the simulation time of a checkpoint without loading it.
+	 */
+	public long readTime(InputStream stream) throws IOException {
+		DataInputStream header = new DataInputStream(stream);
+		if (header.readInt() != MAGIC)
+			throw new UserInputException("File is not a simulation checkpoint");
+		header.readInt();
+		header.readUTF();
+		return header.readLong();
+	}
+
+	/**
+	 * Name of an object that is shared by the whole process, written in its
+	 * place and looked up again when read.
+	 */
+	private static final class SharedRef implements Serializable {
+		final char kind;
+		final String name;
+		final int index;
+
+		SharedRef(char kind, String name, int index) {
+			this.kind = kind;
+			this.name = name;
+			this.index = index;
+		}
+
+		private static final long serialVersionUID = 1L;
+	}
+
+	private static final char STREAM = 'R';
+	private static final char SLOT = 'M';
+	private static final char CAUSE = 'C';
+	private static final char CAUSE_REGISTRY = 'G';
+	private static final char CAUSE_TREE = 'T';
+	private static final char CAUSE_NODE = 'N';
+	private static final char PHENOTYPE = 'P';
+
+	private static class CheckpointOutputStream extends ObjectOutputStream {
+
+		CheckpointOutputStream(OutputStream out) throws IOException {
+			super(out);
+			enableReplaceObject(true);
+		}
+
+		@Override
+		protected Object replaceObject(Object obj) {
+			if (obj instanceof RandomStream)
+				return new SharedRef(STREAM, ((RandomStream) obj).name, 0);
+			if (obj instanceof MultiplierSlot) {
+				MultiplierSlot slot = (MultiplierSlot) obj;
+				return new SharedRef(SLOT, slot.owner.getName(), slot.ownerIndex);
+			}
+			if (obj instanceof Cause)
+				return new SharedRef(CAUSE, obj.getClass().getName(), 0);
+			if (obj instanceof CauseRegistry)
+				return new SharedRef(CAUSE_REGISTRY, null, 0);
+			if (obj instanceof CauseTree)
+				return new SharedRef(CAUSE_TREE, null, 0);
+			if (obj instanceof CauseTreeNode)
+				return new SharedRef(CAUSE_NODE, ((CauseTreeNode) obj).type.getName(), 0);
+			if (obj instanceof Phenotype)
+				return new SharedRef(PHENOTYPE, ((Phenotype) obj).getIdentifier(), 0);
+			return obj;
+		}
+	}
+
+	private static class CheckpointInputStream extends ObjectInputStream {
+
+		private List<Phenotype> phenotypes;
+
+		CheckpointInputStream(InputStream in) throws IOException {
+			super(in);
+			enableResolveObject(true);
+		}
+
+		@Override
+		protected Object resolveObject(Object obj) throws IOException {
+			if (!(obj instanceof SharedRef))
+				return obj;
+
+			SharedRef ref = (SharedRef) obj;
+			try {
+				switch (ref.kind) {
+					case STREAM:
+						return RandomStream.named(ref.name);
+					case SLOT:
+						return MultiplierSlot.reserve(Class.forName(ref.name), ref.index + 1)[ref.index];
+					case CAUSE: {
+						CauseRegistry registry = CauseRegistry.get();
+						Class<?> type = Class.forName(ref.name);
+						int id = registry.id(type);
+						return id >= 0 ? registry.instance(id) : type.newInstance();
+					}
+					case CAUSE_REGISTRY:
+						return CauseRegistry.get();
+					case CAUSE_TREE:
+						return CauseRegistry.get().tree;
+					case CAUSE_NODE: {
+						CauseRegistry registry = CauseRegistry.get();
+						int id = registry.id(Class.forName(ref.name));
+						if (id < 0)
+							throw new IOException("Unknown cause: " + ref.name);
+						return registry.node(id);
+					}
+					case PHENOTYPE:
+						return phenotype(ref.name);
+					default:
+						throw new IOException("Unknown shared object kind: " + ref.kind);
+				}
+			} catch (ClassNotFoundException | InstantiationException | IllegalAccessException ex) {
+				throw new IOException("Can't find shared object " + ref.name, ex);
+			}
+		}
+
+		private Phenotype phenotype(String identifier) throws IOException {
+			if (phenotypes == null)
+				phenotypes = new ArrayList<>(PhenotypeIndex.getPossibleValues());
+			for (Phenotype p : phenotypes) {
+				if (identifier == null ? p.getIdentifier() == null : identifier.equals(p.getIdentifier()))
+					return p;
+			}
+			throw new IOException("Unknown phenotype: " + identifier);
+		}
+	}
+
+	/**
+	 * Lets the body be finished without closing the stream the caller owns.
+	 */
+	private static class NonClosing extends java.io.FilterOutputStream {
+		NonClosing(OutputStream out) {
+			super(out);
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			out.write(b, off, len);
+		}
+
+		@Override
+		public void close() throws IOException {
+			flush();
+		}
+	}
+}
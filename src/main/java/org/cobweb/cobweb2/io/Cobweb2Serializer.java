@@ -97,6 +97,16 @@ public class Cobweb2Serializer {
 	 */
 	private SimulationConfig loadFile(InputStream file) throws IllegalArgumentException {
 		Node root = CobwebXmlHelper.openDocument(file);
+		return loadConfig(root);
+	}
+
+	/**
+	 * Loads the simulation parameters from a tree that is already in memory,
+	 * such as one made by saveConfigTree(), without parsing any XML.
+	 *
+	 * @param root root node of the configuration tree.
+	 */
+	public SimulationConfig loadConfig(Node root) {
 		SimulationConfig conf = new SimulationConfig();
 
 		// Load all the @ConfXMLTag params
@@ -113,6 +123,18 @@ public class Cobweb2Serializer {
 	 *
 	 */
 	public void saveConfig(SimulationConfig conf, OutputStream stream) {
+		Element root = saveConfigTree(conf);
+		CobwebXmlHelper.writeDocument(stream, root.getOwnerDocument());
+	}
+
+	/**
+	 * Saves the configuration to a tree in memory, the same tree saveConfig()
+	 * writes out.
+	 *
+	 * @return root element of the tree.
+	 * @see #loadConfig(Node)
+	 */
+	public Element saveConfigTree(SimulationConfig conf) {
 		Element root = CobwebXmlHelper.createDocument("COBWEB2Config", "config");
 		Document d = root.getOwnerDocument();
 
@@ -120,7 +142,7 @@ public class Cobweb2Serializer {
 
 		serializer.save(conf, root, d);
 
-		CobwebXmlHelper.writeDocument(stream, d);
+		return root;
 	}
 
 	private Node saveAgent(Agent simpleAgent, Document d) {
@@ -159,7 +181,7 @@ public class Cobweb2Serializer {
 		}
 
 		Element plugins = d.createElement("Plugins");
-		for (Entry<Class<? extends AgentState>, AgentState> e : a.extraState.entrySet()) {
+		for (Entry<Class<? extends AgentState>, AgentState> e : a.getStates().entrySet()) {
 			AgentState pluginState = e.getValue();
 			if (pluginState.isTransient())
 				continue;
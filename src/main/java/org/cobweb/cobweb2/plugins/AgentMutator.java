@@ -1,10 +1,12 @@
 package org.cobweb.cobweb2.plugins;
 
+import java.io.Serializable;
+
 
 /**
  * Modifies agents' parameters during the simulation.
  */
-public interface AgentMutator {
+public interface AgentMutator extends Serializable {
 
 	/**
 	 * Checks whether this mutator can use given AgentState in the current simulation configuration
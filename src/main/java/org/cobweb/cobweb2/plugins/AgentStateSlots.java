@@ -0,0 +1,56 @@
+package org.cobweb.cobweb2.plugins;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Fixed index of each AgentState class in the state array of agents.
+ *
+ * StatefulMutators get their index when they are created during
+ * Simulation.load(), so every hook call finds its state with an array access
+ * instead of a map lookup. Indexes are handed out once per class and kept
+ * for the rest of the run.
+ */
+public final class AgentStateSlots {
+
+	private static final List<Class<? extends AgentState>> types = new ArrayList<>();
+
+	private static final ClassValue<Integer> slots = new ClassValue<Integer>() {
+		@Override
+		protected Integer computeValue(Class<?> type) {
+			synchronized (types) {
+				types.add(type.asSubclass(AgentState.class));
+				return types.size() - 1;
+			}
+		}
+	};
+
+	private AgentStateSlots() {
+		// static only
+	}
+
+	/**
+	 * @return index of type in agent state arrays, reserving one if needed
+	 */
+	public static int slotOf(Class<? extends AgentState> type) {
+		return slots.get(type);
+	}
+
+	/**
+	 * @return number of slots reserved so far
+	 */
+	public static int count() {
+		synchronized (types) {
+			return types.size();
+		}
+	}
+
+	/**
+	 * @return class whose state goes in slot
+	 */
+	public static Class<? extends AgentState> typeOf(int slot) {
+		synchronized (types) {
+			return types.get(slot);
+		}
+	}
+}
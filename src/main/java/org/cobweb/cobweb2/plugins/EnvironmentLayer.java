@@ -0,0 +1,35 @@
+package org.cobweb.cobweb2.plugins;
+
+/**
+ * Shared state an EnvironmentMutator can read or write during its update().
+ * State a plugin keeps to itself, including its own random stream, is not a
+ * layer.
+ */
+public enum EnvironmentLayer {
+	/** Food on the map and the food frontier */
+	FOOD(true),
+	/** Drops on the map and their schedule */
+	DROPS(true),
+	/** Stones on the map */
+	STONES(true),
+	/** Agent positions and the agent index */
+	AGENTS(true),
+	/** Agent parameters and the multipliers on them */
+	AGENT_PARAMS(false),
+	/** Abiotic factor values */
+	ABIOTIC(false),
+	/** Broadcast packets */
+	PACKETS(false),
+	/** The simulation's shared random stream, from getRandom() */
+	SIMULATION_RANDOM(false);
+
+	/**
+	 * Whether the layer is changed through the Environment's synchronized
+	 * methods, so writers have to run on the thread updating the environment
+	 */
+	public final boolean locked;
+
+	private EnvironmentLayer(boolean locked) {
+		this.locked = locked;
+	}
+}
@@ -1,10 +1,24 @@
 package org.cobweb.cobweb2.plugins;
 
+import java.io.Serializable;
+import java.util.Set;
+
 import org.cobweb.cobweb2.core.Updatable;
 
 
-public interface EnvironmentMutator extends Updatable {
+public interface EnvironmentMutator extends Updatable, Serializable {
 
 	void loadNew();
 
+	/**
+	 * @return layers update() reads. Plugins that don't write a layer the
+	 * other reads or writes can update at the same time.
+	 */
+	Set<EnvironmentLayer> getReadLayers();
+
+	/**
+	 * @return layers update() changes
+	 */
+	Set<EnvironmentLayer> getWriteLayers();
+
 }
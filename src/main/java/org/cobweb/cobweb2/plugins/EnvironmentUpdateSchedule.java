@@ -0,0 +1,136 @@
+package org.cobweb.cobweb2.plugins;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import org.cobweb.cobweb2.core.TickProfiler;
+import org.cobweb.cobweb2.core.TickProfiler.Phase;
+
+/**
+ * Order environment plugins update in, from the layers they read and write.
+ *
+ * Plugins are put in waves: each plugin goes in the wave after the last one
+ * holding an earlier plugin it conflicts with, so conflicting plugins still
+ * update in the order they were added and plugins in the same wave don't
+ * touch each other's layers. The plugins of a wave can then update at the
+ * same time with the same result as updating them one by one.
+ *
+ * Plugins that write a locked layer go through the Environment's
+ * synchronized methods, which the thread updating the environment holds, so
+ * they update on that thread.
+ */
+public class EnvironmentUpdateSchedule {
+
+	private final List<EnvironmentMutator> plugins;
+
+	private final List<List<EnvironmentMutator>> waves = new ArrayList<>();
+
+	public EnvironmentUpdateSchedule(Collection<EnvironmentMutator> plugins) {
+		this.plugins = new ArrayList<>(plugins);
+
+		int[] waveOf = new int[this.plugins.size()];
+		for (int i = 0; i < waveOf.length; i++) {
+			EnvironmentMutator p = this.plugins.get(i);
+			int wave = 0;
+			for (int j = 0; j < i; j++) {
+				if (conflicts(this.plugins.get(j), p))
+					wave = Math.max(wave, waveOf[j] + 1);
+			}
+			waveOf[i] = wave;
+			while (waves.size() <= wave)
+				waves.add(new ArrayList<EnvironmentMutator>());
+			waves.get(wave).add(p);
+		}
+	}
+
+	/**
+	 * @return whether a and b have to update one after the other: one of them
+	 * writes a layer the other reads or writes
+	 */
+	public static boolean conflicts(EnvironmentMutator a, EnvironmentMutator b) {
+		return !Collections.disjoint(a.getWriteLayers(), b.getWriteLayers())
+				|| !Collections.disjoint(a.getWriteLayers(), b.getReadLayers())
+				|| !Collections.disjoint(b.getWriteLayers(), a.getReadLayers());
+	}
+
+	private static boolean writesLocked(EnvironmentMutator plugin) {
+		for (EnvironmentLayer layer : plugin.getWriteLayers()) {
+			if (layer.locked)
+				return true;
+		}
+		return false;
+	}
+
+	public List<List<EnvironmentMutator>> getWaves() {
+		return waves;
+	}
+
+	/**
+	 * Updates every plugin, one after another in the order they were added
+	 * when pool is null, otherwise wave by wave on the pool.
+	 */
+	public void update(ForkJoinPool pool, TickProfiler profiler) {
+		if (pool == null) {
+			for (EnvironmentMutator p : plugins) {
+				long start = profiler.start();
+				p.update();
+				profiler.stop(Phase.ENVIRONMENT, p, start);
+			}
+			return;
+		}
+
+		for (List<EnvironmentMutator> wave : waves) {
+			List<PluginUpdate> forked = new ArrayList<>();
+			for (EnvironmentMutator p : wave) {
+				if (wave.size() > 1 && !writesLocked(p)) {
+					PluginUpdate task = new PluginUpdate(p, profiler.isEnabled());
+					pool.execute(task);
+					forked.add(task);
+				}
+			}
+			for (EnvironmentMutator p : wave) {
+				if (wave.size() == 1 || writesLocked(p)) {
+					long start = profiler.start();
+					p.update();
+					profiler.stop(Phase.ENVIRONMENT, p, start);
+				}
+			}
+			for (PluginUpdate task : forked) {
+				task.join();
+				if (task.timed)
+					profiler.add(Phase.ENVIRONMENT, task.plugin, task.nanos);
+			}
+		}
+	}
+
+	private static class PluginUpdate extends RecursiveAction {
+
+		final EnvironmentMutator plugin;
+
+		final boolean timed;
+
+		/**
+		 * Time the update took, only measured when timed
+		 */
+		long nanos;
+
+		PluginUpdate(EnvironmentMutator plugin, boolean timed) {
+			this.plugin = plugin;
+			this.timed = timed;
+		}
+
+		@Override
+		protected void compute() {
+			long start = timed ? System.nanoTime() : 0;
+			plugin.update();
+			if (timed)
+				nanos = System.nanoTime() - start;
+		}
+
+		private static final long serialVersionUID = 1L;
+	}
+}
@@ -0,0 +1,19 @@
+package org.cobweb.cobweb2.plugins;
+
+import org.cobweb.cobweb2.core.Agent;
+
+/**
+ * Mutator that can tell whether it keeps an agent's update local, so the
+ * agent can update inside a Partition, at the same time as agents elsewhere
+ * on the map. Agents only update inside partitions when every mutator is a
+ * LocalMutator and agrees.
+ */
+public interface LocalMutator extends AgentMutator {
+
+	/**
+	 * @return whether, during the agent's next update, this mutator only
+	 * changes the agent, the tiles it can reach and the agents on them, and
+	 * defers changes to anything shared by the whole map with Partition.defer()
+	 */
+	public boolean isLocal(Agent agent);
+}
@@ -1,10 +1,10 @@
 package org.cobweb.cobweb2.plugins;
 
+import java.io.Serializable;
 import java.util.HashSet;
 import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.Random;
 import java.util.Set;
 
 import org.cobweb.cobweb2.core.Agent;
@@ -12,9 +12,15 @@ import org.cobweb.cobweb2.core.AgentListener;
 import org.cobweb.cobweb2.core.Cause;
 import org.cobweb.cobweb2.core.ControllerInput;
 import org.cobweb.cobweb2.core.LocationDirection;
+import org.cobweb.cobweb2.core.RandomStream;
+import org.cobweb.cobweb2.core.SimulationTimeSpace;
+import org.cobweb.cobweb2.core.TickProfiler;
+import org.cobweb.cobweb2.core.TickProfiler.Phase;
 
 
-public class MutatorListener implements AgentListener {
+public class MutatorListener implements AgentListener, Serializable {
+
+	private static final RandomStream RANDOM_STREAM = RandomStream.named("MutatorListener");
 
 	private Set<SpawnMutator> spawnMutators = new LinkedHashSet<>();
 	private Set<ContactMutator> contactMutators = new LinkedHashSet<>();
@@ -28,6 +34,15 @@ public class MutatorListener implements AgentListener {
 	private Set<LocationMutator> locationMutators = new LinkedHashSet<>();
 	private Set<AgentMutator> allMutators = new HashSet<>();
 
+	private final TickProfiler profiler;
+
+	private final SimulationTimeSpace simulation;
+
+	public MutatorListener(TickProfiler profiler, SimulationTimeSpace simulation) {
+		this.profiler = profiler;
+		this.simulation = simulation;
+	}
+
 	public void addMutator(AgentMutator mutator) {
 		if (mutator instanceof SpawnMutator)
 			spawnMutators.add((SpawnMutator) mutator);
@@ -94,6 +109,18 @@ public class MutatorListener implements AgentListener {
 		allMutators.clear();
 	}
 
+	/**
+	 * @return whether every mutator keeps the agent's next update local
+	 * @see LocalMutator
+	 */
+	public boolean isLocal(Agent agent) {
+		for (AgentMutator mutator : allMutators) {
+			if (!(mutator instanceof LocalMutator) || !((LocalMutator) mutator).isLocal(agent))
+				return false;
+		}
+		return true;
+	}
+
 	public <T extends AgentState> boolean supportsState(Class<T> type, T value) {
 		for (AgentMutator mutator : allMutators) {
 			if (mutator.acceptsState(type, value))
@@ -118,17 +145,25 @@ public class MutatorListener implements AgentListener {
 
 	@Override
 	public void onContact(Agent bumper, Agent bumpee) {
+		long dispatchStart = profiler.start();
 		for (ContactMutator mut : contactMutators) {
+			long start = profiler.start();
 			mut.onContact(bumper, bumpee);
+			profiler.stop(Phase.ON_CONTACT, mut, start);
 		}
+		profiler.stop(Phase.ON_CONTACT, dispatchStart);
 	}
 
 	@Override
 	public void onStep(Agent agent, LocationDirection from, LocationDirection to) {
+		long dispatchStart = profiler.start();
 		for (StepMutator m : stepMutators) {
 			//System.out.println("StepMutator: " + m.getClass());
+			long start = profiler.start();
 			m.onStep(agent, from, to);
+			profiler.stop(Phase.ON_STEP, m, start);
 		}
+		profiler.stop(Phase.ON_STEP, dispatchStart);
 	}
 
 	@Override
@@ -175,16 +210,24 @@ public class MutatorListener implements AgentListener {
 
 	@Override
 	public void onEnergyChange(Agent agent, int delta, Cause cause) {
+		long dispatchStart = profiler.start();
 		for(EnergyMutator mutator : energyMutators) {
+			long start = profiler.start();
 			mutator.onEnergyChange(agent, delta, cause);
+			profiler.stop(Phase.ON_ENERGY_CHANGE, mutator, start);
 		}
+		profiler.stop(Phase.ON_ENERGY_CHANGE, dispatchStart);
 	}
 
 	@Override
 	public void onUpdate(Agent agent) {
+		long dispatchStart = profiler.start();
 		for(UpdateMutator mutator : updateMutators) {
+			long start = profiler.start();
 			mutator.onUpdate(agent);
+			profiler.stop(Phase.ON_UPDATE, mutator, start);
 		}
+		profiler.stop(Phase.ON_UPDATE, dispatchStart);
 	}
 
 	@Override
@@ -206,7 +249,7 @@ public class MutatorListener implements AgentListener {
 		if (possibles.isEmpty()) {
 			return originalTo;
 		} else {
-			return possibles.get(new Random().nextInt(possibles.size()));
+			return possibles.get(simulation.getRandom(RANDOM_STREAM).nextInt(possibles.size()));
 		}
 	}
 
@@ -242,4 +285,5 @@ public class MutatorListener implements AgentListener {
 		return res;
 	}
 
+	private static final long serialVersionUID = 1L;
 }
@@ -11,13 +11,20 @@ public abstract class StatefulMutatorBase<T extends AgentState> implements State
 
 	private final Class<T> stateClass;
 
+	/**
+	 * Index of the state in the agent's state array
+	 */
+	private final int stateSlot;
+
 	protected StatefulMutatorBase(Class<T> stateClass) {
 		this.stateClass = stateClass;
+		this.stateSlot = AgentStateSlots.slotOf(stateClass);
 	}
 
 	@Override
 	public T getAgentState(Agent agent) {
-		T result = ((ComplexAgent)agent).getState(getStateClass());
+		@SuppressWarnings("unchecked")
+		T result = (T) ((ComplexAgent)agent).getState(stateSlot);
 		return result;
 	}
 
@@ -27,11 +34,13 @@ public abstract class StatefulMutatorBase<T extends AgentState> implements State
 	}
 
 	protected T removeAgentState(Agent agent) {
-		return ((ComplexAgent)agent).removeState(getStateClass());
+		@SuppressWarnings("unchecked")
+		T removed = (T) ((ComplexAgent)agent).removeState(stateSlot);
+		return removed;
 	}
 
 	protected void setAgentState(Agent agent, T state) {
-		((ComplexAgent)agent).setState(getStateClass(), state);
+		((ComplexAgent)agent).setState(stateSlot, state);
 	}
 
 	@Override
@@ -52,4 +61,6 @@ public abstract class StatefulMutatorBase<T extends AgentState> implements State
 		}
 		return false;
 	}
+
+	private static final long serialVersionUID = 1L;
 }
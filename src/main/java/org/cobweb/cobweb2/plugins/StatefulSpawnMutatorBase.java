@@ -1,24 +1,37 @@
 package org.cobweb.cobweb2.plugins;
 
 import org.cobweb.cobweb2.core.Agent;
-import org.cobweb.cobweb2.core.RandomSource;
+import org.cobweb.cobweb2.core.RandomStream;
+import org.cobweb.cobweb2.core.SimulationTimeSpace;
+import org.cobweb.util.RandomNoGenerator;
 
 /**
  * Helper class for creating StatefulMutator that are also SpawnMutator.
  * Copies state from parent agent during asexual reproduction.
  * Picks random parent to copy state from during sexual reproduction.
+ * Each subclass draws from its own random stream, named after the class.
  */
 public abstract class StatefulSpawnMutatorBase<T extends AgentState> extends StatefulMutatorBase<T> implements SpawnMutator {
 
-	private RandomSource rand;
+	private SimulationTimeSpace rand;
+
+	private final RandomStream randomStream;
 
 	/**
 	 * @param stateClass class of state object
 	 * @param rand randomness source picking which parent to copy state from
 	 */
-	protected StatefulSpawnMutatorBase(Class<T> stateClass, RandomSource rand) {
+	protected StatefulSpawnMutatorBase(Class<T> stateClass, SimulationTimeSpace rand) {
 		super(stateClass);
 		this.rand = rand;
+		this.randomStream = RandomStream.named(getClass().getSimpleName());
+	}
+
+	/**
+	 * @return random stream of this mutator
+	 */
+	public RandomNoGenerator getRandom() {
+		return rand.getRandom(randomStream);
 	}
 
 	/**
@@ -56,7 +69,7 @@ public abstract class StatefulSpawnMutatorBase<T extends AgentState> extends Sta
 	@Override
 	public void onSpawn(Agent agent, Agent parent1, Agent parent2) {
 		// TODO: different probability than 50/50?
-		Agent parent = hasAgentState(parent2) && rand.getRandom().nextBoolean() ? parent2 : parent1;
+		Agent parent = hasAgentState(parent2) && getRandom().nextBoolean() ? parent2 : parent1;
 		T parentState = getAgentState(parent);
 
 		T state = stateFromParent(agent, parentState);
@@ -68,4 +81,6 @@ public abstract class StatefulSpawnMutatorBase<T extends AgentState> extends Sta
 	public void onDeath(Agent agent) {
 		// nothing
 	}
+
+	private static final long serialVersionUID = 1L;
 }
@@ -1,22 +1,28 @@
 package org.cobweb.cobweb2.plugins.abiotic;
 
 import java.util.ArrayList;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Set;
 
 import org.cobweb.cobweb2.Simulation;
 import org.cobweb.cobweb2.core.Agent;
 import org.cobweb.cobweb2.core.Cause;
 import org.cobweb.cobweb2.core.Location;
 import org.cobweb.cobweb2.core.LocationDirection;
+import org.cobweb.cobweb2.core.RandomStream;
 import org.cobweb.cobweb2.core.SimulationTimeSpace;
 import org.cobweb.cobweb2.core.StateParameter;
 import org.cobweb.cobweb2.core.StatePlugin;
 import org.cobweb.cobweb2.impl.ComplexEnvironment;
+import org.cobweb.cobweb2.plugins.EnvironmentLayer;
 import org.cobweb.cobweb2.plugins.EnvironmentMutator;
+import org.cobweb.cobweb2.plugins.LocalMutator;
 import org.cobweb.cobweb2.plugins.LocationMutator;
 import org.cobweb.cobweb2.plugins.SpawnMutator;
 import org.cobweb.cobweb2.plugins.StatefulMutatorBase;
 import org.cobweb.cobweb2.plugins.StepMutator;
+import org.cobweb.util.MultiplierSlot;
 
 /**
  * AbioticMutator is an instance of Step and Spawn Mutator
@@ -24,7 +30,11 @@ import org.cobweb.cobweb2.plugins.StepMutator;
  * @author ???
  */
 public class AbioticMutator extends StatefulMutatorBase<AbioticState> implements StepMutator, StatePlugin,
-EnvironmentMutator, SpawnMutator, LocationMutator {
+EnvironmentMutator, SpawnMutator, LocationMutator, LocalMutator {
+
+	private static final RandomStream RANDOM_STREAM = RandomStream.named("AbioticMutator");
+
+	private static final BarrierCause BARRIER = new BarrierCause();
 
 	public AbioticMutator() {
 		super(AbioticState.class);
@@ -75,7 +85,7 @@ EnvironmentMutator, SpawnMutator, LocationMutator {
 		} else if (toValue > agent.getEnergy() && fromValue > agent.getEnergy()) {
 			// Case where agent in both locations are too high energy
 			if (params.factors.get(factor).getMin() > agent.getEnergy()) {
-				agent.changeEnergy(-agent.getEnergy() - 1, new BarrierCause()); // If there is no place that can support an agent of such energy
+				agent.changeEnergy(-agent.getEnergy() - 1, BARRIER); // If there is no place that can support an agent of such energy
 			} else {
 				for (int k = 0; k < Math.max(sim.getTopology().width, sim.getTopology().height); k++) {
 					LocationDirection newLoc = new LocationDirection(sim.getTopology().getRandomLocation(), sim.getTopology().getRandomDirection());
@@ -145,7 +155,7 @@ EnvironmentMutator, SpawnMutator, LocationMutator {
 
 	@Override
 	public void onSpawn(Agent agent, Agent parent1, Agent parent2) {
-		Agent parent = sim.getRandom().nextBoolean() ? parent1 : parent2;
+		Agent parent = sim.getRandom(RANDOM_STREAM).nextBoolean() ? parent1 : parent2;
 		onSpawn(agent, parent);
 	}
 
@@ -163,25 +173,10 @@ EnvironmentMutator, SpawnMutator, LocationMutator {
 		this.params = params;
 		this.sim = sim;
 
-		causeKeys = new CauseKey[params.factors.size()];
-		for (int i = 0 ; i < causeKeys.length; i++) {
-			causeKeys[i] = new CauseKey(i);
-		}
+		causeKeys = MultiplierSlot.reserve(AbioticMutator.class, params.factors.size());
 	}
 
-	private CauseKey[] causeKeys;
-
-	private class CauseKey {
-		private int index;
-		public CauseKey(int index) {
-			this.index = index;
-		}
-
-		@Override
-		public String toString() {
-			return AbioticMutator.this.toString() + ".factor[" + index + "]";
-		}
-	}
+	private MultiplierSlot[] causeKeys;
 
 
 	@Override
@@ -215,6 +210,7 @@ EnvironmentMutator, SpawnMutator, LocationMutator {
 			return value;
 		}
 
+		private static final long serialVersionUID = 1L;
 	}
 
 	@Override
@@ -224,6 +220,16 @@ EnvironmentMutator, SpawnMutator, LocationMutator {
 		}
 	}
 
+	@Override
+	public Set<EnvironmentLayer> getReadLayers() {
+		return EnumSet.noneOf(EnvironmentLayer.class);
+	}
+
+	@Override
+	public Set<EnvironmentLayer> getWriteLayers() {
+		return EnumSet.of(EnvironmentLayer.ABIOTIC);
+	}
+
 	@Override
 	public void loadNew() {
 		// nothing
@@ -241,4 +247,15 @@ EnvironmentMutator, SpawnMutator, LocationMutator {
 		}
 	}
 
+	@Override
+	public boolean isLocal(Agent agent) {
+		// Barriers can send the agent anywhere on the map
+		for (AbioticFactor factor : params.factors) {
+			if (!factor.punishment)
+				return false;
+		}
+		return true;
+	}
+
+	private static final long serialVersionUID = 1L;
 }
@@ -1,25 +1,47 @@
 package org.cobweb.cobweb2.plugins.broadcast;
 
 import java.util.Collection;
+import java.util.EnumSet;
 import java.util.Iterator;
 import java.util.LinkedList;
+import java.util.Set;
 
 import org.cobweb.cobweb2.core.Cause;
 import org.cobweb.cobweb2.core.Location;
 import org.cobweb.cobweb2.core.Topology;
 import org.cobweb.cobweb2.impl.ComplexAgent;
+import org.cobweb.cobweb2.impl.ComplexEnvironmentParams;
+import org.cobweb.cobweb2.plugins.EnvironmentLayer;
 import org.cobweb.cobweb2.plugins.EnvironmentMutator;
 
 public class PacketConduit implements EnvironmentMutator {
 
 	private boolean broadcastBlocked = false;
 
+	/**
+	 * Broadcasts started since the last update
+	 */
+	private int broadcastCount = 0;
+
+	/**
+	 * Broadcasts allowed between updates, 0 for no limit
+	 */
+	private int broadcastLimit = 1;
+
 	private Collection<BroadcastPacket> currentPackets = new LinkedList<BroadcastPacket>();
 
+	private PacketIndex index;
+
 	private Topology topology;
 
-	public void setParams(Topology topo) {
+	public void setParams(Topology topo, ComplexEnvironmentParams envParams) {
 		this.topology = topo;
+		this.broadcastLimit = envParams.broadcastsPerTick;
+
+		index = new PacketIndex(topo);
+		for (BroadcastPacket packet : currentPackets) {
+			index.add(packet);
+		}
 	}
 
 	/**
@@ -28,10 +50,14 @@ public class PacketConduit implements EnvironmentMutator {
 	 * @param packet packet
 	 */
 	public void addPacketToList(BroadcastPacket packet) {
-		if (!broadcastBlocked)
-			currentPackets.add(packet);
-		// TODO: allow more brodcasts?
-		blockBroadcast();
+		if (broadcastBlocked)
+			return;
+
+		currentPackets.add(packet);
+		index.add(packet);
+		broadcastCount++;
+		if (broadcastLimit > 0 && broadcastCount >= broadcastLimit)
+			blockBroadcast();
 	}
 
 	public void blockBroadcast() {
@@ -44,23 +70,28 @@ public class PacketConduit implements EnvironmentMutator {
 		Iterator<BroadcastPacket> i = currentPackets.iterator();
 		while (i.hasNext()) {
 			BroadcastPacket packet = i.next();
-			if (!packet.updateCheckActive())
+			if (!packet.updateCheckActive()) {
 				i.remove();
+				index.remove(packet);
+			}
 		}
 	}
 
 	public void unblockBroadcast() {
 		broadcastBlocked = false;
+		broadcastCount = 0;
 	}
 
 	public void clearPackets() {
 		currentPackets.clear();
+		if (index != null)
+			index.clear();
 	}
 
 	public BroadcastPacket findPacket(Location position, ComplexAgent receiver) {
 		// TODO: return more than 1 packet?
 		// TODO: return closest packet?
-		for (BroadcastPacket commPacket : currentPackets) {
+		for (BroadcastPacket commPacket : index.candidates(position)) {
 			double distance = topology.getDistance(position, commPacket.location);
 			ComplexAgent s = commPacket.sender;
 			if (distance < commPacket.range
@@ -90,9 +121,20 @@ public class PacketConduit implements EnvironmentMutator {
 		public String getName() { return "Broadcast Food"; }
 	}
 
+	@Override
+	public Set<EnvironmentLayer> getReadLayers() {
+		return EnumSet.noneOf(EnvironmentLayer.class);
+	}
+
+	@Override
+	public Set<EnvironmentLayer> getWriteLayers() {
+		return EnumSet.of(EnvironmentLayer.PACKETS);
+	}
+
 	@Override
 	public void loadNew() {
 		// nothing
 	}
 
+	private static final long serialVersionUID = 1L;
 }
\ No newline at end of file
@@ -0,0 +1,160 @@
+package org.cobweb.cobweb2.plugins.broadcast;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.cobweb.cobweb2.core.Location;
+import org.cobweb.cobweb2.core.Topology;
+import org.cobweb.cobweb2.core.Topology.WrapImage;
+
+/**
+ * Broadcast packets hashed by the square buckets of tiles their range covers,
+ * across wrapped edges too, so a listener only looks at packets that could
+ * reach it.
+ *
+ * Packets that reach most of the map go in a separate list that every
+ * listener looks at, instead of in every bucket. Both are kept in the order
+ * packets were added, which is the order they are offered to listeners.
+ */
+class PacketIndex implements Serializable {
+
+	private static final int BUCKET_SIZE = 8;
+
+	private static class Entry implements Serializable {
+		final BroadcastPacket packet;
+		final long order;
+		/** Buckets the packet is in, null when in the wide list */
+		final int[] buckets;
+
+		Entry(BroadcastPacket packet, long order, int[] buckets) {
+			this.packet = packet;
+			this.order = order;
+			this.buckets = buckets;
+		}
+
+		private static final long serialVersionUID = 1L;
+	}
+
+	private final Topology topology;
+
+	private final int bucketsX;
+	private final int bucketsY;
+
+	private final List<List<Entry>> buckets;
+
+	private final List<Entry> wide = new ArrayList<>();
+
+	private final Map<BroadcastPacket, Entry> entries = new IdentityHashMap<>();
+
+	private long nextOrder = 0;
+
+	/**
+	 * Marks buckets already added while adding a packet
+	 */
+	private final int[] bucketStamp;
+	private int stamp = 0;
+
+	PacketIndex(Topology topology) {
+		this.topology = topology;
+		bucketsX = (topology.width + BUCKET_SIZE - 1) / BUCKET_SIZE;
+		bucketsY = (topology.height + BUCKET_SIZE - 1) / BUCKET_SIZE;
+		buckets = new ArrayList<>(bucketsX * bucketsY);
+		for (int i = 0; i < bucketsX * bucketsY; i++) {
+			buckets.add(new ArrayList<Entry>());
+		}
+		bucketStamp = new int[bucketsX * bucketsY];
+	}
+
+	void add(BroadcastPacket packet) {
+		int range = packet.range;
+		if (range <= 0) {
+			// Nothing is closer than 0, no one can hear it
+			entries.put(packet, new Entry(packet, nextOrder++, new int[0]));
+			return;
+		}
+
+		// Tiles closer than range are at most range - 1 away along each axis
+		int reach = range - 1;
+		int[] covered = new int[16];
+		int count = 0;
+		stamp++;
+		for (WrapImage image : topology.getWrapImages()) {
+			Location l = image.apply(packet.location);
+			int x0 = Math.max(l.x - reach, 0);
+			int x1 = Math.min(l.x + reach, topology.width - 1);
+			int y0 = Math.max(l.y - reach, 0);
+			int y1 = Math.min(l.y + reach, topology.height - 1);
+			if (x0 > x1 || y0 > y1)
+				continue;
+
+			for (int by = y0 / BUCKET_SIZE; by <= y1 / BUCKET_SIZE; by++) {
+				for (int bx = x0 / BUCKET_SIZE; bx <= x1 / BUCKET_SIZE; bx++) {
+					int b = by * bucketsX + bx;
+					if (bucketStamp[b] == stamp)
+						continue;
+					bucketStamp[b] = stamp;
+					if (count == covered.length)
+						covered = Arrays.copyOf(covered, count * 2);
+					covered[count++] = b;
+				}
+			}
+		}
+
+		Entry e;
+		if (count * 2 > bucketsX * bucketsY) {
+			e = new Entry(packet, nextOrder++, null);
+			wide.add(e);
+		} else {
+			e = new Entry(packet, nextOrder++, Arrays.copyOf(covered, count));
+			for (int b : e.buckets) {
+				buckets.get(b).add(e);
+			}
+		}
+		entries.put(packet, e);
+	}
+
+	void remove(BroadcastPacket packet) {
+		Entry e = entries.remove(packet);
+		if (e == null)
+			return;
+
+		if (e.buckets == null) {
+			wide.remove(e);
+		} else {
+			for (int b : e.buckets) {
+				buckets.get(b).remove(e);
+			}
+		}
+	}
+
+	void clear() {
+		for (List<Entry> bucket : buckets) {
+			bucket.clear();
+		}
+		wide.clear();
+		entries.clear();
+	}
+
+	/**
+	 * Packets that may reach a location, in the order they were added
+	 */
+	List<BroadcastPacket> candidates(Location position) {
+		List<Entry> local = buckets.get((position.y / BUCKET_SIZE) * bucketsX + position.x / BUCKET_SIZE);
+		List<BroadcastPacket> result = new ArrayList<>(local.size() + wide.size());
+		int i = 0;
+		int j = 0;
+		while (i < local.size() || j < wide.size()) {
+			if (j == wide.size() || (i < local.size() && local.get(i).order < wide.get(j).order))
+				result.add(local.get(i++).packet);
+			else
+				result.add(wide.get(j++).packet);
+		}
+		return result;
+	}
+
+	private static final long serialVersionUID = 1L;
+}
@@ -8,18 +8,24 @@ import java.util.LinkedList;
 import java.util.List;
 
 import org.cobweb.cobweb2.core.Agent;
+import org.cobweb.cobweb2.core.Partition;
+import org.cobweb.cobweb2.core.RandomStream;
 import org.cobweb.cobweb2.core.SimulationTimeSpace;
 import org.cobweb.cobweb2.plugins.ContactMutator;
+import org.cobweb.cobweb2.plugins.LocalMutator;
 import org.cobweb.cobweb2.plugins.LoggingMutator;
 import org.cobweb.cobweb2.plugins.SpawnMutator;
 import org.cobweb.cobweb2.plugins.StatefulMutatorBase;
 import org.cobweb.cobweb2.plugins.UpdateMutator;
 import org.cobweb.util.ArrayUtilities;
+import org.cobweb.util.MultiplierSlot;
 
 /**
  * Simulates various diseases that can affect agents.
  */
-public class DiseaseMutator extends StatefulMutatorBase<DiseaseState> implements ContactMutator, SpawnMutator, LoggingMutator, UpdateMutator {
+public class DiseaseMutator extends StatefulMutatorBase<DiseaseState> implements ContactMutator, SpawnMutator, LoggingMutator, UpdateMutator, LocalMutator {
+
+	private static final RandomStream RANDOM_STREAM = RandomStream.named("DiseaseMutator");
 
 	public DiseaseParams params;
 
@@ -27,6 +33,8 @@ public class DiseaseMutator extends StatefulMutatorBase<DiseaseState> implements
 
 	private SimulationTimeSpace simulation;
 
+	private static final MultiplierSlot cause = MultiplierSlot.reserve(DiseaseMutator.class, 1)[0];
+
 	public DiseaseMutator() {
 		super(DiseaseState.class);
 	}
@@ -65,14 +73,14 @@ public class DiseaseMutator extends StatefulMutatorBase<DiseaseState> implements
 
 	private void makeRandomSick(Agent agent, float rate) {
 		boolean isSick = false;
-		if (simulation.getRandom().nextFloat() < rate)
+		if (simulation.getRandom(RANDOM_STREAM).nextFloat() < rate)
 			isSick = true;
 
 		if (isSick) {
 			DiseaseAgentParams agentParams = params.agentParams[agent.getType()];
-			agentParams.param.modifyValue(this, agent, agentParams.factor);
+			agentParams.param.modifyValue(cause, agent, agentParams.factor);
 
-			sickCount[agent.getType()]++;
+			countSick(agent.getType(), +1);
 
 			setAgentState(agent, new DiseaseState(agentParams, true, false, simulation.getTime()));
 		}
@@ -81,14 +89,14 @@ public class DiseaseMutator extends StatefulMutatorBase<DiseaseState> implements
 
 	private void contactTransmit(Agent agent, float rate) {
 		boolean isSick = false;
-		if (simulation.getRandom().nextFloat() < rate)
+		if (simulation.getRandom(RANDOM_STREAM).nextFloat() < rate)
 			isSick = true;
 
 		if (isSick) {
 			DiseaseAgentParams agentParams = params.agentParams[agent.getType()];
-			agentParams.param.modifyValue(this, agent, agentParams.factor);
+			agentParams.param.modifyValue(cause, agent, agentParams.factor);
 
-			sickCount[agent.getType()]++;
+			countSick(agent.getType(), +1);
 
 			if (isVaccinated(agent)) {
 				setAgentState(agent, new DiseaseState(agentParams, true, true, simulation.getTime()));
@@ -109,7 +117,7 @@ public class DiseaseMutator extends StatefulMutatorBase<DiseaseState> implements
 	public void onDeath(Agent agent) {
 		DiseaseState diseaseState = removeAgentState(agent);
 		if (diseaseState != null && diseaseState.sick)
-			sickCount[agent.getType()]--;
+			countSick(agent.getType(), -1);
 	}
 
 	@Override
@@ -148,7 +156,7 @@ public class DiseaseMutator extends StatefulMutatorBase<DiseaseState> implements
 		}
 
 		if (params.agentParams[tr].healer && isSick(bumpee)) {
-			if (simulation.getRandom().nextFloat() < params.agentParams[tr].healerEffectiveness) {
+			if (simulation.getRandom(RANDOM_STREAM).nextFloat() < params.agentParams[tr].healerEffectiveness) {
 				unSick(bumpee);
 			}
 		}
@@ -157,7 +165,7 @@ public class DiseaseMutator extends StatefulMutatorBase<DiseaseState> implements
 			return;
 
 		if (isVaccinated(bumpee)
-				&& simulation.getRandom().nextFloat() < getAgentState(bumpee).vaccineEffectiveness)
+				&& simulation.getRandom(RANDOM_STREAM).nextFloat() < getAgentState(bumpee).vaccineEffectiveness)
 			return;
 
 		if (isSick(bumpee))
@@ -170,7 +178,21 @@ public class DiseaseMutator extends StatefulMutatorBase<DiseaseState> implements
 
 	private void unSick(Agent agent) {
 		removeAgentState(agent);
-		sickCount[agent.getType()]--;
+		countSick(agent.getType(), -1);
+	}
+
+	private void countSick(final int type, final int change) {
+		Partition partition = Partition.current();
+		if (partition != null) {
+			partition.defer(new Runnable() {
+				@Override
+				public void run() {
+					countSick(type, change);
+				}
+			});
+			return;
+		}
+		sickCount[type] += change;
 	}
 
 	public boolean isSick(Agent agent) {
@@ -201,7 +223,7 @@ public class DiseaseMutator extends StatefulMutatorBase<DiseaseState> implements
 		if (params.agentParams[a.getType()].recoveryTime == 0)
 			return;
 
-		long randomRecovery = (long) (params.agentParams[a.getType()].recoveryTime * (simulation.getRandom().nextDouble() * 0.2 + 1.0));
+		long randomRecovery = (long) (params.agentParams[a.getType()].recoveryTime * (simulation.getRandom(RANDOM_STREAM).nextDouble() * 0.2 + 1.0));
 
 		if (s.sick && simulation.getTime() - s.sickStart > randomRecovery) {
 			unSick(a);
@@ -213,4 +235,10 @@ public class DiseaseMutator extends StatefulMutatorBase<DiseaseState> implements
 		return value != null;
 	}
 
+	@Override
+	public boolean isLocal(Agent agent) {
+		return true;
+	}
+
+	private static final long serialVersionUID = 1L;
 }
@@ -1,20 +1,31 @@
 package org.cobweb.cobweb2.plugins.food;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Set;
 
-import org.cobweb.cobweb2.core.Direction;
+import org.cobweb.cobweb2.core.FoodFrontier;
 import org.cobweb.cobweb2.core.Location;
+import org.cobweb.cobweb2.core.MapBands;
+import org.cobweb.cobweb2.core.RandomStream;
 import org.cobweb.cobweb2.core.SimulationTimeSpace;
+import org.cobweb.cobweb2.core.Topology;
 import org.cobweb.cobweb2.impl.ComplexEnvironment;
+import org.cobweb.cobweb2.plugins.EnvironmentLayer;
 import org.cobweb.cobweb2.plugins.EnvironmentMutator;
 import org.cobweb.cobweb2.plugins.abiotic.AbioticMutator;
 import org.cobweb.cobweb2.plugins.abiotic.AbioticPreferenceParam;
+import org.cobweb.util.RandomNoGenerator;
+import org.cobweb.util.StreamRandom;
 
 
 public class FoodGrowth implements EnvironmentMutator {
 
+	private static final RandomStream RANDOM_STREAM = RandomStream.named("FoodGrowth");
+
 	private static final int DROP_ATTEMPTS_MAX = 5;
 
 	private ComplexFoodParams foodData[];
@@ -29,6 +40,8 @@ public class FoodGrowth implements EnvironmentMutator {
 
 	private boolean dropNew;
 
+	private boolean synchronousGrowth;
+
 	public FoodGrowth(SimulationTimeSpace simulation) {
 		this.simulation = simulation;
 	}
@@ -60,15 +73,11 @@ public class FoodGrowth implements EnvironmentMutator {
 		// and we destroy the food at the positions occupying the last N
 		// spots in our vector
 		List<Location> locations = new ArrayList<Location>();
-		for (int x = 0; x < simulation.getTopology().width; ++x) {
-			for (int y = 0; y < simulation.getTopology().height; ++y) {
-				Location currentPos = new Location(x, y);
-				if (env.hasFood(currentPos) && env.getFoodType(currentPos) == type)
-					locations.add(currentPos);
-			}
+		for (List<Location> band : foodLocations(type)) {
+			locations.addAll(band);
 		}
 
-		Collections.shuffle(locations, simulation.getRandom());
+		Collections.shuffle(locations, simulation.getRandom(RANDOM_STREAM));
 
 		int foodToDeplete = (int) (locations.size() * food.depleteRate);
 
@@ -80,9 +89,30 @@ public class FoodGrowth implements EnvironmentMutator {
 		draughtdays[type] = food.draughtPeriod;
 	}
 
+	/**
+	 * Finds the food of a type column by column, in bands of columns that
+	 * can be scanned on the environment's update pool
+	 */
+	private List<List<Location>> foodLocations(final int type) {
+		final Topology topology = simulation.getTopology();
+		return new MapBands<List<Location>>() {
+			@Override
+			protected List<Location> scan(int start, int end) {
+				List<Location> found = new ArrayList<Location>();
+				for (int x = start; x < end; ++x) {
+					for (int y = 0; y < topology.height; ++y) {
+						if (env.hasFood(x, y) && env.getFoodType(x, y) == type)
+							found.add(topology.location(x, y));
+					}
+				}
+				return found;
+			}
+		}.run(env.getUpdatePool(), topology.width);
+	}
+
 	private void dropFood(int type) {
 		float foodDrop = foodData[type].dropRate;
-		while (simulation.getRandom().nextFloat() < foodDrop) {
+		while (simulation.getRandom(RANDOM_STREAM).nextFloat() < foodDrop) {
 			--foodDrop;
 			Location l;
 			int j = 0;
@@ -98,72 +128,124 @@ public class FoodGrowth implements EnvironmentMutator {
 		}
 	}
 
-	private void growFood() {
-		// create a new ArrayEnvironment and a new food type array
-		// loop through all positions
+	void growFood() {
+		if (synchronousGrowth) {
+			growFoodInBands();
+			return;
+		}
+
+		// Only tiles next to food can grow food. Walk them in the same order
+		// as a loop over every position would, y then x
 
 		AbioticMutator abiotic = env.getPlugin(AbioticMutator.class);
+		FoodFrontier frontier = env.getFoodFrontier();
+		RandomNoGenerator random = simulation.getRandom(RANDOM_STREAM);
+		int[] mostFood = new int[getTypeCount()];
+
+		for (int tile = frontier.next(0); tile >= 0; tile = frontier.next(tile + 1)) {
+			int growingType = growingType(tile, abiotic, frontier, random, mostFood);
+			if (growingType >= 0)
+				env.addFood(simulation.getTopology().location(tile), growingType);
+		}
+	}
 
-		for (int y = 0; y < simulation.getTopology().height; ++y) {
-			for (int x = 0; x < simulation.getTopology().width; ++x) {
-				Location currentPos = new Location(x, y);
-
-				if (!env.hasAnythingAt(currentPos)) {
-					// we should grow food here
-					// the following code block tests all adjacent squares
-					// to this one and counts how many have food
-					// as well how many of each food type exist
-
-					double foodCount = 0;
-					int[] mostFood = new int[getTypeCount()];
-
-					for (Direction dir : simulation.getTopology().ALL_4_WAY) {
-						Location checkPos = simulation.getTopology().getAdjacent(currentPos, dir);
-						if (checkPos != null && env.hasFood(checkPos)) {
-							foodCount++;
-							mostFood[env.getFoodType(checkPos)]++;
-						}
-					}
+	/**
+	 * Grows food next to the food there was before growing any, a band of
+	 * rows at a time on the environment's update pool. Each band draws from
+	 * its own stream split off for the tick, and the food is added in band
+	 * order once every band is scanned, so the result doesn't depend on the
+	 * number of threads.
+	 */
+	private void growFoodInBands() {
+		final AbioticMutator abiotic = env.getPlugin(AbioticMutator.class);
+		final FoodFrontier frontier = env.getFoodFrontier();
+		final StreamRandom tickRandom = new StreamRandom(simulation.getRandom(RANDOM_STREAM).nextLong());
+		Topology topology = simulation.getTopology();
+
+		List<List<int[]>> bands = new MapBands<List<int[]>>() {
+			@Override
+			protected List<int[]> scan(int start, int end) {
+				RandomNoGenerator random = tickRandom.split(start);
+				int[] mostFood = new int[getTypeCount()];
+				List<int[]> grown = new ArrayList<int[]>();
+				int endTile = end * frontier.width;
+				for (int tile = frontier.next(start * frontier.width); tile >= 0 && tile < endTile; tile = frontier.next(tile + 1)) {
+					int growingType = growingType(tile, abiotic, frontier, random, mostFood);
+					if (growingType >= 0)
+						grown.add(new int[] { tile, growingType });
+				}
+				return grown;
+			}
+		}.run(env.getUpdatePool(), topology.height);
 
-					// and if we have found any adjacent food, theres a
-					// chance we want to grow food here
-					if (foodCount > 0) {
-
-						int max = 0;
-						int growingType;
-
-						// find the food that exists in the largest quantity
-						for (int i = 1; i < mostFood.length; ++i)
-							if (mostFood[i] > mostFood[max])
-								max = i;
-
-						// give the max food an extra chance to be chosen
-
-						if (sameFoodProb >= simulation.getRandom().nextFloat()) {
-							growingType = max;
-						} else {
-							growingType = simulation.getRandom().nextInt(getTypeCount());
-						}
-
-						// finally, we grow food according to a certain
-						// amount of random chance
-						ComplexFoodParams thisType = foodData[growingType];
-						float growRate = thisType.growRate;
-
-						for (int i = 0; i < thisType.abioticParams.factorParams.length; i++) {
-							AbioticPreferenceParam factorParams = thisType.abioticParams.factorParams[i].preference;
-							float factorValue = abiotic.getValue(i, currentPos);
-							float discomfort = 1 + factorParams.score(factorValue);
-							growRate *= discomfort;
-						}
-
-						if (foodCount * growRate > 100 * simulation.getRandom().nextFloat()) {
-							env.addFood(currentPos, growingType);
-						}
-					}
+		for (List<int[]> band : bands) {
+			for (int[] grown : band) {
+				env.addFood(topology.location(grown[0]), grown[1]);
+			}
+		}
+	}
+
+	/**
+	 * @return type of food to grow on a frontier tile, -1 for none
+	 */
+	private int growingType(int tile, AbioticMutator abiotic, FoodFrontier frontier, RandomNoGenerator random, int[] mostFood) {
+		Location currentPos = simulation.getTopology().location(tile);
+
+		if (!env.hasAnythingAt(currentPos)) {
+			// we should grow food here
+			// the following code block tests all adjacent squares
+			// to this one and counts how many have food
+			// as well how many of each food type exist
+
+			double foodCount = 0;
+			Arrays.fill(mostFood, 0);
+
+			for (int dir = 0; dir < 4; dir++) {
+				int check = frontier.adjacent(tile, dir);
+				if (check >= 0 && env.hasFood(check % frontier.width, check / frontier.width)) {
+					foodCount++;
+					mostFood[env.getFoodType(check % frontier.width, check / frontier.width)]++;
+				}
+			}
+
+			// and if we have found any adjacent food, theres a
+			// chance we want to grow food here
+			if (foodCount > 0) {
+
+				int max = 0;
+				int growingType;
+
+				// find the food that exists in the largest quantity
+				for (int i = 1; i < mostFood.length; ++i)
+					if (mostFood[i] > mostFood[max])
+						max = i;
+
+				// give the max food an extra chance to be chosen
+
+				if (sameFoodProb >= random.nextFloat()) {
+					growingType = max;
+				} else {
+					growingType = random.nextInt(getTypeCount());
+				}
+
+				// finally, we grow food according to a certain
+				// amount of random chance
+				ComplexFoodParams thisType = foodData[growingType];
+				float growRate = thisType.growRate;
+
+				for (int i = 0; i < thisType.abioticParams.factorParams.length; i++) {
+					AbioticPreferenceParam factorParams = thisType.abioticParams.factorParams[i].preference;
+					float factorValue = abiotic.getValue(i, currentPos);
+					float discomfort = 1 + factorParams.score(factorValue);
+					growRate *= discomfort;
+				}
+
+				if (foodCount * growRate > 100 * random.nextFloat()) {
+					return growingType;
 				}
 			}
 		}
+		return -1;
 	}
 
 	/**
@@ -177,9 +259,9 @@ public class FoodGrowth implements EnvironmentMutator {
 		for (int i = 0; i < getTypeCount(); ++i) {
 			draughtdays[i] = 0;
 			if (foodData[i].depleteRate < 0.0f || foodData[i].depleteRate > 1.0f)
-				foodData[i].depleteRate = simulation.getRandom().nextFloat();
+				foodData[i].depleteRate = simulation.getRandom(RANDOM_STREAM).nextFloat();
 			if (foodData[i].depleteTime <= 0)
-				foodData[i].depleteTime = simulation.getRandom().nextInt(100) + 1;
+				foodData[i].depleteTime = simulation.getRandom(RANDOM_STREAM).nextInt(100) + 1;
 		}
 	}
 
@@ -236,10 +318,21 @@ public class FoodGrowth implements EnvironmentMutator {
 		foodData = foodParams.foodParams;
 		this.sameFoodProb = foodParams.likeFoodProb;
 		dropNew = foodParams.dropNewFood;
+		synchronousGrowth = foodParams.synchronousGrowth;
 
 		env = environment;
 	}
 
+	@Override
+	public Set<EnvironmentLayer> getReadLayers() {
+		return EnumSet.of(EnvironmentLayer.ABIOTIC, EnvironmentLayer.AGENTS, EnvironmentLayer.STONES, EnvironmentLayer.DROPS);
+	}
+
+	@Override
+	public Set<EnvironmentLayer> getWriteLayers() {
+		return EnumSet.of(EnvironmentLayer.FOOD, EnvironmentLayer.SIMULATION_RANDOM);
+	}
+
 	@Override
 	public void loadNew() {
 		setupDraughtDeplete();
@@ -250,4 +343,5 @@ public class FoodGrowth implements EnvironmentMutator {
 		}
 	}
 
+	private static final long serialVersionUID = 1L;
 }
@@ -25,6 +25,15 @@ public class FoodGrowthParams implements PerTypeParam<ComplexFoodParams> {
 	@ConfXMLTag("likeFoodProb")
 	public float likeFoodProb = 0;
 
+	/**
+	 * Grows food next to the food there was at the start of the tick, instead
+	 * of also next to food grown earlier in the same tick. The map can then
+	 * be grown in bands on the environment update threads.
+	 */
+	@ConfDisplayName("Synchronous food growth")
+	@ConfXMLTag("synchronousGrowth")
+	public boolean synchronousGrowth = false;
+
 	@ConfXMLTag("FoodParams")
 	@ConfList(indexName = "Food", startAtOne = true)
 	public ComplexFoodParams[] foodParams = new ComplexFoodParams[0];
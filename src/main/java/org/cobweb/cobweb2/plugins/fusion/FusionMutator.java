@@ -1,12 +1,18 @@
 package org.cobweb.cobweb2.plugins.fusion;
 
 import org.cobweb.cobweb2.core.Agent;
+import org.cobweb.cobweb2.core.RandomStream;
 import org.cobweb.cobweb2.core.SimulationTimeSpace;
 import org.cobweb.cobweb2.impl.ComplexAgent;
 import org.cobweb.cobweb2.plugins.ContactMutator;
+import org.cobweb.cobweb2.plugins.LocalMutator;
 import org.cobweb.cobweb2.plugins.StatefulMutatorBase;
 
-public class FusionMutator extends StatefulMutatorBase<FusionState> implements ContactMutator {
+public class FusionMutator extends StatefulMutatorBase<FusionState> implements ContactMutator, LocalMutator {
+
+	private static final RandomStream RANDOM_STREAM = RandomStream.named("FusionMutator");
+
+	private static final ComplexAgent.BumpAgentCause BUMP_AGENT = new ComplexAgent.BumpAgentCause();
 
     public FusionParams params;
     private SimulationTimeSpace sim;
@@ -34,15 +40,15 @@ public class FusionMutator extends StatefulMutatorBase<FusionState> implements C
             return;
         }
 
-        if (params.agentParams[tr].probability > sim.getRandom().nextFloat() &&
-                params.agentParams[te].probability > sim.getRandom().nextFloat()) {
-            if (sim.getRandom().nextFloat() < 0.5) {
+        if (params.agentParams[tr].probability > sim.getRandom(RANDOM_STREAM).nextFloat() &&
+                params.agentParams[te].probability > sim.getRandom(RANDOM_STREAM).nextFloat()) {
+            if (sim.getRandom(RANDOM_STREAM).nextFloat() < 0.5) {
                 int energy = (int) (bumper.getEnergy() * params.agentParams[te].efficiency);
-                bumpee.changeEnergy(energy, new ComplexAgent.BumpAgentCause());
+                bumpee.changeEnergy(energy, BUMP_AGENT);
                 bumper.die();
             } else {
                 int energy = (int) (bumpee.getEnergy() * params.agentParams[tr].efficiency);
-                bumper.changeEnergy(energy, new ComplexAgent.BumpAgentCause());
+                bumper.changeEnergy(energy, BUMP_AGENT);
                 bumpee.die();
             }
         }
@@ -52,4 +58,11 @@ public class FusionMutator extends StatefulMutatorBase<FusionState> implements C
     protected boolean validState(FusionState state) {
         return state != null;
     }
+
+	@Override
+	public boolean isLocal(Agent agent) {
+		return true;
+	}
+
+	private static final long serialVersionUID = 1L;
 }
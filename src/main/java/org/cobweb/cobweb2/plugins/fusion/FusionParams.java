@@ -16,4 +16,5 @@ public class FusionParams extends PerAgentParams<FusionAgentParams> {
         return new FusionAgentParams();
     }
 
+    private static final long serialVersionUID = 1L;
 }
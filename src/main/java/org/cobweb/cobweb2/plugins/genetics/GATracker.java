@@ -1,9 +1,11 @@
 package org.cobweb.cobweb2.plugins.genetics;
 
+import java.io.Serializable;
+
 import org.cobweb.util.ArrayUtilities;
 
 
-public class GATracker {
+public class GATracker implements Serializable {
 
 
 
@@ -118,4 +120,5 @@ public class GATracker {
 		return total_gene_status[agentType][geneType] / total_agents[agentType];
 	}
 
+	private static final long serialVersionUID = 1L;
 }
@@ -46,14 +46,42 @@ public class GeneticCode implements AgentState {
 		if (maxLen == 0)
 			return 1;
 
-		BitSet differentBits = gc1.getBitSet();
-		differentBits.xor(gc1.getBitSet());
-
-		int similarity_number = maxLen - differentBits.cardinality();
+		int similarity_number = maxLen - countDifferentBits(gc1.genes, gc2.genes);
 
 		return (float) similarity_number / maxLen;
 	}
 
+	/**
+	 * Counts the bits that differ between two gene strings, 8 genes at a time.
+	 * Genes past the end of the shorter string differ in every set bit.
+	 */
+	static int countDifferentBits(byte[] genes1, byte[] genes2) {
+		int common = Math.min(genes1.length, genes2.length);
+		int different = 0;
+		int i = 0;
+		for (; i + 8 <= common; i += 8) {
+			different += Long.bitCount(getLong(genes1, i) ^ getLong(genes2, i));
+		}
+		for (; i < common; i++) {
+			different += Integer.bitCount((genes1[i] ^ genes2[i]) & 0xff);
+		}
+		for (i = common; i < genes1.length; i++) {
+			different += Integer.bitCount(genes1[i] & 0xff);
+		}
+		for (i = common; i < genes2.length; i++) {
+			different += Integer.bitCount(genes2[i] & 0xff);
+		}
+		return different;
+	}
+
+	private static long getLong(byte[] genes, int start) {
+		long value = 0;
+		for (int i = start + 7; i >= start; i--) {
+			value = value << 8 | (genes[i] & 0xff);
+		}
+		return value;
+	}
+
 	/**
 	 * Creates a new bit string based on two parent bit strings, "genes1" and
 	 * "genes2". The new string is the binary representation of the parents'
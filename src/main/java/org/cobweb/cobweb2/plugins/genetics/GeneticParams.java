@@ -28,6 +28,15 @@ public class GeneticParams extends PerAgentParams<GeneticCode> {
 	@ConfList(indexName = "linkedphenotype", startAtOne = true)
 	public Phenotype[] phenotype = new Phenotype[0];
 
+	/**
+	 * Genetic similarity used to compare each agent's genes with its own, so
+	 * any two agents with genes were fully similar. Off keeps that result for
+	 * existing experiments, on compares the two agents' genes.
+	 */
+	@ConfDisplayName("Compare genes for similarity")
+	@ConfXMLTag("compareGenes")
+	public boolean compareGenes = false;
+
 
 	public int getGeneCount() {
 		return phenotype.length;
@@ -6,25 +6,31 @@ import java.util.List;
 
 import org.cobweb.cobweb2.core.Agent;
 import org.cobweb.cobweb2.core.AgentSimilarityCalculator;
+import org.cobweb.cobweb2.core.Partition;
 import org.cobweb.cobweb2.core.Phenotype;
-import org.cobweb.cobweb2.core.RandomSource;
+import org.cobweb.cobweb2.core.RandomStream;
+import org.cobweb.cobweb2.core.SimulationTimeSpace;
 import org.cobweb.cobweb2.impl.ComplexAgent;
+import org.cobweb.cobweb2.plugins.LocalMutator;
 import org.cobweb.cobweb2.plugins.LoggingMutator;
 import org.cobweb.cobweb2.plugins.SpawnMutator;
 import org.cobweb.cobweb2.plugins.StatefulMutatorBase;
+import org.cobweb.util.MultiplierSlot;
 
 /**
  * GeneticsMutator is an instance of SpawnMutator.
  *
  * @see SpawnMutator
  */
-public class GeneticsMutator extends StatefulMutatorBase<GeneticCode> implements SpawnMutator, LoggingMutator, AgentSimilarityCalculator {
+public class GeneticsMutator extends StatefulMutatorBase<GeneticCode> implements SpawnMutator, LoggingMutator, AgentSimilarityCalculator, LocalMutator {
+
+	private static final RandomStream RANDOM_STREAM = RandomStream.named("GeneticsMutator");
 
 	private GeneticParams params;
 
 	private GATracker tracker;
 
-	private RandomSource simulation;
+	private SimulationTimeSpace simulation;
 
 	public GeneticsMutator() {
 		super(GeneticCode.class);
@@ -76,17 +82,34 @@ public class GeneticsMutator extends StatefulMutatorBase<GeneticCode> implements
 			// Get instance variable linked to attribute in agent
 			pheno.modifyValue(causeKeys[i], agent, coefficient);
 		}
-		tracker.addAgent(agent.getType(), getAgentState(agent));
+		track(agent.getType(), getAgentState(agent), true);
 	}
 
 	@Override
 	public void onDeath(Agent agent) {
 		GeneticCode agentState = getAgentState(agent);
 		if (agentState != null)
-			tracker.removeAgent(agent.getType(), agentState);
+			track(agent.getType(), agentState, false);
 
 	}
 
+	private void track(final int type, final GeneticCode code, final boolean alive) {
+		Partition partition = Partition.current();
+		if (partition != null) {
+			partition.defer(new Runnable() {
+				@Override
+				public void run() {
+					track(type, code, alive);
+				}
+			});
+			return;
+		}
+		if (alive)
+			tracker.addAgent(type, code);
+		else
+			tracker.removeAgent(type, code);
+	}
+
 	@Override
 	public void onSpawn(Agent agent) {
 		GeneticCode genetic_code = new GeneticCode(params.agentParams[agent.getType()]);
@@ -122,11 +145,11 @@ public class GeneticsMutator extends StatefulMutatorBase<GeneticCode> implements
 				genetic_code = GeneticCode.createGeneticCodeMeiosisAverage(gc1, gc2);
 				break;
 			case GeneSwapping:
-				genetic_code = GeneticCode.createGeneticCodeMeiosisGeneSwap(gc1, gc2, simulation.getRandom());
+				genetic_code = GeneticCode.createGeneticCodeMeiosisGeneSwap(gc1, gc2, simulation.getRandom(RANDOM_STREAM));
 				break;
 			case RandomRecombination:
 			default:
-				genetic_code = GeneticCode.createGeneticCodeMeiosisRecomb(gc1, gc2, simulation.getRandom());
+				genetic_code = GeneticCode.createGeneticCodeMeiosisRecomb(gc1, gc2, simulation.getRandom(RANDOM_STREAM));
 				break;
 		}
 
@@ -135,8 +158,8 @@ public class GeneticsMutator extends StatefulMutatorBase<GeneticCode> implements
 
 	protected void mutateAndSave(Agent agent, float mutationRate, GeneticCode genetic_code) {
 		if (genetic_code.getNumGenes() > 0) {
-			if (simulation.getRandom().nextFloat() <= mutationRate) {
-				genetic_code.mutate(simulation.getRandom().nextInt(params.getGeneCount() * params.geneLength));
+			if (simulation.getRandom(RANDOM_STREAM).nextFloat() <= mutationRate) {
+				genetic_code.mutate(simulation.getRandom(RANDOM_STREAM).nextInt(params.getGeneCount() * params.geneLength));
 			}
 		}
 
@@ -150,7 +173,7 @@ public class GeneticsMutator extends StatefulMutatorBase<GeneticCode> implements
 	 * @param params The parameters used in the simulation data file (xml file).
 	 * @param agentCount The number of agent types.
 	 */
-	public void setParams(RandomSource rand, GeneticParams params, int agentCount) {
+	public void setParams(SimulationTimeSpace rand, GeneticParams params, int agentCount) {
 		simulation = rand;
 		this.params = params;
 		if (tracker == null)
@@ -158,29 +181,24 @@ public class GeneticsMutator extends StatefulMutatorBase<GeneticCode> implements
 
 		tracker.setParams(agentCount, params.getGeneCount());
 
-		causeKeys = new CauseKey[params.getGeneCount()];
-		for (int i = 0 ; i < causeKeys.length; i++) {
-			causeKeys[i] = new CauseKey(i);
-		}
+		causeKeys = MultiplierSlot.reserve(GeneticsMutator.class, params.getGeneCount());
 	}
 
-	private CauseKey[] causeKeys;
-
-	private class CauseKey {
-		private int index;
-		public CauseKey(int index) {
-			this.index = index;
-		}
-
-		@Override
-		public String toString() {
-			return GeneticsMutator.this.toString() + ".phenotype[" + index + "]";
-		}
-	}
+	private MultiplierSlot[] causeKeys;
 
+	/**
+	 * Not cached per pair of agents: genes don't change after birth, but
+	 * comparing a few bytes of them is faster than looking the pair up.
+	 *
+	 * @see GeneticParams#compareGenes
+	 */
 	@Override
 	public float similarity(Agent a1, Agent a2) {
-		return GeneticCode.compareGeneticSimilarity(getAgentState(a1), getAgentState(a2));
+		GeneticCode gc1 = getAgentState(a1);
+		GeneticCode gc2 = getAgentState(a2);
+		if (!params.compareGenes && gc1 != null && gc2 != null)
+			gc2 = gc1;
+		return GeneticCode.compareGeneticSimilarity(gc1, gc2);
 	}
 
 	@Override
@@ -188,4 +206,10 @@ public class GeneticsMutator extends StatefulMutatorBase<GeneticCode> implements
 		return value.genes.length == this.params.getGeneCount();
 	}
 
+	@Override
+	public boolean isLocal(Agent agent) {
+		return true;
+	}
+
+	private static final long serialVersionUID = 1L;
 }
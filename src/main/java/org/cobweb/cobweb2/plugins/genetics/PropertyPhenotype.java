@@ -46,19 +46,21 @@ public abstract class PropertyPhenotype extends Phenotype {
 
 	@Override
 	public void modifyValue(Object cause, Agent a, float m) {
-		if (rootAccessor(a) == null)
+		Object root = rootAccessor(a);
+		if (root == null)
 			return;
 
-		MutatableField field = (MutatableField) propertyAccessor.get(rootAccessor(a));
+		MutatableField field = (MutatableField) propertyAccessor.get(root);
 		field.setMultiplier(cause, m);
 	}
 
 	@Override
 	public void unmodifyValue(Object cause, Agent a) {
-		if (rootAccessor(a) == null)
+		Object root = rootAccessor(a);
+		if (root == null)
 			return;
 
-		MutatableField field = (MutatableField) propertyAccessor.get(rootAccessor(a));
+		MutatableField field = (MutatableField) propertyAccessor.get(root);
 		field.removeMultiplier(cause);
 	}
 
@@ -0,0 +1,379 @@
+package org.cobweb.cobweb2.plugins.gravity;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+import org.cobweb.cobweb2.core.Agent;
+import org.cobweb.cobweb2.core.AgentSpatialIndex;
+import org.cobweb.cobweb2.core.Direction;
+import org.cobweb.cobweb2.core.Topology;
+
+/**
+ * Groups of agents touching each other north, east, south or west (across
+ * wrapped edges too), each of which acts as a single point mass at its center.
+ *
+ * Tiles whose agent changed are marked dirty by the agent index. On update,
+ * only the groups on or next to a dirty tile are taken apart and labelled
+ * again; all other groups keep their labels and totals. Maps where
+ * neighbours don't go both ways are labelled from scratch instead. Labelling uses a
+ * queue instead of recursion, so large groups can't overflow the stack.
+ *
+ * Point masses come out the same as the old whole-map recursive labelling,
+ * which scanned the map column by column and let later writes to massArray
+ * overwrite earlier ones.
+ */
+public class ConnectedMasses implements AgentSpatialIndex.TileListener, Serializable {
+
+	private static final int NONE = -1;
+
+	private final int width;
+	private final int height;
+	private final int types;
+
+	/**
+	 * Tiles next to each tile: north, east, south, west. NONE past an edge
+	 */
+	private final int[] neighbours;
+
+	/**
+	 * Groups can only be relabelled one at a time when neighbours go both ways
+	 */
+	private final boolean symmetric;
+
+	/**
+	 * Group label of each tile, NONE if there is no agent on it
+	 */
+	private final int[] label;
+
+	private final boolean[] dirty;
+	private int[] dirtyTiles = new int[16];
+	private int dirtyCount = 0;
+
+	// Groups, indexed by label
+	private int labelCount = 0;
+	private boolean[] groupLive = new boolean[0];
+	private boolean[] groupInvalid = new boolean[0];
+	/** First tile of the group in scan order (x * height + y) */
+	private int[] groupFirst = new int[0];
+	private int[] groupFirstTile = new int[0];
+	/** Per agent type: agent count, sum of x, sum of y */
+	private long[] groupStats = new long[0];
+	private int[] groupMass = new int[0];
+
+	private int[] freeLabels = new int[16];
+	private int freeCount = 0;
+
+	private int[] invalid = new int[16];
+	private int invalidCount = 0;
+
+	private final int[] queue;
+	private int[] seeds = new int[16];
+
+	private long[] candidates = new long[16];
+
+	private int pointCount = 0;
+	private int[] pointX = new int[16];
+	private int[] pointY = new int[16];
+	private int[] pointMass = new int[16];
+
+	public ConnectedMasses(Topology topology, int types) {
+		this.width = topology.width;
+		this.height = topology.height;
+		this.types = types;
+
+		int tiles = width * height;
+		label = new int[tiles];
+		Arrays.fill(label, NONE);
+		dirty = new boolean[tiles];
+		queue = new int[tiles];
+
+		Direction[] dirs = { Topology.NORTH, Topology.EAST, Topology.SOUTH, Topology.WEST };
+		neighbours = new int[tiles * 4];
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++) {
+				for (int d = 0; d < 4; d++) {
+					int n = topology.adjacentIndex(tile(x, y), dirs[d]);
+					neighbours[tile(x, y) * 4 + d] = n < 0 ? NONE : n;
+				}
+			}
+		}
+		symmetric = isSymmetric();
+	}
+
+	/**
+	 * Whether every tile is a neighbour of its neighbours. Not true along the
+	 * edges of a globe of odd width, where which agents count as one group
+	 * depends on the order they are scanned in.
+	 */
+	private boolean isSymmetric() {
+		for (int tile = 0; tile < label.length; tile++) {
+			for (int d = 0; d < 4; d++) {
+				int n = neighbours[tile * 4 + d];
+				if (n == NONE)
+					continue;
+				boolean back = false;
+				for (int e = 0; e < 4; e++) {
+					if (neighbours[n * 4 + e] == tile)
+						back = true;
+				}
+				if (!back)
+					return false;
+			}
+		}
+		return true;
+	}
+
+	private int tile(int x, int y) {
+		return y * width + x;
+	}
+
+	@Override
+	public void tileChanged(int x, int y) {
+		int tile = tile(x, y);
+		if (dirty[tile])
+			return;
+		dirty[tile] = true;
+		if (dirtyCount == dirtyTiles.length)
+			dirtyTiles = Arrays.copyOf(dirtyTiles, dirtyCount * 2);
+		dirtyTiles[dirtyCount++] = tile;
+	}
+
+	/**
+	 * Labels every group from scratch
+	 */
+	public void rebuild(AgentSpatialIndex index) {
+		Arrays.fill(label, NONE);
+		Arrays.fill(dirty, false);
+		dirtyCount = 0;
+		labelCount = 0;
+		freeCount = 0;
+
+		// Same column by column order as the old scan
+		for (int x = 0; x < width; x++) {
+			for (int y = 0; y < height; y++) {
+				int tile = tile(x, y);
+				if (label[tile] == NONE && index.get(x, y) != null)
+					labelGroup(index, tile);
+			}
+		}
+	}
+
+	/**
+	 * Relabels the groups touched by tiles that changed since the last update
+	 */
+	public void update(AgentSpatialIndex index) {
+		if (dirtyCount == 0)
+			return;
+
+		if (!symmetric) {
+			rebuild(index);
+			return;
+		}
+
+		int seedCount = 0;
+		for (int i = 0; i < dirtyCount; i++) {
+			int tile = dirtyTiles[i];
+			dirty[tile] = false;
+			seeds = add(seeds, seedCount++, tile);
+			invalidate(label[tile]);
+			for (int d = 0; d < 4; d++) {
+				int n = neighbours[tile * 4 + d];
+				if (n != NONE)
+					invalidate(label[n]);
+			}
+		}
+		dirtyCount = 0;
+
+		// Take apart the old groups, remembering their tiles
+		for (int i = 0; i < invalidCount; i++) {
+			int g = invalid[i];
+			int start = groupFirstTile[g];
+			label[start] = NONE;
+			queue[0] = start;
+			int tail = 1;
+			for (int head = 0; head < tail; head++) {
+				int tile = queue[head];
+				seeds = add(seeds, seedCount++, tile);
+				for (int d = 0; d < 4; d++) {
+					int n = neighbours[tile * 4 + d];
+					if (n != NONE && label[n] == g) {
+						label[n] = NONE;
+						queue[tail++] = n;
+					}
+				}
+			}
+			groupInvalid[g] = false;
+			groupLive[g] = false;
+			freeLabels = add(freeLabels, freeCount++, g);
+		}
+		invalidCount = 0;
+
+		for (int i = 0; i < seedCount; i++) {
+			int tile = seeds[i];
+			if (label[tile] == NONE && index.get(tile % width, tile / width) != null)
+				labelGroup(index, tile);
+		}
+	}
+
+	private void invalidate(int g) {
+		if (g == NONE || groupInvalid[g])
+			return;
+		groupInvalid[g] = true;
+		invalid = add(invalid, invalidCount++, g);
+	}
+
+	private int newLabel() {
+		if (freeCount > 0)
+			return freeLabels[--freeCount];
+
+		if (labelCount == groupLive.length) {
+			int size = Math.max(16, labelCount * 2);
+			groupLive = Arrays.copyOf(groupLive, size);
+			groupInvalid = Arrays.copyOf(groupInvalid, size);
+			groupFirst = Arrays.copyOf(groupFirst, size);
+			groupFirstTile = Arrays.copyOf(groupFirstTile, size);
+			groupMass = Arrays.copyOf(groupMass, size);
+			groupStats = Arrays.copyOf(groupStats, size * types * 3);
+		}
+		return labelCount++;
+	}
+
+	private void labelGroup(AgentSpatialIndex index, int start) {
+		int g = newLabel();
+		groupLive[g] = true;
+		Arrays.fill(groupStats, g * types * 3, (g + 1) * types * 3, 0);
+
+		int first = Integer.MAX_VALUE;
+		int firstTile = start;
+
+		label[start] = g;
+		queue[0] = start;
+		int tail = 1;
+		for (int head = 0; head < tail; head++) {
+			int tile = queue[head];
+			int x = tile % width;
+			int y = tile / width;
+
+			Agent agent = index.get(x, y);
+			int stat = (g * types + agent.getType()) * 3;
+			groupStats[stat]++;
+			groupStats[stat + 1] += x;
+			groupStats[stat + 2] += y;
+
+			int scan = x * height + y;
+			if (scan < first) {
+				first = scan;
+				firstTile = tile;
+			}
+
+			for (int d = 0; d < 4; d++) {
+				int n = neighbours[tile * 4 + d];
+				if (n != NONE && label[n] == NONE && index.get(n % width, n / width) != null) {
+					label[n] = g;
+					queue[tail++] = n;
+				}
+			}
+		}
+
+		groupFirst[g] = first;
+		groupFirstTile[g] = firstTile;
+	}
+
+	/**
+	 * Finds the point mass of every group
+	 * @param typeMass mass of an agent of each type
+	 */
+	public void computePointMasses(int[] typeMass) {
+		int candidateCount = 0;
+		for (int g = 0; g < labelCount; g++) {
+			if (!groupLive[g])
+				continue;
+
+			// Each agent counts towards the center as many times as its mass
+			long mass = 0;
+			long weight = 0;
+			long sumX = 0;
+			long sumY = 0;
+			for (int t = 0; t < types; t++) {
+				int stat = (g * types + t) * 3;
+				int w = Math.max(0, typeMass[t]);
+				mass += groupStats[stat] * typeMass[t];
+				weight += groupStats[stat] * w;
+				sumX += groupStats[stat + 1] * w;
+				sumY += groupStats[stat + 2] * w;
+			}
+			if (mass == 0 || weight == 0)
+				continue;
+
+			groupMass[g] = (int) mass;
+			int centerX = (int) (sumX / weight);
+			int centerY = (int) (sumY / weight);
+			long center = centerX * height + centerY;
+			if (candidateCount == candidates.length)
+				candidates = Arrays.copyOf(candidates, candidateCount * 2);
+			candidates[candidateCount++] = center << 32 | groupFirst[g];
+		}
+
+		// Sort by center, then by when the old column by column scan reached the group
+		Arrays.sort(candidates, 0, candidateCount);
+
+		pointCount = 0;
+		for (int i = 0; i < candidateCount; i++) {
+			int center = (int) (candidates[i] >>> 32);
+			// Of groups sharing a center, the last one scanned wrote over the others
+			if (i + 1 < candidateCount && (int) (candidates[i + 1] >>> 32) == center)
+				continue;
+
+			int first = (int) candidates[i];
+			int centerX = center / height;
+			int centerY = center % height;
+			int owner = label[tile(centerX, centerY)];
+			// The scan cleared the center tile after the group was done with it
+			if (owner == NONE ? first < center : first < groupFirst[owner])
+				continue;
+
+			int g = label[groupFirstTile(first)];
+			if (pointCount == pointX.length) {
+				pointX = Arrays.copyOf(pointX, pointCount * 2);
+				pointY = Arrays.copyOf(pointY, pointCount * 2);
+				pointMass = Arrays.copyOf(pointMass, pointCount * 2);
+			}
+			pointX[pointCount] = centerX;
+			pointY[pointCount] = centerY;
+			pointMass[pointCount] = groupMass[g];
+			pointCount++;
+		}
+	}
+
+	private int groupFirstTile(int scan) {
+		return tile(scan / height, scan % height);
+	}
+
+	/**
+	 * Number of point masses found by computePointMasses(), in scan order
+	 */
+	public int getPointCount() {
+		return pointCount;
+	}
+
+	public int[] getPointX() {
+		return pointX;
+	}
+
+	public int[] getPointY() {
+		return pointY;
+	}
+
+	public int[] getPointMass() {
+		return pointMass;
+	}
+
+	private static int[] add(int[] array, int i, int value) {
+		if (i == array.length)
+			array = Arrays.copyOf(array, i * 2);
+		array[i] = value;
+		return array;
+	}
+
+	private static final long serialVersionUID = 1L;
+}
@@ -0,0 +1,372 @@
+package org.cobweb.cobweb2.plugins.gravity;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+import org.cobweb.cobweb2.core.Direction;
+import org.cobweb.cobweb2.core.Location;
+import org.cobweb.cobweb2.core.Topology;
+import org.cobweb.cobweb2.core.Topology.WrapImage;
+
+/**
+ * Gravitational pull of the point masses on each tile, rebuilt once per tick.
+ *
+ * With approximation 0 the pull is summed over every point mass, giving
+ * exactly the same result as summing over every tile of the map. The force
+ * on each tile is kept for the rest of the tick, for each agent mass in turn,
+ * so agents moving over the same tile don't sum it again.
+ *
+ * With approximation above 0, the point masses are put in a Barnes-Hut
+ * quadtree and groups of masses that look smaller than the approximation
+ * angle from a tile are lumped together at their center of mass. The pull
+ * on each tile is then computed at most once per tick.
+ */
+public class GravityField implements Serializable {
+
+	private final Topology topology;
+
+	private final WrapImage[] images;
+
+	private final float approximation;
+
+	private int pointCount = 0;
+	private Location[] points = new Location[16];
+	private int[] pointMass = new int[16];
+
+	// Quadtree nodes. Leaves hold a single point, internal nodes up to 4 children
+	private int nodeCount = 0;
+	private int[] nodeX0 = new int[16], nodeY0 = new int[16], nodeX1 = new int[16], nodeY1 = new int[16];
+	private int[] nodeMass = new int[16];
+	private double[] nodeCenterX = new double[16], nodeCenterY = new double[16];
+	private int[] nodePoint = new int[16];
+	private int[] nodeChildren = new int[16 * 4];
+
+	private int[] order = new int[16];
+	private int[] scratch = new int[16];
+
+	// Pull on a unit mass, cached per tile for the current version. In exact
+	// mode it is the force on fieldMass instead, to get the same rounding.
+	private final double[] fieldX;
+	private final double[] fieldY;
+	private final int[] fieldVersion;
+	private final int[] fieldMass;
+	private float fieldConstant;
+	private int version = 1;
+
+	private static class Pull implements Serializable {
+		double x;
+		double y;
+
+		private static final long serialVersionUID = 1L;
+	}
+
+	private final Pull unitPull = new Pull();
+
+	public GravityField(Topology topology, float approximation) {
+		this.topology = topology;
+		this.images = topology.getWrapImages();
+		this.approximation = approximation;
+		fieldX = new double[topology.width * topology.height];
+		fieldY = new double[topology.width * topology.height];
+		fieldVersion = new int[topology.width * topology.height];
+		fieldMass = approximation > 0 ? null : new int[topology.width * topology.height];
+	}
+
+	public boolean isExact() {
+		return approximation <= 0;
+	}
+
+	/**
+	 * Rebuilds the field from new point masses
+	 * @param massArray mass at each tile, 0 for none
+	 */
+	public void update(int[][] massArray) {
+		pointCount = 0;
+		for (int x = 0; x < topology.width; x++) {
+			for (int y = 0; y < topology.height; y++) {
+				if (massArray[x][y] != 0)
+					addPoint(x, y, massArray[x][y]);
+			}
+		}
+		rebuild();
+	}
+
+	/**
+	 * Rebuilds the field from new point masses
+	 * @param count number of point masses
+	 * @param x x of each point mass
+	 * @param y y of each point mass
+	 * @param mass mass of each point mass
+	 */
+	public void update(int count, int[] x, int[] y, int[] mass) {
+		pointCount = 0;
+		for (int i = 0; i < count; i++) {
+			if (mass[i] != 0)
+				addPoint(x[i], y[i], mass[i]);
+		}
+		rebuild();
+	}
+
+	private void rebuild() {
+		nextVersion();
+		if (isExact())
+			return;
+
+		nodeCount = 0;
+		if (order.length < pointCount) {
+			order = new int[points.length];
+			scratch = new int[points.length];
+		}
+		for (int i = 0; i < pointCount; i++)
+			order[i] = i;
+		if (pointCount > 0)
+			buildNode(0, 0, topology.width - 1, topology.height - 1, 0, pointCount);
+	}
+
+	private void nextVersion() {
+		if (++version == 0) {
+			Arrays.fill(fieldVersion, 0);
+			version = 1;
+		}
+	}
+
+	/**
+	 * Calculates the pull of all masses on an agent
+	 * @param at agent location
+	 * @param constant gravitational constant
+	 * @param mass agent mass
+	 * @param force output: {x, y}, + right/down, - left/up
+	 */
+	public void getForce(Location at, float constant, int mass, double[] force) {
+		double forceX = 0;
+		double forceY = 0;
+		int tile = at.y * topology.width + at.x;
+
+		if (isExact()) {
+			if (constant != fieldConstant) {
+				fieldConstant = constant;
+				nextVersion();
+			}
+			if (fieldVersion[tile] == version && fieldMass[tile] == mass) {
+				force[0] = fieldX[tile];
+				force[1] = fieldY[tile];
+				return;
+			}
+
+			for (int i = 0; i < pointCount; i++) {
+				Location ab = points[i];
+				if (at.equals(ab))
+					continue;
+				double dis = topology.getDistanceSquared(at, ab);
+				double f = (constant * pointMass[i] * mass) / dis;
+				Direction toPoint = topology.getDirectionBetween8way(at, ab);
+				forceX += (toPoint.x / Math.sqrt(toPoint.x * toPoint.x + toPoint.y * toPoint.y)) * f;
+				forceY += (toPoint.y / Math.sqrt(toPoint.x * toPoint.x + toPoint.y * toPoint.y)) * f;
+			}
+			fieldX[tile] = forceX;
+			fieldY[tile] = forceY;
+			fieldMass[tile] = mass;
+			fieldVersion[tile] = version;
+		} else {
+			if (fieldVersion[tile] != version) {
+				unitPull.x = 0;
+				unitPull.y = 0;
+				if (nodeCount > 0)
+					addPull(0, at, unitPull);
+				fieldX[tile] = unitPull.x;
+				fieldY[tile] = unitPull.y;
+				fieldVersion[tile] = version;
+			}
+			forceX = fieldX[tile] * constant * mass;
+			forceY = fieldY[tile] * constant * mass;
+		}
+
+		force[0] = forceX;
+		force[1] = forceY;
+	}
+
+	private void addPoint(int x, int y, int mass) {
+		if (pointCount == points.length) {
+			points = Arrays.copyOf(points, pointCount * 2);
+			pointMass = Arrays.copyOf(pointMass, pointCount * 2);
+		}
+		points[pointCount] = new Location(x, y);
+		pointMass[pointCount] = mass;
+		pointCount++;
+	}
+
+	private int newNode(int x0, int y0, int x1, int y1) {
+		if (nodeCount == nodeMass.length) {
+			int size = nodeCount * 2;
+			nodeX0 = Arrays.copyOf(nodeX0, size);
+			nodeY0 = Arrays.copyOf(nodeY0, size);
+			nodeX1 = Arrays.copyOf(nodeX1, size);
+			nodeY1 = Arrays.copyOf(nodeY1, size);
+			nodeMass = Arrays.copyOf(nodeMass, size);
+			nodeCenterX = Arrays.copyOf(nodeCenterX, size);
+			nodeCenterY = Arrays.copyOf(nodeCenterY, size);
+			nodePoint = Arrays.copyOf(nodePoint, size);
+			nodeChildren = Arrays.copyOf(nodeChildren, size * 4);
+		}
+		int node = nodeCount++;
+		nodeX0[node] = x0;
+		nodeY0[node] = y0;
+		nodeX1[node] = x1;
+		nodeY1[node] = y1;
+		nodePoint[node] = -1;
+		Arrays.fill(nodeChildren, node * 4, node * 4 + 4, -1);
+		return node;
+	}
+
+	/**
+	 * Builds the subtree for the points order[from] to order[to - 1], which
+	 * all lie inside the rectangle (x0, y0) - (x1, y1)
+	 */
+	private int buildNode(int x0, int y0, int x1, int y1, int from, int to) {
+		int node = newNode(x0, y0, x1, y1);
+
+		long mass = 0;
+		double sumX = 0;
+		double sumY = 0;
+		for (int i = from; i < to; i++) {
+			int p = order[i];
+			mass += pointMass[p];
+			sumX += (double) pointMass[p] * points[p].x;
+			sumY += (double) pointMass[p] * points[p].y;
+		}
+		nodeMass[node] = (int) mass;
+		nodeCenterX[node] = sumX / mass;
+		nodeCenterY[node] = sumY / mass;
+
+		if (to - from == 1) {
+			nodePoint[node] = order[from];
+			return node;
+		}
+
+		int midX = (x0 + x1) >> 1;
+		int midY = (y0 + y1) >> 1;
+
+		// Sort points into quadrants: NW, NE, SW, SE
+		int[] counts = new int[4];
+		for (int i = from; i < to; i++) {
+			counts[quadrant(points[order[i]], midX, midY)]++;
+		}
+		int[] starts = new int[5];
+		starts[0] = from;
+		for (int q = 0; q < 4; q++)
+			starts[q + 1] = starts[q] + counts[q];
+		int[] fill = Arrays.copyOf(starts, 4);
+		for (int i = from; i < to; i++) {
+			int p = order[i];
+			scratch[fill[quadrant(points[p], midX, midY)]++] = p;
+		}
+		System.arraycopy(scratch, from, order, from, to - from);
+
+		for (int q = 0; q < 4; q++) {
+			if (counts[q] == 0)
+				continue;
+			int cx0 = (q & 1) == 0 ? x0 : midX + 1;
+			int cx1 = (q & 1) == 0 ? midX : x1;
+			int cy0 = (q & 2) == 0 ? y0 : midY + 1;
+			int cy1 = (q & 2) == 0 ? midY : y1;
+			int child = buildNode(cx0, cy0, cx1, cy1, starts[q], starts[q + 1]);
+			nodeChildren[node * 4 + q] = child;
+		}
+		return node;
+	}
+
+	private static int quadrant(Location l, int midX, int midY) {
+		return (l.x > midX ? 1 : 0) | (l.y > midY ? 2 : 0);
+	}
+
+	/**
+	 * Adds the pull of node's masses on a unit mass at a tile
+	 */
+	private void addPull(int node, Location at, Pull pull) {
+		int point = nodePoint[node];
+		if (point >= 0) {
+			Location ab = points[point];
+			if (at.equals(ab))
+				return;
+			double dis = topology.getDistanceSquared(at, ab);
+			double f = pointMass[point] / dis;
+			Direction toPoint = topology.getDirectionBetween8way(at, ab);
+			addDirectional(pull, toPoint, f);
+			return;
+		}
+
+		int size = Math.max(nodeX1[node] - nodeX0[node], nodeY1[node] - nodeY0[node]) + 1;
+		double reach = rectDistanceSquared(at, node);
+		if (reach > 0 && size * size < approximation * approximation * reach) {
+			// Far enough away to be treated as one mass at the center, as long as
+			// every mass in it would pull in the same direction
+			int image = nearestImage(nodeX0[node], nodeY0[node], at);
+			Direction toNode = directionTo(nodeX0[node], nodeY0[node], image, at);
+			if (image == nearestImage(nodeX1[node], nodeY0[node], at)
+					&& image == nearestImage(nodeX0[node], nodeY1[node], at)
+					&& image == nearestImage(nodeX1[node], nodeY1[node], at)
+					&& toNode.equals(directionTo(nodeX1[node], nodeY0[node], image, at))
+					&& toNode.equals(directionTo(nodeX0[node], nodeY1[node], image, at))
+					&& toNode.equals(directionTo(nodeX1[node], nodeY1[node], image, at))) {
+				WrapImage wi = images[image];
+				double dx = nodeCenterX[node] + wi.offsetX - at.x;
+				double dy = (wi.flipY ? wi.offsetY - nodeCenterY[node] : wi.offsetY + nodeCenterY[node]) - at.y;
+				addDirectional(pull, toNode, nodeMass[node] / (dx * dx + dy * dy));
+				return;
+			}
+		}
+
+		for (int q = 0; q < 4; q++) {
+			int child = nodeChildren[node * 4 + q];
+			if (child >= 0)
+				addPull(child, at, pull);
+		}
+	}
+
+	/**
+	 * Index of the copy of tile (x, y) that is closest to a location,
+	 * chosen the same way Topology.getDistanceSquared() does.
+	 */
+	private int nearestImage(int x, int y, Location at) {
+		int best = 0;
+		long bestDistance = Long.MAX_VALUE;
+		for (int i = 0; i < images.length; i++) {
+			long dx = images[i].imageX(x) - at.x;
+			long dy = images[i].imageY(y) - at.y;
+			long d = dx * dx + dy * dy;
+			if (d < bestDistance) {
+				bestDistance = d;
+				best = i;
+			}
+		}
+		return best;
+	}
+
+	private Direction directionTo(int x, int y, int image, Location at) {
+		return topology.getDirection8way(images[image].imageX(x) - at.x, images[image].imageY(y) - at.y);
+	}
+
+	private static void addDirectional(Pull pull, Direction toPoint, double f) {
+		pull.x += (toPoint.x / Math.sqrt(toPoint.x * toPoint.x + toPoint.y * toPoint.y)) * f;
+		pull.y += (toPoint.y / Math.sqrt(toPoint.x * toPoint.x + toPoint.y * toPoint.y)) * f;
+	}
+
+	/**
+	 * Distance squared from a tile to the closest copy of a node's rectangle
+	 */
+	private double rectDistanceSquared(Location at, int node) {
+		double best = Double.MAX_VALUE;
+		for (WrapImage image : images) {
+			int rx0 = nodeX0[node] + image.offsetX;
+			int rx1 = nodeX1[node] + image.offsetX;
+			int ry0 = image.imageY(image.flipY ? nodeY1[node] : nodeY0[node]);
+			int ry1 = image.imageY(image.flipY ? nodeY0[node] : nodeY1[node]);
+			int dx = Math.max(0, Math.max(rx0 - at.x, at.x - rx1));
+			int dy = Math.max(0, Math.max(ry0 - at.y, at.y - ry1));
+			best = Math.min(best, (double) dx * dx + (double) dy * dy);
+		}
+		return best;
+	}
+
+	private static final long serialVersionUID = 1L;
+}
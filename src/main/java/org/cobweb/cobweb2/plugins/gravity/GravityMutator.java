@@ -1,22 +1,28 @@
 package org.cobweb.cobweb2.plugins.gravity;
 
-import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.Set;
 
 import org.cobweb.cobweb2.Simulation;
 import org.cobweb.cobweb2.core.Agent;
+import org.cobweb.cobweb2.core.AgentSpatialIndex;
 import org.cobweb.cobweb2.core.Direction;
-import org.cobweb.cobweb2.core.Location;
+import org.cobweb.cobweb2.core.RandomStream;
 import org.cobweb.cobweb2.core.Rotation;
 import org.cobweb.cobweb2.core.SimulationTimeSpace;
 import org.cobweb.cobweb2.core.Topology;
 import org.cobweb.cobweb2.impl.ComplexAgent;
 import org.cobweb.cobweb2.impl.ComplexEnvironment;
 import org.cobweb.cobweb2.plugins.AgentState;
+import org.cobweb.cobweb2.plugins.EnvironmentLayer;
 import org.cobweb.cobweb2.plugins.EnvironmentMutator;
+import org.cobweb.cobweb2.plugins.LocalMutator;
 import org.cobweb.cobweb2.plugins.MoveMutator;
 import org.cobweb.util.Pair;
 
-public class GravityMutator implements MoveMutator, EnvironmentMutator {
+public class GravityMutator implements MoveMutator, EnvironmentMutator, LocalMutator {
+
+	private static final RandomStream RANDOM_STREAM = RandomStream.named("GravityMutator");
 
 	public GravityMutator() {
 	}
@@ -24,106 +30,54 @@ public class GravityMutator implements MoveMutator, EnvironmentMutator {
 	private GravityParams params;
 	private SimulationTimeSpace sim;
 
-	private int[][] massArray; // Array holding the positions of all the point masses
-
-	public void setParams(SimulationTimeSpace sim, GravityParams params) {
-		this.sim = sim;
-		this.params = params;
-
-		int w = sim.getTopology().width;
-		int h = sim.getTopology().height;
+	private ConnectedMasses masses; // Groups of agents that act as one point mass
 
-		massArray = new int[w][h];
+	private AgentSpatialIndex trackedIndex;
 
-	}
+	private int[] typeMass;
 
-	private int calculateContiguousArea(int a, int b, boolean[][] checked, ComplexEnvironment env, ArrayList<Location> result) {
-		Location thisLoc = new Location(a, b);
-		if (!checked[a][b] && env.hasAgent(thisLoc)) {
-			int total = params.gravityParams[env.getAgent(thisLoc).getType()].mass.getValue();
-			checked[a][b] = true;
-			for (int i = 0; i < total; i++) {
-				result.add(thisLoc);
-			}
+	private GravityField field;
 
-			Location northLoc = env.topology.getAdjacent(thisLoc, Topology.NORTH);
-			Location eastLoc = env.topology.getAdjacent(thisLoc, Topology.EAST);
-			Location southLoc = env.topology.getAdjacent(thisLoc, Topology.SOUTH);
-			Location westLoc = env.topology.getAdjacent(thisLoc, Topology.WEST);
-
-			if (northLoc != null && !checked[northLoc.x][northLoc.y] && env.hasAgent(northLoc)) {
-				total += calculateContiguousArea(northLoc.x, northLoc.y, checked, env, result);
-			}
-			if (eastLoc != null && !checked[eastLoc.x][eastLoc.y] && env.hasAgent(eastLoc)) {
-				total += calculateContiguousArea(eastLoc.x, eastLoc.y, checked, env, result);
-			}
-			if (southLoc != null && !checked[southLoc.x][southLoc.y] && env.hasAgent(southLoc)) {
-				total += calculateContiguousArea(southLoc.x, southLoc.y, checked, env, result);
-			}
-			if (westLoc != null && !checked[westLoc.x][westLoc.y] && env.hasAgent(westLoc)) {
-				total += calculateContiguousArea(westLoc.x, westLoc.y, checked, env, result);
-			}
-			return total;
-		}
-		return 0;
-	}
-
-	private Location centerOfMass(ArrayList<Location> locations) {
-		int centerX = 0;
-		int centerY = 0;
+	public void setParams(SimulationTimeSpace sim, GravityParams params) {
+		this.sim = sim;
+		this.params = params;
 
-		for (Location loc: locations) {
-			centerX += loc.x;
-			centerY += loc.y;
+		if (trackedIndex != null) {
+			trackedIndex.removeListener(masses);
+			trackedIndex = null;
 		}
+		masses = new ConnectedMasses(sim.getTopology(), params.gravityParams.length);
+		typeMass = new int[params.gravityParams.length];
 
-		return new Location(centerX / locations.size(), centerY / locations.size());
+		field = new GravityField(sim.getTopology(), params.approximation);
 	}
 
 	private void calculateMasses() {
 		ComplexEnvironment env = ((Simulation) sim).theEnvironment;
 
-		boolean[][] checked = new boolean[env.data.width][env.data.height];
-
-		for (int i = 0; i < env.data.width; i++) {
-			for (int j = 0; j < env.data.height; j++) {
-				if (!checked[i][j]) {
-					ArrayList<Location> locations = new ArrayList<>(); // The locations where this mass occurs, weighted for each agent's mass
-					// i.e. if an agent has mass 4, its location will appear 4 times in <locations>
-					int mass = calculateContiguousArea(i, j, checked, env, locations);
-					if (mass == 0) {
-						massArray[i][j] = 0;
-					} else {
-						Location center = centerOfMass(locations);
-						for (Location loc : locations) {
-							massArray[loc.x][loc.y] = 0;
-						}
-						massArray[center.x][center.y] = mass;
-					}
-				}
-			}
+		AgentSpatialIndex index = env.getAgentIndex();
+		if (index != trackedIndex) {
+			// Environment was reloaded, start tracking the new index
+			if (trackedIndex != null)
+				trackedIndex.removeListener(masses);
+			trackedIndex = index;
+			index.addListener(masses);
+			masses.rebuild(index);
+		} else {
+			masses.update(index);
 		}
-	}
 
-	private Pair<Double, Double> calculateGravityProbability(Agent agent) {
-		double forceX = 0; // + right, - left
-		double forceY = 0; // + down, - up
-
-		Location agentLoc = agent.getPosition();
-		for (int a = 0; a < sim.getTopology().width; a++) {
-			for (int b = 0; b < sim.getTopology().height; b++) {
-				Location ab = new Location(a, b);
-				double dis = sim.getTopology().getDistanceSquared(agentLoc, ab);
-				if (!agentLoc.equals(ab)) {
-					double force = (params.gravitationalConstant * massArray[a][b] * params.gravityParams[agent.getType()].mass.getValue()) / dis;
-					Direction toPoint = sim.getTopology().getDirectionBetween8way(agentLoc, ab);
-					forceX += (toPoint.x / Math.sqrt(toPoint.x * toPoint.x + toPoint.y * toPoint.y)) * force;
-					forceY += (toPoint.y / Math.sqrt(toPoint.x * toPoint.x + toPoint.y * toPoint.y)) * force;
-				}
-			}
+		for (int t = 0; t < typeMass.length; t++) {
+			typeMass[t] = params.gravityParams[t].mass.getValue();
 		}
+		masses.computePointMasses(typeMass);
+		field.update(masses.getPointCount(), masses.getPointX(), masses.getPointY(), masses.getPointMass());
+	}
 
-		return new Pair<>(forceX, forceY);
+	private Pair<Double, Double> calculateGravityProbability(Agent agent) {
+		double[] force = new double[2];
+		field.getForce(agent.getPosition(), params.gravitationalConstant, params.gravityParams[agent.getType()].mass.getValue(), force);
+		return new Pair<>(force[0], force[1]);
 	}
 
 	@Override
@@ -145,7 +99,7 @@ public class GravityMutator implements MoveMutator, EnvironmentMutator {
 				to = forceY > 0 ? Topology.SOUTH : Topology.NORTH;
 			}
 			ComplexAgent ag = (ComplexAgent) agent;
-			if (sim.getRandom().nextFloat() < Math.max(Math.abs(forceX), Math.abs(forceY))) {
+			if (sim.getRandom(RANDOM_STREAM).nextFloat() < Math.max(Math.abs(forceX), Math.abs(forceY))) {
 				Direction agentDir = agent.getPosition().direction;
 				if (sim.getTopology().getRotationBetween(agentDir, to).equals(Rotation.None)) {
 					ag.step();
@@ -181,6 +135,16 @@ public class GravityMutator implements MoveMutator, EnvironmentMutator {
 		return false;
 	}
 
+	@Override
+	public Set<EnvironmentLayer> getReadLayers() {
+		return EnumSet.of(EnvironmentLayer.AGENTS, EnvironmentLayer.AGENT_PARAMS);
+	}
+
+	@Override
+	public Set<EnvironmentLayer> getWriteLayers() {
+		return EnumSet.noneOf(EnvironmentLayer.class);
+	}
+
 	@Override
 	public void loadNew() {
 		calculateMasses(); // Create the initial array of point masses
@@ -195,4 +159,12 @@ public class GravityMutator implements MoveMutator, EnvironmentMutator {
 	public <T extends AgentState> boolean acceptsState(Class<T> type, T value) {
 		return false;
 	}
+
+	@Override
+	public boolean isLocal(Agent agent) {
+		// Pulled by masses anywhere on the map
+		return !params.gravityEnabled;
+	}
+
+	private static final long serialVersionUID = 1L;
 }
@@ -24,6 +24,14 @@ public class GravityParams implements PerTypeParam<GravityTypeParams> {
     @ConfXMLTag("gravityStrength")
     public float gravitationalConstant = 0.667f;
 
+    /*
+     * Barnes-Hut opening angle: groups of masses that look smaller than this
+     * from an agent are treated as a single mass. 0 is exact, 0.3 is usually within a few percent
+     */
+    @ConfDisplayName("Gravity approximation")
+    @ConfXMLTag("gravityApproximation")
+    public float approximation = 0f;
+
     @ConfXMLTag("GravityParams")
     @ConfList(indexName = "Gravity", startAtOne = true)
     public GravityTypeParams[] gravityParams = new GravityTypeParams[0];
@@ -3,19 +3,20 @@ package org.cobweb.cobweb2.plugins.learning;
 import org.cobweb.cobweb2.core.Agent;
 import org.cobweb.cobweb2.core.Cause;
 import org.cobweb.cobweb2.core.ControllerInput;
-import org.cobweb.cobweb2.core.RandomSource;
+import org.cobweb.cobweb2.core.SimulationTimeSpace;
 import org.cobweb.cobweb2.plugins.ControllerInputMutator;
 import org.cobweb.cobweb2.plugins.EnergyMutator;
+import org.cobweb.cobweb2.plugins.LocalMutator;
 import org.cobweb.cobweb2.plugins.StatefulSpawnMutatorBase;
 import org.cobweb.cobweb2.plugins.UpdateMutator;
 
 
 public class LearningMutator extends StatefulSpawnMutatorBase<LearningState>
-implements EnergyMutator, ControllerInputMutator, UpdateMutator {
+implements EnergyMutator, ControllerInputMutator, UpdateMutator, LocalMutator {
 
 	private LearningParams params;
 
-	public LearningMutator(RandomSource rand) {
+	public LearningMutator(SimulationTimeSpace rand) {
 		super(LearningState.class, rand);
 	}
 
@@ -57,4 +58,10 @@ implements EnergyMutator, ControllerInputMutator, UpdateMutator {
 		state.update();
 	}
 
+	@Override
+	public boolean isLocal(Agent agent) {
+		return true;
+	}
+
+	private static final long serialVersionUID = 1L;
 }
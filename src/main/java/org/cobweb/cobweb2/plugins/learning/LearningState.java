@@ -1,5 +1,6 @@
 package org.cobweb.cobweb2.plugins.learning;
 
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -109,7 +110,7 @@ public class LearningState implements AgentState, Updatable {
 	}
 
 
-	private static class ConsequenceGroup {
+	private static class ConsequenceGroup implements Serializable {
 		List<Consequence> consequences = new ArrayList<>();
 
 		public void addConsequence(Consequence c) {
@@ -123,9 +124,11 @@ public class LearningState implements AgentState, Updatable {
 			}
 			return score;
 		}
+
+		private static final long serialVersionUID = 1L;
 	}
 
-	private static class Consequence {
+	private static class Consequence implements Serializable {
 		public Consequence(int delta, Cause cause) {
 			this.delta = delta;
 			this.cause = cause;
@@ -135,6 +138,8 @@ public class LearningState implements AgentState, Updatable {
 		@SuppressWarnings("unused")
 		//TODO: more advanced learning can use this in the future
 		public Cause cause;
+
+		private static final long serialVersionUID = 1L;
 	}
 
 	@Override
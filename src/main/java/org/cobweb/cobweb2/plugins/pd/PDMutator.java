@@ -5,12 +5,19 @@ import org.cobweb.cobweb2.core.Cause;
 import org.cobweb.cobweb2.core.SimulationInternals;
 import org.cobweb.cobweb2.impl.ComplexAgent;
 import org.cobweb.cobweb2.plugins.ContactMutator;
+import org.cobweb.cobweb2.plugins.LocalMutator;
 import org.cobweb.cobweb2.plugins.StatefulSpawnMutatorBase;
 import org.cobweb.cobweb2.plugins.broadcast.CheaterBroadcast;
 import org.cobweb.cobweb2.plugins.broadcast.PacketConduit.BroadcastCause;
 
 
-public class PDMutator extends StatefulSpawnMutatorBase<PDState> implements ContactMutator {
+public class PDMutator extends StatefulSpawnMutatorBase<PDState> implements ContactMutator, LocalMutator {
+
+	private static final PDRewardCause PD_REWARD = new PDRewardCause();
+	private static final PDSuckerCause PD_SUCKER = new PDSuckerCause();
+	private static final PDTemptationCause PD_TEMPTATION = new PDTemptationCause();
+	private static final PDPunishmentCause PD_PUNISHMENT = new PDPunishmentCause();
+	private static final BroadcastCheaterCause BROADCAST_CHEATER = new BroadcastCheaterCause();
 
 	SimulationInternals sim;
 	PDParams params;
@@ -88,7 +95,7 @@ public class PDMutator extends StatefulSpawnMutatorBase<PDState> implements Cont
 			meState.pdCheater = meState.lastPDcheated;
 		} else {
 			meState.pdCheater = false; // agent is assumed to cooperate
-			float rnd = sim.getRandom().nextFloat();
+			float rnd = getRandom().nextFloat();
 			if (rnd > coopProb)
 				meState.pdCheater = true; // agent defects depending on probability
 		}
@@ -154,23 +161,23 @@ public class PDMutator extends StatefulSpawnMutatorBase<PDState> implements Cont
 
 		if (!meState.pdCheater && !otherState.pdCheater) {
 			/* Both cooperate */
-			me.changeEnergy(+params.reward, new PDRewardCause());
-			adjacentAgent.changeEnergy(+params.reward, new PDRewardCause());
+			me.changeEnergy(+params.reward, PD_REWARD);
+			adjacentAgent.changeEnergy(+params.reward, PD_REWARD);
 
 		} else if (!meState.pdCheater && otherState.pdCheater) {
 			/* Only other agent cheats */
-			me.changeEnergy(+params.sucker, new PDSuckerCause());
-			adjacentAgent.changeEnergy(+params.temptation, new PDTemptationCause());
+			me.changeEnergy(+params.sucker, PD_SUCKER);
+			adjacentAgent.changeEnergy(+params.temptation, PD_TEMPTATION);
 
 		} else if (meState.pdCheater && !otherState.pdCheater) {
 			/* Only this agent cheats */
-			me.changeEnergy(+params.temptation, new PDTemptationCause());
-			adjacentAgent.changeEnergy(+params.sucker, new PDSuckerCause());
+			me.changeEnergy(+params.temptation, PD_TEMPTATION);
+			adjacentAgent.changeEnergy(+params.sucker, PD_SUCKER);
 
 		} else if (meState.pdCheater && otherState.pdCheater) {
 			/* Both cheat */
-			me.changeEnergy(+params.punishment, new PDPunishmentCause());
-			adjacentAgent.changeEnergy(+params.punishment, new PDPunishmentCause());
+			me.changeEnergy(+params.punishment, PD_PUNISHMENT);
+			adjacentAgent.changeEnergy(+params.punishment, PD_PUNISHMENT);
 		}
 
 		if (otherState.pdCheater)
@@ -184,7 +191,7 @@ public class PDMutator extends StatefulSpawnMutatorBase<PDState> implements Cont
 	 */
 	private static void iveBeenCheated(ComplexAgent me, Agent cheater) {
 		me.rememberBadAgent(cheater);
-		me.broadcast(new CheaterBroadcast(cheater, me), new BroadcastCheaterCause());
+		me.broadcast(new CheaterBroadcast(cheater, me), BROADCAST_CHEATER);
 	}
 
 	public static class PDCause implements Cause {
@@ -217,4 +224,12 @@ public class PDMutator extends StatefulSpawnMutatorBase<PDState> implements Cont
 	protected boolean validState(PDState value) {
 		return value != null;
 	}
+
+	@Override
+	public boolean isLocal(Agent agent) {
+		// Players can broadcast cheaters to the whole map
+		return !hasAgentState(agent);
+	}
+
+	private static final long serialVersionUID = 1L;
 }
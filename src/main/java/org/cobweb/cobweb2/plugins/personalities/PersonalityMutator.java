@@ -8,6 +8,7 @@ import org.cobweb.cobweb2.core.SimulationInternals;
 import org.cobweb.cobweb2.core.Topology;
 import org.cobweb.cobweb2.impl.ComplexAgent;
 import org.cobweb.cobweb2.plugins.ContactMutator;
+import org.cobweb.cobweb2.plugins.LocalMutator;
 import org.cobweb.cobweb2.plugins.MoveMutator;
 import org.cobweb.cobweb2.plugins.StatefulSpawnMutatorBase;
 import org.cobweb.cobweb2.plugins.broadcast.CheaterBroadcast;
@@ -22,7 +23,13 @@ import org.cobweb.cobweb2.plugins.pd.PDMutator.PDTemptationCause;
  * The swarm-esque part will be just an override of the controller's choice of input. But a method here
  * will be used to determine the location of the closest few agents and move in that direction.
  */
-public class PersonalityMutator extends StatefulSpawnMutatorBase<PersonalityState> implements ContactMutator, MoveMutator {
+public class PersonalityMutator extends StatefulSpawnMutatorBase<PersonalityState> implements ContactMutator, MoveMutator, LocalMutator {
+
+	private static final PDRewardCause PD_REWARD = new PDRewardCause();
+	private static final PDSuckerCause PD_SUCKER = new PDSuckerCause();
+	private static final PDTemptationCause PD_TEMPTATION = new PDTemptationCause();
+	private static final PDPunishmentCause PD_PUNISHMENT = new PDPunishmentCause();
+	private static final PDMutator.BroadcastCheaterCause BROADCAST_CHEATER = new PDMutator.BroadcastCheaterCause();
 
 	SimulationInternals sim;
 	PersonalityParams params;
@@ -52,8 +59,8 @@ public class PersonalityMutator extends StatefulSpawnMutatorBase<PersonalityStat
 		 */
 
 		if (!state.agentParams.personalitiesEnabled ||
-				(simulation.getRandom().nextFloat() > state.agentParams.openness &&
-						simulation.getRandom().nextFloat() > state.agentParams.neuroticism)) {
+				(getRandom().nextFloat() > state.agentParams.openness &&
+						getRandom().nextFloat() > state.agentParams.neuroticism)) {
 			//System.out.println("PersonalityMutator fail: " + state.agentParams.personalitiesEnabled);
 			return false;
 		}
@@ -73,8 +80,8 @@ public class PersonalityMutator extends StatefulSpawnMutatorBase<PersonalityStat
 
 			// If the agent is already heading in the right direction, then keep on going
 			if (agentToClosest.equals(agent.getPosition().direction)) {
-				if (simulation.getRandom().nextFloat() < state.agentParams.extroversion * 1.25 ||
-						simulation.getRandom().nextFloat() < state.agentParams.neuroticism * 1.25) {
+				if (getRandom().nextFloat() < state.agentParams.extroversion * 1.25 ||
+						getRandom().nextFloat() < state.agentParams.neuroticism * 1.25) {
 					agent.step();
 				} else {
 					return false;
@@ -86,8 +93,8 @@ public class PersonalityMutator extends StatefulSpawnMutatorBase<PersonalityStat
 					(agentToClosest.equals(Topology.SOUTH) && agentDirection.equals(Topology.WEST)) ||
 					(agentToClosest.equals(Topology.SOUTH) && agentDirection.equals(Topology.NORTH)) ||
 					(agentToClosest.equals(Topology.WEST) && agentDirection.equals(Topology.NORTH))) {
-				if (simulation.getRandom().nextFloat() < state.agentParams.extroversion * 1.25 ||
-						simulation.getRandom().nextFloat() < state.agentParams.neuroticism * 1.25) {
+				if (getRandom().nextFloat() < state.agentParams.extroversion * 1.25 ||
+						getRandom().nextFloat() < state.agentParams.neuroticism * 1.25) {
 					agent.turnLeft();
 				} else {
 					//                    agent.turnRight();
@@ -99,8 +106,8 @@ public class PersonalityMutator extends StatefulSpawnMutatorBase<PersonalityStat
 					(agentToClosest.equals(Topology.SOUTH) && agentToClosest.equals(Topology.EAST)) ||
 					(agentToClosest.equals(Topology.WEST) && agentToClosest.equals(Topology.SOUTH)) ||
 					(agentToClosest.equals(Topology.WEST) && agentToClosest.equals(Topology.EAST))) {
-				if (simulation.getRandom().nextFloat() < state.agentParams.extroversion * 1.25 ||
-						simulation.getRandom().nextFloat() < state.agentParams.neuroticism * 1.25) {
+				if (getRandom().nextFloat() < state.agentParams.extroversion * 1.25 ||
+						getRandom().nextFloat() < state.agentParams.neuroticism * 1.25) {
 					agent.turnRight();
 				} else {
 					//                    agent.turnLeft();
@@ -159,8 +166,8 @@ public class PersonalityMutator extends StatefulSpawnMutatorBase<PersonalityStat
 
 	public boolean playPD(PersonalityState meState, PersonalityState otherState) {
 
-		if (sim.getRandom().nextFloat() < meState.agentParams.extroversion ||
-				sim.getRandom().nextFloat() < otherState.agentParams.extroversion) {
+		if (getRandom().nextFloat() < meState.agentParams.extroversion ||
+				getRandom().nextFloat() < otherState.agentParams.extroversion) {
 			return false;
 		}
 
@@ -180,7 +187,7 @@ public class PersonalityMutator extends StatefulSpawnMutatorBase<PersonalityStat
 		// Otherwise we are going to play normal PD
 		// Calculate cooperation probability based on how close they are to agreeable/conscientious
 		double coopProb = (meState.agentParams.agreeableness - meState.agentParams.consciousness + 0.75) / 1.5;
-		if (sim.getRandom().nextFloat() >  coopProb) {
+		if (getRandom().nextFloat() >  coopProb) {
 			meState.pdCheater = true;
 		} else {
 			meState.pdCheater = false;
@@ -196,7 +203,7 @@ public class PersonalityMutator extends StatefulSpawnMutatorBase<PersonalityStat
 		// prisoner's dilemma.
 		float probOfPlayingMe = (float) Math.sqrt(Math.max(meState.agentParams.agreeableness, meState.agentParams.consciousness) * (1 - meState.agentParams.openness));
 		float probOfPlayingOther = (float) Math.sqrt(Math.max(otherState.agentParams.agreeableness, otherState.agentParams.consciousness)* (1 - otherState.agentParams.openness));
-		if (sim.getRandom().nextFloat() > probOfPlayingMe || sim.getRandom().nextFloat() > probOfPlayingOther) {
+		if (getRandom().nextFloat() > probOfPlayingMe || getRandom().nextFloat() > probOfPlayingOther) {
 			return;
 		}
 
@@ -206,23 +213,23 @@ public class PersonalityMutator extends StatefulSpawnMutatorBase<PersonalityStat
 
 		if (!meState.pdCheater && !otherState.pdCheater) {
 			/* Both cooperate */
-			me.changeEnergy(+params.reward, new PDRewardCause());
-			adjacentAgent.changeEnergy(+params.reward, new PDRewardCause());
+			me.changeEnergy(+params.reward, PD_REWARD);
+			adjacentAgent.changeEnergy(+params.reward, PD_REWARD);
 
 		} else if (!meState.pdCheater && otherState.pdCheater) {
 			/* Only other agent cheats */
-			me.changeEnergy(+params.sucker, new PDSuckerCause());
-			adjacentAgent.changeEnergy(+params.temptation, new PDTemptationCause());
+			me.changeEnergy(+params.sucker, PD_SUCKER);
+			adjacentAgent.changeEnergy(+params.temptation, PD_TEMPTATION);
 
 		} else if (meState.pdCheater && !otherState.pdCheater) {
 			/* Only this agent cheats */
-			me.changeEnergy(+params.temptation, new PDTemptationCause());
-			adjacentAgent.changeEnergy(+params.sucker, new PDSuckerCause());
+			me.changeEnergy(+params.temptation, PD_TEMPTATION);
+			adjacentAgent.changeEnergy(+params.sucker, PD_SUCKER);
 
 		} else if (meState.pdCheater && otherState.pdCheater) {
 			/* Both cheat */
-			me.changeEnergy(+params.punishment, new PDPunishmentCause());
-			adjacentAgent.changeEnergy(+params.punishment, new PDPunishmentCause());
+			me.changeEnergy(+params.punishment, PD_PUNISHMENT);
+			adjacentAgent.changeEnergy(+params.punishment, PD_PUNISHMENT);
 		}
 
 		if (otherState.pdCheater)
@@ -231,11 +238,19 @@ public class PersonalityMutator extends StatefulSpawnMutatorBase<PersonalityStat
 
 	private static void iveBeenCheated(ComplexAgent me, Agent cheater) {
 		me.rememberBadAgent(cheater);
-		me.broadcast(new CheaterBroadcast(cheater, me), new PDMutator.BroadcastCheaterCause());
+		me.broadcast(new CheaterBroadcast(cheater, me), BROADCAST_CHEATER);
 	}
 
 	@Override
 	protected boolean validState(PersonalityState state) {
 		return state != null;
 	}
+
+	@Override
+	public boolean isLocal(Agent agent) {
+		// Heads for the closest agent, wherever it is, and can broadcast cheaters
+		return !hasAgentState(agent);
+	}
+
+	private static final long serialVersionUID = 1L;
 }
@@ -7,6 +7,9 @@ import org.cobweb.cobweb2.plugins.TemporaryEffect;
 import org.cobweb.cobweb2.plugins.production.ProductionMapper.ProductionCause;
 
 public class Product implements Drop {
+
+	private static final ProductSoldCause PRODUCT_SOLD = new ProductSoldCause();
+	private static final ProductBoughtCause PRODUCT_BOUGHT = new ProductBoughtCause();
 	private final ProductionMapper productionMapper;
 	final Location loc;
 	private long expiryTime;
@@ -19,6 +22,7 @@ public class Product implements Drop {
 		this.expiryTime = productionMapper.simulation.getTime() + expiryPeriod;
 		productionMapper.updateValues(this, true);
 		productionMapper.getAgentState(producer).unsoldProducts++;
+		productionMapper.liveProducts++;
 	}
 
 	private Agent producer;
@@ -43,6 +47,7 @@ public class Product implements Drop {
 	public void prepareRemove() {
 		productionMapper.updateValues(this, false);
 		productionMapper.getAgentState(producer).unsoldProducts--;
+		productionMapper.liveProducts--;
 		this.value = 0;
 	}
 
@@ -52,15 +57,15 @@ public class Product implements Drop {
 
 	@Override
 	public void onStep(Agent buyer) {
-		if (producer != buyer && productionMapper.simulation.getRandom().nextFloat() <= 0.3f) {
+		if (producer != buyer && productionMapper.getRandom().nextFloat() <= 0.3f) {
 			ProductionAgentParams agentParams = productionMapper.getAgentState(producer).agentParams;
 			int price = agentParams.productPrice.getValue();
 
 			if (!buyer.enoughEnergy(price))
 				return;
 
-			producer.changeEnergy(+price, new ProductSoldCause());
-			buyer.changeEnergy(-price, new ProductBoughtCause());
+			producer.changeEnergy(+price, PRODUCT_SOLD);
+			buyer.changeEnergy(-price, PRODUCT_BOUGHT);
 
 			TemporaryEffect effect = new TemporaryEffect(
 					buyer,
@@ -110,4 +115,10 @@ public class Product implements Drop {
 		return producer.getType();
 	}
 
+	@Override
+	public long getUpdateTick() {
+		return expiryTime;
+	}
+
+	private static final long serialVersionUID = 1L;
 }
\ No newline at end of file
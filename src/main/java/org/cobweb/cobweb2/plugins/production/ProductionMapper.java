@@ -2,9 +2,11 @@ package org.cobweb.cobweb2.plugins.production;
 
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.EnumSet;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Set;
 
 import org.cobweb.cobweb2.core.Agent;
 import org.cobweb.cobweb2.core.Cause;
@@ -15,9 +17,12 @@ import org.cobweb.cobweb2.core.LocationDirection;
 import org.cobweb.cobweb2.core.SimulationTimeSpace;
 import org.cobweb.cobweb2.core.StateParameter;
 import org.cobweb.cobweb2.core.StatePlugin;
+import org.cobweb.cobweb2.core.Topology;
 import org.cobweb.cobweb2.impl.ComplexAgent;
 import org.cobweb.cobweb2.plugins.DropManager;
+import org.cobweb.cobweb2.plugins.EnvironmentLayer;
 import org.cobweb.cobweb2.plugins.EnvironmentMutator;
+import org.cobweb.cobweb2.plugins.LocalMutator;
 import org.cobweb.cobweb2.plugins.LoggingMutator;
 import org.cobweb.cobweb2.plugins.StatefulSpawnMutatorBase;
 import org.cobweb.cobweb2.plugins.TemporaryEffect;
@@ -25,24 +30,37 @@ import org.cobweb.cobweb2.plugins.UpdateMutator;
 import org.cobweb.util.ArrayUtilities;
 
 public class ProductionMapper extends StatefulSpawnMutatorBase<ProductionState>
-implements StatePlugin, UpdateMutator, EnvironmentMutator, LoggingMutator, DropManager<Product> {
+implements StatePlugin, UpdateMutator, EnvironmentMutator, LoggingMutator, DropManager<Product>, LocalMutator {
+
+	private static final ProduceProductCause PRODUCE_PRODUCT = new ProduceProductCause();
 
 	private Environment environment;
 	private float[][] vals;
 	private float maxValue;
+	private boolean maxStale = false;
 	SimulationTimeSpace simulation;
 	private ProductionAgentParams[] initialParams;
 
+	private float valueCutoff;
+
+	/**
+	 * Products made and not yet removed
+	 */
+	int liveProducts = 0;
+
 	public ProductionMapper(SimulationTimeSpace sim) {
 		super(ProductionState.class, sim);
 		simulation = sim;
 	}
 
 	public void updateValues(Product p, boolean addition) {
+		if (valueCutoff > 0 && updateNearbyValues(p, addition))
+			return;
+
 		float newMax = 0;
 		for (int x = 0; x < vals.length; x++) {
 			for (int y = 0; y < vals[x].length; y++) {
-				float value = getDifAtLoc(p, new Location(x, y));
+				float value = getDifAtLoc(p, simulation.getTopology().location(x, y));
 				vals[x][y] += addition ? value : - value;
 
 				if (vals[x][y] < 0) {
@@ -60,11 +78,62 @@ implements StatePlugin, UpdateMutator, EnvironmentMutator, LoggingMutator, DropM
 			newMax = 1;
 
 		maxValue = newMax;
+		maxStale = false;
+	}
+
+	/**
+	 * Updates only the tiles where the product's share of the value is above
+	 * valueCutoff, going through the topology's stencil closest tile first.
+	 * @return false if the stencil would cover most of the map anyway
+	 */
+	private boolean updateNearbyValues(Product p, boolean addition) {
+		if (p.getValue() <= valueCutoff)
+			return true;
+
+		Topology topology = simulation.getTopology();
+
+		// share = value / distance^2 > valueCutoff
+		double limit = p.getValue() / valueCutoff;
+		int radius = (int) Math.ceil(Math.sqrt(limit));
+		int maxRadius = (int) Math.sqrt(topology.width * topology.height / Math.PI);
+		if (radius > maxRadius)
+			return false;
+
+		// Whole radii, so products share a few stencils
+		Topology.Stencil area = topology.getStencil(radius);
+		Location at = p.getLocation();
+		for (int i = 0; i < area.size(); i++) {
+			int dx = area.offsetX(i);
+			int dy = area.offsetY(i);
+			int distance = dx * dx + dy * dy;
+			// Offsets are closest first, the rest are all below the cutoff
+			if (distance >= limit)
+				break;
+
+			int tile = topology.stencilTile(at, area, i);
+			if (tile < 0)
+				continue;
+
+			Location l = topology.location(tile);
+			float value = getDifAtDistance(p, distance);
+			vals[l.x][l.y] += addition ? value : - value;
+
+			if (vals[l.x][l.y] < 0) {
+				vals[l.x][l.y] = 0;
+			}
+		}
+
+		maxStale = true;
+		return true;
 	}
 
 	private float getDifAtLoc(Product source, Location loc2) {
+		return getDifAtDistance(source, simulation.getTopology().getDistanceSquared(source.getLocation(), loc2));
+	}
+
+	private static float getDifAtDistance(Product source, double distanceSquared) {
 		float val = source.getValue();
-		val /= Math.max(1, simulation.getTopology().getDistanceSquared(source.getLocation(), loc2));
+		val /= Math.max(1, distanceSquared);
 		return val;
 	}
 
@@ -94,6 +163,17 @@ implements StatePlugin, UpdateMutator, EnvironmentMutator, LoggingMutator, DropM
 	}
 
 	public float getMax() {
+		if (maxStale) {
+			float newMax = 1;
+			for (int x = 0; x < vals.length; x++) {
+				for (int y = 0; y < vals[x].length; y++) {
+					if (vals[x][y] > newMax)
+						newMax = vals[x][y];
+				}
+			}
+			maxValue = newMax;
+			maxStale = false;
+		}
 		return maxValue;
 	}
 
@@ -122,6 +202,7 @@ implements StatePlugin, UpdateMutator, EnvironmentMutator, LoggingMutator, DropM
 			return b / max;
 		}
 
+		private static final long serialVersionUID = 1L;
 	}
 
 	@Override
@@ -134,7 +215,7 @@ implements StatePlugin, UpdateMutator, EnvironmentMutator, LoggingMutator, DropM
 		ProductionState agentState = getAgentState(owner);
 		Product prod = new Product(value, owner, this, agentState.agentParams.productExpiry.getValue());
 
-		owner.changeEnergy(-agentState.agentParams.productionCost.getValue(), new ProduceProductCause());
+		owner.changeEnergy(-agentState.agentParams.productionCost.getValue(), PRODUCE_PRODUCT);
 
 		environment.addDrop(prod.loc, prod);
 	}
@@ -145,7 +226,7 @@ implements StatePlugin, UpdateMutator, EnvironmentMutator, LoggingMutator, DropM
 	}
 
 	private boolean roll(float chance) {
-		return chance > simulation.getRandom().nextFloat();
+		return chance > getRandom().nextFloat();
 	}
 
 	private boolean shouldProduce(Agent agent) {
@@ -277,6 +358,8 @@ implements StatePlugin, UpdateMutator, EnvironmentMutator, LoggingMutator, DropM
 		initialParams = productionParams.agentParams;
 		environment = env;
 
+		valueCutoff = productionParams.valueCutoff;
+
 		if (vals == null || !keepOldProducts) {
 			vals = new float[simulation.getTopology().width][simulation.getTopology().height];
 		} else {
@@ -305,6 +388,16 @@ implements StatePlugin, UpdateMutator, EnvironmentMutator, LoggingMutator, DropM
 		}
 	}
 
+	@Override
+	public Set<EnvironmentLayer> getReadLayers() {
+		return EnumSet.noneOf(EnvironmentLayer.class);
+	}
+
+	@Override
+	public Set<EnvironmentLayer> getWriteLayers() {
+		return EnumSet.of(EnvironmentLayer.AGENT_PARAMS);
+	}
+
 	@Override
 	public void loadNew() {
 		// nothing
@@ -393,4 +486,11 @@ implements StatePlugin, UpdateMutator, EnvironmentMutator, LoggingMutator, DropM
 		return Arrays.asList("Products");
 	}
 
+	@Override
+	public boolean isLocal(Agent agent) {
+		// Products change demand over the whole map and pay their producer
+		return !hasAgentState(agent) && liveProducts == 0;
+	}
+
+	private static final long serialVersionUID = 1L;
 }
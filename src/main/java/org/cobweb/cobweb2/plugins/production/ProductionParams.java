@@ -6,6 +6,8 @@ import java.util.List;
 import org.cobweb.cobweb2.core.AgentFoodCountable;
 import org.cobweb.cobweb2.core.StatePluginSource;
 import org.cobweb.cobweb2.plugins.PerAgentParams;
+import org.cobweb.io.ConfDisplayName;
+import org.cobweb.io.ConfXMLTag;
 
 
 public class ProductionParams extends PerAgentParams<ProductionAgentParams> implements StatePluginSource {
@@ -20,6 +22,14 @@ public class ProductionParams extends PerAgentParams<ProductionAgentParams> impl
 	}
 
 
+	/**
+	 * Products only change the production value of tiles where their share
+	 * is above this. 0 updates the whole map for every product.
+	 */
+	@ConfXMLTag("ValueCutoff")
+	@ConfDisplayName("Production value cutoff")
+	public float valueCutoff = 0f;
+
 	static final String STATE_NAME_PRODHUNT = "Production Value";
 
 	@Override
@@ -0,0 +1,150 @@
+package org.cobweb.cobweb2.plugins.stats;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.cobweb.cobweb2.core.Cause;
+import org.cobweb.cobweb2.plugins.stats.CauseTree.CauseTreeNode;
+
+/**
+ * Integer IDs for every Cause class in the CauseTree, so per-cause data can be
+ * kept in arrays indexed by ID instead of maps keyed by class.
+ *
+ * IDs follow a breadth first walk of the tree, whose children are sorted by
+ * name, so they don't change between runs of the same build. The root,
+ * Cause itself, is always 0. The tree is only scanned for once, the first
+ * time the registry is used.
+ */
+public class CauseRegistry {
+
+	private static class Holder {
+		static final CauseRegistry INSTANCE = new CauseRegistry(new CauseTree());
+	}
+
+	public static CauseRegistry get() {
+		return Holder.INSTANCE;
+	}
+
+	public final CauseTree tree;
+
+	private final CauseTreeNode[] nodes;
+
+	/**
+	 * IDs of registered types each ID is assignable to, including itself
+	 */
+	private final BitSet[] ancestors;
+
+	/**
+	 * IDs from each ID up through its parents in the tree to the root
+	 */
+	private final int[][] paths;
+
+	private final Map<Class<?>, Integer> ids = new HashMap<>();
+
+	private final ClassValue<Integer> idOfClass = new ClassValue<Integer>() {
+		@Override
+		protected Integer computeValue(Class<?> type) {
+			Integer id = ids.get(type);
+			return id == null ? -1 : id;
+		}
+	};
+
+	CauseRegistry(CauseTree tree) {
+		this.tree = tree;
+
+		List<CauseTreeNode> list = new ArrayList<>();
+		for (CauseTreeNode node : tree) {
+			ids.put(node.type, list.size());
+			list.add(node);
+		}
+		nodes = list.toArray(new CauseTreeNode[list.size()]);
+
+		ancestors = new BitSet[nodes.length];
+		paths = new int[nodes.length][];
+		for (int id = 0; id < nodes.length; id++) {
+			ancestors[id] = new BitSet(nodes.length);
+			for (int a = 0; a < nodes.length; a++) {
+				if (nodes[a].type.isAssignableFrom(nodes[id].type))
+					ancestors[id].set(a);
+			}
+
+			List<Integer> path = new ArrayList<>();
+			for (CauseTreeNode n = nodes[id]; n != null; n = n.parent) {
+				path.add(ids.get(n.type));
+			}
+			paths[id] = new int[path.size()];
+			for (int i = 0; i < paths[id].length; i++) {
+				paths[id][i] = path.get(i);
+			}
+		}
+	}
+
+	/**
+	 * @return number of IDs, all IDs are below this
+	 */
+	public int size() {
+		return nodes.length;
+	}
+
+	/**
+	 * @return ID of type, -1 if it isn't in the tree
+	 */
+	public int id(Class<?> type) {
+		return idOfClass.get(type);
+	}
+
+	/**
+	 * @return ID of the cause's class, -1 if it isn't in the tree
+	 */
+	public int id(Cause cause) {
+		return idOfClass.get(cause.getClass());
+	}
+
+	public Class<? extends Cause> type(int id) {
+		return nodes[id].type;
+	}
+
+	public CauseTreeNode node(int id) {
+		return nodes[id];
+	}
+
+	/**
+	 * @return shared instance of a cause class in the tree, null for the root
+	 */
+	public Cause instance(int id) {
+		return nodes[id].cause;
+	}
+
+	/**
+	 * @return IDs of every type the cause type with this ID is a subtype of,
+	 * including itself. Do not modify.
+	 */
+	public BitSet ancestors(int id) {
+		return ancestors[id];
+	}
+
+	/**
+	 * @return IDs from this one up through its parents in the tree to the
+	 * root. Do not modify.
+	 */
+	public int[] path(int id) {
+		return paths[id];
+	}
+
+	/**
+	 * @return IDs of every registered type that is type or a subtype of it.
+	 * Works for types that aren't in the tree, such as interfaces.
+	 */
+	public BitSet subtypes(Class<?> type) {
+		BitSet result = new BitSet(nodes.length);
+		int id = id(type);
+		for (int i = 0; i < nodes.length; i++) {
+			if (id >= 0 ? ancestors[i].get(id) : type.isAssignableFrom(nodes[i].type))
+				result.set(i);
+		}
+		return result;
+	}
+}
@@ -1,5 +1,8 @@
 package org.cobweb.cobweb2.plugins.stats;
 
+import java.io.Serializable;
+import java.util.BitSet;
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -10,22 +13,27 @@ import org.cobweb.cobweb2.core.Agent;
 import org.cobweb.cobweb2.core.Cause;
 import org.cobweb.cobweb2.core.Location;
 import org.cobweb.cobweb2.core.LocationDirection;
+import org.cobweb.cobweb2.core.Partition;
 import org.cobweb.cobweb2.plugins.AgentState;
 import org.cobweb.cobweb2.plugins.EnergyMutator;
+import org.cobweb.cobweb2.plugins.EnvironmentLayer;
 import org.cobweb.cobweb2.plugins.EnvironmentMutator;
+import org.cobweb.cobweb2.plugins.LocalMutator;
 import org.cobweb.cobweb2.plugins.stats.CauseTree.CauseTreeNode;
 
 
-public class EnergyStats implements EnergyMutator, EnvironmentMutator {
+public class EnergyStats implements EnergyMutator, EnvironmentMutator, LocalMutator {
 
 	public Map<Location, LocationStats> locationStats = new HashMap<>();
 
-	public static class LocationStats {
+	public static class LocationStats implements Serializable {
 		public int count;
 		public float total;
+
+		private static final long serialVersionUID = 1L;
 	}
 
-	public static class CauseStats {
+	public static class CauseStats implements Serializable {
 		public CauseStats(CauseTreeNode node) {
 			this.node = node;
 		}
@@ -42,11 +50,25 @@ public class EnergyStats implements EnergyMutator, EnvironmentMutator {
 			count = 0;
 			totalDelta = 0;
 		}
+
+		private static final long serialVersionUID = 1L;
 	}
 
 	public Map<Class<? extends Cause>, CauseStats> causeStats = new HashMap<>();
 
-	public CauseTree causeTree = new CauseTree();
+	private final CauseRegistry registry = CauseRegistry.get();
+
+	public CauseTree causeTree = registry.tree;
+
+	/**
+	 * Stats of each cause ID
+	 */
+	private final CauseStats[] statsById;
+
+	/**
+	 * Whether each cause ID passes the white and black lists
+	 */
+	private final boolean[] watching;
 
 	public EnergyStats() {
 		Iterator<CauseTreeNode> iterator = causeTree.iterator();
@@ -55,6 +77,13 @@ public class EnergyStats implements EnergyMutator, EnvironmentMutator {
 			CauseStats stats = new CauseStats(node);
 			causeStats.put(node.type, stats);
 		}
+
+		statsById = new CauseStats[registry.size()];
+		for (int id = 0; id < statsById.length; id++) {
+			statsById[id] = causeStats.get(registry.type(id));
+		}
+		watching = new boolean[registry.size()];
+		updateWatching();
 	}
 
 	@Override
@@ -63,12 +92,26 @@ public class EnergyStats implements EnergyMutator, EnvironmentMutator {
 		if (loc == null)
 			return;
 
-		Class<? extends Cause> causeClass = cause.getClass();
-
-		if (!isWatching(causeClass))
+		int id = registry.id(cause);
+		// Causes outside the tree have no stats to add to
+		if (id < 0 || !watching[id])
 			return;
 
-		updateCauseStats(delta, causeClass);
+		updateStats(delta, id, loc);
+	}
+
+	private void updateStats(final int delta, final int id, final LocationDirection loc) {
+		Partition partition = Partition.current();
+		if (partition != null) {
+			partition.defer(new Runnable() {
+				@Override
+				public void run() {
+					updateStats(delta, id, loc);
+				}
+			});
+			return;
+		}
+		updateCauseStats(delta, id);
 
 		updateLocationStats(delta, loc);
 	}
@@ -84,15 +127,15 @@ public class EnergyStats implements EnergyMutator, EnvironmentMutator {
 		stats.total += delta;
 	}
 
-	private void updateCauseStats(int delta, Class<? extends Cause> causeClass) {
-		CauseStats stats = causeStats.get(causeClass);
-		do {
+	/**
+	 * Adds to the stats of the cause and each of its parents in the tree
+	 */
+	private void updateCauseStats(int delta, int id) {
+		for (int node : registry.path(id)) {
+			CauseStats stats = statsById[node];
 			stats.count++;
 			stats.totalDelta += delta;
-			if (stats.node.parent == null)
-				break;
-			stats = causeStats.get(stats.node.parent.type);
-		} while (stats != null);
+		}
 	}
 
 	public void resetStats() {
@@ -105,6 +148,16 @@ public class EnergyStats implements EnergyMutator, EnvironmentMutator {
 		locationStats = new HashMap<>();
 	}
 
+	@Override
+	public Set<EnvironmentLayer> getReadLayers() {
+		return EnumSet.noneOf(EnvironmentLayer.class);
+	}
+
+	@Override
+	public Set<EnvironmentLayer> getWriteLayers() {
+		return EnumSet.noneOf(EnvironmentLayer.class);
+	}
+
 	@Override
 	public void loadNew() {
 		update();
@@ -113,16 +166,37 @@ public class EnergyStats implements EnergyMutator, EnvironmentMutator {
 	public void whitelist(Class<? extends Cause> type) {
 		blackList.remove(type);
 		whiteList.add(type);
+		updateWatching();
 	}
 
 	public void blacklist(Class<? extends Cause> type) {
 		whiteList.remove(type);
 		blackList.add(type);
+		updateWatching();
 	}
 
 	public void unlist(Class<? extends Cause> type) {
 		whiteList.remove(type);
 		blackList.remove(type);
+		updateWatching();
+	}
+
+	/**
+	 * Works out which cause IDs pass the lists, from the IDs each listed type
+	 * covers
+	 */
+	private void updateWatching() {
+		BitSet white = new BitSet(watching.length);
+		for (Class<? extends Cause> c : whiteList)
+			white.or(registry.subtypes(c));
+
+		BitSet black = new BitSet(watching.length);
+		for (Class<? extends Cause> c : blackList)
+			black.or(registry.subtypes(c));
+
+		for (int id = 0; id < watching.length; id++) {
+			watching[id] = (whiteList.isEmpty() || white.get(id)) && !black.get(id);
+		}
 	}
 
 	public Set<Class<? extends Cause>> whiteList = new HashSet<>();
@@ -130,6 +204,10 @@ public class EnergyStats implements EnergyMutator, EnvironmentMutator {
 	public Set<Class<? extends Cause>> blackList = new HashSet<>();
 
 	public boolean isWatching(Class<? extends Cause> type) {
+		int id = registry.id(type);
+		if (id >= 0)
+			return watching[id];
+
 		if (!whiteList.isEmpty()) {
 			boolean found = false;
 			for (Class<? extends Cause> c : whiteList)
@@ -153,4 +231,10 @@ public class EnergyStats implements EnergyMutator, EnvironmentMutator {
 		return false;
 	}
 
+	@Override
+	public boolean isLocal(Agent agent) {
+		return true;
+	}
+
+	private static final long serialVersionUID = 1L;
 }
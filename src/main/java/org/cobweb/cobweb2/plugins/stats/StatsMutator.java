@@ -7,6 +7,7 @@ import java.util.List;
 import org.cobweb.cobweb2.core.Agent;
 import org.cobweb.cobweb2.core.Cause;
 import org.cobweb.cobweb2.core.Location;
+import org.cobweb.cobweb2.core.Partition;
 import org.cobweb.cobweb2.core.SimulationTimeSpace;
 import org.cobweb.cobweb2.impl.ComplexAgent.BumpAgentCause;
 import org.cobweb.cobweb2.impl.ComplexAgent.BumpWallCause;
@@ -18,6 +19,7 @@ import org.cobweb.cobweb2.impl.ComplexAgent.SexualReproductionCause;
 import org.cobweb.cobweb2.impl.ComplexAgent.StepForwardCause;
 import org.cobweb.cobweb2.impl.ComplexAgent.TurnCause;
 import org.cobweb.cobweb2.plugins.EnergyMutator;
+import org.cobweb.cobweb2.plugins.LocalMutator;
 import org.cobweb.cobweb2.plugins.SpawnMutator;
 import org.cobweb.cobweb2.plugins.StatefulMutatorBase;
 import org.cobweb.cobweb2.plugins.StepMutator;
@@ -28,61 +30,134 @@ import org.cobweb.cobweb2.plugins.pd.PDMutator.PDTemptationCause;
 
 
 public class StatsMutator extends StatefulMutatorBase<AgentStatistics>
-implements EnergyMutator, SpawnMutator, StepMutator {
+implements EnergyMutator, SpawnMutator, StepMutator, LocalMutator {
 
 	private SimulationTimeSpace sim;
 
+	private final CauseRegistry registry = CauseRegistry.get();
+
+	/**
+	 * Which statistic each cause ID counts towards
+	 */
+	private final StatKind[] kinds;
+
 	public StatsMutator(SimulationTimeSpace sim) {
 		super(AgentStatistics.class);
 		this.sim = sim;
+
+		kinds = new StatKind[registry.size()];
+		for (int id = 0; id < kinds.length; id++) {
+			kinds[id] = kindOf(registry.instance(id));
+		}
 	}
 
-	@Override
-	public void onEnergyChange(Agent agent, int delta, Cause cause) {
-		AgentStatistics stats = getAgentState(agent);
-		if (stats == null) // Agent is dead
-			return;
+	private enum StatKind {
+		STEP, TURN, ROCK_BUMP, AGENT_BUMP,
+		FOOD_MINE, FOOD_OTHER, FOOD_AGENT,
+		PD_REWARD, PD_SUCKER, PD_TEMPTATION, PD_PUNISHMENT,
+		REPRODUCTION, SEXUAL_REPRODUCTION,
+		NONE
+	}
 
+	private static StatKind kindOf(Cause cause) {
 		// movement
 		if (cause instanceof StepForwardCause) {
-			stats.countSteps++;
-			stats.energyLossMovement -= delta;
+			return StatKind.STEP;
 		} else if (cause instanceof TurnCause) {
-			stats.countTurns++;
-			stats.energyLossMovement -= delta;
+			return StatKind.TURN;
 		} else if (cause instanceof BumpWallCause) {
-			stats.countRockBumps++;
-			stats.energyLossMovement -= delta;
+			return StatKind.ROCK_BUMP;
 		} else if (cause instanceof BumpAgentCause) {
-			stats.countAgentBumps++;
-			stats.energyLossMovement -= delta;
+			return StatKind.AGENT_BUMP;
 		}
 		// food
 		else if (cause instanceof EatFavoriteFoodCause) {
-			stats.energyGainFoodMine +=delta;
+			return StatKind.FOOD_MINE;
 		} else if (cause instanceof EatFoodCause) {
-			stats.energyGainFoodOther += delta;
+			return StatKind.FOOD_OTHER;
 		} else if (cause instanceof EatAgentCause) {
-			stats.energyGainFoodAgents += delta;
+			return StatKind.FOOD_AGENT;
 		}
 		// PD
 		else if (cause instanceof PDRewardCause) {
-			stats.pdReward++;
+			return StatKind.PD_REWARD;
 		} else if (cause instanceof PDSuckerCause) {
-			stats.pdSucker++;
+			return StatKind.PD_SUCKER;
 		} else if (cause instanceof PDTemptationCause) {
-			stats.pdTemptation++;
+			return StatKind.PD_TEMPTATION;
 		} else if (cause instanceof PDPunishmentCause) {
-			stats.pdPunishment++;
+			return StatKind.PD_PUNISHMENT;
 		}
 		// reproduction
-		else if (cause instanceof ReproductionCause) {
-			stats.energyLossReproduction -= delta;
-			if (cause instanceof SexualReproductionCause)
-				stats.sexualPregs++;
+		else if (cause instanceof SexualReproductionCause) {
+			return StatKind.SEXUAL_REPRODUCTION;
+		} else if (cause instanceof ReproductionCause) {
+			return StatKind.REPRODUCTION;
 		}
+		return StatKind.NONE;
+	}
 
+	@Override
+	public void onEnergyChange(Agent agent, int delta, Cause cause) {
+		AgentStatistics stats = getAgentState(agent);
+		if (stats == null) // Agent is dead
+			return;
+
+		int id = registry.id(cause);
+		StatKind kind = id >= 0 ? kinds[id] : kindOf(cause);
 
+		switch (kind) {
+			// movement
+			case STEP:
+				stats.countSteps++;
+				stats.energyLossMovement -= delta;
+				break;
+			case TURN:
+				stats.countTurns++;
+				stats.energyLossMovement -= delta;
+				break;
+			case ROCK_BUMP:
+				stats.countRockBumps++;
+				stats.energyLossMovement -= delta;
+				break;
+			case AGENT_BUMP:
+				stats.countAgentBumps++;
+				stats.energyLossMovement -= delta;
+				break;
+			// food
+			case FOOD_MINE:
+				stats.energyGainFoodMine += delta;
+				break;
+			case FOOD_OTHER:
+				stats.energyGainFoodOther += delta;
+				break;
+			case FOOD_AGENT:
+				stats.energyGainFoodAgents += delta;
+				break;
+			// PD
+			case PD_REWARD:
+				stats.pdReward++;
+				break;
+			case PD_SUCKER:
+				stats.pdSucker++;
+				break;
+			case PD_TEMPTATION:
+				stats.pdTemptation++;
+				break;
+			case PD_PUNISHMENT:
+				stats.pdPunishment++;
+				break;
+			// reproduction
+			case SEXUAL_REPRODUCTION:
+				stats.energyLossReproduction -= delta;
+				stats.sexualPregs++;
+				break;
+			case REPRODUCTION:
+				stats.energyLossReproduction -= delta;
+				break;
+			case NONE:
+				break;
+		}
 	}
 
 	@Override
@@ -144,6 +219,20 @@ implements EnergyMutator, SpawnMutator, StepMutator {
 	@Override
 	protected void setAgentState(Agent agent, AgentStatistics state) {
 		super.setAgentState(agent, state);
+		addStats(state);
+	}
+
+	private void addStats(final AgentStatistics state) {
+		Partition partition = Partition.current();
+		if (partition != null) {
+			partition.defer(new Runnable() {
+				@Override
+				public void run() {
+					addStats(state);
+				}
+			});
+			return;
+		}
 		allStats.add(state);
 	}
 
@@ -158,4 +247,10 @@ implements EnergyMutator, SpawnMutator, StepMutator {
 		return false;
 	}
 
+	@Override
+	public boolean isLocal(Agent agent) {
+		return true;
+	}
+
+	private static final long serialVersionUID = 1L;
 }
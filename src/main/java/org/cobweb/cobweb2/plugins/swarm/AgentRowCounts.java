@@ -0,0 +1,167 @@
+package org.cobweb.cobweb2.plugins.swarm;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+import org.cobweb.cobweb2.core.Agent;
+import org.cobweb.cobweb2.core.AgentSpatialIndex;
+import org.cobweb.cobweb2.core.Location;
+import org.cobweb.cobweb2.core.Topology;
+import org.cobweb.cobweb2.core.Topology.WrapImage;
+
+/**
+ * Number of agents of each type along each row of the map, as prefix sums
+ * that stay up to date as agents move, so the agents within a radius can be
+ * counted one row of the radius at a time instead of one tile at a time.
+ *
+ * Each row of each type is a Fenwick tree over x: moving an agent and
+ * counting a span of a row both take O(log width). Tiles whose agent changed
+ * are marked dirty by the agent index and applied on update().
+ */
+public class AgentRowCounts implements AgentSpatialIndex.TileListener, Serializable {
+
+	private static final int NONE = -1;
+
+	private final Topology topology;
+	private final int width;
+	private final int height;
+	private final int types;
+
+	/**
+	 * Type of the agent counted on each tile, NONE if there is none
+	 */
+	private final int[] tileType;
+
+	/**
+	 * Per type, row after row of width + 1 entries, 1-based Fenwick trees
+	 */
+	private final int[][] trees;
+
+	private final boolean[] dirty;
+	private int[] dirtyTiles = new int[16];
+	private int dirtyCount = 0;
+
+	public AgentRowCounts(Topology topology, int types) {
+		this.topology = topology;
+		this.width = topology.width;
+		this.height = topology.height;
+		this.types = types;
+
+		tileType = new int[width * height];
+		Arrays.fill(tileType, NONE);
+		trees = new int[types][height * (width + 1)];
+		dirty = new boolean[width * height];
+	}
+
+	@Override
+	public void tileChanged(int x, int y) {
+		int tile = y * width + x;
+		if (dirty[tile])
+			return;
+		dirty[tile] = true;
+		if (dirtyCount == dirtyTiles.length)
+			dirtyTiles = Arrays.copyOf(dirtyTiles, dirtyCount * 2);
+		dirtyTiles[dirtyCount++] = tile;
+	}
+
+	/**
+	 * Counts every agent from scratch
+	 */
+	public void rebuild(AgentSpatialIndex index) {
+		Arrays.fill(tileType, NONE);
+		for (int[] tree : trees) {
+			Arrays.fill(tree, 0);
+		}
+		Arrays.fill(dirty, false);
+		dirtyCount = 0;
+
+		for (int tile = 0; tile < tileType.length; tile++) {
+			setTile(tile, index.get(tile % width, tile / width));
+		}
+	}
+
+	/**
+	 * Applies the changes to tiles marked dirty since the last update
+	 */
+	public void update(AgentSpatialIndex index) {
+		for (int i = 0; i < dirtyCount; i++) {
+			int tile = dirtyTiles[i];
+			dirty[tile] = false;
+			setTile(tile, index.get(tile % width, tile / width));
+		}
+		dirtyCount = 0;
+	}
+
+	private void setTile(int tile, Agent agent) {
+		int type = agent == null || agent.getType() >= types ? NONE : agent.getType();
+		int old = tileType[tile];
+		if (old == type)
+			return;
+
+		int x = tile % width;
+		int y = tile / width;
+		if (old != NONE)
+			add(trees[old], y, x, -1);
+		if (type != NONE)
+			add(trees[type], y, x, +1);
+		tileType[tile] = type;
+	}
+
+	private void add(int[] tree, int y, int x, int change) {
+		int row = y * (width + 1);
+		for (int i = x + 1; i <= width; i += i & -i) {
+			tree[row + i] += change;
+		}
+	}
+
+	/**
+	 * @return number of agents on tiles 0 to end - 1 of row y
+	 */
+	private int prefix(int[] tree, int y, int end) {
+		int row = y * (width + 1);
+		int total = 0;
+		for (int i = end; i > 0; i -= i & -i) {
+			total += tree[row + i];
+		}
+		return total;
+	}
+
+	/**
+	 * @return number of agents of a type on tiles x0 to x1 of row y
+	 */
+	public int count(int type, int y, int x0, int x1) {
+		x0 = Math.max(x0, 0);
+		x1 = Math.min(x1, width - 1);
+		if (type >= types || x0 > x1)
+			return 0;
+		return prefix(trees[type], y, x1 + 1) - prefix(trees[type], y, x0);
+	}
+
+	/**
+	 * Counts the agents of a type on the tiles of a stencil around a location,
+	 * the same tiles Topology.stencilTile() goes through. Each row of the
+	 * stencil is split into the spans it covers in each wrap image.
+	 *
+	 * Stencils where two offsets land on the same tile are not supported,
+	 * those tiles would be counted twice.
+	 */
+	public int countWithin(Location zero, Topology.Stencil stencil, int type) {
+		int total = 0;
+		for (int dy = -stencil.reach(); dy <= stencil.reach(); dy++) {
+			int reach = stencil.rowReach(dy);
+			if (reach < 0)
+				continue;
+
+			int py = zero.y + dy;
+			for (WrapImage image : topology.getWrapImages()) {
+				int y = image.sourceY(py);
+				if (y < 0 || y >= height)
+					continue;
+				total += count(type, y, image.sourceX(zero.x - reach), image.sourceX(zero.x + reach));
+			}
+		}
+		return total;
+	}
+
+	private static final long serialVersionUID = 1L;
+}
@@ -1,22 +1,28 @@
 package org.cobweb.cobweb2.plugins.swarm;
 
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.List;
 
 import org.cobweb.cobweb2.core.Agent;
+import org.cobweb.cobweb2.core.AgentSpatialIndex;
 import org.cobweb.cobweb2.core.Environment;
 import org.cobweb.cobweb2.core.Location;
+import org.cobweb.cobweb2.core.RandomStream;
 import org.cobweb.cobweb2.core.SimulationTimeSpace;
 import org.cobweb.cobweb2.core.StateParameter;
 import org.cobweb.cobweb2.core.StatePlugin;
+import org.cobweb.cobweb2.core.Topology;
+import org.cobweb.cobweb2.plugins.LocalMutator;
 import org.cobweb.cobweb2.plugins.MoveMutator;
 import org.cobweb.cobweb2.plugins.SpawnMutator;
 import org.cobweb.cobweb2.plugins.StatefulMutatorBase;
 import org.cobweb.cobweb2.plugins.UpdateMutator;
+import org.cobweb.util.MultiplierSlot;
 
 
-public class SwarmMutator extends StatefulMutatorBase<SwarmState> implements UpdateMutator, StatePlugin, SpawnMutator, MoveMutator {
+public class SwarmMutator extends StatefulMutatorBase<SwarmState> implements UpdateMutator, StatePlugin, SpawnMutator, MoveMutator, LocalMutator {
+
+	private static final RandomStream RANDOM_STREAM = RandomStream.named("SwarmMutator");
 
 	public SwarmMutator() {
 		super(SwarmState.class);
@@ -36,24 +42,22 @@ public class SwarmMutator extends StatefulMutatorBase<SwarmState> implements Upd
 		this.sim = sim;
 		this.env = env;
 
-		causeKeys = new CauseKey[params.agentParams.length];
-		for (int i = 0 ; i < causeKeys.length; i++) {
-			causeKeys[i] = new CauseKey(i);
-		}
+		if (trackedIndex != null)
+			trackedIndex.removeListener(rowCounts);
+		trackedIndex = null;
+		rowCounts = new AgentRowCounts(sim.getTopology(), params.agentParams.length);
+
+		causeKeys = MultiplierSlot.reserve(SwarmMutator.class, params.agentParams.length);
 	}
 
-	private CauseKey[] causeKeys;
-	private class CauseKey {
-		private int index;
-		public CauseKey(int index) {
-			this.index = index;
-		}
+	private AgentRowCounts rowCounts;
 
-		@Override
-		public String toString() {
-			return SwarmMutator.this.toString() + ".agent[" + index + "]";
-		}
-	}
+	/**
+	 * Agent index rowCounts is listening to
+	 */
+	private AgentSpatialIndex trackedIndex;
+
+	private MultiplierSlot[] causeKeys;
 
 	@Override
 	public void onDeath(Agent agent) {
@@ -73,7 +77,7 @@ public class SwarmMutator extends StatefulMutatorBase<SwarmState> implements Upd
 
 	@Override
 	public void onSpawn(Agent agent, Agent parent1, Agent parent2) {
-		Agent parent = sim.getRandom().nextBoolean() ? parent1 : parent2;
+		Agent parent = sim.getRandom(RANDOM_STREAM).nextBoolean() ? parent1 : parent2;
 		onSpawn(agent, parent);
 	}
 
@@ -107,6 +111,8 @@ public class SwarmMutator extends StatefulMutatorBase<SwarmState> implements Upd
 			float relScore = effect.relativeScore(score);
 			return relScore;
 		}
+
+		private static final long serialVersionUID = 1L;
 	}
 
 	@Override
@@ -132,10 +138,27 @@ public class SwarmMutator extends StatefulMutatorBase<SwarmState> implements Upd
 		if (effect.radius <= 0)
 			return 1;
 
-		Collection<Location> locations = sim.getTopology().getArea(agent.getPosition(), effect.radius);
+		Topology topology = sim.getTopology();
+		Topology.Stencil area = topology.getStencil(effect.radius);
+		Location position = agent.getPosition();
+
+		if (!area.isAliased()) {
+			int count = getRowCounts().countWithin(position, area, type);
+			Agent self = env.getAgent(position);
+			if (self != null && self.getType() == type)
+				count--;
+			return effect.score(count);
+		}
+
+		// Radius wraps around onto itself, go tile by tile
 		int count = 0;
-		for (Location location : locations) {
-			if (location.equals(agent.getPosition()))
+		for (int i = 0; i < area.size(); i++) {
+			int tile = topology.stencilTile(position, area, i);
+			if (tile < 0)
+				continue;
+
+			Location location = topology.location(tile);
+			if (location.equals(position))
 				continue;
 
 			Agent neighbor = env.getAgent(location);
@@ -148,6 +171,21 @@ public class SwarmMutator extends StatefulMutatorBase<SwarmState> implements Upd
 		return effect.score(count);
 	}
 
+	private AgentRowCounts getRowCounts() {
+		AgentSpatialIndex index = env.getAgentIndex();
+		if (index != trackedIndex) {
+			// Environment was reloaded, start tracking the new index
+			if (trackedIndex != null)
+				trackedIndex.removeListener(rowCounts);
+			trackedIndex = index;
+			index.addListener(rowCounts);
+			rowCounts.rebuild(index);
+		} else {
+			rowCounts.update(index);
+		}
+		return rowCounts;
+	}
+
 	@Override
 	protected boolean validState(SwarmState value) {
 		return value.agentParams.effects.length == this.params.agentParams.length;
@@ -160,4 +198,18 @@ public class SwarmMutator extends StatefulMutatorBase<SwarmState> implements Upd
 		return false;
 	}
 
+	@Override
+	public boolean isLocal(Agent agent) {
+		SwarmState state = getAgentState(agent);
+		if (state == null)
+			return false;
+		// Counting neighbours goes through row counts shared by the whole map
+		for (PairwiseEffect effect : state.agentParams.effects) {
+			if (effect.radius > 0)
+				return false;
+		}
+		return true;
+	}
+
+	private static final long serialVersionUID = 1L;
 }
@@ -2,22 +2,30 @@ package org.cobweb.cobweb2.plugins.toxin;
 
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.EnumSet;
+import java.util.Set;
 
 import org.cobweb.cobweb2.core.Agent;
-import org.cobweb.cobweb2.core.RandomSource;
+import org.cobweb.cobweb2.core.Partition;
+import org.cobweb.cobweb2.core.SimulationTimeSpace;
 import org.cobweb.cobweb2.plugins.ConsumptionMutator;
+import org.cobweb.cobweb2.plugins.EnvironmentLayer;
 import org.cobweb.cobweb2.plugins.EnvironmentMutator;
+import org.cobweb.cobweb2.plugins.LocalMutator;
 import org.cobweb.cobweb2.plugins.LoggingMutator;
 import org.cobweb.cobweb2.plugins.StatefulSpawnMutatorBase;
 import org.cobweb.cobweb2.plugins.UpdateMutator;
+import org.cobweb.util.MultiplierSlot;
 
 
-public class ToxinMutator extends StatefulSpawnMutatorBase<ToxinState> implements LoggingMutator, UpdateMutator, ConsumptionMutator, EnvironmentMutator {
+public class ToxinMutator extends StatefulSpawnMutatorBase<ToxinState> implements LoggingMutator, UpdateMutator, ConsumptionMutator, EnvironmentMutator, LocalMutator {
 
 
 	private ToxinParams params;
 
-	public ToxinMutator(RandomSource rand) {
+	private static final MultiplierSlot cause = MultiplierSlot.reserve(ToxinMutator.class, 1)[0];
+
+	public ToxinMutator(SimulationTimeSpace rand) {
 		super(ToxinState.class, rand);
 	}
 
@@ -40,7 +48,7 @@ public class ToxinMutator extends StatefulSpawnMutatorBase<ToxinState> implement
 				+ Math.max(0, state.toxicity - state.agentParams.toxicityThreshold.getValue())
 				* state.agentParams.toxicityEffect.getValue();
 
-		state.agentParams.param.modifyValue(this, agent, effect);
+		state.agentParams.param.modifyValue(cause, agent, effect);
 	}
 
 	@Override
@@ -91,10 +99,24 @@ public class ToxinMutator extends StatefulSpawnMutatorBase<ToxinState> implement
 	}
 
 	private void updateStats(Agent agent, ToxinState state) {
-		agentCount[agent.getType()]++;
-		agentTypeToxin[agent.getType()] += state.toxicity;
-		if (state.isPoisoned()) {
-			agentTypePoisoned[agent.getType()]++;
+		updateStats(agent.getType(), state.toxicity, state.isPoisoned());
+	}
+
+	private void updateStats(final int type, final float toxicity, final boolean poisoned) {
+		Partition partition = Partition.current();
+		if (partition != null) {
+			partition.defer(new Runnable() {
+				@Override
+				public void run() {
+					updateStats(type, toxicity, poisoned);
+				}
+			});
+			return;
+		}
+		agentCount[type]++;
+		agentTypeToxin[type] += toxicity;
+		if (poisoned) {
+			agentTypePoisoned[type]++;
 		}
 	}
 
@@ -135,9 +157,25 @@ public class ToxinMutator extends StatefulSpawnMutatorBase<ToxinState> implement
 		}
 	}
 
+	@Override
+	public Set<EnvironmentLayer> getReadLayers() {
+		return EnumSet.noneOf(EnvironmentLayer.class);
+	}
+
+	@Override
+	public Set<EnvironmentLayer> getWriteLayers() {
+		return EnumSet.noneOf(EnvironmentLayer.class);
+	}
+
 	@Override
 	public void loadNew() {
 		update();
 	}
 
+	@Override
+	public boolean isLocal(Agent agent) {
+		return true;
+	}
+
+	private static final long serialVersionUID = 1L;
 }
@@ -3,11 +3,12 @@ package org.cobweb.cobweb2.plugins.vision;
 import org.cobweb.cobweb2.core.Agent;
 import org.cobweb.cobweb2.core.Location;
 import org.cobweb.cobweb2.impl.ComplexAgent;
+import org.cobweb.cobweb2.plugins.LocalMutator;
 import org.cobweb.cobweb2.plugins.StatefulMutatorBase;
 import org.cobweb.cobweb2.plugins.StepMutator;
 
 
-public class VisionMutator extends StatefulMutatorBase<VisionState> implements StepMutator {
+public class VisionMutator extends StatefulMutatorBase<VisionState> implements StepMutator, LocalMutator {
 
 	public VisionMutator() {
 		super(VisionState.class);
@@ -25,4 +26,10 @@ public class VisionMutator extends StatefulMutatorBase<VisionState> implements S
 		return false;
 	}
 
+	@Override
+	public boolean isLocal(Agent agent) {
+		return true;
+	}
+
+	private static final long serialVersionUID = 1L;
 }
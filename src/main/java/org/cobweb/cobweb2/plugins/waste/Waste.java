@@ -8,6 +8,8 @@ import org.cobweb.cobweb2.core.Location;
 
 public class Waste implements Drop {
 
+	private static final WasteConsumptionCause WASTE_CONSUMPTION = new WasteConsumptionCause();
+
 	private int initialWeight;
 
 	private float rate;
@@ -58,7 +60,7 @@ public class Waste implements Drop {
 	@Override
 	public void onStep(Agent agent) {
 		WasteAgentParams agentParams = wasteManager.getAgentState(agent).agentParams;
-		agent.changeEnergy(agentParams.consumeEnergy.getValue(), new WasteConsumptionCause());
+		agent.changeEnergy(agentParams.consumeEnergy.getValue(), WASTE_CONSUMPTION);
 		wasteManager.remove(this);
 	}
 
@@ -75,4 +77,11 @@ public class Waste implements Drop {
 	public int getProducerType() {
 		return type;
 	}
+
+	@Override
+	public long getUpdateTick() {
+		return expireTick;
+	}
+
+	private static final long serialVersionUID = 1L;
 }
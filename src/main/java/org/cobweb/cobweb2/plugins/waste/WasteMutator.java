@@ -11,13 +11,14 @@ import org.cobweb.cobweb2.core.Location;
 import org.cobweb.cobweb2.core.SimulationTimeSpace;
 import org.cobweb.cobweb2.plugins.DropManager;
 import org.cobweb.cobweb2.plugins.EnergyMutator;
+import org.cobweb.cobweb2.plugins.LocalMutator;
 import org.cobweb.cobweb2.plugins.LoggingMutator;
 import org.cobweb.cobweb2.plugins.StatefulSpawnMutatorBase;
 import org.cobweb.cobweb2.plugins.UpdateMutator;
 
 
 public class WasteMutator extends StatefulSpawnMutatorBase<WasteState> implements EnergyMutator, UpdateMutator, LoggingMutator,
-DropManager<Waste>{
+DropManager<Waste>, LocalMutator {
 
 	private WasteParams params;
 	private Environment environment;
@@ -101,7 +102,7 @@ DropManager<Waste>{
 			return false;
 
 		if (replaceFood)
-			environment.removeFood(loc);
+			environment.consumeFood(loc);
 
 		Waste waste = new Waste(loc, agentParams.wasteInit.getValue(), agentParams.wasteDecay.getValue(), this, agent.getType());
 		environment.addDrop(loc, waste);
@@ -187,4 +188,11 @@ DropManager<Waste>{
 	public Collection<String> logHeaderTotal() {
 		return Arrays.asList("Waste");
 	}
+
+	@Override
+	public boolean isLocal(Agent agent) {
+		return true;
+	}
+
+	private static final long serialVersionUID = 1L;
 }
@@ -0,0 +1,77 @@
+package org.cobweb.cobweb2.ui;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+import org.cobweb.cobweb2.Simulation;
+import org.cobweb.cobweb2.io.CheckpointSerializer;
+
+/**
+ * Writes a checkpoint of the simulation every few ticks and whenever the
+ * simulation stops, so a long run can be restarted from where it was.
+ *
+ * The checkpoint is written next to the file and then moved over it, so the
+ * file always holds a complete checkpoint even if the process is killed
+ * while writing.
+ */
+public class CheckpointLogger implements UpdatableUI {
+
+	private final Simulation simulation;
+
+	private final File file;
+
+	private final long interval;
+
+	private long lastSaved;
+
+	/**
+	 * @param interval ticks between checkpoints, 0 to only write when stopped
+	 */
+	public CheckpointLogger(String fileName, long interval, Simulation simulation) {
+		this.file = new File(fileName);
+		this.interval = interval;
+		this.simulation = simulation;
+		this.lastSaved = simulation.getTime();
+	}
+
+	@Override
+	public void update(boolean synchronous) {
+		long time = simulation.getTime();
+		if (interval > 0 && time % interval == 0 && time != lastSaved)
+			save();
+	}
+
+	@Override
+	public boolean isReadyToUpdate() {
+		return true;
+	}
+
+	@Override
+	public void onStopped() {
+		if (simulation.getTime() != lastSaved)
+			save();
+	}
+
+	@Override
+	public void onStarted() {
+		// Nothing
+	}
+
+	private void save() {
+		File temp = new File(file.getPath() + ".tmp");
+		try {
+			try (OutputStream stream = new BufferedOutputStream(new FileOutputStream(temp))) {
+				new CheckpointSerializer().save(simulation, stream);
+			}
+			Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException ex) {
+			throw new UserInputException("Cannot save checkpoint file", ex);
+		}
+		lastSaved = simulation.getTime();
+	}
+}
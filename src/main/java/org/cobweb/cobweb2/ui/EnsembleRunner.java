@@ -0,0 +1,452 @@
+package org.cobweb.cobweb2.ui;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.cobweb.cobweb2.Simulation;
+import org.cobweb.cobweb2.SimulationConfig;
+import org.cobweb.cobweb2.io.Cobweb2Serializer;
+import org.cobweb.cobweb2.ui.config.ArrayPropertyAccessor;
+import org.cobweb.cobweb2.ui.config.FieldPropertyAccessor;
+import org.cobweb.cobweb2.ui.config.ListPropertyAccessor;
+import org.cobweb.cobweb2.ui.config.MutatablePropertyAccessor;
+import org.cobweb.cobweb2.ui.config.PropertyAccessor;
+import org.cobweb.cobweb2.ui.config.SetterPropertyAccessor;
+import org.cobweb.util.MutatableFloat;
+import org.cobweb.util.MutatableInt;
+import org.cobweb.util.ReflectionUtil;
+import org.w3c.dom.Element;
+
+/**
+ * Runs many simulations of a parameter sweep in one JVM, a few at a time.
+ *
+ * The sweep is every combination of the values given for each parameter,
+ * each run once per seed. Parameters are named by their path from
+ * SimulationConfig: public fields or setters separated by dots, with [i]
+ * for array and list elements, for example
+ * "agentParams.agentParams[0].initEnergy".
+ *
+ * Every run gets its own copy of the base configuration and writes its own
+ * StatsLogger log to the output directory. runs.tsv in the same directory
+ * lists the seed and parameter values of each run.
+ */
+public class EnsembleRunner {
+
+	/**
+	 * One simulation of the sweep.
+	 */
+	public static class Run {
+
+		public final int index;
+
+		public final long seed;
+
+		/**
+		 * Value of each swept parameter, in the order they were added
+		 */
+		public final List<String> values;
+
+		public final File log;
+
+		Run(int index, long seed, List<String> values, File log) {
+			this.index = index;
+			this.seed = seed;
+			this.values = values;
+			this.log = log;
+		}
+	}
+
+	private final Cobweb2Serializer serializer = new Cobweb2Serializer();
+
+	private final SimulationConfig baseConfig;
+
+	/**
+	 * Base configuration as a tree, which each run's configuration is loaded
+	 * from. Not thread safe, so only used while holding its lock.
+	 */
+	private final Element baseTree;
+
+	private final File outputDirectory;
+
+	private final List<String> paths = new ArrayList<>();
+
+	private final List<PropertyAccessor> accessors = new ArrayList<>();
+
+	private final List<List<String>> values = new ArrayList<>();
+
+	private List<Long> seeds;
+
+	private long steps = 1000;
+
+	private int threads = Runtime.getRuntime().availableProcessors();
+
+	/**
+	 * @param baseConfig configuration every run starts from, not modified
+	 * @param outputDirectory where to write the logs
+	 */
+	public EnsembleRunner(SimulationConfig baseConfig, File outputDirectory) {
+		this.baseConfig = baseConfig;
+		this.baseTree = serializer.saveConfigTree(baseConfig);
+		this.outputDirectory = outputDirectory;
+		this.seeds = Collections.singletonList(baseConfig.randomSeed);
+	}
+
+	/**
+	 * Sweeps a parameter over the given values.
+	 * @param path path of the parameter from SimulationConfig
+	 * @param parameterValues values to give it, as they would be typed in
+	 * @throws IllegalArgumentException path doesn't lead to a parameter of
+	 * the base configuration, or a value can't be parsed
+	 */
+	public void addParameter(String path, String... parameterValues) {
+		PropertyAccessor accessor = parsePath(baseConfig, path);
+		for (String v : parameterValues) {
+			parseValue(accessor.getType(), v);
+		}
+		paths.add(path);
+		accessors.add(accessor);
+		values.add(new ArrayList<>(Arrays.asList(parameterValues)));
+	}
+
+	/**
+	 * Sets the random seeds each combination of parameters is run with.
+	 * Defaults to the seed of the base configuration.
+	 */
+	public void setSeeds(List<Long> seeds) {
+		if (seeds.isEmpty())
+			throw new IllegalArgumentException("Need at least one seed");
+		this.seeds = new ArrayList<>(seeds);
+	}
+
+	/**
+	 * Sets the number of steps each simulation is run for.
+	 */
+	public void setSteps(long steps) {
+		if (steps < 1)
+			throw new IllegalArgumentException("Steps must be > 0");
+		this.steps = steps;
+	}
+
+	/**
+	 * Sets how many simulations run at the same time.
+	 * Defaults to the number of processors.
+	 */
+	public void setThreads(int threads) {
+		if (threads < 1)
+			throw new IllegalArgumentException("Threads must be > 0");
+		this.threads = threads;
+	}
+
+	public List<String> getParameters() {
+		return Collections.unmodifiableList(paths);
+	}
+
+	/**
+	 * @return every run of the sweep: the last parameter added varies
+	 * fastest, and each combination is run with every seed in turn
+	 */
+	public List<Run> getRuns() {
+		List<Run> result = new ArrayList<>();
+		int combinations = 1;
+		for (List<String> v : values) {
+			combinations *= v.size();
+		}
+
+		for (int c = 0; c < combinations; c++) {
+			List<String> runValues = new ArrayList<>();
+			int rest = c;
+			for (int p = values.size() - 1; p >= 0; p--) {
+				List<String> v = values.get(p);
+				runValues.add(0, v.get(rest % v.size()));
+				rest /= v.size();
+			}
+			for (long seed : seeds) {
+				int index = result.size();
+				File log = new File(outputDirectory, String.format("run%04d.tsv", index));
+				result.add(new Run(index, seed, Collections.unmodifiableList(runValues), log));
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Makes the configuration of a run: a copy of the base configuration with
+	 * the run's seed and parameter values.
+	 */
+	public SimulationConfig createConfig(Run run) {
+		SimulationConfig conf;
+		synchronized (baseTree) {
+			conf = serializer.loadConfig(baseTree);
+		}
+		conf.fileName = baseConfig.fileName + " (run " + run.index + ")";
+		conf.randomSeed = run.seed;
+		for (int p = 0; p < accessors.size(); p++) {
+			PropertyAccessor accessor = accessors.get(p);
+			accessor.set(conf, parseValue(accessor.getType(), run.values.get(p)));
+		}
+		return conf;
+	}
+
+	/**
+	 * Runs the whole sweep and waits for it to finish.
+	 * Runs that fail don't stop the others.
+	 * @throws RuntimeException some runs failed, cause is the first failure
+	 */
+	public void run() {
+		List<Run> runs = getRuns();
+
+		if (!outputDirectory.isDirectory() && !outputDirectory.mkdirs())
+			throw new UserInputException("Can't create output directory: " + outputDirectory);
+		writeIndex(runs);
+
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		List<Future<?>> results = new ArrayList<>();
+		try {
+			for (final Run run : runs) {
+				results.add(pool.submit(new Runnable() {
+					@Override
+					public void run() {
+						runOne(run);
+					}
+				}));
+			}
+
+			int failed = 0;
+			Throwable firstFailure = null;
+			for (int i = 0; i < results.size(); i++) {
+				try {
+					results.get(i).get();
+				} catch (ExecutionException ex) {
+					System.err.println("Run " + i + " failed: " + ex.getCause());
+					failed++;
+					if (firstFailure == null)
+						firstFailure = ex.getCause();
+				}
+			}
+			if (failed > 0)
+				throw new RuntimeException(failed + " of " + runs.size() + " runs failed", firstFailure);
+
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("Interrupted while waiting for runs", ex);
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+
+	/**
+	 * Runs one simulation to the end, logging every step like
+	 * SimulationRunnerBase does.
+	 */
+	void runOne(Run run) {
+		Simulation simulation = new Simulation();
+		try {
+			simulation.load(createConfig(run));
+
+			StatsLogger logger;
+			try {
+				logger = new StatsLogger(new FileWriter(run.log, false), simulation);
+			} catch (IOException ex) {
+				throw new UserInputException("Can't create log file!", ex);
+			}
+			try {
+				logger.update(true);
+				while (simulation.getTime() < steps) {
+					simulation.step();
+					logger.update(true);
+				}
+				logger.onStopped();
+			} finally {
+				logger.dispose();
+			}
+		} finally {
+			simulation.dispose();
+		}
+	}
+
+	private void writeIndex(List<Run> runs) {
+		File index = new File(outputDirectory, "runs.tsv");
+		try (PrintWriter out = new PrintWriter(index)) {
+			out.print("Run\tSeed");
+			for (String path : paths) {
+				out.print('\t');
+				out.print(path);
+			}
+			out.println("\tLog");
+			for (Run run : runs) {
+				out.print(run.index);
+				out.print('\t');
+				out.print(run.seed);
+				for (String v : run.values) {
+					out.print('\t');
+					out.print(v);
+				}
+				out.print('\t');
+				out.println(run.log.getName());
+			}
+		} catch (FileNotFoundException ex) {
+			throw new UserInputException("Can't create run index!", ex);
+		}
+	}
+
+	/**
+	 * Finds the parameter a path leads to, starting from root.
+	 * @throws IllegalArgumentException the path doesn't lead anywhere
+	 */
+	static PropertyAccessor parsePath(Object root, String path) {
+		PropertyAccessor accessor = null;
+		try {
+			for (String part : path.split("\\.")) {
+				int bracket = part.indexOf('[');
+				String name = bracket < 0 ? part : part.substring(0, bracket);
+				Object current = accessor == null ? root : accessor.get(root);
+				if (current == null)
+					throw new IllegalArgumentException("Parameter is null before: " + name);
+				accessor = member(accessor, current.getClass(), name);
+
+				while (bracket >= 0) {
+					int close = part.indexOf(']', bracket);
+					int i = Integer.parseInt(part.substring(bracket + 1, close));
+					if (List.class.isAssignableFrom(accessor.getType()))
+						accessor = new ListPropertyAccessor(accessor, i);
+					else
+						accessor = new ArrayPropertyAccessor(accessor, i);
+					// Check the element exists
+					accessor.get(root);
+					bracket = part.indexOf('[', close);
+				}
+			}
+		} catch (RuntimeException ex) {
+			throw new IllegalArgumentException("Invalid parameter path: " + path, ex);
+		}
+
+		Class<?> type = accessor.getType();
+		if (MutatableInt.class.isAssignableFrom(type) || MutatableFloat.class.isAssignableFrom(type))
+			accessor = new MutatablePropertyAccessor(accessor);
+		return accessor;
+	}
+
+	private static PropertyAccessor member(PropertyAccessor parent, Class<?> type, String name) {
+		try {
+			Field field = type.getField(name);
+			return new FieldPropertyAccessor(parent, field);
+		} catch (NoSuchFieldException ex) {
+			// Try setter instead
+		}
+		String setterName = "set" + Character.toUpperCase(name.charAt(0)) + name.substring(1);
+		for (Method m : type.getMethods()) {
+			if (m.getName().equals(setterName) && m.getParameterTypes().length == 1)
+				return new SetterPropertyAccessor(parent, m);
+		}
+		throw new IllegalArgumentException("No field or setter '" + name + "' in " + type.getSimpleName());
+	}
+
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private static Object parseValue(Class<?> type, String text) {
+		if (type.isEnum())
+			return Enum.valueOf((Class<? extends Enum>) type, text);
+		return ReflectionUtil.stringToBoxed(type, text);
+	}
+
+	/**
+	 * Runs a sweep from the command line.
+	 * Syntax: see {@link #Syntax}
+	 *
+	 * <p> -param path=v1,v2,... can be given several times, -seeds takes a
+	 * comma separated list, -replicates N is the same as -seeds 1,2,...,N
+	 */
+	public static void main(String[] args) {
+		String inputFileName = null;
+		String outputDirectory = "ensemble";
+		List<String> params = new ArrayList<>();
+		List<Long> seeds = new ArrayList<>();
+		long steps = 1000;
+		int threads = 0;
+
+		try {
+			for (int arg_pos = 0; arg_pos < args.length; ++arg_pos) {
+				String arg = args[arg_pos];
+				if (arg.equalsIgnoreCase("--help")) {
+					System.out.println("Syntax: " + Syntax);
+					System.exit(0);
+				} else if (arg.equalsIgnoreCase("-steps")) {
+					steps = Long.parseLong(args[++arg_pos]);
+				} else if (arg.equalsIgnoreCase("-threads")) {
+					threads = Integer.parseInt(args[++arg_pos]);
+				} else if (arg.equalsIgnoreCase("-out")) {
+					outputDirectory = args[++arg_pos];
+				} else if (arg.equalsIgnoreCase("-param")) {
+					params.add(args[++arg_pos]);
+				} else if (arg.equalsIgnoreCase("-seeds")) {
+					for (String s : args[++arg_pos].split(",")) {
+						seeds.add(Long.parseLong(s.trim()));
+					}
+				} else if (arg.equalsIgnoreCase("-replicates")) {
+					int n = Integer.parseInt(args[++arg_pos]);
+					for (long s = 1; s <= n; s++) {
+						seeds.add(s);
+					}
+				} else {
+					inputFileName = arg;
+				}
+			}
+		} catch (NumberFormatException | ArrayIndexOutOfBoundsException ex) {
+			System.out.println("Invalid arguments: " + ex.getMessage() + "\nCorrect Syntax is: " + Syntax);
+			System.exit(1);
+		}
+
+		if (inputFileName == null) {
+			System.out.println("Please specify a settings file\nCorrect Syntax is: " + Syntax);
+			System.exit(1);
+		}
+
+		EnsembleRunner runner;
+		try {
+			runner = new EnsembleRunner(new Cobweb2Serializer().loadConfig(inputFileName), new File(outputDirectory));
+		} catch (FileNotFoundException ex) {
+			System.out.println("Invalid settings file value: '" + inputFileName + "' does not exist");
+			System.exit(1);
+			return;
+		}
+
+		try {
+			for (String p : params) {
+				int equals = p.indexOf('=');
+				if (equals < 0)
+					throw new IllegalArgumentException("Expected path=values: " + p);
+				runner.addParameter(p.substring(0, equals), p.substring(equals + 1).split(","));
+			}
+			if (!seeds.isEmpty())
+				runner.setSeeds(seeds);
+			runner.setSteps(steps);
+			if (threads > 0)
+				runner.setThreads(threads);
+		} catch (IllegalArgumentException ex) {
+			System.out.println(ex.getMessage() + (ex.getCause() != null ? ": " + ex.getCause().getMessage() : ""));
+			System.exit(1);
+		}
+
+		int count = runner.getRuns().size();
+		System.out.println(String.format("Running %1$d simulations of '%2$s' for %3$d steps. Logs: %4$s",
+				count, inputFileName, steps, outputDirectory));
+		long start = System.currentTimeMillis();
+		runner.run();
+		System.out.println(String.format("Done in %1$.1fs", (System.currentTimeMillis() - start) / 1000.0));
+	}
+
+	public static final String Syntax = "ensemble [--help] [-steps N] [-threads N] [-out Directory] " +
+			"[-param path=v1,v2,...]... [-seeds s1,s2,... | -replicates N] SettingsFile.xml";
+}
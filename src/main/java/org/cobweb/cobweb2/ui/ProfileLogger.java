@@ -0,0 +1,52 @@
+package org.cobweb.cobweb2.ui;
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+
+import org.cobweb.cobweb2.core.TickProfiler;
+
+/**
+ * Turns on the tick profiler and writes its summary to a file whenever the
+ * simulation stops.
+ */
+public class ProfileLogger implements UpdatableUI {
+
+	private final TickProfiler profiler;
+
+	private final String fileName;
+
+	public ProfileLogger(String fileName, TickProfiler profiler) {
+		this.fileName = fileName;
+		this.profiler = profiler;
+		profiler.setEnabled(true);
+	}
+
+	public void dispose() {
+		profiler.setEnabled(false);
+	}
+
+	@Override
+	public void update(boolean synchronous) {
+		// Nothing
+	}
+
+	@Override
+	public boolean isReadyToUpdate() {
+		return true;
+	}
+
+	@Override
+	public void onStopped() {
+		try (Writer writer = new FileWriter(fileName, false)) {
+			profiler.writeSummary(writer);
+		} catch (IOException ex) {
+			throw new UserInputException("Cannot save profile file", ex);
+		}
+	}
+
+	@Override
+	public void onStarted() {
+		// Nothing
+	}
+}
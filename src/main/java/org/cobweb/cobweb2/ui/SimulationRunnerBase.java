@@ -18,6 +18,10 @@ public class SimulationRunnerBase implements SimulationRunner {
 
 	private StatsLogger statsLogger = null;
 
+	private ProfileLogger profileLogger = null;
+
+	private CheckpointLogger checkpointLogger = null;
+
 	private String populationFile = null;
 
 	public SimulationRunnerBase(Simulation simulation) {
@@ -129,6 +133,42 @@ public class SimulationRunnerBase implements SimulationRunner {
 		}
 	}
 
+	/**
+	 * Sets file to write the tick profile to whenever the simulation stops.
+	 * null to disable profiling.
+	 * @param fileName where to write the profile.
+	 * @see ProfileLogger
+	 */
+	public void setProfileLog(String fileName) {
+		if (profileLogger != null) {
+			profileLogger.dispose();
+			removeUIComponent(profileLogger);
+		}
+
+		if (fileName != null) {
+			profileLogger = new ProfileLogger(fileName, simulation.profiler);
+			addUIComponent(profileLogger);
+		}
+	}
+
+	/**
+	 * Sets file to keep a checkpoint of the simulation in.
+	 * null to disable.
+	 * @param fileName where to write the checkpoint.
+	 * @param interval ticks between checkpoints, 0 to only write when stopped.
+	 * @see CheckpointLogger
+	 */
+	public void setCheckpoint(String fileName, long interval) {
+		if (checkpointLogger != null)
+			removeUIComponent(checkpointLogger);
+
+		checkpointLogger = null;
+		if (fileName != null) {
+			checkpointLogger = new CheckpointLogger(fileName, interval, simulation);
+			addUIComponent(checkpointLogger);
+		}
+	}
+
 	public void setPopulationLog(String fileName) {
 		this.populationFile = fileName;
 	}
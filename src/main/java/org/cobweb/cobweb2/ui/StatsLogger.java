@@ -31,6 +31,9 @@ public class StatsLogger implements UpdatableUI {
 
 		java.text.DecimalFormat z = new DecimalFormat("#,##0.000");
 
+		CoopCheaterCount[] pdStatsByType = statsTracker.numAgentsStratByType();
+		CoopCheaterCount pdStatsAll = new CoopCheaterCount();
+
 		for (int i = 0; i < statsTracker.getAgentTypeCount(); i++) {
 
 			long agentCount = statsTracker.countAgents(i);
@@ -55,7 +58,9 @@ public class StatsLogger implements UpdatableUI {
 			logStream.print(agentEnergy);
 			logStream.print('\t');
 
-			CoopCheaterCount pdStats = statsTracker.numAgentsStrat(i);
+			CoopCheaterCount pdStats = pdStatsByType[i];
+			pdStatsAll.cheaters += pdStats.cheaters;
+			pdStatsAll.cooperators += pdStats.cooperators;
 			logStream.print(pdStats.cheaters);
 			logStream.print('\t');
 			logStream.print(pdStats.cooperators);
@@ -90,10 +95,9 @@ public class StatsLogger implements UpdatableUI {
 		logStream.print('\t');
 
 
-		CoopCheaterCount pdStats = statsTracker.numAgentsStrat();
-		logStream.print(pdStats.cheaters);
+		logStream.print(pdStatsAll.cheaters);
 		logStream.print('\t');
-		logStream.print(pdStats.cooperators);
+		logStream.print(pdStatsAll.cooperators);
 		logStream.print('\t');
 
 		for (String s : statsTracker.pluginStatsTotal()) {
@@ -4,8 +4,6 @@ import java.util.List;
 
 import org.cobweb.cobweb2.Simulation;
 import org.cobweb.cobweb2.core.Agent;
-import org.cobweb.cobweb2.core.Environment;
-import org.cobweb.cobweb2.core.Location;
 import org.cobweb.cobweb2.impl.ComplexAgent;
 import org.cobweb.cobweb2.plugins.pd.PDState;
 import org.cobweb.cobweb2.plugins.personalities.PersonalityState;
@@ -19,12 +17,7 @@ public class StatsTracker  {
 	}
 
 	public long countAgentEnergy() {
-		long totalEnergy = 0;
-		for(Agent a : simulation.theEnvironment.getAgents()){
-			ComplexAgent agent = (ComplexAgent) a;
-			totalEnergy += agent.getEnergy();
-		}
-		return totalEnergy;
+		return simulation.theEnvironment.getAgentIndex().getEnergy();
 	}
 
 	public long getAgentCount() {
@@ -32,22 +25,11 @@ public class StatsTracker  {
 	}
 
 	public long countAgents(int agentType) {
-		long count = 0;
-		for(Agent a : simulation.theEnvironment.getAgents()) {
-			if (a.getType() == agentType)
-				count++;
-		}
-		return count;
+		return simulation.theEnvironment.getAgentIndex().size(agentType);
 	}
 
 	public long countAgentEnergy(int agentType) {
-		long totalEnergy = 0;
-		for(Agent a : simulation.theEnvironment.getAgents()) {
-			ComplexAgent agent = (ComplexAgent) a;
-			if (agent.getType() == agentType)
-				totalEnergy += agent.getEnergy();
-		}
-		return totalEnergy;
+		return simulation.theEnvironment.getAgentIndex().getEnergy(agentType);
 	}
 
 	public static class CoopCheaterCount {
@@ -90,6 +72,23 @@ public class StatsTracker  {
 		return coopCheaterCount;
 	}
 
+	/**
+	 * Counts cheaters and cooperators of every agent type in one pass.
+	 * Strategies are plain fields plugins can flip at any time, so they are
+	 * still tallied rather than tracked.
+	 * @return counts, indexed by agent type
+	 */
+	public CoopCheaterCount[] numAgentsStratByType() {
+		CoopCheaterCount[] counts = new CoopCheaterCount[getAgentTypeCount()];
+		for (int i = 0; i < counts.length; i++) {
+			counts[i] = new CoopCheaterCount();
+		}
+		for(Agent a : simulation.theEnvironment.getAgents()) {
+			tallyPD(counts[a.getType()], a);
+		}
+		return counts;
+	}
+
 	public int getAgentTypeCount() {
 		return simulation.getAgentTypeCount();
 	}
@@ -99,30 +98,11 @@ public class StatsTracker  {
 	}
 
 	public long countFoodTiles() {
-		Environment e = simulation.theEnvironment;
-		long foodCount = 0;
-		for (int x = 0; x < e.topology.width; ++x) {
-			for (int y = 0; y < e.topology.height; ++y) {
-				Location currentPos = new Location(x, y);
-				if (e.hasFood(currentPos))
-					++foodCount;
-			}
-		}
-		return foodCount;
+		return simulation.theEnvironment.getFoodCount();
 	}
 
 	public int countFoodTiles(int foodType) {
-		Environment e = simulation.theEnvironment;
-		int foodCount = 0;
-		for (int x = 0; x < e.topology.width; ++x) {
-			for (int y = 0; y < e.topology.height; ++y) {
-				Location currentPos = new Location(x, y);
-				if (e.hasFood(currentPos))
-					if (e.getFoodType(currentPos) == foodType)
-						++foodCount;
-			}
-		}
-		return foodCount;
+		return simulation.theEnvironment.getFoodCount(foodType);
 	}
 
 	public List<String> pluginStatsHeaderAgent() {
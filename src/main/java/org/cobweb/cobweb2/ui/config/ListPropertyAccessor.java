@@ -1,5 +1,8 @@
 package org.cobweb.cobweb2.ui.config;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.util.List;
 
 import org.cobweb.io.ConfDisplayFormat;
@@ -63,6 +66,13 @@ public class ListPropertyAccessor extends PropertyAccessorBase {
 		return value;
 	}
 
+	@Override
+	protected MethodHandle thisGetterHandle() throws ReflectiveOperationException {
+		MethodHandle getter = MethodHandles.publicLookup().findVirtual(List.class, "get",
+				MethodType.methodType(Object.class, int.class));
+		return MethodHandles.insertArguments(getter, 1, index);
+	}
+
 	@Override
 	public void thisSetValue(Object object, Object value) {
 		try {
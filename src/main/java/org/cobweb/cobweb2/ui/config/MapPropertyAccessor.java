@@ -1,5 +1,8 @@
 package org.cobweb.cobweb2.ui.config;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.util.Map;
 
 import org.cobweb.io.ConfDisplayFormat;
@@ -49,6 +52,13 @@ public class MapPropertyAccessor extends PropertyAccessorBase {
 		return map.get(key);
 	}
 
+	@Override
+	protected MethodHandle thisGetterHandle() throws ReflectiveOperationException {
+		MethodHandle getter = MethodHandles.publicLookup().findVirtual(Map.class, "get",
+				MethodType.methodType(Object.class, Object.class));
+		return MethodHandles.insertArguments(getter, 1, key);
+	}
+
 	@Override
 	public void thisSetValue(Object obj, Object value) {
 		@SuppressWarnings("unchecked")
@@ -1,5 +1,9 @@
 package org.cobweb.cobweb2.ui.config;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+
 import org.cobweb.util.MutatableFloat;
 import org.cobweb.util.MutatableInt;
 
@@ -55,6 +59,13 @@ public class MutatablePropertyAccessor extends PropertyAccessorBase {
 		}
 	}
 
+	@Override
+	protected MethodHandle thisGetterHandle() throws ReflectiveOperationException {
+		Class<?> container = type.equals(int.class) ? MutatableInt.class : MutatableFloat.class;
+		return MethodHandles.publicLookup().findVirtual(container, "getRawValue",
+				MethodType.methodType(type));
+	}
+
 	@Override
 	protected void thisSetValue(Object object, Object value) {
 		if (type.equals(int.class)) {
@@ -1,5 +1,9 @@
 package org.cobweb.cobweb2.ui.config;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.invoke.WrongMethodTypeException;
 import java.lang.reflect.AnnotatedElement;
 
 import org.cobweb.cobweb2.SimulationConfig;
@@ -9,8 +13,17 @@ import org.cobweb.io.ConfXMLTag;
 
 public abstract class PropertyAccessorBase implements PropertyAccessor {
 
+	private static final MethodType OBJECT_GETTER = MethodType.methodType(Object.class, Object.class);
+
 	protected final PropertyAccessor parent;
 
+	/**
+	 * Getter for the whole path from the root object, null if some part of
+	 * the path has no method handle. Built the first time it is needed.
+	 */
+	private volatile MethodHandle compiledGetter;
+	private volatile boolean compiled = false;
+
 	protected PropertyAccessorBase() {
 		this(null);
 	}
@@ -78,6 +91,17 @@ public abstract class PropertyAccessorBase implements PropertyAccessor {
 
 	@Override
 	public Object get(Object object) {
+		MethodHandle getter = getCompiledGetter();
+		if (getter != null) {
+			try {
+				return (Object) getter.invokeExact(object);
+			} catch (RuntimeException | Error ex) {
+				throw ex;
+			} catch (Throwable ex) {
+				throw new RuntimeException(ex);
+			}
+		}
+
 		if (parent != null)
 			object = parent.get(object);
 		return thisGetValue(object);
@@ -85,6 +109,51 @@ public abstract class PropertyAccessorBase implements PropertyAccessor {
 
 	protected abstract Object thisGetValue(Object object);
 
+	/**
+	 * Method handle that does the same as thisGetValue(), taking the object
+	 * returned by the parent accessor. get() joins these together along the
+	 * path so it doesn't go through reflection every time.
+	 * @return handle for this accessor, null to always use thisGetValue()
+	 */
+	protected MethodHandle thisGetterHandle() throws ReflectiveOperationException {
+		return null;
+	}
+
+	/**
+	 * Getter for the whole path from the root object, as an (Object)Object
+	 * method handle.
+	 * @return getter, null if the path can't be compiled
+	 */
+	public MethodHandle getCompiledGetter() {
+		if (!compiled) {
+			compiledGetter = compileGetter();
+			compiled = true;
+		}
+		return compiledGetter;
+	}
+
+	private MethodHandle compileGetter() {
+		MethodHandle handle;
+		try {
+			handle = thisGetterHandle();
+			if (handle == null)
+				return null;
+			handle = handle.asType(OBJECT_GETTER);
+		} catch (ReflectiveOperationException | WrongMethodTypeException ex) {
+			return null;
+		}
+
+		if (parent == null)
+			return handle;
+		if (!(parent instanceof PropertyAccessorBase))
+			return null;
+
+		MethodHandle parentGetter = ((PropertyAccessorBase) parent).getCompiledGetter();
+		if (parentGetter == null)
+			return null;
+		return MethodHandles.filterReturnValue(parentGetter, handle);
+	}
+
 	@Override
 	public float getAsFloat(Object object) {
 		if (parent != null)
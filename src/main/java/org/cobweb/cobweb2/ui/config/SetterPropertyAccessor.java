@@ -1,5 +1,7 @@
 package org.cobweb.cobweb2.ui.config;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
 import java.lang.reflect.AnnotatedElement;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
@@ -74,6 +76,11 @@ public class SetterPropertyAccessor extends PropertyAccessorBase {
 		}
 	}
 
+	@Override
+	protected MethodHandle thisGetterHandle() throws IllegalAccessException {
+		return MethodHandles.publicLookup().unreflect(getter);
+	}
+
 	@Override
 	protected void thisSetValue(Object object, Object value) {
 		try {
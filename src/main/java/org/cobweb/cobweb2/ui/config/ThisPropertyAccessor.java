@@ -1,5 +1,7 @@
 package org.cobweb.cobweb2.ui.config;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
 
 public class ThisPropertyAccessor extends PropertyAccessorBase {
 
@@ -28,6 +30,11 @@ public class ThisPropertyAccessor extends PropertyAccessorBase {
 		return object;
 	}
 
+	@Override
+	protected MethodHandle thisGetterHandle() {
+		return MethodHandles.identity(Object.class);
+	}
+
 	@Override
 	protected void thisSetValue(Object object, Object value) {
 		throw new UnsupportedOperationException();
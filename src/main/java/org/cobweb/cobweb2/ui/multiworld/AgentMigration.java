@@ -0,0 +1,126 @@
+package org.cobweb.cobweb2.ui.multiworld;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.cobweb.cobweb2.Simulation;
+import org.cobweb.cobweb2.core.Agent;
+import org.cobweb.cobweb2.core.Location;
+import org.cobweb.cobweb2.core.LocationDirection;
+import org.cobweb.cobweb2.core.RandomStream;
+import org.cobweb.cobweb2.core.Topology;
+import org.cobweb.cobweb2.impl.ComplexAgent;
+import org.cobweb.cobweb2.impl.ComplexAgentParams;
+import org.cobweb.cobweb2.impl.ComplexEnvironment;
+import org.cobweb.cobweb2.plugins.AgentState;
+import org.cobweb.util.RandomNoGenerator;
+
+/**
+ * Moves agents of one type from one world to another.
+ *
+ * At every sync point each agent of the type leaves the source world with
+ * the given probability, keeping its energy, parameters and the plugin
+ * states a population sample would keep. It arrives at the same location in
+ * the target world when that is free, otherwise at a random free location.
+ * Agents that find no room are lost.
+ */
+public class AgentMigration implements WorldLink {
+
+	private static final RandomStream RANDOM_STREAM = RandomStream.named("AgentMigration");
+
+	private final Simulation from;
+
+	private final Simulation to;
+
+	private final int type;
+
+	private final float probability;
+
+	private static class Migrant {
+		ComplexAgentParams params;
+		int energy;
+		LocationDirection position;
+		Map<Class<? extends AgentState>, AgentState> states;
+	}
+
+	private final List<Migrant> migrants = new ArrayList<>();
+
+	/**
+	 * @param type agent type that migrates, the same in both worlds
+	 * @param probability chance of each agent of the type leaving at a sync point
+	 */
+	public AgentMigration(Simulation from, Simulation to, int type, float probability) {
+		if (type >= from.getAgentTypeCount() || type >= to.getAgentTypeCount())
+			throw new IllegalArgumentException("Both worlds need agent type " + (type + 1));
+		this.from = from;
+		this.to = to;
+		this.type = type;
+		this.probability = probability;
+	}
+
+	@Override
+	public void startInterval() {
+		// Nothing
+	}
+
+	@Override
+	public void collect() {
+		RandomNoGenerator random = from.getRandom(RANDOM_STREAM);
+		for (Agent a : new ArrayList<>(from.theEnvironment.getAgents())) {
+			if (a.getType() != type || !a.isAlive() || random.nextFloat() >= probability)
+				continue;
+
+			ComplexAgent agent = (ComplexAgent) a;
+			Migrant m = new Migrant();
+			m.params = agent.params;
+			m.energy = agent.getEnergy();
+			m.position = agent.getPosition();
+			m.states = agent.getStates();
+			migrants.add(m);
+
+			agent.die();
+		}
+	}
+
+	@Override
+	public void deliver() {
+		ComplexEnvironment env = to.theEnvironment;
+		Topology topology = env.topology;
+		for (Migrant m : migrants) {
+			Location location = null;
+			if (m.position.x < topology.width && m.position.y < topology.height) {
+				location = topology.location(m.position.x, m.position.y);
+				if (!isFree(env, location))
+					location = null;
+			}
+			int tries = 0;
+			while (location == null && tries++ < 100) {
+				location = topology.getRandomLocation();
+				if (!isFree(env, location))
+					location = null;
+			}
+			if (location == null)
+				continue;
+
+			ComplexAgent agent = (ComplexAgent) to.newAgent(type);
+			agent.init(env, new LocationDirection(location, m.position.direction), m.params, m.energy);
+			for (Entry<Class<? extends AgentState>, AgentState> state : m.states.entrySet()) {
+				if (!state.getValue().isTransient())
+					copyState(agent, state.getKey(), state.getValue());
+			}
+		}
+		migrants.clear();
+	}
+
+	private static boolean isFree(ComplexEnvironment env, Location l) {
+		return !env.hasAgent(l) && !env.hasStone(l) && !env.hasDrop(l);
+	}
+
+	@SuppressWarnings("unchecked")
+	private <T extends AgentState> void copyState(ComplexAgent agent, Class<T> stateType, AgentState value) {
+		if (to.supportsState(stateType, (T) value))
+			agent.setState(stateType, (T) value);
+	}
+}
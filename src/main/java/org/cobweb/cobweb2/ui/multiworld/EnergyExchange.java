@@ -0,0 +1,109 @@
+package org.cobweb.cobweb2.ui.multiworld;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.cobweb.cobweb2.Simulation;
+import org.cobweb.cobweb2.core.Agent;
+import org.cobweb.cobweb2.core.Cause;
+
+/**
+ * Passes changes in energy from one world to another.
+ *
+ * Over each interval, the change in total energy of every agent type of the
+ * source world is multiplied by a factor for each agent type of the target
+ * world. At the sync point the sum for each target type is shared equally
+ * between the target's agents of that type, rounded up.
+ */
+public class EnergyExchange implements WorldLink {
+
+	private final Simulation from;
+
+	private final Simulation to;
+
+	/**
+	 * rule[i][j]: factor for change of source type i to target type j
+	 */
+	private final float[][] rule;
+
+	private long[] startEnergy;
+
+	private final double[] pending;
+
+	private static final ExchangeCause EXCHANGE = new ExchangeCause();
+
+	public EnergyExchange(Simulation from, Simulation to) {
+		this.from = from;
+		this.to = to;
+		this.rule = new float[from.getAgentTypeCount()][to.getAgentTypeCount()];
+		this.pending = new double[to.getAgentTypeCount()];
+	}
+
+	/**
+	 * Sets how much of the change in energy of a source type goes to a target
+	 * type. Negative factors take away energy when the source gains it.
+	 * @param fromType agent type in the source world
+	 * @param toType agent type in the target world
+	 */
+	public void setFactor(int fromType, int toType, float factor) {
+		rule[fromType][toType] = factor;
+	}
+
+	private static long[] totalEnergy(Simulation simulation, int types) {
+		long[] total = new long[types];
+		for (Agent a : simulation.theEnvironment.getAgents()) {
+			if (a.getType() < types)
+				total[a.getType()] += a.getEnergy();
+		}
+		return total;
+	}
+
+	@Override
+	public void startInterval() {
+		startEnergy = totalEnergy(from, rule.length);
+	}
+
+	@Override
+	public void collect() {
+		long[] endEnergy = totalEnergy(from, rule.length);
+		for (int j = 0; j < pending.length; j++) {
+			pending[j] = 0;
+			for (int i = 0; i < rule.length; i++) {
+				pending[j] += (endEnergy[i] - startEnergy[i]) * (double) rule[i][j];
+			}
+		}
+	}
+
+	@Override
+	public void deliver() {
+		List<List<Agent>> byType = new ArrayList<>();
+		for (int j = 0; j < pending.length; j++) {
+			byType.add(new ArrayList<Agent>());
+		}
+		for (Agent a : to.theEnvironment.getAgents()) {
+			if (a.getType() < pending.length)
+				byType.get(a.getType()).add(a);
+		}
+
+		for (int j = 0; j < pending.length; j++) {
+			List<Agent> agents = byType.get(j);
+			if (pending[j] == 0 || agents.isEmpty())
+				continue;
+
+			double share = pending[j] / agents.size();
+			for (Agent a : agents) {
+				int energy = a.getEnergy();
+				int delta = (int) Math.ceil(energy + share) - energy;
+				if (delta != 0)
+					a.changeEnergy(delta, EXCHANGE);
+			}
+		}
+	}
+
+	public static class ExchangeCause implements Cause {
+		@Override
+		public String getName() {
+			return "World Exchange";
+		}
+	}
+}
@@ -0,0 +1,319 @@
+package org.cobweb.cobweb2.ui.multiworld;
+
+import java.io.FileNotFoundException;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.cobweb.cobweb2.Simulation;
+import org.cobweb.cobweb2.SimulationConfig;
+import org.cobweb.cobweb2.io.Cobweb2Serializer;
+import org.cobweb.cobweb2.ui.StatsLogger;
+import org.cobweb.cobweb2.ui.UserInputException;
+
+/**
+ * Runs several simulations side by side in one process, coupled through
+ * WorldLinks at regular sync points.
+ *
+ * Between sync points every world steps on its own, on separate threads
+ * when there are more than one. At a sync point, once every world has
+ * finished the interval, every link collects, then every link delivers.
+ * Worlds only touch each other through links at sync points, so results
+ * don't depend on the number of threads.
+ */
+public class MultiWorldRunner {
+
+	private final List<Simulation> worlds = new ArrayList<>();
+
+	private final List<StatsLogger> loggers = new ArrayList<>();
+
+	private final List<WorldLink> links = new ArrayList<>();
+
+	private long syncInterval = 1;
+
+	private int threads = 1;
+
+	private boolean started = false;
+
+	/**
+	 * Steps taken since the last sync point
+	 */
+	private long sinceSync = 0;
+
+	/**
+	 * @return index of the world
+	 */
+	public int addWorld(Simulation simulation) {
+		worlds.add(simulation);
+		loggers.add(null);
+		return worlds.size() - 1;
+	}
+
+	public Simulation getWorld(int world) {
+		return worlds.get(world);
+	}
+
+	public int getWorldCount() {
+		return worlds.size();
+	}
+
+	public void addLink(WorldLink link) {
+		links.add(link);
+	}
+
+	/**
+	 * Sets log Writer for a world, see StatsLogger.
+	 */
+	public void setLog(int world, Writer writer) {
+		StatsLogger logger = loggers.get(world);
+		if (logger != null)
+			logger.dispose();
+
+		logger = writer == null ? null : new StatsLogger(writer, worlds.get(world));
+		loggers.set(world, logger);
+		if (logger != null)
+			logger.update(true);
+	}
+
+	/**
+	 * Sets the number of steps worlds take between sync points.
+	 */
+	public void setSyncInterval(long steps) {
+		if (steps < 1)
+			throw new IllegalArgumentException("Sync interval must be > 0");
+		this.syncInterval = steps;
+	}
+
+	/**
+	 * Sets how many worlds step at the same time between sync points.
+	 */
+	public void setThreads(int threads) {
+		if (threads < 1)
+			throw new IllegalArgumentException("Threads must be > 0");
+		this.threads = threads;
+	}
+
+	/**
+	 * Runs every world for the given number of steps, syncing every
+	 * syncInterval steps. Can be called again to keep going.
+	 */
+	public void run(long steps) {
+		if (!started) {
+			for (WorldLink link : links) {
+				link.startInterval();
+			}
+			started = true;
+		}
+
+		ExecutorService pool = threads > 1 && worlds.size() > 1
+				? Executors.newFixedThreadPool(Math.min(threads, worlds.size()))
+				: null;
+		try {
+			long done = 0;
+			while (done < steps) {
+				long interval = Math.min(syncInterval - sinceSync, steps - done);
+				stepWorlds(pool, interval);
+				done += interval;
+				sinceSync += interval;
+
+				if (sinceSync == syncInterval) {
+					sync();
+					sinceSync = 0;
+				}
+			}
+		} finally {
+			if (pool != null)
+				pool.shutdownNow();
+		}
+	}
+
+	private void sync() {
+		for (WorldLink link : links) {
+			link.collect();
+		}
+		for (WorldLink link : links) {
+			link.deliver();
+		}
+		for (WorldLink link : links) {
+			link.startInterval();
+		}
+	}
+
+	private void stepWorlds(ExecutorService pool, final long steps) {
+		if (pool == null) {
+			for (int w = 0; w < worlds.size(); w++) {
+				stepWorld(w, steps);
+			}
+			return;
+		}
+
+		List<Future<?>> results = new ArrayList<>();
+		for (int w = 0; w < worlds.size(); w++) {
+			final int world = w;
+			results.add(pool.submit(new Runnable() {
+				@Override
+				public void run() {
+					stepWorld(world, steps);
+				}
+			}));
+		}
+		try {
+			for (Future<?> result : results) {
+				result.get();
+			}
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("Interrupted while stepping worlds", ex);
+		} catch (ExecutionException ex) {
+			throw new RuntimeException("World failed to step", ex.getCause());
+		}
+	}
+
+	private void stepWorld(int world, long steps) {
+		Simulation simulation = worlds.get(world);
+		StatsLogger logger = loggers.get(world);
+		for (long i = 0; i < steps; i++) {
+			simulation.step();
+			if (logger != null)
+				logger.update(true);
+		}
+	}
+
+	/**
+	 * Flushes and closes the logs and disposes the worlds.
+	 */
+	public void dispose() {
+		for (int w = 0; w < worlds.size(); w++) {
+			setLog(w, null);
+			worlds.get(w).dispose();
+		}
+	}
+
+	/**
+	 * Runs coupled worlds from the command line.
+	 * Syntax: see {@link #Syntax}
+	 *
+	 * <p> Worlds and agent types are numbered from 1, in the order the
+	 * settings files are given.
+	 *
+	 * <p> -energy from:to:i>j=factor,... adds an EnergyExchange from world
+	 * "from" to world "to", where the change in energy of type i in the first
+	 * world is multiplied by factor and given to type j in the second.
+	 *
+	 * <p> -migrate from:to:type=probability adds an AgentMigration.
+	 *
+	 * <p> -log prefix writes the log of world N to prefixN.tsv
+	 */
+	public static void main(String[] args) {
+		List<String> inputFileNames = new ArrayList<>();
+		List<String> energyLinks = new ArrayList<>();
+		List<String> migrationLinks = new ArrayList<>();
+		String logPrefix = null;
+		long steps = 1000;
+		long interval = 100;
+		int threads = 1;
+
+		try {
+			for (int arg_pos = 0; arg_pos < args.length; ++arg_pos) {
+				String arg = args[arg_pos];
+				if (arg.equalsIgnoreCase("--help")) {
+					System.out.println("Syntax: " + Syntax);
+					System.exit(0);
+				} else if (arg.equalsIgnoreCase("-steps")) {
+					steps = Long.parseLong(args[++arg_pos]);
+				} else if (arg.equalsIgnoreCase("-interval")) {
+					interval = Long.parseLong(args[++arg_pos]);
+				} else if (arg.equalsIgnoreCase("-threads")) {
+					threads = Integer.parseInt(args[++arg_pos]);
+				} else if (arg.equalsIgnoreCase("-log")) {
+					logPrefix = args[++arg_pos];
+				} else if (arg.equalsIgnoreCase("-energy")) {
+					energyLinks.add(args[++arg_pos]);
+				} else if (arg.equalsIgnoreCase("-migrate")) {
+					migrationLinks.add(args[++arg_pos]);
+				} else {
+					inputFileNames.add(arg);
+				}
+			}
+		} catch (NumberFormatException | ArrayIndexOutOfBoundsException ex) {
+			System.out.println("Invalid arguments: " + ex.getMessage() + "\nCorrect Syntax is: " + Syntax);
+			System.exit(1);
+		}
+
+		if (inputFileNames.isEmpty()) {
+			System.out.println("Please specify settings files\nCorrect Syntax is: " + Syntax);
+			System.exit(1);
+		}
+
+		MultiWorldRunner runner = new MultiWorldRunner();
+		Cobweb2Serializer serializer = new Cobweb2Serializer();
+		for (String fileName : inputFileNames) {
+			SimulationConfig config;
+			try {
+				config = serializer.loadConfig(fileName);
+			} catch (FileNotFoundException ex) {
+				System.out.println("Invalid settings file value: '" + fileName + "' does not exist");
+				System.exit(1);
+				return;
+			}
+			Simulation simulation = new Simulation();
+			simulation.load(config);
+			runner.addWorld(simulation);
+		}
+
+		try {
+			for (String spec : energyLinks) {
+				String[] parts = spec.split(":");
+				EnergyExchange link = new EnergyExchange(
+						runner.getWorld(Integer.parseInt(parts[0]) - 1),
+						runner.getWorld(Integer.parseInt(parts[1]) - 1));
+				for (String factor : parts[2].split(",")) {
+					String[] typesValue = factor.split("=");
+					String[] types = typesValue[0].split(">");
+					link.setFactor(Integer.parseInt(types[0]) - 1, Integer.parseInt(types[1]) - 1,
+							Float.parseFloat(typesValue[1]));
+				}
+				runner.addLink(link);
+			}
+			for (String spec : migrationLinks) {
+				String[] parts = spec.split(":");
+				String[] typeValue = parts[2].split("=");
+				runner.addLink(new AgentMigration(
+						runner.getWorld(Integer.parseInt(parts[0]) - 1),
+						runner.getWorld(Integer.parseInt(parts[1]) - 1),
+						Integer.parseInt(typeValue[0]) - 1,
+						Float.parseFloat(typeValue[1])));
+			}
+			runner.setSyncInterval(interval);
+			runner.setThreads(threads);
+		} catch (RuntimeException ex) {
+			System.out.println("Invalid link: " + ex + "\nCorrect Syntax is: " + Syntax);
+			System.exit(1);
+		}
+
+		if (logPrefix != null) {
+			for (int w = 0; w < runner.getWorldCount(); w++) {
+				try {
+					runner.setLog(w, new FileWriter(logPrefix + (w + 1) + ".tsv", false));
+				} catch (IOException ex) {
+					throw new UserInputException("Can't create log file!", ex);
+				}
+			}
+		}
+
+		System.out.println(String.format("Running %1$d worlds for %2$d steps, syncing every %3$d steps",
+				runner.getWorldCount(), steps, interval));
+		runner.run(steps);
+		runner.dispose();
+		System.out.println("Done!");
+	}
+
+	public static final String Syntax = "multiworld [--help] [-steps N] [-interval N] [-threads N] [-log Prefix] " +
+			"[-energy from:to:i>j=factor,...]... [-migrate from:to:type=probability]... World1.xml World2.xml ...";
+}
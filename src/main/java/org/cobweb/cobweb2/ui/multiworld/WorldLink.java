@@ -0,0 +1,28 @@
+package org.cobweb.cobweb2.ui.multiworld;
+
+/**
+ * Channel between two worlds of a MultiWorldRunner, used at every sync
+ * point while all the worlds are stopped.
+ *
+ * Every link collects before any link delivers, so what a link takes from
+ * a world doesn't depend on what other links put into it at the same sync
+ * point.
+ */
+public interface WorldLink {
+
+	/**
+	 * Called before the first interval and after every sync point, once
+	 * every link has delivered.
+	 */
+	public void startInterval();
+
+	/**
+	 * Takes what leaves the source world at the end of an interval.
+	 */
+	public void collect();
+
+	/**
+	 * Puts what was collected into the target world.
+	 */
+	public void deliver();
+}
@@ -54,6 +54,7 @@ import org.cobweb.cobweb2.ui.swing.energy.EnergyEventViewer;
 import org.cobweb.cobweb2.ui.swing.genetics.GAChartOutput;
 import org.cobweb.cobweb2.ui.swing.production.ProductionViewer;
 import org.cobweb.cobweb2.ui.swing.stats.RegionViewer;
+import org.cobweb.cobweb2.ui.swing.stats.TickProfileViewer;
 import org.cobweb.util.FileUtils;
 
 /**
@@ -544,6 +545,7 @@ public class CobwebApplication extends JFrame {
 
 
 		viewers.add(new LiveStats(simRunner));
+		viewers.add(new TickProfileViewer(simRunner));
 
 		if (simRunner.getSimulation().simulationConfig.geneticParams.getGeneCount() != 0) {
 			GAChartOutput gaViewer = new GAChartOutput(
@@ -1,13 +1,17 @@
 package org.cobweb.cobweb2.ui.swing;
 
+import java.io.BufferedInputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.InputStream;
 
 import org.cobweb.cobweb2.Simulation;
 import org.cobweb.cobweb2.SimulationConfig;
+import org.cobweb.cobweb2.io.CheckpointSerializer;
 import org.cobweb.cobweb2.io.Cobweb2Serializer;
 import org.cobweb.cobweb2.ui.LoggingExceptionHandler;
 import org.cobweb.cobweb2.ui.PopulationSampler;
@@ -56,6 +60,19 @@ public class CobwebApplicationRunner {
 	 * <p> --load-pop
 	 * <br>Specify the file in which a population of agents will be loaded.
 	 *
+	 * <p> -profile [must specify]
+	 * <br>Specify the file in which a summary of the time spent in each part of
+	 * a tick will be written when the simulation stops.
+	 *
+	 * <p> -checkpoint [must specify] [specify integer >= 0]
+	 * <br>Specify the file to keep a checkpoint of the running simulation in,
+	 * and the number of steps between checkpoints. 0 only writes it when the
+	 * simulation stops.
+	 *
+	 * <p> -restore [must specify]
+	 * <br>Specify a checkpoint to continue the simulation from instead of
+	 * starting it from a settings file. Only with -hide.
+	 *
 	 * <p> -autorun [specify integer >= -1]
 	 *
 	 * @param args command line arguments
@@ -74,6 +91,10 @@ public class CobwebApplicationRunner {
 		boolean visible = true;
 		String populationFileName = "";
 		String loadPopulationFile = "";
+		String profileFileName = "";
+		String checkpointFileName = "";
+		int checkpointInterval = 0;
+		String restoreFileName = "";
 
 		if (args.length > 0) {
 			for (int arg_pos = 0; arg_pos < args.length; ++arg_pos){
@@ -110,6 +131,39 @@ public class CobwebApplicationRunner {
 					} else {
 						logFileName = args[++arg_pos];
 					}
+				} else if (args[arg_pos].equalsIgnoreCase("-profile")){
+					if (args.length - arg_pos == 1) {
+						System.out.println("No value attached to '-profile' argument,\n" +
+								"Correct Syntax is: " + CobwebApplicationRunner.Syntax);
+						System.exit(1);
+					} else {
+						profileFileName = args[++arg_pos];
+					}
+				} else if (args[arg_pos].equalsIgnoreCase("-checkpoint")){
+					if (args.length - arg_pos <= 2) {
+						System.out.println("No value attached to '-checkpoint' argument,\n" +
+								"Correct Syntax is: " + CobwebApplicationRunner.Syntax);
+						System.exit(1);
+					}
+					checkpointFileName = args[++arg_pos];
+					try{
+						checkpointInterval = Integer.parseInt(args[++arg_pos]);
+					} catch (NumberFormatException numexception){
+						System.out.println("-checkpoint interval must be integer");
+						System.exit(1);
+					}
+					if (checkpointInterval < 0) {
+						System.out.println("-checkpoint interval must >= 0");
+						System.exit(1);
+					}
+				} else if (args[arg_pos].equalsIgnoreCase("-restore")){
+					if (args.length - arg_pos == 1) {
+						System.out.println("No value attached to '-restore' argument,\n" +
+								"Correct Syntax is: " + CobwebApplicationRunner.Syntax);
+						System.exit(1);
+					} else {
+						restoreFileName = args[++arg_pos];
+					}
 				} else if (args[arg_pos].equalsIgnoreCase("--save-pop")) {
 					if (args.length - arg_pos == 1) {
 						System.out.println("No value attached to '--save-pop' argument,\n" +
@@ -137,10 +191,33 @@ public class CobwebApplicationRunner {
 			System.exit(1);
 		}
 
-		main(inputFileName, logFileName, populationFileName, loadPopulationFile, autostart, finalstep, visible);
+		if (!restoreFileName.isEmpty()) {
+			if (visible) {
+				System.out.println("-restore only works with -hide");
+				System.exit(1);
+			}
+			if (!new File(restoreFileName).exists()) {
+				System.out.println("Invalid checkpoint file value: '" + restoreFileName + "' does not exist" );
+				System.exit(1);
+			}
+		}
+
+		main(inputFileName, logFileName, populationFileName, loadPopulationFile, profileFileName,
+				checkpointFileName, checkpointInterval, restoreFileName, autostart, finalstep, visible);
+	}
+
+	public static void main(String inputFileName, String logFileName, String populationFileName, String loadPopulationFile,
+			boolean autostart, int finalstep, boolean visible) {
+		main(inputFileName, logFileName, populationFileName, loadPopulationFile, "", autostart, finalstep, visible);
+	}
+
+	public static void main(String inputFileName, String logFileName, String populationFileName, String loadPopulationFile,
+			String profileFileName, boolean autostart, int finalstep, boolean visible) {
+		main(inputFileName, logFileName, populationFileName, loadPopulationFile, profileFileName, "", 0, "", autostart, finalstep, visible);
 	}
 
 	public static void main(String inputFileName, String logFileName, String populationFileName, String loadPopulationFile,
+			String profileFileName, String checkpointFileName, int checkpointInterval, String restoreFileName,
 			boolean autostart, int finalstep, boolean visible) {
 		if (!logFileName.isEmpty() && new File(logFileName).exists()){
 			System.out.println("WARNING: log '" + logFileName + "' already exists, overwriting it!" );
@@ -156,6 +233,19 @@ public class CobwebApplicationRunner {
 			Thread.setDefaultUncaughtExceptionHandler(handler);
 		}
 
+		if (!restoreFileName.isEmpty()) {
+			Simulation simulation;
+			try (InputStream stream = new BufferedInputStream(new FileInputStream(restoreFileName))) {
+				simulation = new CheckpointSerializer().load(stream);
+			} catch (IOException ex) {
+				throw new UserInputException("Cannot load checkpoint " + restoreFileName, ex);
+			}
+			System.out.println("Restored checkpoint at step " + simulation.getTime() + ": " + restoreFileName);
+			startRunner(new SimulationRunnerBase(simulation), logFileName, populationFileName, "",
+					profileFileName, checkpointFileName, checkpointInterval, autostart, finalstep);
+			return;
+		}
+
 		//Set up inputFile
 
 		if (inputFileName.equals("")) {
@@ -226,6 +316,13 @@ public class CobwebApplicationRunner {
 			simulation.load(defaultconf);
 			simRunner = new SimulationRunnerBase(simulation);
 		}
+		startRunner(simRunner, logFileName, populationFileName, loadPopulationFile,
+				profileFileName, checkpointFileName, checkpointInterval, autostart, finalstep);
+	}
+
+	private static void startRunner(SimulationRunnerBase simRunner, String logFileName, String populationFileName,
+			String loadPopulationFile, String profileFileName, String checkpointFileName, int checkpointInterval,
+			boolean autostart, int finalstep) {
 		simRunner.setAutoStopTime(finalstep);
 
 		if (!logFileName.isEmpty()){
@@ -244,12 +341,21 @@ public class CobwebApplicationRunner {
 			simRunner.setPopulationLog(populationFileName);
 		}
 
+		if (!profileFileName.isEmpty()) {
+			simRunner.setProfileLog(profileFileName);
+		}
+
+		if (!checkpointFileName.isEmpty()) {
+			simRunner.setCheckpoint(checkpointFileName, checkpointInterval);
+		}
+
 		if (autostart) {
 			simRunner.run();
 		}
 	}
 
-	public static final String Syntax = "cobweb2 [--help] [-hide] [-autorun finalstep] [-log LogFile.tsv] " +
+	public static final String Syntax = "cobweb2 [--help] [-hide] [-autorun finalstep] [-log LogFile.tsv] [-profile ProfileFile.tsv] " +
+			"[-checkpoint CheckpointFile interval] [-restore CheckpointFile] " +
 			"[--save-pop PopulationFile.xml] [--load-pop PopulationFile.xml] [[[-open] SettingsFile.xml]";
 
 
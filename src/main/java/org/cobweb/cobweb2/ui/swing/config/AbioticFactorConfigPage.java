@@ -31,6 +31,7 @@ import javax.swing.event.ListSelectionListener;
 import javax.swing.event.TableModelEvent;
 import javax.swing.event.TableModelListener;
 
+import org.cobweb.cobweb2.core.RandomStream;
 import org.cobweb.cobweb2.core.SimulationTimeSpace;
 import org.cobweb.cobweb2.core.Topology;
 import org.cobweb.cobweb2.plugins.abiotic.AbioticFactor;
@@ -260,6 +261,11 @@ public class AbioticFactorConfigPage implements ConfigPage {
 			return null;
 		}
 
+		@Override
+		public RandomNoGenerator getRandom(RandomStream stream) {
+			return null;
+		}
+
 		@Override
 		public Topology getTopology() {
 			return null;
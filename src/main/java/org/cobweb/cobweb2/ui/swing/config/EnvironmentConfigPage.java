@@ -83,6 +83,17 @@ public class EnvironmentConfigPage implements ConfigPage {
 		fieldPane.add(new JLabel(wrapY.getLabelText()));
 		fieldPane.add(wrapY);
 
+		BoundJFormattedTextField broadcasts = new BoundJFormattedTextField(params.envParams,
+				new FieldPropertyAccessor(ComplexEnvironmentParams.class.getField("broadcastsPerTick")),
+				NumberFormat.getIntegerInstance());
+		fieldPane.add(new JLabel(broadcasts.getLabelText()));
+		fieldPane.add(broadcasts);
+
+		BoundJFormattedTextField environmentThreads = new BoundJFormattedTextField(params.envParams,
+				new FieldPropertyAccessor(ComplexEnvironmentParams.class.getField("environmentThreads")),
+				NumberFormat.getIntegerInstance());
+		fieldPane.add(new JLabel(environmentThreads.getLabelText()));
+		fieldPane.add(environmentThreads);
 
 		BoundJFormattedTextField AgentNum = new BoundJFormattedTextField(params,
 				new SetterPropertyAccessor(SimulationConfig.class.getMethod("setAgentTypes", int.class)),
@@ -115,7 +126,7 @@ public class EnvironmentConfigPage implements ConfigPage {
 
 		panel11.add(fieldPane, BorderLayout.CENTER);
 
-		makeOptionsTable(fieldPane, 7);
+		makeOptionsTable(fieldPane, 9);
 		return panel11;
 	}
 
@@ -29,6 +29,7 @@ import org.cobweb.cobweb2.ui.UserInputException;
 import org.cobweb.cobweb2.ui.config.FieldPropertyAccessor;
 import org.cobweb.io.ChoiceCatalog;
 import org.cobweb.swingutil.ColorLookup;
+import org.cobweb.swingutil.binding.BoundCheckBox;
 import org.cobweb.swingutil.binding.EnumComboBoxModel;
 import org.cobweb.util.ArrayUtilities;
 
@@ -218,6 +219,11 @@ public class GeneticConfigPage implements ConfigPage {
 		JPanel meiosis_mode_panel = new JPanel(new BorderLayout());
 		meiosis_mode_panel.add(new JLabel("Mode of Meiosis"), BorderLayout.NORTH);
 		meiosis_mode_panel.add(meiosis_mode, BorderLayout.CENTER);
+
+		BoundCheckBox compareGenes = new BoundCheckBox(this.params,
+				new FieldPropertyAccessor(GeneticParams.class.getField("compareGenes")));
+		compareGenes.setText(compareGenes.getLabelText());
+		meiosis_mode_panel.add(compareGenes, BorderLayout.SOUTH);
 		return meiosis_mode_panel;
 	}
 
@@ -88,6 +88,7 @@ public class MixedValueJTable extends JTable {
 			return super.stopCellEditing();
 		}
 
+		private static final long serialVersionUID = 1L;
 	}
 
 	private static class SelectAllCellEditor extends DefaultCellEditor {
@@ -125,6 +126,7 @@ public class MixedValueJTable extends JTable {
 			return textField;
 		}
 
+		private static final long serialVersionUID = 1L;
 	}
 
 	private final class PerciseDecimalTableCellRenderer extends DefaultTableCellRenderer {
@@ -245,7 +247,11 @@ public class MixedValueJTable extends JTable {
 				}
 				super.insertString(offs, new String(upper), a);
 			}
+
+			private static final long serialVersionUID = 1L;
 		}
+
+		private static final long serialVersionUID = 1L;
 	}
 
 	private static final long serialVersionUID = -9106510371599896107L;
@@ -0,0 +1,248 @@
+package org.cobweb.cobweb2.ui.swing.stats;
+
+import java.awt.BorderLayout;
+import java.awt.Container;
+import java.awt.Dimension;
+import java.awt.FileDialog;
+import java.awt.event.ActionEvent;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.swing.AbstractAction;
+import javax.swing.JButton;
+import javax.swing.JFrame;
+import javax.swing.JPanel;
+import javax.swing.JScrollPane;
+import javax.swing.JTable;
+import javax.swing.SwingUtilities;
+import javax.swing.table.AbstractTableModel;
+
+import org.cobweb.cobweb2.Simulation;
+import org.cobweb.cobweb2.core.TickProfiler;
+import org.cobweb.cobweb2.core.TickProfiler.Counter;
+import org.cobweb.cobweb2.ui.SimulationRunner;
+import org.cobweb.cobweb2.ui.UpdatableUI;
+import org.cobweb.cobweb2.ui.UserInputException;
+import org.cobweb.cobweb2.ui.ViewerClosedCallback;
+import org.cobweb.cobweb2.ui.ViewerPlugin;
+
+/**
+ * Table of the time spent in each phase of a tick and each plugin during it.
+ * Profiling is on while the viewer is open.
+ */
+public class TickProfileViewer implements ViewerPlugin, UpdatableUI {
+
+	private static final int frameskip = 25;
+
+	private final SimulationRunner simRunner;
+
+	private final TickProfiler profiler;
+
+	private JFrame frame;
+
+	private ProfileTableModel model;
+
+	private int frameCount = 0;
+
+	/**
+	 * Whether profiling was already on before the viewer turned it on
+	 */
+	private boolean wasEnabled;
+
+	public TickProfileViewer(SimulationRunner simRunner) {
+		this.simRunner = simRunner;
+		this.profiler = ((Simulation) simRunner.getSimulation()).profiler;
+	}
+
+	@Override
+	public String getName() {
+		return "Tick Profile";
+	}
+
+	@Override
+	public void on() {
+		if (frame != null)
+			return;
+
+		wasEnabled = profiler.isEnabled();
+		profiler.setEnabled(true);
+
+		frame = createFrame();
+		frame.addWindowListener(new WindowAdapter() {
+			@Override
+			public void windowClosing(WindowEvent e) {
+				off();
+				if (onClosed != null)
+					onClosed.viewerClosed();
+			}
+		});
+		frame.setVisible(true);
+		simRunner.addUIComponent(this);
+	}
+
+	@Override
+	public void off() {
+		if (frame == null)
+			return;
+
+		simRunner.removeUIComponent(this);
+		profiler.setEnabled(wasEnabled);
+		frame.dispose();
+		frame = null;
+	}
+
+	@Override
+	public void dispose() {
+		off();
+	}
+
+	private ViewerClosedCallback onClosed;
+	@Override
+	public void setClosedCallback(ViewerClosedCallback onClosed) {
+		this.onClosed = onClosed;
+	}
+
+	private JFrame createFrame() {
+		final JFrame result = new JFrame("Tick Profile");
+		Container mainPanel = result.getContentPane();
+		mainPanel.setLayout(new BorderLayout());
+
+		model = new ProfileTableModel();
+		JScrollPane sp = new JScrollPane(new JTable(model));
+		sp.setPreferredSize(new Dimension(600, 400));
+		mainPanel.add(sp);
+
+		JButton resetButton = new JButton(new AbstractAction("Reset") {
+			@Override
+			public void actionPerformed(ActionEvent arg0) {
+				profiler.reset();
+				refresh();
+			}
+			private static final long serialVersionUID = 1L;
+		});
+
+		JButton saveButton = new JButton(new AbstractAction("Save Data") {
+			@Override
+			public void actionPerformed(ActionEvent arg0) {
+				FileDialog theDialog = new FileDialog(result,
+						"Choose a file to save the tick profile to", FileDialog.SAVE);
+				theDialog.setVisible(true);
+				if (theDialog.getFile() != null) {
+					try (Writer writer = new FileWriter(theDialog.getDirectory() + theDialog.getFile())) {
+						profiler.writeSummary(writer);
+					} catch (IOException ex) {
+						throw new UserInputException("Can't create profile file!", ex);
+					}
+				}
+			}
+			private static final long serialVersionUID = 1L;
+		});
+
+		JPanel buttonPanel = new JPanel();
+		buttonPanel.add(resetButton);
+		buttonPanel.add(saveButton);
+		mainPanel.add(buttonPanel, BorderLayout.SOUTH);
+
+		result.pack();
+		refresh();
+
+		return result;
+	}
+
+	private void refresh() {
+		final List<Counter> counters = profiler.getCounters();
+		final long ticks = profiler.getTicks();
+		SwingUtilities.invokeLater(new Runnable() {
+			@Override
+			public void run() {
+				if (model != null)
+					model.setCounters(counters, ticks);
+			}
+		});
+	}
+
+	@Override
+	public void update(boolean synchronous) {
+		if (frameCount++ >= frameskip) {
+			frameCount = 0;
+			refresh();
+		}
+	}
+
+	@Override
+	public boolean isReadyToUpdate() {
+		return true;
+	}
+
+	@Override
+	public void onStopped() {
+		refresh();
+	}
+
+	@Override
+	public void onStarted() {
+		// Nothing
+	}
+
+	private static class ProfileTableModel extends AbstractTableModel {
+
+		private static final String[] columns = { "Phase", "Plugin", "Calls", "ms per tick", "us per call", "% of tick" };
+
+		private List<Counter> counters = new ArrayList<>();
+
+		private long ticks = 0;
+
+		private long tickNanos = 0;
+
+		void setCounters(List<Counter> counters, long ticks) {
+			this.counters = counters;
+			this.ticks = ticks;
+			// The tick counter always comes first
+			this.tickNanos = counters.get(0).getNanos();
+			fireTableDataChanged();
+		}
+
+		@Override
+		public int getRowCount() {
+			return counters.size();
+		}
+
+		@Override
+		public int getColumnCount() {
+			return columns.length;
+		}
+
+		@Override
+		public String getColumnName(int column) {
+			return columns[column];
+		}
+
+		@Override
+		public Object getValueAt(int row, int column) {
+			Counter c = counters.get(row);
+			switch (column) {
+				case 0:
+					return c.plugin == null ? c.phase.label : "";
+				case 1:
+					return c.plugin == null ? "" : c.plugin;
+				case 2:
+					return c.getCalls();
+				case 3:
+					return String.format("%.3f", ticks == 0 ? 0 : c.getNanos() / 1e6 / ticks);
+				case 4:
+					return String.format("%.3f", c.getCalls() == 0 ? 0 : c.getNanos() / 1e3 / c.getCalls());
+				case 5:
+					return String.format("%.1f", tickNanos == 0 ? 0 : 100.0 * c.getNanos() / tickNanos);
+				default:
+					return null;
+			}
+		}
+
+		private static final long serialVersionUID = 1L;
+	}
+}
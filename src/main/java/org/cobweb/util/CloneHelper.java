@@ -1,32 +1,78 @@
 package org.cobweb.util;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.cobweb.io.ParameterSerializable;
 
 
 public class CloneHelper {
 
+	/**
+	 * Getter and setter of a MutatableFloat/Int field
+	 */
+	private static class MutatableSlot {
+		private static final MethodType GETTER = MethodType.methodType(Object.class, Object.class);
+		private static final MethodType SETTER = MethodType.methodType(void.class, Object.class, Object.class);
+
+		final boolean isFloat;
+		final MethodHandle getter;
+		final MethodHandle setter;
+
+		MutatableSlot(Field f) throws IllegalAccessException {
+			isFloat = f.getType().equals(MutatableFloat.class);
+			MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+			getter = lookup.unreflectGetter(f).asType(GETTER);
+			setter = lookup.unreflectSetter(f).asType(SETTER);
+		}
+
+		void reset(Object obj) throws Throwable {
+			Object original = (Object) getter.invokeExact(obj);
+			Object copy;
+			if (isFloat)
+				copy = new MutatableFloat(((MutatableFloat) original).getRawValue());
+			else
+				copy = new MutatableInt(((MutatableInt) original).getRawValue());
+			setter.invokeExact(obj, copy);
+		}
+	}
+
+	/**
+	 * MutatableFloat/Int fields of each class, found once per class instead of
+	 * on every clone
+	 */
+	private static final ClassValue<MutatableSlot[]> mutatableSlots = new ClassValue<MutatableSlot[]>() {
+		@Override
+		protected MutatableSlot[] computeValue(Class<?> clazz) {
+			List<MutatableSlot> slots = new ArrayList<>();
+			for (Field f : clazz.getFields()) {
+				if (f.getType().equals(MutatableFloat.class) || f.getType().equals(MutatableInt.class)) {
+					try {
+						slots.add(new MutatableSlot(f));
+					} catch (IllegalAccessException ex) {
+						throw new RuntimeException("Unexpected reflection error", ex);
+					}
+				}
+			}
+			return slots.toArray(new MutatableSlot[slots.size()]);
+		}
+	};
+
 	/**
 	 * Finds MutatableFloat/Int fields in given ParameterSerializable and replaces them with new
 	 * instances with the same raw value and no multipliers applied.
 	 */
 	public static void resetMutatable(ParameterSerializable obj) {
-		Class<? extends ParameterSerializable> clazz = obj.getClass();
-		for (Field f : clazz.getFields()) {
+		for (MutatableSlot slot : mutatableSlots.get(obj.getClass())) {
 			try {
-				if (f.getType().equals(MutatableFloat.class)) {
-					MutatableFloat original = (MutatableFloat) f.get(obj);
-					MutatableFloat copy = new MutatableFloat(original.getRawValue());
-					f.set(obj, copy);
-
-				} else if (f.getType().equals(MutatableInt.class))  {
-					MutatableInt original = (MutatableInt) f.get(obj);
-					MutatableInt copy = new MutatableInt(original.getRawValue());
-					f.set(obj, copy);
-
-				}
-			} catch (IllegalArgumentException | IllegalAccessException ex) {
+				slot.reset(obj);
+			} catch (RuntimeException | Error ex) {
+				throw ex;
+			} catch (Throwable ex) {
 				throw new RuntimeException("Unexpected reflection error", ex);
 			}
 		}
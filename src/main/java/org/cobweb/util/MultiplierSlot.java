@@ -0,0 +1,81 @@
+package org.cobweb.util;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Cause of a MutatableField multiplier that always uses the same index in the
+ * field's array of factors, instead of going in the field's map of causes.
+ *
+ * Slots are reserved by mutators when they load their parameters, and are
+ * interned by owner and index, so loading again gives back the same slots.
+ */
+public final class MultiplierSlot {
+
+	private static final Map<Class<?>, List<MultiplierSlot>> reserved = new HashMap<>();
+
+	private static final List<MultiplierSlot> byIndex = new ArrayList<>();
+
+	private static int count = 0;
+
+	/**
+	 * Index of the slot in MutatableField factor arrays
+	 */
+	public final int index;
+
+	/**
+	 * Class that reserved the slot
+	 */
+	public final Class<?> owner;
+
+	/**
+	 * Index of the slot among its owner's slots
+	 */
+	public final int ownerIndex;
+
+	private MultiplierSlot(int index, Class<?> owner, int ownerIndex) {
+		this.index = index;
+		this.owner = owner;
+		this.ownerIndex = ownerIndex;
+	}
+
+	/**
+	 * Gets the first n slots of owner, reserving the ones that don't exist yet
+	 * @param owner class the slots belong to
+	 * @param n number of slots needed
+	 */
+	public static synchronized MultiplierSlot[] reserve(Class<?> owner, int n) {
+		List<MultiplierSlot> slots = reserved.get(owner);
+		if (slots == null) {
+			slots = new ArrayList<>();
+			reserved.put(owner, slots);
+		}
+		while (slots.size() < n) {
+			MultiplierSlot slot = new MultiplierSlot(count++, owner, slots.size());
+			slots.add(slot);
+			byIndex.add(slot);
+		}
+		return slots.subList(0, n).toArray(new MultiplierSlot[n]);
+	}
+
+	/**
+	 * @return number of slots reserved so far
+	 */
+	public static synchronized int count() {
+		return count;
+	}
+
+	/**
+	 * @return slot with the given index
+	 */
+	public static synchronized MultiplierSlot get(int index) {
+		return byIndex.get(index);
+	}
+
+	@Override
+	public String toString() {
+		return owner.getSimpleName() + "[" + ownerIndex + "]";
+	}
+}
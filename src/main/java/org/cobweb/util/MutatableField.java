@@ -1,15 +1,31 @@
 package org.cobweb.util;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 
 /**
  * Allows stacking multiplier Factors on top of a value.
  * Factors have a Cause attached so they can be updated or removed.
+ *
+ * Causes that are a MultiplierSlot keep their factor at the slot's index in
+ * an array, other causes go in a map that is only created when needed.
  */
-public abstract class MutatableField {
+public abstract class MutatableField implements Serializable {
 
-	private final Map<Object, Float> multipliers = new HashMap<>();
+	/**
+	 * Factor of each MultiplierSlot, 1 where the slot has no multiplier.
+	 * Serialized by slot owner, indexes may differ between processes.
+	 */
+	private transient float[] slotFactors = NO_FACTORS;
+
+	private static final float[] NO_FACTORS = new float[0];
+
+	private Map<Object, Float> multipliers = null;
 
 	/**
 	 * Adds/updates a multiplier identified by cause
@@ -17,7 +33,21 @@ public abstract class MutatableField {
 	 * @param factor multiplication factor
 	 */
 	public void setMultiplier(Object cause, float factor) {
-		multipliers.put(cause, factor);
+		if (cause instanceof MultiplierSlot) {
+			int index = ((MultiplierSlot) cause).index;
+			if (index >= slotFactors.length) {
+				int oldLength = slotFactors.length;
+				slotFactors = Arrays.copyOf(slotFactors, Math.max(index + 1, MultiplierSlot.count()));
+				Arrays.fill(slotFactors, oldLength, slotFactors.length, 1);
+			} else if (slotFactors[index] == factor) {
+				return;
+			}
+			slotFactors[index] = factor;
+		} else {
+			if (multipliers == null)
+				multipliers = new HashMap<>();
+			multipliers.put(cause, factor);
+		}
 		updateCache();
 	}
 
@@ -26,16 +56,75 @@ public abstract class MutatableField {
 	 * @param cause The source/cause of factor being removed
 	 */
 	public void removeMultiplier(Object cause) {
-		multipliers.remove(cause);
+		if (cause instanceof MultiplierSlot) {
+			int index = ((MultiplierSlot) cause).index;
+			if (index >= slotFactors.length || slotFactors[index] == 1)
+				return;
+			slotFactors[index] = 1;
+		} else {
+			if (multipliers == null || multipliers.remove(cause) == null)
+				return;
+		}
 		updateCache();
 	}
 
 	protected float multiplier = 1;
 
+	/**
+	 * Multiplies the factors together again, always in slot order, so the
+	 * value only depends on which factors are applied and not on the order
+	 * they were set in.
+	 */
 	private void updateCache() {
-		multiplier = 1;
-		for (Float m : multipliers.values())
-			multiplier *= m;
+		float product = 1;
+		for (float m : slotFactors)
+			product *= m;
+		if (multipliers != null) {
+			for (Float m : multipliers.values())
+				product *= m;
+		}
+		multiplier = product;
+	}
+
+	private void writeObject(ObjectOutputStream out) throws IOException {
+		out.defaultWriteObject();
+		int count = 0;
+		for (float f : slotFactors) {
+			if (f != 1)
+				count++;
+		}
+		out.writeInt(count);
+		for (int i = 0; i < slotFactors.length; i++) {
+			if (slotFactors[i] != 1) {
+				MultiplierSlot slot = MultiplierSlot.get(i);
+				out.writeObject(slot.owner);
+				out.writeInt(slot.ownerIndex);
+				out.writeFloat(slotFactors[i]);
+			}
+		}
+	}
+
+	/**
+	 * Keeps the multiplier that was written instead of multiplying the
+	 * factors again, so it stays the same even if slots are in another order.
+	 */
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+		in.defaultReadObject();
+		slotFactors = NO_FACTORS;
+		int count = in.readInt();
+		for (int i = 0; i < count; i++) {
+			Class<?> owner = (Class<?>) in.readObject();
+			int ownerIndex = in.readInt();
+			float factor = in.readFloat();
+			int index = MultiplierSlot.reserve(owner, ownerIndex + 1)[ownerIndex].index;
+			if (index >= slotFactors.length) {
+				int oldLength = slotFactors.length;
+				slotFactors = Arrays.copyOf(slotFactors, Math.max(index + 1, MultiplierSlot.count()));
+				Arrays.fill(slotFactors, oldLength, slotFactors.length, 1);
+			}
+			slotFactors[index] = factor;
+		}
 	}
 
+	private static final long serialVersionUID = 1L;
 }
@@ -36,4 +36,6 @@ public class MutatableFloat extends MutatableField {
 	public float getRawValue() {
 		return originalValue;
 	}
+
+	private static final long serialVersionUID = 1L;
 }
@@ -36,4 +36,6 @@ public class MutatableInt extends MutatableField {
 	public int getRawValue() {
 		return originalValue;
 	}
+
+	private static final long serialVersionUID = 1L;
 }
@@ -0,0 +1,117 @@
+package org.cobweb.util;
+
+/**
+ * Random number generator that can be split into independent streams.
+ *
+ * Draws come from xoshiro256**, seeded through SplitMix64. A stream split off
+ * with split() only depends on this generator's seed and the stream's key,
+ * not on how many numbers were drawn or which other streams were split off,
+ * so each part of a simulation can have its own stream without changing the
+ * draws of the others.
+ */
+public class StreamRandom extends RandomNoGenerator {
+
+	private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+
+	// Set from setSeed(), which Random's constructor calls before field
+	// initializers would run, so these must not have initializers
+	private long s0;
+	private long s1;
+	private long s2;
+	private long s3;
+
+	/**
+	 * Seed this generator was created with, mixed; what split() derives from
+	 */
+	private long key;
+
+	public StreamRandom(long seed) {
+		super(seed);
+	}
+
+	@Override
+	public synchronized void setSeed(long seed) {
+		super.setSeed(seed);
+		key = mix(seed);
+		long x = seed;
+		s0 = mix(x += GOLDEN_GAMMA);
+		s1 = mix(x += GOLDEN_GAMMA);
+		s2 = mix(x += GOLDEN_GAMMA);
+		s3 = mix(x += GOLDEN_GAMMA);
+	}
+
+	/**
+	 * @return new generator for the stream with the given key
+	 */
+	public StreamRandom split(long streamKey) {
+		return new StreamRandom(mix(key + mix(streamKey + GOLDEN_GAMMA)));
+	}
+
+	/**
+	 * @return new generator for the stream with the given name
+	 */
+	public StreamRandom split(String streamName) {
+		return split(hash(streamName));
+	}
+
+	/**
+	 * SplitMix64 finalizer: every bit of the result depends on every bit of z
+	 */
+	public static long mix(long z) {
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+
+	/**
+	 * 64 bit FNV-1a hash of a stream name, the same on every JVM
+	 */
+	public static long hash(String name) {
+		long h = 0xCBF29CE484222325L;
+		for (int i = 0; i < name.length(); i++) {
+			h ^= name.charAt(i);
+			h *= 0x100000001B3L;
+		}
+		return h;
+	}
+
+	@Override
+	public long nextLong() {
+		long result = Long.rotateLeft(s1 * 5, 7) * 9;
+		long t = s1 << 17;
+		s2 ^= s0;
+		s3 ^= s1;
+		s1 ^= s2;
+		s0 ^= s3;
+		s2 ^= t;
+		s3 = Long.rotateLeft(s3, 45);
+		return result;
+	}
+
+	@Override
+	protected int next(int bits) {
+		return (int) (nextLong() >>> (64 - bits));
+	}
+
+	@Override
+	public int nextInt() {
+		return (int) (nextLong() >>> 32);
+	}
+
+	@Override
+	public boolean nextBoolean() {
+		return nextLong() < 0;
+	}
+
+	@Override
+	public float nextFloat() {
+		return (nextLong() >>> 40) * 0x1.0p-24f;
+	}
+
+	@Override
+	public double nextDouble() {
+		return (nextLong() >>> 11) * 0x1.0p-53;
+	}
+
+	private static final long serialVersionUID = 1L;
+}
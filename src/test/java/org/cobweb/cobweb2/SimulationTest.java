@@ -1,5 +1,7 @@
 package org.cobweb.cobweb2;
 
+import java.util.concurrent.ForkJoinPool;
+
 import junit.framework.TestCase;
 
 import org.cobweb.cobweb2.ui.swing.CobwebApplicationRunner;
@@ -16,4 +18,17 @@ public class SimulationTest extends TestCase {
 	public void testExperimentEverythingXml() {
 		CobwebApplicationRunner.main("src/main/resources/experiments/everything.xml", "testlog.tsv", "testpop.xml", "loadpop.xml", true, 2000, false);
 	}
+
+	public void testDisposeStopsEnvironmentThreads() {
+		SimulationConfig config = new SimulationConfig();
+		config.envParams.environmentThreads = 2;
+		Simulation simulation = new Simulation();
+		simulation.load(config);
+		ForkJoinPool pool = simulation.theEnvironment.getUpdatePool();
+		simulation.step();
+
+		simulation.dispose();
+		assertTrue(pool.isShutdown());
+		assertNull(simulation.theEnvironment.getUpdatePool());
+	}
 }
@@ -0,0 +1,64 @@
+package org.cobweb.cobweb2.core;
+
+import org.cobweb.cobweb2.core.TestFixture.TestAgent;
+
+import junit.framework.TestCase;
+
+
+public class AgentSpatialIndexTest extends TestCase {
+
+	private static final int TYPES = 3;
+
+	private final TestFixture fixture = new TestFixture();
+
+	private void checkTotals(AgentSpatialIndex index) {
+		long allEnergy = 0;
+		for (int t = 0; t < TYPES; t++) {
+			int count = 0;
+			long energy = 0;
+			for (Agent a : index.getAgents()) {
+				if (a.getType() == t) {
+					count++;
+					energy += a.getEnergy();
+				}
+			}
+			assertEquals(count, index.size(t));
+			assertEquals(energy, index.getEnergy(t));
+			allEnergy += energy;
+		}
+		assertEquals(allEnergy, index.getEnergy());
+	}
+
+	public void testTypeTotals() {
+		int width = 20;
+		int height = 15;
+		AgentSpatialIndex index = new AgentSpatialIndex(width, height);
+		TestAgent[] agents = new TestAgent[60];
+		for (int i = 0; i < agents.length; i++) {
+			agents[i] = new TestAgent(fixture.random.nextInt(TYPES));
+			// Energy given before the agent is placed counts when it is placed
+			agents[i].addEnergy(index, fixture.random.nextInt(50));
+		}
+
+		for (int step = 0; step < 2000; step++) {
+			TestAgent a = agents[fixture.random.nextInt(agents.length)];
+			Location to = new Location(fixture.random.nextInt(width), fixture.random.nextInt(height));
+			switch (fixture.random.nextInt(3)) {
+				case 0:
+					if (index.get(to) == null)
+						a.moveTo(index, to);
+					break;
+				case 1:
+					a.moveTo(index, null);
+					break;
+				default:
+					a.addEnergy(index, fixture.random.nextInt(21) - 10);
+					break;
+			}
+			checkTotals(index);
+		}
+
+		index.clear();
+		checkTotals(index);
+	}
+}
@@ -0,0 +1,81 @@
+package org.cobweb.cobweb2.core;
+
+import java.util.List;
+
+import junit.framework.TestCase;
+
+
+public class DropScheduleTest extends TestCase {
+
+	private static class TestDrop implements Drop {
+		private final long updateTick;
+
+		public TestDrop(long updateTick) {
+			this.updateTick = updateTick;
+		}
+
+		@Override
+		public void update() {
+			// nothing
+		}
+
+		@Override
+		public boolean canStep(Agent agent) {
+			return true;
+		}
+
+		@Override
+		public void onStep(Agent agent) {
+			// nothing
+		}
+
+		@Override
+		public void prepareRemove() {
+			// nothing
+		}
+
+		@Override
+		public int getProducerType() {
+			return 0;
+		}
+
+		@Override
+		public long getUpdateTick() {
+			return updateTick;
+		}
+	}
+
+	private final TestFixture fixture = new TestFixture();
+
+	public void testDueInScanOrder() {
+		Topology topology = new Topology(fixture, 10, 8, false, false, false);
+		DropSchedule schedule = new DropSchedule(topology);
+
+		Drop late = new TestDrop(20);
+		Drop always = new TestDrop(Drop.EVERY_TICK);
+		Drop first = new TestDrop(5);
+		Drop second = new TestDrop(3);
+		schedule.add(6, 1, late);
+		schedule.add(4, 7, always);
+		schedule.add(2, 3, first);
+		schedule.add(2, 5, second);
+
+		// Only the drop that updates every tick
+		assertSame(always, schedule.takeDue(2).get(0).drop);
+		assertEquals(3, schedule.size());
+
+		// Column by column, same as a scan of the map
+		List<DropSchedule.Entry> due = schedule.takeDue(10);
+		assertEquals(2, due.size());
+		assertSame(first, due.get(0).drop);
+		assertSame(second, due.get(1).drop);
+		assertEquals(1, schedule.size());
+
+		due = schedule.takeDue(20);
+		assertEquals(1, due.size());
+		assertSame(late, due.get(0).drop);
+		assertEquals(6, due.get(0).x);
+		assertEquals(1, due.get(0).y);
+		assertEquals(0, schedule.size());
+	}
+}
@@ -0,0 +1,55 @@
+package org.cobweb.cobweb2.core;
+
+import junit.framework.TestCase;
+
+
+public class FoodFrontierTest extends TestCase {
+
+	private final TestFixture fixture = new TestFixture();
+
+	private void checkTopology(Topology t) {
+		FoodFrontier frontier = new FoodFrontier(t);
+		boolean[][] food = new boolean[t.width][t.height];
+
+		for (int step = 0; step < 2000; step++) {
+			Location l = t.getRandomLocation();
+			food[l.x][l.y] = !food[l.x][l.y];
+			frontier.foodChanged(l.x, l.y, food[l.x][l.y]);
+		}
+
+		int next = frontier.next(0);
+		for (int y = 0; y < t.height; y++) {
+			for (int x = 0; x < t.width; x++) {
+				Location l = new Location(x, y);
+				int count = 0;
+				for (Direction dir : t.ALL_4_WAY) {
+					Location n = t.getAdjacent(l, dir);
+					if (n != null && food[n.x][n.y])
+						count++;
+				}
+				int tile = y * t.width + x;
+				assertEquals(count, frontier.foodNextTo(tile));
+				if (count > 0) {
+					assertEquals(tile, next);
+					next = frontier.next(tile + 1);
+				}
+			}
+		}
+		assertEquals(-1, next);
+	}
+
+	public void testFlat() {
+		checkTopology(new Topology(fixture, 30, 20, false, false, false));
+	}
+
+	public void testWrap() {
+		checkTopology(new Topology(fixture, 30, 20, false, true, true));
+		checkTopology(new Topology(fixture, 30, 20, false, true, false));
+		checkTopology(new Topology(fixture, 30, 20, false, false, true));
+	}
+
+	public void testGlobe() {
+		checkTopology(new Topology(fixture, 30, 20, true, false, false));
+		checkTopology(new Topology(fixture, 31, 20, true, false, false));
+	}
+}
@@ -0,0 +1,95 @@
+package org.cobweb.cobweb2.core;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.cobweb.cobweb2.core.TestFixture.TestAgent;
+
+import junit.framework.TestCase;
+
+
+public class NearestAgentSearchTest extends TestCase {
+
+	private final TestFixture fixture = new TestFixture();
+
+	/**
+	 * Reference answer: scan every agent, order by distance then tile index
+	 */
+	private List<Agent> bruteForce(Topology t, AgentSpatialIndex index, Location from, Agent exclude, double maxDistance) {
+		List<Agent> result = new ArrayList<Agent>();
+		for (Agent a : index.getAgents()) {
+			if (a != exclude && t.getDistanceSquared(from, a.getPosition()) <= maxDistance)
+				result.add(a);
+		}
+		for (int i = 1; i < result.size(); i++) {
+			for (int j = i; j > 0 && compare(t, index, from, result.get(j), result.get(j - 1)) < 0; j--) {
+				result.add(j - 1, result.remove(j));
+			}
+		}
+		return result;
+	}
+
+	private int compare(Topology t, AgentSpatialIndex index, Location from, Agent a, Agent b) {
+		int c = Double.compare(t.getDistanceSquared(from, a.getPosition()), t.getDistanceSquared(from, b.getPosition()));
+		if (c != 0)
+			return c;
+		return Integer.compare(
+				index.tileIndex(a.getPosition().x, a.getPosition().y),
+				index.tileIndex(b.getPosition().x, b.getPosition().y));
+	}
+
+	private void checkTopology(int width, int height, boolean wrap, boolean wrapX, boolean wrapY, int agents) {
+		Topology t = new Topology(fixture, width, height, wrap, wrapX, wrapY);
+		AgentSpatialIndex index = new AgentSpatialIndex(width, height);
+		NearestAgentSearch search = new NearestAgentSearch(t, index);
+
+		List<Agent> all = new ArrayList<Agent>();
+		for (int i = 0; i < agents; i++) {
+			Location l = t.getRandomLocation();
+			if (index.get(l) == null) {
+				Agent a = new TestAgent(l);
+				index.set(l, a);
+				all.add(a);
+			}
+		}
+		assertEquals(all.size(), index.size());
+
+		for (int q = 0; q < 50; q++) {
+			Agent me = all.get(fixture.random.nextInt(all.size()));
+			Location from = me.getPosition();
+
+			List<Agent> expected = bruteForce(t, index, from, me, Double.MAX_VALUE);
+			assertSame(expected.get(0), search.nearest(from, me));
+			assertEquals(expected.subList(0, Math.min(5, expected.size())), search.nearest(from, 5, me));
+
+			float radius = fixture.random.nextFloat() * 20;
+			assertEquals(bruteForce(t, index, from, null, radius * radius), search.within(from, radius, null));
+		}
+	}
+
+	public void testFlat() {
+		checkTopology(50, 50, false, false, false, 400);
+		checkTopology(37, 23, false, false, false, 60);
+		checkTopology(37, 23, false, false, false, 10);
+	}
+
+	public void testWrapBoth() {
+		checkTopology(50, 50, false, true, true, 400);
+		checkTopology(37, 23, false, true, true, 60);
+	}
+
+	public void testWrapSingleAxis() {
+		checkTopology(41, 29, false, true, false, 100);
+		checkTopology(41, 29, false, false, true, 100);
+	}
+
+	public void testWrapGlobe() {
+		checkTopology(50, 50, true, false, false, 400);
+		checkTopology(37, 23, true, false, false, 60);
+	}
+
+	public void testSparse() {
+		checkTopology(200, 200, false, true, true, 40);
+		checkTopology(200, 200, true, false, false, 40);
+	}
+}
@@ -0,0 +1,52 @@
+package org.cobweb.cobweb2.core;
+
+import org.cobweb.util.RandomNoGenerator;
+
+/**
+ * Fixed-seed random source and bare agents for tests of the map structures
+ * that don't need a whole simulation.
+ */
+public class TestFixture implements RandomSource {
+
+	public final RandomNoGenerator random = new RandomNoGenerator(42);
+
+	@Override
+	public RandomNoGenerator getRandom() {
+		return random;
+	}
+
+	/**
+	 * Agent that only has a type, position and energy
+	 */
+	public static class TestAgent extends Agent {
+		public TestAgent(int type) {
+			super(type);
+		}
+
+		public TestAgent(Location l) {
+			super(0);
+			position = new LocationDirection(l);
+		}
+
+		@Override
+		protected Agent createChildAsexual(LocationDirection location) {
+			return null;
+		}
+
+		/**
+		 * Moves the agent in index, null to take it off the map
+		 */
+		public void moveTo(AgentSpatialIndex index, Location l) {
+			if (position != null)
+				index.set(position, null);
+			if (l != null)
+				index.set(l, this);
+			position = l == null ? null : new LocationDirection(l);
+		}
+
+		public void addEnergy(AgentSpatialIndex index, int delta) {
+			changeEnergy(delta, null);
+			index.energyChanged(this, delta);
+		}
+	}
+}
@@ -0,0 +1,65 @@
+package org.cobweb.cobweb2.core;
+
+import java.io.StringWriter;
+import java.util.List;
+
+import org.cobweb.cobweb2.core.TickProfiler.Counter;
+import org.cobweb.cobweb2.core.TickProfiler.Phase;
+
+import junit.framework.TestCase;
+
+
+public class TickProfilerTest extends TestCase {
+
+	private static class Plugin {
+		// Only the class name matters
+	}
+
+	private void tick(TickProfiler profiler, Object plugin) {
+		long tickStart = profiler.start();
+		long start = profiler.start();
+		profiler.stop(Phase.ON_UPDATE, plugin, start);
+		profiler.stop(Phase.TICK, tickStart);
+	}
+
+	public void testOffByDefault() {
+		TickProfiler profiler = new TickProfiler();
+		tick(profiler, new Plugin());
+		assertEquals(0, profiler.getTicks());
+		for (Counter c : profiler.getCounters()) {
+			assertEquals(0, c.getCalls());
+		}
+	}
+
+	public void testCountsPerPlugin() {
+		TickProfiler profiler = new TickProfiler();
+		profiler.setEnabled(true);
+		Plugin plugin = new Plugin();
+		for (int i = 0; i < 3; i++) {
+			tick(profiler, plugin);
+		}
+		tick(profiler, "Other");
+		assertEquals(4, profiler.getTicks());
+
+		List<Counter> counters = profiler.getCounters();
+		assertEquals(Phase.TICK, counters.get(0).phase);
+		int onUpdate = -1;
+		for (int i = 0; i < counters.size(); i++) {
+			if (counters.get(i).phase == Phase.ON_UPDATE && counters.get(i).plugin == null)
+				onUpdate = i;
+		}
+		// Plugins follow their phase, in the order they were first seen
+		assertEquals("Plugin", counters.get(onUpdate + 1).plugin);
+		assertEquals(3, counters.get(onUpdate + 1).getCalls());
+		assertEquals("Other", counters.get(onUpdate + 2).plugin);
+		assertEquals(1, counters.get(onUpdate + 2).getCalls());
+
+		StringWriter summary = new StringWriter();
+		profiler.writeSummary(summary);
+		assertEquals(1 + counters.size(), summary.toString().split("\\r?\\n").length);
+
+		profiler.reset();
+		assertEquals(0, profiler.getTicks());
+		assertEquals(0, profiler.getCounters().get(onUpdate + 1).getCalls());
+	}
+}
@@ -1,5 +1,7 @@
 package org.cobweb.cobweb2.core;
 
+import java.util.Set;
+
 import org.cobweb.util.RandomNoGenerator;
 
 import junit.framework.TestCase;
@@ -81,4 +83,111 @@ public class TopologyTest extends TestCase {
 
 
 
+
+	private void checkAdjacentIndex(Topology t) {
+		for (int x = 0; x < t.width; x++) {
+			for (int y = 0; y < t.height; y++) {
+				int index = t.index(x, y);
+				assertEquals(x, t.indexX(index));
+				assertEquals(y, t.indexY(index));
+				for (Direction d : t.ALL_8_WAY) {
+					LocationDirection adjacent = t.getAdjacent(new LocationDirection(new Location(x, y), d));
+					int adjacentIndex = t.adjacentIndex(index, d);
+					if (adjacent == null) {
+						assertEquals(-1, adjacentIndex);
+						assertNull(t.getAdjacent(new Location(x, y), d));
+					} else {
+						assertEquals(t.index(adjacent), adjacentIndex);
+						assertEquals(adjacent, t.getAdjacent(new Location(x, y), d));
+					}
+				}
+			}
+		}
+	}
+
+	public void testAdjacentIndex() {
+		checkAdjacentIndex(new Topology(randomSource, 10, 7, false, false, false));
+		checkAdjacentIndex(new Topology(randomSource, 10, 7, true, false, false));
+		checkAdjacentIndex(new Topology(randomSource, 10, 7, false, true, false));
+		checkAdjacentIndex(new Topology(randomSource, 10, 7, false, false, true));
+		checkAdjacentIndex(new Topology(randomSource, 10, 7, false, true, true));
+	}
+
+	public void testAdjacentFlipsDirection() {
+		Topology t = new Topology(randomSource, 10, 10, true, false, false);
+
+		LocationDirection up = t.getAdjacent(new LocationDirection(l10, Topology.NORTH));
+		assertEquals(new Location(6, 0), up);
+		assertEquals(Topology.SOUTH, up.direction);
+	}
+
+	public void testSharedLocations() {
+		Topology t = new Topology(randomSource, 10, 10, false, false, false);
+
+		assertSame(t.location(3, 4), t.location(t.index(l34)));
+		assertEquals(l34, t.location(3, 4));
+		assertSame(t.locationDirection(t.index(l34), Topology.EAST),
+				t.locationDirection(t.index(l34), new Direction(5, 0)));
+		assertSame(Topology.NORTHWEST, Topology.getDirection(-3, -1));
+		assertSame(Topology.NONE, Topology.getDirection(0, 0));
+	}
+
+	private void checkStencil(Topology t, float radius) {
+		Topology.Stencil stencil = t.getStencil(radius);
+		for (int i = 1; i < stencil.size(); i++) {
+			int a = stencil.offsetX(i - 1) * stencil.offsetX(i - 1) + stencil.offsetY(i - 1) * stencil.offsetY(i - 1);
+			int b = stencil.offsetX(i) * stencil.offsetX(i) + stencil.offsetY(i) * stencil.offsetY(i);
+			assertTrue(a <= b);
+		}
+
+		for (int x = 0; x < t.width; x++) {
+			for (int y = 0; y < t.height; y++) {
+				Location zero = new Location(x, y);
+				int[] seen = new int[t.width * t.height];
+				for (int i = 0; i < stencil.size(); i++) {
+					int tile = t.stencilTile(zero, stencil, i);
+					if (tile >= 0)
+						seen[tile]++;
+				}
+				for (int tile = 0; tile < seen.length; tile++) {
+					boolean within = t.getDistanceSquared(zero, t.location(tile)) <= radius * radius;
+					assertEquals(within ? 1 : 0, seen[tile]);
+				}
+			}
+		}
+	}
+
+	public void testStencil() {
+		boolean[][] shapes = {
+				{ false, false, false },
+				{ true, false, false },
+				{ false, true, false },
+				{ false, false, true },
+				{ false, true, true },
+		};
+		float[] radii = { 0, 1, 1.5f, 3, 4.2f, 9, 30 };
+		for (boolean[] shape : shapes) {
+			Topology t = new Topology(randomSource, 11, 8, shape[0], shape[1], shape[2]);
+			for (float radius : radii) {
+				checkStencil(t, radius);
+			}
+		}
+	}
+
+	public void testAreaFlatEdge() {
+		Topology t = new Topology(randomSource, 10, 10, false, false, false);
+
+		Set<Location> area = t.getArea(l00, 2);
+		assertEquals(6, area.size());
+		assertTrue(area.contains(l00));
+		assertTrue(area.contains(l11));
+		assertTrue(area.contains(new Location(0, 2)));
+		assertFalse(area.contains(new Location(-1, 0)));
+
+		area = t.getArea(l99, 1);
+		assertEquals(3, area.size());
+		assertTrue(area.contains(l99));
+		assertTrue(area.contains(l98));
+		assertTrue(area.contains(l89));
+	}
 }
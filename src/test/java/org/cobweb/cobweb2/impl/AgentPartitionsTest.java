@@ -0,0 +1,178 @@
+package org.cobweb.cobweb2.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.cobweb.cobweb2.Simulation;
+import org.cobweb.cobweb2.SimulationConfig;
+import org.cobweb.cobweb2.core.Agent;
+import org.cobweb.cobweb2.core.Direction;
+import org.cobweb.cobweb2.core.Location;
+import org.cobweb.cobweb2.core.Topology;
+
+public class AgentPartitionsTest extends TestCase {
+
+	private static ComplexEnvironmentParams map(int width, int height, boolean wrap, boolean wrapX, boolean wrapY, int size) {
+		ComplexEnvironmentParams data = new ComplexEnvironmentParams();
+		data.width = width;
+		data.height = height;
+		data.wrapMap = wrap;
+		data.wrapMapX = wrapX;
+		data.wrapMapY = wrapY;
+		data.agentPartitionSize = size;
+		return data;
+	}
+
+	public void testBlocks() {
+		AgentPartitions partitions = new AgentPartitions(map(100, 70, false, false, false, 16));
+		assertEquals(6 * 4, partitions.getCount());
+		assertEquals(0, partitions.blockOf(new Location(0, 0)));
+		assertEquals(5, partitions.blockOf(new Location(99, 0)));
+		assertEquals(23, partitions.blockOf(new Location(99, 69)));
+		assertEquals(-1, partitions.blockOf(new Location(100, 0)));
+		assertEquals(-1, partitions.blockOf(null));
+
+		// Small sizes are raised to the smallest block
+		assertEquals(AgentPartitions.MIN_SIZE, new AgentPartitions(map(100, 70, false, false, false, 1)).size);
+	}
+
+	/**
+	 * Blocks of the same phase never share an edge or corner, even across
+	 * wrapped edges of the map
+	 */
+	public void testTouchingBlocksHaveDifferentPhases() {
+		ComplexEnvironmentParams[] maps = {
+				map(100, 70, false, false, false, 16),
+				map(40, 24, false, true, false, 8),
+				map(40, 24, false, false, true, 8),
+				map(40, 24, false, true, true, 8),
+				map(16, 40, false, true, true, 8),
+				map(10, 10, false, true, true, 8),
+		};
+		for (ComplexEnvironmentParams data : maps) {
+			AgentPartitions partitions = new AgentPartitions(data);
+			Topology topology = new Topology(null, data.width, data.height, data.wrapMap, data.wrapMapX, data.wrapMapY);
+			for (int x = 0; x < data.width; x++) {
+				for (int y = 0; y < data.height; y++) {
+					Location l = topology.location(x, y);
+					int block = partitions.blockOf(l);
+					for (Direction d : topology.ALL_8_WAY) {
+						Location next = topology.getAdjacent(l, d);
+						if (next == null || partitions.blockOf(next) == block)
+							continue;
+						assertTrue(partitions.phaseOf(block) != partitions.phaseOf(partitions.blockOf(next)));
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Everything an agent inside a block can step to or touch is in the block
+	 */
+	public void testInsideAgentsReachOnlyTheirBlock() {
+		boolean[][] wraps = { { false, false, false }, { true, false, false }, { false, true, false }, { false, true, true } };
+		for (boolean[] wrap : wraps) {
+			SimulationConfig config = new SimulationConfig();
+			config.envParams.width = 60;
+			config.envParams.height = 40;
+			config.envParams.wrapMap = wrap[0];
+			config.envParams.wrapMapX = wrap[1];
+			config.envParams.wrapMapY = wrap[2];
+			config.envParams.agentPartitionSize = 8;
+			Simulation simulation = new Simulation();
+			simulation.load(config);
+			Topology topology = simulation.getTopology();
+			AgentPartitions partitions = new AgentPartitions(config.envParams);
+
+			int inside = 0;
+			for (Agent a : simulation.theEnvironment.getAgents()) {
+				ComplexAgent agent = (ComplexAgent) a;
+				int block = partitions.blockOf(agent.getPosition());
+				if (!partitions.isInside(block, agent))
+					continue;
+				inside++;
+
+				List<Location> reached = new ArrayList<>();
+				reached.add(agent.getPosition());
+				for (int step = 0; step < agent.getUpdateReach(); step++) {
+					List<Location> next = new ArrayList<>();
+					for (Location l : reached) {
+						for (Direction d : topology.ALL_8_WAY) {
+							Location n = topology.getAdjacent(l, d);
+							if (n != null)
+								next.add(n);
+						}
+					}
+					reached.addAll(next);
+				}
+				for (Location l : reached) {
+					assertEquals(block, partitions.blockOf(l));
+				}
+			}
+			assertTrue(inside > 0);
+			simulation.dispose();
+		}
+	}
+
+	/**
+	 * @return agents and food after running a simulation
+	 */
+	private static String run(SimulationConfig config, int agentThreads) {
+		config.randomSeed = 42;
+		config.envParams.width = 100;
+		config.envParams.height = 70;
+		config.envParams.agentPartitionSize = 16;
+		config.envParams.agentThreads = agentThreads;
+		Simulation sim = new Simulation();
+		sim.load(config);
+		for (int i = 0; i < 200; i++) {
+			sim.step();
+		}
+
+		StringBuilder result = new StringBuilder();
+		for (Agent a : sim.theEnvironment.getAgents()) {
+			result.append(a.id).append(' ').append(a.getPosition()).append(' ').append(a.getEnergy()).append('\n');
+		}
+		for (int x = 0; x < sim.theEnvironment.topology.width; x++) {
+			for (int y = 0; y < sim.theEnvironment.topology.height; y++) {
+				result.append(sim.theEnvironment.hasFood(x, y) ? sim.theEnvironment.getFoodType(x, y) : -1);
+			}
+		}
+		result.append('\n').append(sim.theEnvironment.getAgentCount()).append(' ').append(sim.theEnvironment.getFoodCount());
+		sim.dispose();
+		return result.toString();
+	}
+
+	private static SimulationConfig wasteAndDisease() {
+		SimulationConfig config = new SimulationConfig();
+		for (int i = 0; i < config.getAgentTypes(); i++) {
+			config.wasteParams.agentParams[i].wasteMode = true;
+			config.wasteParams.agentParams[i].wasteLimitGain.setValue(40);
+			config.diseaseParams.agentParams[i].initialInfection = 0.3f;
+		}
+		return config;
+	}
+
+	public void testThreadsDontChangeResults() {
+		assertEquals(run(new SimulationConfig(), 1), run(new SimulationConfig(), 4));
+		assertEquals(run(wasteAndDisease(), 1), run(wasteAndDisease(), 4));
+	}
+
+	public void testRepeatable() {
+		assertEquals(run(new SimulationConfig(), 4), run(new SimulationConfig(), 4));
+	}
+
+	public void testDisposeStopsAgentThreads() {
+		SimulationConfig config = new SimulationConfig();
+		config.envParams.agentThreads = 2;
+		Simulation simulation = new Simulation();
+		simulation.load(config);
+		assertNotNull(simulation.theEnvironment.getAgentPool());
+
+		simulation.dispose();
+		assertNull(simulation.theEnvironment.getAgentPool());
+	}
+}
@@ -0,0 +1,86 @@
+package org.cobweb.cobweb2.impl;
+
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+import org.cobweb.cobweb2.Simulation;
+import org.cobweb.cobweb2.plugins.AgentState;
+import org.cobweb.cobweb2.plugins.AgentStateSlots;
+import org.cobweb.cobweb2.plugins.StatefulMutatorBase;
+import org.cobweb.cobweb2.plugins.pd.PDState;
+import org.cobweb.cobweb2.plugins.toxin.ToxinState;
+
+
+public class ComplexAgentStateTest extends TestCase {
+
+	/**
+	 * State class no mutator has reserved a slot for yet
+	 */
+	private static class LateState implements AgentState {
+		@Override
+		public boolean isTransient() {
+			return true;
+		}
+		private static final long serialVersionUID = 1L;
+	}
+
+	private static class LateMutator extends StatefulMutatorBase<LateState> {
+		LateMutator() {
+			super(LateState.class);
+		}
+
+		void set(ComplexAgent agent, LateState state) {
+			setAgentState(agent, state);
+		}
+
+		LateState remove(ComplexAgent agent) {
+			return removeAgentState(agent);
+		}
+
+		@Override
+		protected boolean validState(LateState value) {
+			return true;
+		}
+	}
+
+	private Simulation sim = new Simulation();
+
+	public void testSlotsFixed() {
+		int slot = AgentStateSlots.slotOf(PDState.class);
+		assertEquals(slot, AgentStateSlots.slotOf(PDState.class));
+		assertEquals(PDState.class, AgentStateSlots.typeOf(slot));
+		assertFalse(slot == AgentStateSlots.slotOf(ToxinState.class));
+	}
+
+	public void testStateByClassAndSlot() {
+		ComplexAgent agent = new ComplexAgent(sim, 0);
+		PDState pd = new PDState(null);
+
+		assertNull(agent.getState(PDState.class));
+		agent.setState(PDState.class, pd);
+		assertSame(pd, agent.getState(PDState.class));
+		assertSame(pd, agent.getState(AgentStateSlots.slotOf(PDState.class)));
+
+		Map<Class<? extends AgentState>, AgentState> states = agent.getStates();
+		assertEquals(1, states.size());
+		assertSame(pd, states.get(PDState.class));
+
+		assertSame(pd, agent.removeState(PDState.class));
+		assertNull(agent.getState(PDState.class));
+		assertTrue(agent.getStates().isEmpty());
+	}
+
+	public void testSlotAfterAgentCreated() {
+		ComplexAgent agent = new ComplexAgent(sim, 0);
+		LateMutator mutator = new LateMutator();
+		assertNull(mutator.getAgentState(agent));
+
+		LateState state = new LateState();
+		mutator.set(agent, state);
+		assertSame(state, mutator.getAgentState(agent));
+		assertSame(state, agent.getState(LateState.class));
+		assertSame(state, mutator.remove(agent));
+		assertFalse(mutator.hasAgentState(agent));
+	}
+}
@@ -1,5 +1,7 @@
 package org.cobweb.cobweb2.impl.ai;
 
+import java.util.Random;
+
 import junit.framework.TestCase;
 
 import org.junit.Test;
@@ -32,4 +34,58 @@ public class BehaviourArrayTest extends TestCase {
 		assertEquals(2, outputArray[1]);
 	}
 
+	/**
+	 * Compares output fields one at a time
+	 */
+	private double referenceSimilarity(BehaviorArray a, BehaviorArray b) {
+		double total = 0;
+		int cmpsize = Math.min(a.getSize(), b.getSize());
+		for (int i = 0; i < cmpsize; i++) {
+			int out1 = a.get(i);
+			int out2 = b.get(i);
+			for (int size : a.outputSize) {
+				int mask = (1 << size) - 1;
+				if ((out1 & mask) == (out2 & mask))
+					total += size;
+				out1 >>>= size;
+				out2 >>>= size;
+			}
+		}
+		int outputBits = 0;
+		for (int size : a.outputSize) {
+			outputBits += size;
+		}
+		return total / (a.getSize() * outputBits);
+	}
+
+	private void checkSimilarity(int inputs, int[] outputs) {
+		Random random = new Random(42);
+		BehaviorArray a = new BehaviorArray(inputs, outputs);
+		a.randomInit(1);
+		assertEquals(1.0, a.similarity(a));
+
+		for (float rate : new float[] { 0.001f, 0.05f, 0.5f }) {
+			BehaviorArray b = a.copy(rate, random);
+			assertEquals(referenceSimilarity(a, b), a.similarity(b));
+			assertEquals(referenceSimilarity(b, a), b.similarity(a));
+		}
+	}
+
+	public void testSimilarity() {
+		checkSimilarity(3, new int[] { 1, 2 });
+		checkSimilarity(10, new int[] { 2, 2, 2, 1 });
+		checkSimilarity(9, new int[] { 2, 3, 5, 1 });
+		checkSimilarity(8, new int[] { 7, 0, 9 });
+		checkSimilarity(6, new int[] { 31 });
+	}
+
+	public void testSimilarityDifferentSizes() {
+		BehaviorArray a = new BehaviorArray(6, new int[] { 2, 3, 1 });
+		a.randomInit(1);
+		BehaviorArray b = new BehaviorArray(4, new int[] { 2, 3, 1 });
+		b.randomInit(2);
+		assertEquals(referenceSimilarity(a, b), a.similarity(b));
+		assertEquals(referenceSimilarity(b, a), b.similarity(a));
+	}
+
 }
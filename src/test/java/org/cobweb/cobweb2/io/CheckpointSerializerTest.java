@@ -0,0 +1,195 @@
+package org.cobweb.cobweb2.io;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.Scanner;
+
+import org.cobweb.cobweb2.Simulation;
+import org.cobweb.cobweb2.SimulationConfig;
+import org.cobweb.cobweb2.core.Agent;
+import org.cobweb.cobweb2.plugins.swarm.PairwiseEffect;
+import org.cobweb.cobweb2.ui.StatsLogger;
+import org.cobweb.cobweb2.ui.UserInputException;
+
+import junit.framework.TestCase;
+
+
+public class CheckpointSerializerTest extends TestCase {
+
+	private static Simulation simulation() {
+		SimulationConfig config = new SimulationConfig();
+		config.randomSeed = 42;
+		Simulation simulation = new Simulation();
+		simulation.load(config);
+		return simulation;
+	}
+
+	private static byte[] save(Simulation simulation) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		new CheckpointSerializer().save(simulation, out);
+		return out.toByteArray();
+	}
+
+	private static String agents(Simulation simulation) {
+		StringBuilder result = new StringBuilder();
+		for (Agent a : simulation.theEnvironment.getAgents()) {
+			result.append(a.id).append(' ').append(a.getPosition()).append(' ').append(a.getEnergy()).append('\n');
+		}
+		return result.toString();
+	}
+
+	/**
+	 * Swarm effects and a production cutoff on every type, so the topology
+	 * has stencils cached when it is saved
+	 */
+	private static Simulation swarmProductionSimulation() {
+		SimulationConfig config = new SimulationConfig();
+		config.randomSeed = 42;
+		config.prodParams.valueCutoff = 0.05f;
+		for (int t = 0; t < config.getAgentTypes(); t++) {
+			config.prodParams.agentParams[t].productionMode = true;
+			for (PairwiseEffect effect : config.swarmParams.agentParams[t].effects) {
+				effect.radius = 3.5f;
+			}
+		}
+		Simulation simulation = new Simulation();
+		simulation.load(config);
+		return simulation;
+	}
+
+	private static void checkRestoreContinuesSame(Simulation original) throws IOException {
+		for (int i = 0; i < 30; i++) {
+			original.step();
+		}
+		Simulation restored = new CheckpointSerializer().load(new ByteArrayInputStream(save(original)));
+		assertEquals(original.getTime(), restored.getTime());
+		assertEquals(agents(original), agents(restored));
+
+		StringWriter originalLog = new StringWriter();
+		StringWriter restoredLog = new StringWriter();
+		StatsLogger originalLogger = new StatsLogger(originalLog, original);
+		StatsLogger restoredLogger = new StatsLogger(restoredLog, restored);
+		for (int i = 0; i < 40; i++) {
+			original.step();
+			restored.step();
+			originalLogger.update(true);
+			restoredLogger.update(true);
+		}
+		assertEquals(originalLog.toString(), restoredLog.toString());
+		assertEquals(agents(original), agents(restored));
+		assertEquals(original.getRandom().nextLong(), restored.getRandom().nextLong());
+	}
+
+	public void testRestoreContinuesSame() throws IOException {
+		checkRestoreContinuesSame(simulation());
+	}
+
+	public void testRestoreWithSwarmAndProduction() throws IOException {
+		Simulation original = swarmProductionSimulation();
+		checkRestoreContinuesSame(original);
+		assertTrue(original.prodMapper.countTotalProducts() > 0);
+	}
+
+	public void testRestorePartitioned() throws IOException {
+		SimulationConfig config = new SimulationConfig();
+		config.randomSeed = 42;
+		config.envParams.agentPartitionSize = 8;
+		config.envParams.agentThreads = 2;
+		Simulation original = new Simulation();
+		original.load(config);
+		checkRestoreContinuesSame(original);
+	}
+
+	/**
+	 * Checkpoint written by FORMAT_VERSION 1, with the agents it held. Write
+	 * both again with main() only when FORMAT_VERSION changes.
+	 */
+	private static final String FIXTURE = "checkpoint-v1.cwcp";
+
+	private static final String FIXTURE_AGENTS = "checkpoint-v1-agents.txt";
+
+	/**
+	 * A small simulation with seed 42, stepped 30 times
+	 */
+	private static Simulation fixtureSimulation() {
+		SimulationConfig config = new SimulationConfig();
+		config.randomSeed = 42;
+		config.envParams.width = 20;
+		config.envParams.height = 20;
+		for (int t = 0; t < config.getAgentTypes(); t++) {
+			config.agentParams.agentParams[t].initialAgents = 3;
+		}
+		Simulation simulation = new Simulation();
+		simulation.load(config);
+		for (int i = 0; i < 30; i++) {
+			simulation.step();
+		}
+		return simulation;
+	}
+
+	public void testReadsSavedCheckpoint() throws IOException {
+		Simulation restored;
+		try (InputStream in = CheckpointSerializerTest.class.getResourceAsStream(FIXTURE)) {
+			restored = new CheckpointSerializer().load(in);
+		}
+		String expected;
+		try (Scanner in = new Scanner(CheckpointSerializerTest.class.getResourceAsStream(FIXTURE_AGENTS), "UTF-8")) {
+			expected = in.useDelimiter("\\A").next().replace("\r", "");
+		}
+		assertEquals(30, restored.getTime());
+		assertEquals(expected, agents(restored));
+
+		for (int i = 0; i < 20; i++) {
+			restored.step();
+		}
+		assertEquals(50, restored.getTime());
+		restored.dispose();
+	}
+
+	/**
+	 * Writes the checkpoint fixture and its agents into the given directory
+	 */
+	public static void main(String[] args) throws IOException {
+		Simulation simulation = fixtureSimulation();
+		try (OutputStream out = new FileOutputStream(args[0] + "/" + FIXTURE)) {
+			new CheckpointSerializer().save(simulation, out);
+		}
+		try (Writer out = new OutputStreamWriter(new FileOutputStream(args[0] + "/" + FIXTURE_AGENTS), "UTF-8")) {
+			out.write(agents(simulation));
+		}
+		simulation.dispose();
+	}
+
+	public void testReadTime() throws IOException {
+		Simulation simulation = simulation();
+		for (int i = 0; i < 5; i++) {
+			simulation.step();
+		}
+		assertEquals(5, new CheckpointSerializer().readTime(new ByteArrayInputStream(save(simulation))));
+	}
+
+	public void testRejectsOtherFiles() throws IOException {
+		try {
+			new CheckpointSerializer().load(new ByteArrayInputStream("<inputData/>".getBytes("UTF-8")));
+			fail();
+		} catch (UserInputException ex) {
+			// expected
+		}
+
+		byte[] data = save(simulation());
+		data[7]++;
+		try {
+			new CheckpointSerializer().load(new ByteArrayInputStream(data));
+			fail();
+		} catch (UserInputException ex) {
+			// expected
+		}
+	}
+}
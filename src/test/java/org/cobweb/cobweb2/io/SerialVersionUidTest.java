@@ -0,0 +1,55 @@
+package org.cobweb.cobweb2.io;
+
+import java.io.File;
+import java.io.Serializable;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.cobweb.cobweb2.Simulation;
+
+import junit.framework.TestCase;
+
+/**
+ * Checkpoints are Java serialization streams. A class without an explicit
+ * serialVersionUID gets one computed from its shape, so any change to it
+ * would make older checkpoints unreadable.
+ */
+public class SerialVersionUidTest extends TestCase {
+
+	private static void findClasses(File dir, String prefix, List<String> result) {
+		for (File f : dir.listFiles()) {
+			if (f.isDirectory())
+				findClasses(f, prefix + f.getName() + ".", result);
+			else if (f.getName().endsWith(".class"))
+				result.add(prefix + f.getName().substring(0, f.getName().length() - ".class".length()));
+		}
+	}
+
+	public void testSerializableClassesDeclareUid() throws URISyntaxException, ClassNotFoundException {
+		File root = new File(Simulation.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+		List<String> names = new ArrayList<>();
+		findClasses(new File(root, "org/cobweb"), "org.cobweb.", names);
+		assertTrue(names.size() > 100);
+
+		List<String> missing = new ArrayList<>();
+		for (String name : names) {
+			Class<?> type = Class.forName(name, false, SerialVersionUidTest.class.getClassLoader());
+			// Enums are serialized by name, their uid is always 0
+			if (!Serializable.class.isAssignableFrom(type) || type.isInterface()
+					|| Enum.class.isAssignableFrom(type))
+				continue;
+			try {
+				Field uid = type.getDeclaredField("serialVersionUID");
+				int modifiers = uid.getModifiers();
+				if (!Modifier.isStatic(modifiers) || !Modifier.isFinal(modifiers) || uid.getType() != long.class)
+					missing.add(name);
+			} catch (NoSuchFieldException ex) {
+				missing.add(name);
+			}
+		}
+		assertEquals("Serializable classes without serialVersionUID", new ArrayList<String>(), missing);
+	}
+}
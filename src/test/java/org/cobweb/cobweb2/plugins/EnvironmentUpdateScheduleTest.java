@@ -0,0 +1,157 @@
+package org.cobweb.cobweb2.plugins;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+
+import org.cobweb.cobweb2.Simulation;
+import org.cobweb.cobweb2.SimulationConfig;
+import org.cobweb.cobweb2.core.Agent;
+import org.cobweb.cobweb2.core.TickProfiler;
+
+import junit.framework.TestCase;
+
+
+public class EnvironmentUpdateScheduleTest extends TestCase {
+
+	private static class TestPlugin implements EnvironmentMutator {
+		private final String name;
+		private final Set<EnvironmentLayer> reads;
+		private final Set<EnvironmentLayer> writes;
+		private final List<String> log;
+		Thread updatedOn;
+
+		TestPlugin(String name, Set<EnvironmentLayer> reads, Set<EnvironmentLayer> writes, List<String> log) {
+			this.name = name;
+			this.reads = reads;
+			this.writes = writes;
+			this.log = log;
+		}
+
+		@Override
+		public void update() {
+			updatedOn = Thread.currentThread();
+			log.add(name);
+		}
+
+		@Override
+		public void loadNew() {
+			// nothing
+		}
+
+		@Override
+		public Set<EnvironmentLayer> getReadLayers() {
+			return reads;
+		}
+
+		@Override
+		public Set<EnvironmentLayer> getWriteLayers() {
+			return writes;
+		}
+	}
+
+	private static Set<EnvironmentLayer> none() {
+		return EnumSet.noneOf(EnvironmentLayer.class);
+	}
+
+	private List<String> log = Collections.synchronizedList(new ArrayList<String>());
+
+	private TestPlugin food = new TestPlugin("food",
+			EnumSet.of(EnvironmentLayer.ABIOTIC, EnvironmentLayer.AGENTS), EnumSet.of(EnvironmentLayer.FOOD), log);
+	private TestPlugin packets = new TestPlugin("packets", none(), EnumSet.of(EnvironmentLayer.PACKETS), log);
+	private TestPlugin abiotic = new TestPlugin("abiotic", none(), EnumSet.of(EnvironmentLayer.ABIOTIC), log);
+	private TestPlugin gravity = new TestPlugin("gravity", EnumSet.of(EnvironmentLayer.AGENTS), none(), log);
+	private TestPlugin abioticReader = new TestPlugin("abioticReader", EnumSet.of(EnvironmentLayer.ABIOTIC), none(), log);
+
+	private List<EnvironmentMutator> plugins = Arrays.<EnvironmentMutator>asList(food, packets, abiotic, gravity, abioticReader);
+
+	public void testConflicts() {
+		assertTrue(EnvironmentUpdateSchedule.conflicts(food, abiotic));
+		assertTrue(EnvironmentUpdateSchedule.conflicts(abiotic, food));
+		assertFalse(EnvironmentUpdateSchedule.conflicts(food, gravity));
+		assertFalse(EnvironmentUpdateSchedule.conflicts(food, packets));
+		assertFalse(EnvironmentUpdateSchedule.conflicts(food, abioticReader));
+	}
+
+	public void testWaves() {
+		EnvironmentUpdateSchedule schedule = new EnvironmentUpdateSchedule(plugins);
+		List<List<EnvironmentMutator>> waves = schedule.getWaves();
+		assertEquals(3, waves.size());
+		assertEquals(Arrays.<EnvironmentMutator>asList(food, packets, gravity), waves.get(0));
+		// Food reads abiotic values from before abiotic updates
+		assertEquals(Arrays.<EnvironmentMutator>asList(abiotic), waves.get(1));
+		assertEquals(Arrays.<EnvironmentMutator>asList(abioticReader), waves.get(2));
+	}
+
+	public void testSerialOrder() {
+		new EnvironmentUpdateSchedule(plugins).update(null, new TickProfiler());
+		assertEquals(Arrays.asList("food", "packets", "abiotic", "gravity", "abioticReader"), log);
+	}
+
+	public void testParallel() {
+		ForkJoinPool pool = new ForkJoinPool(4);
+		try {
+			TickProfiler profiler = new TickProfiler();
+			profiler.setEnabled(true);
+			new EnvironmentUpdateSchedule(plugins).update(pool, profiler);
+		} finally {
+			pool.shutdown();
+		}
+
+		assertEquals(5, log.size());
+		assertTrue(log.indexOf("food") < log.indexOf("abiotic"));
+		assertTrue(log.indexOf("abiotic") < log.indexOf("abioticReader"));
+		// Writes a locked layer, stays on the thread holding the environment
+		assertSame(Thread.currentThread(), food.updatedOn);
+	}
+
+	/**
+	 * @return agents and food after running a simulation
+	 */
+	private static String run(SimulationConfig config, int environmentThreads) {
+		config.randomSeed = 42;
+		config.envParams.environmentThreads = environmentThreads;
+		Simulation sim = new Simulation();
+		sim.load(config);
+		for (int i = 0; i < 200; i++) {
+			sim.step();
+		}
+
+		StringBuilder result = new StringBuilder();
+		for (Agent a : sim.theEnvironment.getAgents()) {
+			result.append(a.id).append(' ').append(a.getPosition()).append(' ').append(a.getEnergy()).append('\n');
+		}
+		for (int x = 0; x < sim.theEnvironment.topology.width; x++) {
+			for (int y = 0; y < sim.theEnvironment.topology.height; y++) {
+				result.append(sim.theEnvironment.hasFood(x, y) ? sim.theEnvironment.getFoodType(x, y) : -1);
+			}
+		}
+		sim.dispose();
+		return result.toString();
+	}
+
+	public void testSameAsSerial() {
+		assertEquals(run(new SimulationConfig(), 1), run(new SimulationConfig(), 4));
+	}
+
+	/**
+	 * Map with several bands of rows, growing food in bands
+	 */
+	private static SimulationConfig synchronousGrowth() {
+		SimulationConfig config = new SimulationConfig();
+		config.envParams.width = 100;
+		config.envParams.height = 70;
+		config.foodParams.synchronousGrowth = true;
+		return config;
+	}
+
+	public void testSynchronousGrowthSameAsSerial() {
+		String serial = run(synchronousGrowth(), 1);
+		assertEquals(serial, run(synchronousGrowth(), 2));
+		assertEquals(serial, run(synchronousGrowth(), 4));
+	}
+}
@@ -0,0 +1,117 @@
+package org.cobweb.cobweb2.plugins.broadcast;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.cobweb.cobweb2.Simulation;
+import org.cobweb.cobweb2.SimulationConfig;
+import org.cobweb.cobweb2.core.Location;
+import org.cobweb.cobweb2.core.LocationDirection;
+import org.cobweb.cobweb2.core.Topology;
+import org.cobweb.cobweb2.impl.ComplexAgent;
+import org.cobweb.cobweb2.impl.ComplexAgentParams;
+import org.cobweb.util.MutatableInt;
+import org.cobweb.util.RandomNoGenerator;
+
+import junit.framework.TestCase;
+
+
+public class PacketIndexTest extends TestCase {
+
+	private static class TestAgent extends ComplexAgent {
+		public TestAgent(Simulation sim, ComplexAgentParams params, Location l) {
+			super(sim, 0);
+			setParams(params);
+			position = new LocationDirection(l);
+		}
+	}
+
+	private static class TestPacket extends BroadcastPacket {
+		public TestPacket(ComplexAgent sender) {
+			super(sender);
+		}
+
+		@Override
+		public void process(ComplexAgent receiver) {
+			// Nothing
+		}
+	}
+
+	private RandomNoGenerator random = new RandomNoGenerator(42);
+
+	private Simulation sim = new Simulation();
+
+	private BroadcastPacket randomPacket(Topology t, int maxRange) {
+		ComplexAgentParams params = new SimulationConfig().agentParams.agentParams[0];
+		params.broadcastFixedRange = new MutatableInt(random.nextIntRange(0, maxRange));
+		Location l = new Location(random.nextIntRange(0, t.width), random.nextIntRange(0, t.height));
+		return new TestPacket(new TestAgent(sim, params, l));
+	}
+
+	private void checkTopology(int width, int height, boolean wrap, boolean wrapX, boolean wrapY) {
+		Topology t = new Topology(sim, width, height, wrap, wrapX, wrapY);
+		PacketIndex index = new PacketIndex(t);
+		List<BroadcastPacket> packets = new ArrayList<BroadcastPacket>();
+		for (int i = 0; i < 60; i++) {
+			BroadcastPacket p = randomPacket(t, Math.max(width, height));
+			packets.add(p);
+			index.add(p);
+		}
+		// Take some out again
+		for (int i = 0; i < 20; i++) {
+			BroadcastPacket p = packets.remove(random.nextIntRange(0, packets.size()));
+			index.remove(p);
+		}
+
+		for (int x = 0; x < width; x++) {
+			for (int y = 0; y < height; y++) {
+				Location l = new Location(x, y);
+				List<BroadcastPacket> candidates = index.candidates(l);
+
+				// Candidates keep the order packets were added in
+				int last = -1;
+				for (BroadcastPacket p : candidates) {
+					int i = packets.indexOf(p);
+					assertTrue(i > last);
+					last = i;
+				}
+
+				// Every packet that reaches the location is a candidate
+				for (BroadcastPacket p : packets) {
+					if (t.getDistance(l, p.location) < p.range)
+						assertTrue(candidates.contains(p));
+				}
+			}
+		}
+	}
+
+	public void testFlat() {
+		checkTopology(37, 23, false, false, false);
+	}
+
+	public void testWrap() {
+		checkTopology(37, 23, true, false, false);
+	}
+
+	public void testWrapX() {
+		checkTopology(37, 23, false, true, false);
+	}
+
+	public void testWrapY() {
+		checkTopology(37, 23, false, false, true);
+	}
+
+	public void testClear() {
+		Topology t = new Topology(sim, 20, 20, false, false, false);
+		PacketIndex index = new PacketIndex(t);
+		for (int i = 0; i < 10; i++) {
+			index.add(randomPacket(t, 20));
+		}
+		index.clear();
+		for (int x = 0; x < 20; x++) {
+			for (int y = 0; y < 20; y++) {
+				assertTrue(index.candidates(new Location(x, y)).isEmpty());
+			}
+		}
+	}
+}
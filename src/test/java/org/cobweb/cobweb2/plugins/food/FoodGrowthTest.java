@@ -0,0 +1,58 @@
+package org.cobweb.cobweb2.plugins.food;
+
+import org.cobweb.cobweb2.Simulation;
+import org.cobweb.cobweb2.SimulationConfig;
+import org.cobweb.cobweb2.core.Topology;
+import org.cobweb.cobweb2.impl.ComplexAgentParams;
+
+import junit.framework.TestCase;
+
+public class FoodGrowthTest extends TestCase {
+
+	private Simulation simulation;
+
+	/**
+	 * Empty map with one food tile in the middle, where food always grows
+	 * next to food
+	 */
+	private FoodGrowth load(boolean synchronousGrowth) {
+		SimulationConfig config = new SimulationConfig();
+		config.envParams.width = 20;
+		config.envParams.height = 20;
+		config.envParams.initialStones = 0;
+		for (ComplexAgentParams agent : config.agentParams.agentParams) {
+			agent.initialAgents = 0;
+		}
+		config.foodParams.dropNewFood = false;
+		config.foodParams.likeFoodProb = 1;
+		config.foodParams.synchronousGrowth = synchronousGrowth;
+		config.foodParams.foodParams[0].growRate = 100;
+		simulation = new Simulation();
+		simulation.load(config);
+
+		Topology topology = simulation.getTopology();
+		simulation.theEnvironment.addFood(topology.location(10, 10), 0);
+		return simulation.theEnvironment.getPlugin(FoodGrowth.class);
+	}
+
+	public void testSerialGrowthSpreadsWithinTick() {
+		load(false).growFood();
+		// Tiles after the first grown ones in scan order grow from them too
+		assertTrue(simulation.theEnvironment.getFoodCount() > 5);
+	}
+
+	public void testSynchronousGrowthFromTickStart() {
+		load(true).growFood();
+		assertEquals(5, simulation.theEnvironment.getFoodCount());
+		assertTrue(simulation.theEnvironment.hasFood(10, 9));
+		assertTrue(simulation.theEnvironment.hasFood(9, 10));
+		assertTrue(simulation.theEnvironment.hasFood(11, 10));
+		assertTrue(simulation.theEnvironment.hasFood(10, 11));
+	}
+
+	@Override
+	protected void tearDown() {
+		if (simulation != null)
+			simulation.dispose();
+	}
+}
@@ -59,4 +59,38 @@ public class GeneticCodeTest extends TestCase {
 		assertEquals(0.0f, gc.getStatus(3), 0.000000000000001f);
 	}
 
+	public void testDifferentBits() {
+		GeneticCode other = new GeneticCode(gc);
+		assertEquals(0, GeneticCode.countDifferentBits(gc.genes, other.genes));
+
+		other.mutate(3);
+		assertEquals(1, GeneticCode.countDifferentBits(gc.genes, other.genes));
+		other.mutate(17);
+		assertEquals(2, GeneticCode.countDifferentBits(other.genes, gc.genes));
+	}
+
+	public void testDifferentBitsLong() {
+		GeneticCode a = new GeneticCode(19);
+		GeneticCode b = new GeneticCode(a);
+		b.mutate(0);
+		b.mutate(70);
+		b.mutate(150);
+		assertEquals(3, GeneticCode.countDifferentBits(a.genes, b.genes));
+
+		// Extra genes count as different wherever they have bits set
+		GeneticCode c = new GeneticCode(20);
+		c.setValue(19, (byte) 0x0f);
+		assertEquals(4, GeneticCode.countDifferentBits(a.genes, c.genes));
+	}
+
+	public void testSimilarity() {
+		GeneticCode other = new GeneticCode(gc);
+		assertEquals(1.0f, GeneticCode.compareGeneticSimilarity(gc, other));
+
+		other.mutate(3);
+		assertEquals(31f / 32, GeneticCode.compareGeneticSimilarity(gc, other));
+		other.mutate(17);
+		assertEquals(30f / 32, GeneticCode.compareGeneticSimilarity(other, gc));
+	}
+
 }
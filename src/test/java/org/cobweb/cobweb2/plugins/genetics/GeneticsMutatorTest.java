@@ -0,0 +1,56 @@
+package org.cobweb.cobweb2.plugins.genetics;
+
+import junit.framework.TestCase;
+
+import org.cobweb.cobweb2.Simulation;
+import org.cobweb.cobweb2.SimulationConfig;
+import org.cobweb.cobweb2.core.Agent;
+import org.cobweb.cobweb2.core.AgentSimilarityCalculator;
+import org.cobweb.cobweb2.core.NullPhenotype;
+import org.cobweb.cobweb2.core.Phenotype;
+
+public class GeneticsMutatorTest extends TestCase {
+
+	private Simulation simulation;
+
+	/**
+	 * One gene, 00001111 on type 1 agents and 00000011 on type 2 agents
+	 */
+	private AgentSimilarityCalculator load(boolean compareGenes) {
+		SimulationConfig config = new SimulationConfig();
+		config.geneticParams.phenotype = new Phenotype[] { new NullPhenotype() };
+		config.geneticParams.resizeGenes();
+		config.geneticParams.agentParams[0].setValue(0, (byte) 0x0f);
+		config.geneticParams.agentParams[1].setValue(0, (byte) 0x03);
+		config.geneticParams.compareGenes = compareGenes;
+		simulation = new Simulation();
+		simulation.load(config);
+		return simulation.getSimilarityCalculator();
+	}
+
+	private Agent agent(int type, int skip) {
+		for (Agent a : simulation.theEnvironment.getAgents()) {
+			if (a.getType() == type && skip-- == 0)
+				return a;
+		}
+		throw new AssertionError("No agent of type " + type);
+	}
+
+	public void testSimilarityKeepsOldResult() {
+		AgentSimilarityCalculator calculator = load(false);
+		assertEquals(1f, calculator.similarity(agent(0, 0), agent(1, 0)));
+		assertEquals(1f, calculator.similarity(agent(0, 0), agent(0, 1)));
+	}
+
+	public void testCompareGenes() {
+		AgentSimilarityCalculator calculator = load(true);
+		assertEquals(6f / 8, calculator.similarity(agent(0, 0), agent(1, 0)));
+		assertEquals(6f / 8, calculator.similarity(agent(1, 0), agent(0, 0)));
+		assertEquals(1f, calculator.similarity(agent(0, 0), agent(0, 1)));
+	}
+
+	@Override
+	protected void tearDown() {
+		simulation.dispose();
+	}
+}
@@ -0,0 +1,145 @@
+package org.cobweb.cobweb2.plugins.gravity;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.cobweb.cobweb2.core.Agent;
+import org.cobweb.cobweb2.core.AgentSpatialIndex;
+import org.cobweb.cobweb2.core.Location;
+import org.cobweb.cobweb2.core.TestFixture;
+import org.cobweb.cobweb2.core.TestFixture.TestAgent;
+import org.cobweb.cobweb2.core.Topology;
+
+import junit.framework.TestCase;
+
+public class ConnectedMassesTest extends TestCase {
+
+	private static final int[] TYPE_MASS = { 1, 3, 2 };
+
+	private final TestFixture fixture = new TestFixture();
+
+	/**
+	 * The old whole-map labelling, flood filling from each tile in column order
+	 */
+	private static int[][] reference(Topology topology, AgentSpatialIndex index) {
+		int[][] massArray = new int[topology.width][topology.height];
+		boolean[][] checked = new boolean[topology.width][topology.height];
+		for (int i = 0; i < topology.width; i++) {
+			for (int j = 0; j < topology.height; j++) {
+				if (checked[i][j])
+					continue;
+				List<Location> locations = new ArrayList<Location>();
+				int mass = fill(topology, index, new Location(i, j), checked, locations);
+				if (mass == 0) {
+					massArray[i][j] = 0;
+				} else {
+					int centerX = 0;
+					int centerY = 0;
+					for (Location loc : locations) {
+						centerX += loc.x;
+						centerY += loc.y;
+						massArray[loc.x][loc.y] = 0;
+					}
+					massArray[centerX / locations.size()][centerY / locations.size()] = mass;
+				}
+			}
+		}
+		return massArray;
+	}
+
+	private static int fill(Topology topology, AgentSpatialIndex index, Location l, boolean[][] checked, List<Location> result) {
+		if (checked[l.x][l.y] || index.get(l) == null)
+			return 0;
+		checked[l.x][l.y] = true;
+		int total = TYPE_MASS[index.get(l).getType()];
+		for (int i = 0; i < total; i++)
+			result.add(l);
+		for (Location n : new Location[] {
+				topology.getAdjacent(l, Topology.NORTH),
+				topology.getAdjacent(l, Topology.EAST),
+				topology.getAdjacent(l, Topology.SOUTH),
+				topology.getAdjacent(l, Topology.WEST) }) {
+			if (n != null)
+				total += fill(topology, index, n, checked, result);
+		}
+		return total;
+	}
+
+	private static int[][] toArray(Topology topology, ConnectedMasses masses) {
+		int[][] massArray = new int[topology.width][topology.height];
+		for (int i = 0; i < masses.getPointCount(); i++) {
+			massArray[masses.getPointX()[i]][masses.getPointY()[i]] = masses.getPointMass()[i];
+		}
+		return massArray;
+	}
+
+	private void check(Topology topology, int agents) {
+		AgentSpatialIndex index = new AgentSpatialIndex(topology.width, topology.height);
+		for (int i = 0; i < agents; i++) {
+			index.set(topology.getRandomLocation(), new TestAgent(fixture.random.nextInt(TYPE_MASS.length)));
+		}
+
+		ConnectedMasses masses = new ConnectedMasses(topology, TYPE_MASS.length);
+		index.addListener(masses);
+		masses.rebuild(index);
+
+		for (int tick = 0; tick < 30; tick++) {
+			masses.computePointMasses(TYPE_MASS);
+			int[][] expected = reference(topology, index);
+			int[][] actual = toArray(topology, masses);
+			for (int x = 0; x < topology.width; x++) {
+				for (int y = 0; y < topology.height; y++) {
+					assertEquals("tick " + tick + " at " + x + "," + y, expected[x][y], actual[x][y]);
+				}
+			}
+
+			// Move, remove and add a few agents
+			for (int i = 0; i < 20; i++) {
+				Location from = topology.getRandomLocation();
+				Location to = topology.getRandomLocation();
+				Agent a = index.get(from);
+				if (a == null) {
+					index.set(to, new TestAgent(fixture.random.nextInt(TYPE_MASS.length)));
+				} else if (index.get(to) == null) {
+					index.set(from, null);
+					index.set(to, a);
+				} else {
+					index.set(from, null);
+				}
+			}
+			masses.update(index);
+		}
+	}
+
+	public void testFlat() {
+		check(new Topology(fixture, 30, 20, false, false, false), 250);
+	}
+
+	public void testWrap() {
+		check(new Topology(fixture, 30, 20, false, true, true), 250);
+		check(new Topology(fixture, 30, 20, false, true, false), 250);
+	}
+
+	public void testGlobe() {
+		check(new Topology(fixture, 30, 20, true, false, false), 250);
+		check(new Topology(fixture, 31, 20, true, false, false), 250);
+	}
+
+	public void testLargeGroup() {
+		// Big enough to overflow the stack of a recursive fill
+		Topology topology = new Topology(fixture, 400, 400, false, false, false);
+		AgentSpatialIndex index = new AgentSpatialIndex(topology.width, topology.height);
+		for (int x = 0; x < topology.width; x++) {
+			for (int y = 0; y < topology.height; y++) {
+				index.set(x, y, new TestAgent(0));
+			}
+		}
+		ConnectedMasses masses = new ConnectedMasses(topology, TYPE_MASS.length);
+		masses.rebuild(index);
+		masses.computePointMasses(TYPE_MASS);
+		assertEquals(1, masses.getPointCount());
+		assertEquals(400 * 400, masses.getPointMass()[0]);
+		assertEquals(199, masses.getPointX()[0]);
+		assertEquals(199, masses.getPointY()[0]);
+	}
+}
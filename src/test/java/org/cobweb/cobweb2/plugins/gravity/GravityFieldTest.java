@@ -0,0 +1,127 @@
+package org.cobweb.cobweb2.plugins.gravity;
+
+import org.cobweb.cobweb2.core.Direction;
+import org.cobweb.cobweb2.core.Location;
+import org.cobweb.cobweb2.core.TestFixture;
+import org.cobweb.cobweb2.core.Topology;
+
+import junit.framework.TestCase;
+
+public class GravityFieldTest extends TestCase {
+
+	private static final float G = 0.667f;
+
+	private final TestFixture fixture = new TestFixture();
+
+	/**
+	 * The original per-tile sum over the whole map
+	 * @return {x, y, sum of the size of each pull}
+	 */
+	private static double[] bruteForce(Topology topology, int[][] massArray, Location agentLoc, int mass) {
+		double forceX = 0;
+		double forceY = 0;
+		double total = 0;
+		for (int a = 0; a < topology.width; a++) {
+			for (int b = 0; b < topology.height; b++) {
+				Location ab = new Location(a, b);
+				double dis = topology.getDistanceSquared(agentLoc, ab);
+				if (!agentLoc.equals(ab)) {
+					double force = (G * massArray[a][b] * mass) / dis;
+					total += force;
+					Direction toPoint = topology.getDirectionBetween8way(agentLoc, ab);
+					forceX += (toPoint.x / Math.sqrt(toPoint.x * toPoint.x + toPoint.y * toPoint.y)) * force;
+					forceY += (toPoint.y / Math.sqrt(toPoint.x * toPoint.x + toPoint.y * toPoint.y)) * force;
+				}
+			}
+		}
+		return new double[] { forceX, forceY, total };
+	}
+
+	private int[][] randomMasses(Topology topology, int count) {
+		int[][] massArray = new int[topology.width][topology.height];
+		for (int i = 0; i < count; i++) {
+			Location l = topology.getRandomLocation();
+			massArray[l.x][l.y] = 1 + fixture.random.nextInt(5);
+		}
+		return massArray;
+	}
+
+	/**
+	 * @return worst error relative to the sum of the size of each pull, since
+	 * pulls from opposite sides can cancel out to almost nothing
+	 */
+	private double compare(Topology topology, float approximation, int masses, boolean exact) {
+		int[][] massArray = randomMasses(topology, masses);
+		GravityField field = new GravityField(topology, approximation);
+		field.update(massArray);
+
+		double worst = 0;
+		double[] force = new double[2];
+		for (int i = 0; i < 200; i++) {
+			Location l = topology.getRandomLocation();
+			int mass = 1 + fixture.random.nextInt(3);
+			double[] expected = bruteForce(topology, massArray, l, mass);
+			field.getForce(l, G, mass, force);
+			if (exact) {
+				assertEquals(expected[0], force[0], 0.0);
+				assertEquals(expected[1], force[1], 0.0);
+			} else {
+				double size = expected[2];
+				double error = Math.hypot(expected[0] - force[0], expected[1] - force[1]);
+				if (size > 0)
+					worst = Math.max(worst, error / size);
+			}
+		}
+		return worst;
+	}
+
+	private Topology[] topologies(int width, int height) {
+		return new Topology[] {
+				new Topology(fixture, width, height, false, false, false),
+				new Topology(fixture, width, height, true, false, false),
+				new Topology(fixture, width, height, false, true, true),
+				new Topology(fixture, width, height, false, true, false),
+				new Topology(fixture, width, height, false, false, true),
+		};
+	}
+
+	public void testExactMatchesBruteForce() {
+		for (Topology t : topologies(40, 30)) {
+			compare(t, 0, 30, true);
+		}
+	}
+
+	public void testExactCachedForceMatchesBruteForce() {
+		Topology t = new Topology(fixture, 20, 20, true, false, false);
+		GravityField field = new GravityField(t, 0);
+		double[] force = new double[2];
+		for (int tick = 0; tick < 3; tick++) {
+			int[][] massArray = randomMasses(t, 20);
+			field.update(massArray);
+			// Same tiles over and over, with the agent mass changing between them
+			for (int i = 0; i < 100; i++) {
+				Location l = t.location(i % 7, i % 5);
+				int mass = 1 + i % 3;
+				double[] expected = bruteForce(t, massArray, l, mass);
+				field.getForce(l, G, mass, force);
+				assertEquals(expected[0], force[0], 0.0);
+				assertEquals(expected[1], force[1], 0.0);
+			}
+		}
+	}
+
+	public void testZeroAngleTreeMatchesBruteForce() {
+		for (Topology t : topologies(40, 30)) {
+			// Opening every node only changes the order of the sum
+			double error = compare(t, 1e-9f, 30, false);
+			assertTrue("Relative error " + error, error < 1e-6);
+		}
+	}
+
+	public void testApproximationClose() {
+		for (Topology t : topologies(64, 64)) {
+			double error = compare(t, 0.3f, 200, false);
+			assertTrue("Relative error " + error, error < 0.05);
+		}
+	}
+}
@@ -0,0 +1,133 @@
+package org.cobweb.cobweb2.plugins.production;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.cobweb.cobweb2.Simulation;
+import org.cobweb.cobweb2.SimulationConfig;
+import org.cobweb.cobweb2.core.Agent;
+import org.cobweb.cobweb2.core.Location;
+import org.cobweb.cobweb2.core.TestFixture;
+import org.cobweb.cobweb2.core.Topology;
+
+import junit.framework.TestCase;
+
+public class ProductionMapperTest extends TestCase {
+
+	private final TestFixture fixture = new TestFixture();
+
+	private Simulation load(boolean wrap, boolean wrapX, float valueCutoff) {
+		SimulationConfig config = new SimulationConfig();
+		config.envParams.width = 30;
+		config.envParams.height = 20;
+		config.envParams.wrapMap = wrap;
+		config.envParams.wrapMapX = wrapX;
+		config.prodParams.agentParams[0].productionMode = true;
+		config.prodParams.valueCutoff = valueCutoff;
+		Simulation simulation = new Simulation();
+		simulation.load(config);
+		return simulation;
+	}
+
+	private float[] productValues(int count) {
+		float[] values = new float[count];
+		for (int i = 0; i < values.length; i++) {
+			values[i] = 0.2f + 3 * fixture.random.nextFloat();
+		}
+		// One product big enough that its cutoff radius covers the whole map
+		values[0] = 100;
+		return values;
+	}
+
+	/**
+	 * Adds a product on each producing agent, then takes away every third one
+	 */
+	private void produce(Simulation simulation, float[] values) {
+		List<Product> products = new ArrayList<>();
+		int i = 0;
+		for (Agent agent : simulation.theEnvironment.getAgents()) {
+			if (agent.getType() == 0 && i < values.length)
+				products.add(new Product(values[i++], agent, simulation.prodMapper, 1000));
+		}
+		for (i = 0; i < products.size(); i += 3) {
+			products.get(i).prepareRemove();
+		}
+	}
+
+	/**
+	 * The original update of the whole map for each product
+	 */
+	private static float[][] fullUpdate(Simulation simulation, float[] values) {
+		Topology topology = simulation.getTopology();
+		float[][] vals = new float[topology.width][topology.height];
+		List<Location> locations = new ArrayList<>();
+		int i = 0;
+		for (Agent agent : simulation.theEnvironment.getAgents()) {
+			if (agent.getType() == 0 && i < values.length) {
+				locations.add(agent.getPosition());
+				update(topology, vals, agent.getPosition(), values[i++], true);
+			}
+		}
+		for (i = 0; i < locations.size(); i += 3) {
+			update(topology, vals, locations.get(i), values[i], false);
+		}
+		return vals;
+	}
+
+	private static void update(Topology topology, float[][] vals, Location at, float value, boolean addition) {
+		for (int x = 0; x < vals.length; x++) {
+			for (int y = 0; y < vals[x].length; y++) {
+				float v = value;
+				v /= Math.max(1, topology.getDistanceSquared(at, new Location(x, y)));
+				vals[x][y] += addition ? v : - v;
+				if (vals[x][y] < 0)
+					vals[x][y] = 0;
+			}
+		}
+	}
+
+	public void testNoCutoffMatchesFullUpdate() {
+		float[] values = productValues(15);
+		boolean[][] wraps = { { false, false }, { true, false }, { false, true } };
+		for (boolean[] wrap : wraps) {
+			Simulation simulation = load(wrap[0], wrap[1], 0);
+			produce(simulation, values);
+
+			float[][] expected = fullUpdate(simulation, values);
+			float[][] actual = simulation.prodMapper.getValues();
+			float max = 1;
+			for (int x = 0; x < expected.length; x++) {
+				for (int y = 0; y < expected[x].length; y++) {
+					assertEquals(expected[x][y], actual[x][y], 0f);
+					max = Math.max(max, expected[x][y]);
+				}
+			}
+			assertEquals(max, simulation.prodMapper.getMax(), 0f);
+			simulation.dispose();
+		}
+	}
+
+	public void testCutoffCloseToFullUpdate() {
+		float cutoff = 0.05f;
+		float[] values = productValues(15);
+		boolean[][] wraps = { { false, false }, { true, false }, { false, true } };
+		for (boolean[] wrap : wraps) {
+			Simulation full = load(wrap[0], wrap[1], 0);
+			Simulation truncated = load(wrap[0], wrap[1], cutoff);
+			produce(full, values);
+			produce(truncated, values);
+
+			// Each product leaves out at most cutoff from every tile
+			float[][] expected = full.prodMapper.getValues();
+			float[][] actual = truncated.prodMapper.getValues();
+			for (int x = 0; x < expected.length; x++) {
+				for (int y = 0; y < expected[x].length; y++) {
+					assertEquals(expected[x][y], actual[x][y], values.length * cutoff);
+				}
+			}
+			assertEquals(full.prodMapper.getMax(), truncated.prodMapper.getMax(), values.length * cutoff);
+			full.dispose();
+			truncated.dispose();
+		}
+	}
+}
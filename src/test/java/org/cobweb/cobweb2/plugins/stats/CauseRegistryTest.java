@@ -0,0 +1,96 @@
+package org.cobweb.cobweb2.plugins.stats;
+
+import junit.framework.TestCase;
+
+import org.cobweb.cobweb2.core.Cause;
+import org.cobweb.cobweb2.impl.ComplexAgent.BumpCause;
+import org.cobweb.cobweb2.impl.ComplexAgent.BumpWallCause;
+import org.cobweb.cobweb2.impl.ComplexAgent.MovementCause;
+import org.cobweb.cobweb2.impl.ComplexAgent.StepForwardCause;
+import org.cobweb.cobweb2.impl.ComplexAgent.TurnLeftCause;
+import org.cobweb.cobweb2.plugins.stats.CauseTree.CauseTreeNode;
+
+
+public class CauseRegistryTest extends TestCase {
+
+	private CauseRegistry registry = CauseRegistry.get();
+
+	public void testIds() {
+		assertEquals(0, registry.id(Cause.class));
+		assertTrue(registry.size() > 1);
+
+		for (int id = 0; id < registry.size(); id++) {
+			assertEquals(id, registry.id(registry.type(id)));
+			if (id > 0)
+				assertEquals(id, registry.id(registry.instance(id)));
+		}
+		assertEquals(-1, registry.id(String.class));
+	}
+
+	public void testAncestors() {
+		for (int id = 0; id < registry.size(); id++) {
+			for (int a = 0; a < registry.size(); a++) {
+				assertEquals(registry.type(a).isAssignableFrom(registry.type(id)),
+						registry.ancestors(id).get(a));
+			}
+		}
+	}
+
+	public void testPath() {
+		int id = registry.id(BumpWallCause.class);
+		int[] path = registry.path(id);
+		assertEquals(id, path[0]);
+		assertEquals(0, path[path.length - 1]);
+
+		CauseTreeNode node = registry.node(id);
+		for (int i = 0; i < path.length; i++) {
+			assertEquals(node.type, registry.type(path[i]));
+			node = node.parent;
+		}
+		assertNull(node);
+	}
+
+	/**
+	 * The white and black lists as EnergyStats checked them by class
+	 */
+	private static boolean referenceWatching(EnergyStats stats, Class<? extends Cause> type) {
+		if (!stats.whiteList.isEmpty()) {
+			boolean found = false;
+			for (Class<? extends Cause> c : stats.whiteList)
+				found |= c.isAssignableFrom(type);
+			if (!found)
+				return false;
+		}
+		for (Class<? extends Cause> c : stats.blackList) {
+			if (c.isAssignableFrom(type))
+				return false;
+		}
+		return true;
+	}
+
+	private void checkWatching(EnergyStats stats) {
+		for (int id = 0; id < registry.size(); id++) {
+			Class<? extends Cause> type = registry.type(id);
+			assertEquals(type.getName(), referenceWatching(stats, type), stats.isWatching(type));
+		}
+	}
+
+	public void testWatching() {
+		EnergyStats stats = new EnergyStats();
+		checkWatching(stats);
+
+		stats.whitelist(MovementCause.class);
+		checkWatching(stats);
+		assertTrue(stats.isWatching(StepForwardCause.class));
+
+		stats.blacklist(BumpCause.class);
+		checkWatching(stats);
+		assertFalse(stats.isWatching(BumpWallCause.class));
+		assertTrue(stats.isWatching(TurnLeftCause.class));
+
+		stats.unlist(MovementCause.class);
+		checkWatching(stats);
+		assertTrue(stats.isWatching(Cause.class));
+		assertFalse(stats.isWatching(BumpWallCause.class));
+	}
+}
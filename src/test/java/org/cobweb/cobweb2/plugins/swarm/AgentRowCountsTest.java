@@ -0,0 +1,95 @@
+package org.cobweb.cobweb2.plugins.swarm;
+
+import org.cobweb.cobweb2.core.Agent;
+import org.cobweb.cobweb2.core.AgentSpatialIndex;
+import org.cobweb.cobweb2.core.Location;
+import org.cobweb.cobweb2.core.TestFixture;
+import org.cobweb.cobweb2.core.TestFixture.TestAgent;
+import org.cobweb.cobweb2.core.Topology;
+
+import junit.framework.TestCase;
+
+
+public class AgentRowCountsTest extends TestCase {
+
+	private static final int TYPES = 3;
+
+	private final TestFixture fixture = new TestFixture();
+
+	private int bruteForce(Topology t, AgentSpatialIndex index, Location zero, Topology.Stencil stencil, int type) {
+		int count = 0;
+		for (int i = 0; i < stencil.size(); i++) {
+			int tile = t.stencilTile(zero, stencil, i);
+			if (tile < 0)
+				continue;
+			Agent a = index.get(t.location(tile));
+			if (a != null && a.getType() == type)
+				count++;
+		}
+		return count;
+	}
+
+	private void checkCounts(Topology t, AgentSpatialIndex index, AgentRowCounts counts) {
+		counts.update(index);
+		float[] radii = { 0, 1, 2.5f, 4, 6.3f };
+		for (float radius : radii) {
+			Topology.Stencil stencil = t.getStencil(radius);
+			if (stencil.isAliased())
+				continue;
+			for (int x = 0; x < t.width; x++) {
+				for (int y = 0; y < t.height; y++) {
+					Location zero = new Location(x, y);
+					for (int type = 0; type < TYPES; type++) {
+						assertEquals(bruteForce(t, index, zero, stencil, type),
+								counts.countWithin(zero, stencil, type));
+					}
+				}
+			}
+		}
+	}
+
+	private void checkTopology(boolean wrap, boolean wrapX, boolean wrapY) {
+		Topology t = new Topology(fixture, 19, 14, wrap, wrapX, wrapY);
+		AgentSpatialIndex index = new AgentSpatialIndex(t.width, t.height);
+		for (int i = 0; i < 60; i++) {
+			index.set(t.getRandomLocation(), new TestAgent(fixture.random.nextInt(TYPES)));
+		}
+
+		AgentRowCounts counts = new AgentRowCounts(t, TYPES);
+		index.addListener(counts);
+		counts.rebuild(index);
+		checkCounts(t, index, counts);
+
+		// Move, replace and remove agents
+		for (int i = 0; i < 40; i++) {
+			Location from = t.getRandomLocation();
+			Location to = t.getRandomLocation();
+			Agent a = index.get(from);
+			index.set(from, null);
+			if (i % 3 == 0)
+				a = new TestAgent(fixture.random.nextInt(TYPES));
+			index.set(to, a);
+		}
+		checkCounts(t, index, counts);
+	}
+
+	public void testFlat() {
+		checkTopology(false, false, false);
+	}
+
+	public void testWrap() {
+		checkTopology(true, false, false);
+	}
+
+	public void testWrapX() {
+		checkTopology(false, true, false);
+	}
+
+	public void testWrapY() {
+		checkTopology(false, false, true);
+	}
+
+	public void testWrapXY() {
+		checkTopology(false, true, true);
+	}
+}
@@ -0,0 +1,118 @@
+package org.cobweb.cobweb2.ui;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+
+import org.cobweb.cobweb2.Simulation;
+import org.cobweb.cobweb2.SimulationConfig;
+import org.cobweb.cobweb2.ui.EnsembleRunner.Run;
+
+import junit.framework.TestCase;
+
+
+public class EnsembleRunnerTest extends TestCase {
+
+	private File output;
+
+	@Override
+	protected void setUp() throws Exception {
+		output = Files.createTempDirectory("ensemble").toFile();
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		File[] files = output.listFiles();
+		if (files != null) {
+			for (File f : files) {
+				f.delete();
+			}
+		}
+		output.delete();
+	}
+
+	public void testRuns() {
+		EnsembleRunner runner = new EnsembleRunner(new SimulationConfig(), output);
+		runner.addParameter("envParams.width", "40", "60");
+		runner.addParameter("agentParams.agentParams[1].initEnergy", "50", "80", "100");
+		runner.setSeeds(Arrays.asList(1L, 2L));
+
+		List<Run> runs = runner.getRuns();
+		assertEquals(12, runs.size());
+
+		Run run = runs.get(9);
+		assertEquals(9, run.index);
+		assertEquals(2L, run.seed);
+		assertEquals(Arrays.asList("60", "80"), run.values);
+
+		SimulationConfig conf = runner.createConfig(run);
+		assertEquals(60, conf.envParams.width);
+		assertEquals(80, conf.agentParams.agentParams[1].initEnergy.getValue());
+		assertEquals(2L, conf.randomSeed);
+
+		// Each run gets its own copy
+		assertEquals(40, runner.createConfig(runs.get(0)).envParams.width);
+		assertEquals(60, conf.envParams.width);
+	}
+
+	public void testBadPath() {
+		EnsembleRunner runner = new EnsembleRunner(new SimulationConfig(), output);
+		try {
+			runner.addParameter("envParams.nothing", "1");
+			fail();
+		} catch (IllegalArgumentException ex) {
+			// expected
+		}
+		try {
+			runner.addParameter("agentParams.agentParams[10].initEnergy", "1");
+			fail();
+		} catch (IllegalArgumentException ex) {
+			// expected
+		}
+		try {
+			runner.addParameter("envParams.width", "wide");
+			fail();
+		} catch (IllegalArgumentException ex) {
+			// expected
+		}
+	}
+
+	private static String read(File file) throws IOException {
+		return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+	}
+
+	public void testSameAsSingleRun() throws IOException {
+		SimulationConfig base = new SimulationConfig();
+		EnsembleRunner runner = new EnsembleRunner(base, output);
+		runner.addParameter("envParams.width", "30", "50");
+		runner.setSeeds(Arrays.asList(5L, 6L));
+		runner.setSteps(50);
+		runner.setThreads(4);
+		runner.run();
+
+		List<Run> runs = runner.getRuns();
+		assertTrue(new File(output, "runs.tsv").exists());
+
+		Run run = runs.get(3);
+		SimulationConfig single = new SimulationConfig();
+		single.envParams.width = 50;
+		single.randomSeed = 6;
+		Simulation simulation = new Simulation();
+		simulation.load(single);
+		StringWriter expected = new StringWriter();
+		SimulationRunnerBase runnerBase = new SimulationRunnerBase(simulation);
+		runnerBase.setLog(expected);
+		for (int i = 0; i < 50; i++) {
+			simulation.step();
+			runnerBase.updateUI(true);
+		}
+		runnerBase.setLog(null);
+
+		assertEquals(expected.toString(), read(run.log));
+		assertFalse(read(runs.get(0).log).equals(read(run.log)));
+	}
+}
@@ -0,0 +1,105 @@
+package org.cobweb.cobweb2.ui.config;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+import org.cobweb.io.ConfListType;
+import org.cobweb.io.ConfMap;
+import org.cobweb.util.MutatableFloat;
+import org.cobweb.util.MutatableInt;
+
+
+public class PropertyAccessorTest extends TestCase {
+
+	public static class Inner {
+		public MutatableFloat rate = new MutatableFloat(0.5f);
+
+		private int count = 3;
+
+		public int getCount() {
+			return count;
+		}
+
+		public void setCount(int count) {
+			this.count = count;
+		}
+	}
+
+	public static class Outer {
+		public int plain = 7;
+
+		public Inner inner = new Inner();
+
+		public MutatableInt[] values = { new MutatableInt(1), new MutatableInt(2) };
+
+		@ConfListType(Inner.class)
+		public List<Inner> list = new ArrayList<>();
+
+		@ConfMap(entryName = "entry", keyName = "key", valueClass = Inner.class)
+		public Map<String, Inner> map = new HashMap<>();
+	}
+
+	private Outer outer;
+
+	@Override
+	protected void setUp() throws Exception {
+		outer = new Outer();
+		outer.list.add(new Inner());
+		outer.list.add(new Inner());
+		outer.map.put("a", new Inner());
+	}
+
+	private static PropertyAccessorBase field(PropertyAccessor parent, Class<?> clazz, String name) throws Exception {
+		return new FieldPropertyAccessor(parent, clazz.getField(name));
+	}
+
+	/**
+	 * Checks the compiled getter is used and returns the same value as the reflective path
+	 */
+	private void checkCompiled(PropertyAccessorBase accessor, Object expected) {
+		assertNotNull(accessor.toString(), accessor.getCompiledGetter());
+		assertEquals(expected, accessor.get(outer));
+		assertEquals(expected, accessor.thisGetValue(accessor.parent == null ? outer : accessor.parent.get(outer)));
+	}
+
+	public void testField() throws Exception {
+		checkCompiled(field(null, Outer.class, "plain"), 7);
+		checkCompiled(field(null, Outer.class, "inner"), outer.inner);
+	}
+
+	public void testSetter() throws Exception {
+		PropertyAccessorBase inner = field(null, Outer.class, "inner");
+		PropertyAccessorBase count = new SetterPropertyAccessor(inner, Inner.class.getMethod("setCount", int.class));
+		checkCompiled(count, 3);
+		count.set(outer, 9);
+		checkCompiled(count, 9);
+	}
+
+	public void testArrayAndMutatable() throws Exception {
+		PropertyAccessorBase values = field(null, Outer.class, "values");
+		PropertyAccessorBase second = new ArrayPropertyAccessor(values, 1);
+		checkCompiled(second, outer.values[1]);
+		checkCompiled(new MutatablePropertyAccessor(second), 2);
+
+		PropertyAccessorBase rate = field(field(null, Outer.class, "inner"), Inner.class, "rate");
+		checkCompiled(new MutatablePropertyAccessor(rate), 0.5f);
+	}
+
+	public void testListAndMap() throws Exception {
+		PropertyAccessorBase element = new ListPropertyAccessor(field(null, Outer.class, "list"), 1);
+		checkCompiled(element, outer.list.get(1));
+		checkCompiled(field(element, Inner.class, "rate"), outer.list.get(1).rate);
+
+		PropertyAccessorBase value = new MapPropertyAccessor(field(null, Outer.class, "map"), "a");
+		checkCompiled(value, outer.map.get("a"));
+		checkCompiled(new MapPropertyAccessor(field(null, Outer.class, "map"), "missing"), null);
+	}
+
+	public void testThis() {
+		checkCompiled(new ThisPropertyAccessor(), outer);
+	}
+}
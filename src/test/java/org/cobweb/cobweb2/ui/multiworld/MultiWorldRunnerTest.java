@@ -0,0 +1,122 @@
+package org.cobweb.cobweb2.ui.multiworld;
+
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.cobweb.cobweb2.Simulation;
+import org.cobweb.cobweb2.SimulationConfig;
+import org.cobweb.cobweb2.core.Agent;
+
+import junit.framework.TestCase;
+
+
+public class MultiWorldRunnerTest extends TestCase {
+
+	private static Simulation world(long seed) {
+		SimulationConfig config = new SimulationConfig();
+		config.randomSeed = seed;
+		Simulation simulation = new Simulation();
+		simulation.load(config);
+		return simulation;
+	}
+
+	private static long energy(Simulation simulation, int type) {
+		long total = 0;
+		for (Agent a : simulation.theEnvironment.getAgents()) {
+			if (a.getType() == type)
+				total += a.getEnergy();
+		}
+		return total;
+	}
+
+	private static int count(Simulation simulation, int type) {
+		int count = 0;
+		for (Agent a : simulation.theEnvironment.getAgents()) {
+			if (a.getType() == type)
+				count++;
+		}
+		return count;
+	}
+
+	public void testEnergyExchange() {
+		Simulation from = world(1);
+		Simulation to = world(2);
+		EnergyExchange exchange = new EnergyExchange(from, to);
+		exchange.setFactor(0, 1, 2f);
+		exchange.setFactor(2, 1, -1f);
+
+		exchange.startInterval();
+		long start0 = energy(from, 0);
+		long start2 = energy(from, 2);
+		for (int i = 0; i < 5; i++) {
+			from.step();
+		}
+		double change = 2.0 * (energy(from, 0) - start0) - (energy(from, 2) - start2);
+		exchange.collect();
+
+		List<Integer> before = new ArrayList<>();
+		List<Agent> agents = new ArrayList<>();
+		for (Agent a : to.theEnvironment.getAgents()) {
+			if (a.getType() == 1) {
+				agents.add(a);
+				before.add(a.getEnergy());
+			}
+		}
+		long otherTypes = energy(to, 0);
+		exchange.deliver();
+
+		assertFalse(agents.isEmpty());
+		double share = change / agents.size();
+		for (int i = 0; i < agents.size(); i++) {
+			assertEquals((int) Math.ceil(before.get(i) + share), agents.get(i).getEnergy());
+		}
+		assertEquals(otherTypes, energy(to, 0));
+	}
+
+	public void testMigration() {
+		Simulation from = world(1);
+		Simulation to = world(2);
+		int leaving = count(from, 0);
+		int arriving = count(to, 0);
+		long energy = energy(from, 0) + energy(to, 0);
+		assertTrue(leaving > 0);
+
+		AgentMigration migration = new AgentMigration(from, to, 0, 1f);
+		migration.startInterval();
+		migration.collect();
+		migration.deliver();
+
+		assertEquals(0, count(from, 0));
+		assertEquals(leaving + arriving, count(to, 0));
+		assertEquals(energy, energy(to, 0));
+	}
+
+	private static String run(int threads) {
+		MultiWorldRunner runner = new MultiWorldRunner();
+		runner.addWorld(world(1));
+		runner.addWorld(world(2));
+
+		EnergyExchange exchange = new EnergyExchange(runner.getWorld(0), runner.getWorld(1));
+		exchange.setFactor(0, 0, -1f);
+		runner.addLink(exchange);
+		runner.addLink(new AgentMigration(runner.getWorld(1), runner.getWorld(0), 1, 0.2f));
+
+		StringWriter log0 = new StringWriter();
+		StringWriter log1 = new StringWriter();
+		runner.setLog(0, log0);
+		runner.setLog(1, log1);
+		runner.setSyncInterval(7);
+		runner.setThreads(threads);
+		runner.run(30);
+		runner.run(20);
+		runner.dispose();
+
+		assertEquals(50, runner.getWorld(0).getTime());
+		return log0.toString() + log1.toString();
+	}
+
+	public void testSameWithThreads() {
+		assertEquals(run(1), run(2));
+	}
+}
@@ -0,0 +1,47 @@
+package org.cobweb.util;
+
+import junit.framework.TestCase;
+
+import org.cobweb.io.ParameterSerializable;
+
+
+public class CloneHelperTest extends TestCase {
+
+	public static class Params implements ParameterSerializable {
+		public MutatableFloat rate = new MutatableFloat(2f);
+
+		public MutatableInt count = new MutatableInt(10);
+
+		public int other = 4;
+
+		@Override
+		public Params clone() {
+			try {
+				Params copy = (Params) super.clone();
+				CloneHelper.resetMutatable(copy);
+				return copy;
+			} catch (CloneNotSupportedException ex) {
+				throw new RuntimeException(ex);
+			}
+		}
+
+		private static final long serialVersionUID = 1L;
+	}
+
+	public void testResetMutatable() {
+		Params original = new Params();
+		original.rate.setMultiplier(this, 3f);
+		original.count.setMultiplier(this, 0.5f);
+
+		Params copy = original.clone();
+		assertNotSame(original.rate, copy.rate);
+		assertNotSame(original.count, copy.count);
+		assertEquals(2f, copy.rate.getValue());
+		assertEquals(10, copy.count.getValue());
+		assertEquals(4, copy.other);
+
+		// Original keeps its multipliers
+		assertEquals(6f, original.rate.getValue());
+		assertEquals(5, original.count.getValue());
+	}
+}
@@ -0,0 +1,73 @@
+package org.cobweb.util;
+
+import junit.framework.TestCase;
+
+
+public class MutatableFieldTest extends TestCase {
+
+	private static class SlotOwner {
+		// Only used to reserve slots
+	}
+
+	public void testReserveInterned() {
+		MultiplierSlot[] first = MultiplierSlot.reserve(SlotOwner.class, 2);
+		MultiplierSlot[] more = MultiplierSlot.reserve(SlotOwner.class, 3);
+		assertSame(first[0], more[0]);
+		assertSame(first[1], more[1]);
+		assertTrue(more[2].index >= 0 && more[2].index < MultiplierSlot.count());
+		assertFalse(more[1].index == more[2].index);
+	}
+
+	public void testSlotMultipliers() {
+		MultiplierSlot[] slots = MultiplierSlot.reserve(SlotOwner.class, 3);
+		MutatableFloat f = new MutatableFloat(10);
+
+		f.setMultiplier(slots[1], 2);
+		assertEquals(20f, f.getValue());
+		f.setMultiplier(slots[0], 0.5f);
+		assertEquals(10f, f.getValue());
+		f.setMultiplier(slots[1], 3);
+		assertEquals(15f, f.getValue());
+		f.removeMultiplier(slots[0]);
+		assertEquals(30f, f.getValue());
+		f.removeMultiplier(slots[2]);
+		assertEquals(30f, f.getValue());
+		assertEquals(10f, f.getRawValue());
+
+		// A factor of 0 can be replaced again
+		f.setMultiplier(slots[2], 0);
+		assertEquals(0f, f.getValue());
+		f.setMultiplier(slots[2], 1);
+		assertEquals(30f, f.getValue());
+	}
+
+	public void testMixedCauses() {
+		MultiplierSlot[] slots = MultiplierSlot.reserve(SlotOwner.class, 1);
+		Object other = new Object();
+		MutatableInt i = new MutatableInt(10);
+
+		i.setMultiplier(other, 1.5f);
+		i.setMultiplier(slots[0], 2);
+		assertEquals(30, i.getValue());
+		i.removeMultiplier(other);
+		assertEquals(20, i.getValue());
+		i.removeMultiplier(slots[0]);
+		assertEquals(10, i.getValue());
+	}
+
+	public void testOrderIndependent() {
+		MultiplierSlot[] slots = MultiplierSlot.reserve(SlotOwner.class, 3);
+		float[] factors = { 0.3f, 1.7f, 0.9f };
+
+		MutatableFloat a = new MutatableFloat(1);
+		MutatableFloat b = new MutatableFloat(1);
+		for (int k = 0; k < 3; k++) {
+			a.setMultiplier(slots[k], factors[k]);
+			b.setMultiplier(slots[2 - k], factors[2 - k]);
+		}
+		// Set and put back a factor to go through a different history
+		b.setMultiplier(slots[1], 123.4f);
+		b.setMultiplier(slots[1], factors[1]);
+		assertEquals(a.getValue(), b.getValue());
+	}
+}
@@ -0,0 +1,64 @@
+package org.cobweb.util;
+
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+
+public class StreamRandomTest extends TestCase {
+
+	private static long[] draw(StreamRandom random, int n) {
+		long[] result = new long[n];
+		for (int i = 0; i < n; i++) {
+			result[i] = random.nextLong();
+		}
+		return result;
+	}
+
+	public void testSameSeedSameDraws() {
+		assertTrue(Arrays.equals(draw(new StreamRandom(42), 100), draw(new StreamRandom(42), 100)));
+		assertFalse(Arrays.equals(draw(new StreamRandom(42), 100), draw(new StreamRandom(43), 100)));
+	}
+
+	public void testSplitIndependentOfDraws() {
+		StreamRandom fresh = new StreamRandom(42);
+		long[] expected = draw(fresh.split("FoodGrowth"), 100);
+
+		// Drawing from the parent and splitting off other streams first
+		// doesn't change the stream
+		StreamRandom used = new StreamRandom(42);
+		draw(used, 17);
+		draw(used.split("DiseaseMutator"), 5);
+		used.split(12345);
+		assertTrue(Arrays.equals(expected, draw(used.split("FoodGrowth"), 100)));
+	}
+
+	public void testSplitStreamsDiffer() {
+		StreamRandom root = new StreamRandom(42);
+		long first = root.split(1).nextLong();
+		assertFalse(first == root.split(2).nextLong());
+		assertFalse(first == root.nextLong());
+		assertFalse(root.split("a").nextLong() == root.split("b").nextLong());
+		// Same key from a different seed is a different stream
+		assertFalse(first == new StreamRandom(43).split(1).nextLong());
+	}
+
+	public void testRanges() {
+		StreamRandom random = new StreamRandom(7);
+		double sum = 0;
+		int n = 100000;
+		int[] buckets = new int[10];
+		for (int i = 0; i < n; i++) {
+			float f = random.nextFloat();
+			assertTrue(f >= 0 && f < 1);
+			double d = random.nextDouble();
+			assertTrue(d >= 0 && d < 1);
+			sum += d;
+			buckets[random.nextInt(10)]++;
+		}
+		assertEquals(0.5, sum / n, 0.01);
+		for (int b : buckets) {
+			assertEquals(n / 10, b, n / 100);
+		}
+	}
+}